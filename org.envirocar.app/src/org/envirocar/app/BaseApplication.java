@@ -38,7 +38,9 @@ import org.envirocar.app.handler.LocationHandler;
 import org.envirocar.app.handler.userstatistics.UserStatisticsProcessor;
 import org.envirocar.app.notifications.AutomaticUploadNotificationHandler;
 import org.envirocar.app.notifications.NotificationHandler;
+import org.envirocar.app.recording.provider.RecordingJournal;
 import org.envirocar.app.rxutils.RxBroadcastReceiver;
+import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.injection.InjectApplicationScope;
 import org.envirocar.core.logging.ACRASenderFactory;
 import org.envirocar.core.logging.Logger;
@@ -50,10 +52,14 @@ import org.envirocar.remote.service.FuelingService;
 import org.envirocar.remote.service.TermsOfUseService;
 import org.envirocar.remote.service.TrackService;
 import org.envirocar.remote.service.UserService;
+import org.envirocar.storage.RetentionEngine;
+import org.envirocar.storage.RetentionPolicy;
 
 import javax.inject.Inject;
 
+import io.reactivex.Completable;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 
 /**
@@ -87,6 +93,12 @@ public class BaseApplication extends Application {
     protected LocationHandler locationHandler;
     @Inject
     protected AutomaticUploadNotificationHandler automaticUploadHandler;
+    @Inject
+    protected EnviroCarDB enviroCarDB;
+    @Inject
+    protected RetentionEngine retentionEngine;
+    @Inject
+    protected RecordingJournal recordingJournal;
 
 
     private CompositeDisposable disposables = new CompositeDisposable();
@@ -131,6 +143,23 @@ public class BaseApplication extends Application {
                         .doOnError(LOG::error)
                         .subscribe());
 
+        // recover the measurements that were not committed when the app was killed during a
+        // recording, move the measurements of finished tracks into the compressed cold storage
+        // and apply the retention policy afterwards
+        this.disposables.add(
+                Completable.fromAction(() -> recordingJournal.recover(enviroCarDB))
+                        .doOnError(LOG::error)
+                        .onErrorComplete()
+                        .andThen(enviroCarDB.archiveFinishedTracks())
+                        .subscribeOn(Schedulers.io())
+                        .count()
+                        .doOnSuccess(count -> LOG.info("Archived %s finished tracks.", count.toString()))
+                        .flatMap(count -> retentionEngine.run(RetentionPolicy.defaultPolicy()))
+                        .subscribe(
+                                report -> LOG.info("Reclaimed %s bytes of local storage.",
+                                        Long.toString(report.getBytesReclaimed())),
+                                LOG::error));
+
         // register Intentfilter for logging screen changes
         IntentFilter screenIntentFilter = new IntentFilter();
         screenIntentFilter.addAction(Intent.ACTION_SCREEN_OFF);
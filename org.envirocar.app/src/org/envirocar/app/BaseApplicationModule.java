@@ -35,6 +35,7 @@ import org.envirocar.app.injection.modules.RepositoryModule;
 import org.envirocar.app.injection.modules.SchedulerModule;
 import org.envirocar.core.injection.InjectApplicationScope;
 import org.envirocar.app.injection.modules.OBDServiceModule;
+import org.envirocar.app.recording.provider.RecordingJournal;
 import org.envirocar.core.CacheDirectoryProvider;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.util.Util;
@@ -42,6 +43,8 @@ import org.envirocar.app.handler.DAOProvider;
 import org.envirocar.remote.injection.modules.RemoteModule;
 import org.envirocar.storage.DatabaseModule;
 
+import java.io.File;
+
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -167,6 +170,12 @@ public class BaseApplicationModule {
         return () -> Util.resolveCacheFolder(context);
     }
 
+    @Provides
+    @Singleton
+    public RecordingJournal provideRecordingJournal(@InjectApplicationScope Context context) {
+        return new RecordingJournal(new File(context.getFilesDir(), RecordingJournal.FILE_NAME));
+    }
+
     @Provides
     @Singleton
     public NotificationManager provideNotificationManager(@InjectApplicationScope Context context){
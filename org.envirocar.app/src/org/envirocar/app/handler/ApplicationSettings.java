@@ -50,6 +50,7 @@ public class ApplicationSettings {
     public static final int DEFAULT_BLUETOOTH_DISCOVERY_INTERVAL = 60;
     public static final int DEFAULT_TRACK_TRIM_DURATION = 110;
     public static final boolean DEFAULT_DEBUG_LOGGING = false;
+    public static final boolean DEFAULT_OBD_FAST_MODE = false;
     public static final int DEFAULT_SAMPLING_RATE = 5;
 
 //    // General Settings
@@ -171,6 +172,10 @@ public class ApplicationSettings {
                 .asObservable();
     }
 
+    public static boolean isOBDFastModeEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(s(context, R.string.prefkey_obd_fast_mode), DEFAULT_OBD_FAST_MODE);
+    }
+
     public static Observable<Integer> getTrackTrimDurationObservable(final Context context) {
         return RxSharedPreferences.create(getSharedPreferences(context))
                 .getInteger(s(context, R.string.prefkey_track_trim_duration), DEFAULT_TRACK_TRIM_DURATION)
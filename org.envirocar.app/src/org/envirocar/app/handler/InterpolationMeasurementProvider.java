@@ -24,7 +24,7 @@ import com.squareup.otto.Subscribe;
 
 import org.envirocar.algorithm.AbstractMeasurementProvider;
 import org.envirocar.core.entity.Measurement;
-import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.PrimitiveMeasurement;
 import org.envirocar.core.events.gps.GpsDOP;
 import org.envirocar.core.events.gps.GpsDOPEvent;
 import org.envirocar.core.events.gps.GpsLocationChangedEvent;
@@ -33,7 +33,7 @@ import org.envirocar.obd.events.PropertyKeyEvent;
 import org.envirocar.obd.events.Timestamped;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,13 +41,16 @@ import io.reactivex.Observable;
 
 
 /**
- * TODO JavaDoc
+ * Interpolates the buffered property events to the middle of each sampling window. Measurements
+ * and property events are taken from their pools: the events are owned by this provider from
+ * {@link #consider(PropertyKeyEvent)} until they have been interpolated, the emitted
+ * measurements are owned by the subscriber, and discarded measurements are recycled right away.
  */
 public class InterpolationMeasurementProvider extends AbstractMeasurementProvider {
     private static final Logger LOG = Logger.getLogger(InterpolationMeasurementProvider.class);
 
     private Map<Measurement.PropertyKey, List<PropertyKeyEvent>> bufferedResponses = new
-            HashMap<>();
+            EnumMap<>(Measurement.PropertyKey.class);
     private long firstTimestampToBeConsidered;
     private long lastTimestampToBeConsidered;
 
@@ -77,6 +80,8 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
                                     m.hasProperty(Measurement.PropertyKey.GPS_SPEED))) {
                         LOG.info("Emitting next measuremnet");
                         emitter.onNext(m);
+                    } else {
+                        PrimitiveMeasurement.recycle(m);
                     }
                 }
             }
@@ -92,7 +97,7 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         long targetTimestamp = firstTimestampToBeConsidered + ((lastTimestampToBeConsidered -
                 firstTimestampToBeConsidered) / 2);
 
-        Measurement m = new MeasurementImpl();
+        PrimitiveMeasurement m = PrimitiveMeasurement.obtain();
         m.setTime(targetTimestamp);
 
         for (Measurement.PropertyKey pk : this.bufferedResponses.keySet()) {
@@ -109,7 +114,7 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         return m;
     }
 
-    private void setPosition(Measurement m, List<Position> positionBuffer) {
+    private void setPosition(PrimitiveMeasurement m, List<Position> positionBuffer) {
         if (positionBuffer == null || positionBuffer.isEmpty()) {
             return;
         }
@@ -130,10 +135,10 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
                     + 1) : null;
 
             double lat = interpolateTwo(start.getLatitude(), end != null ? end.getLatitude() :
-                            null, targetTimestamp, start.getTimestamp(),
+                            Double.NaN, targetTimestamp, start.getTimestamp(),
                     end != null ? end.getTimestamp() : 0L);
             double lon = interpolateTwo(start.getLongitude(), end != null ? end.getLongitude() :
-                            null, targetTimestamp, start.getTimestamp(),
+                            Double.NaN, targetTimestamp, start.getTimestamp(),
                     end != null ? end.getTimestamp() : 0L);
 
             m.setLatitude(lat);
@@ -143,27 +148,37 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
     }
 
     private void appendToMeasurement(Measurement.PropertyKey pk, List<PropertyKeyEvent>
-            dataResponses, Measurement m) {
+            dataResponses, PrimitiveMeasurement m) {
         if (pk == null) {
             return;
         }
 
+        double value;
         switch (pk) {
             case FUEL_SYSTEM_STATUS_CODE:
-                m.setProperty(pk, first(dataResponses));
+                value = first(dataResponses);
                 break;
             default:
-                m.setProperty(pk, interpolate(dataResponses, m.getTime()));
+                value = interpolateAsDouble(dataResponses, m.getTime());
                 break;
         }
 
+        if (!Double.isNaN(value)) {
+            m.setProperty(pk, value);
+        }
     }
 
-    private Double first(List<PropertyKeyEvent> dataResponses) {
-        return dataResponses.isEmpty() ? null : dataResponses.get(0).getValue().doubleValue();
+    private double first(List<PropertyKeyEvent> dataResponses) {
+        return dataResponses.isEmpty() ? Double.NaN : dataResponses.get(0).getDoubleValue();
     }
 
     protected Double interpolate(List<PropertyKeyEvent> dataResponses, long targetTimestamp) {
+        double result = interpolateAsDouble(dataResponses, targetTimestamp);
+        return Double.isNaN(result) ? null : result;
+    }
+
+    private double interpolateAsDouble(List<PropertyKeyEvent> dataResponses,
+                                       long targetTimestamp) {
         if (dataResponses.size() <= 1) {
             return first(dataResponses);
         }
@@ -176,8 +191,8 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         PropertyKeyEvent end = startIndex + 1 < dataResponses.size() ? dataResponses.get
                 (startIndex + 1) : null;
 
-        return interpolateTwo(start.getValue(), end != null ? end.getValue() : null,
-                targetTimestamp, start.getTimestamp(),
+        return interpolateTwo(start.getDoubleValue(), end != null ? end.getDoubleValue() :
+                        Double.NaN, targetTimestamp, start.getTimestamp(),
                 end != null ? end.getTimestamp() : 0L);
     }
 
@@ -205,13 +220,22 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
      */
     protected Double interpolateTwo(Number start, Number end, long targetTimestamp,
                                     long startTimestamp, long endTimestamp) {
-        if (start == null && end == null) {
-            return null;
-        }
-        if (start == null) {
-            return end.doubleValue();
-        } else if (end == null) {
-            return start.doubleValue();
+        double result = interpolateTwo(start != null ? start.doubleValue() : Double.NaN,
+                end != null ? end.doubleValue() : Double.NaN, targetTimestamp, startTimestamp,
+                endTimestamp);
+        return Double.isNaN(result) ? null : result;
+    }
+
+    /**
+     * Unboxed variant of {@link #interpolateTwo(Number, Number, long, long, long)}, in which
+     * {@link Double#NaN} denotes an absent value.
+     */
+    private double interpolateTwo(double start, double end, long targetTimestamp,
+                                  long startTimestamp, long endTimestamp) {
+        if (Double.isNaN(start)) {
+            return end;
+        } else if (Double.isNaN(end)) {
+            return start;
         }
 
         float duration = (float) (endTimestamp - startTimestamp);
@@ -219,11 +243,15 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         float endWeight = (targetTimestamp - startTimestamp) / duration;
         float startWeight = (endTimestamp - targetTimestamp) / duration;
 
-        return start.doubleValue() * startWeight + end.doubleValue() * endWeight;
+        return start * startWeight + end * endWeight;
     }
 
     private void clearBuffer() {
         for (List<PropertyKeyEvent> drl : this.bufferedResponses.values()) {
+            // the events have been interpolated and are no longer referenced.
+            for (int i = 0; i < drl.size(); i++) {
+                drl.get(i).recycle();
+            }
             drl.clear();
         }
 
@@ -241,6 +269,7 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         Measurement.PropertyKey pk = pke.getPropertyKey();
 
         if (pk == null) {
+            pke.recycle();
             return;
         }
 
@@ -267,22 +296,22 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         newPosition(new Position(now, location.getLatitude(), location.getLongitude()));
 
         if (location.hasAccuracy()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_ACCURACY, location
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_ACCURACY, location
                     .getAccuracy(), now));
         }
 
         if (location.hasAltitude()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_ALTITUDE, location
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_ALTITUDE, location
                     .getAltitude(), now));
         }
 
         if (location.hasBearing()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_BEARING, location
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_BEARING, location
                     .getBearing(), now));
         }
 
         if (location.hasSpeed()) {
-            consider(new PropertyKeyEvent(
+            consider(PropertyKeyEvent.obtain(
                     Measurement.PropertyKey.GPS_SPEED, location.getSpeed() * 3.6f, now));
         }
     }
@@ -305,15 +334,15 @@ public class InterpolationMeasurementProvider extends AbstractMeasurementProvide
         long now = System.currentTimeMillis();
 
         if (dop.hasHdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_HDOP, dop.getHdop(), now));
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_HDOP, dop.getHdop(), now));
         }
 
         if (dop.hasVdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_VDOP, dop.getVdop(), now));
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_VDOP, dop.getVdop(), now));
         }
 
         if (dop.hasPdop()) {
-            consider(new PropertyKeyEvent(Measurement.PropertyKey.GPS_PDOP, dop.getPdop(), now));
+            consider(PropertyKeyEvent.obtain(Measurement.PropertyKey.GPS_PDOP, dop.getPdop(), now));
         }
     }
 
@@ -173,6 +173,9 @@ public class TrackUploadHandler {
 
     private Observable<Track> uploadTrack(Track track) {
         return Observable.just(track)
+                // tracks of the track lists are loaded without their measurements
+                .flatMap(t -> t.isLazyLoadingMeasurements() ?
+                        mEnviroCarDB.getTrack(t.getTrackID()).take(1) : Observable.just(t))
                 // general validation of the track
                 .map(validateRequirementsForUpload())
                 // assets the car of the track and, in case it is not uploaded, it uploads the
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.handler.preferences;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.OBDSessionProfile;
+import org.envirocar.obd.OBDSessionProfileStore;
+
+/**
+ * Stores the OBD session profiles of the bluetooth devices in the shared preferences, keyed by
+ * their MAC address.
+ */
+public class OBDSessionProfileCache implements OBDSessionProfileStore {
+    private static final Logger LOG = Logger.getLogger(OBDSessionProfileCache.class);
+
+    private static final String OBD_SESSION_PROFILE_PREFS = "obdSessionProfilePrefs";
+
+    private final Context context;
+
+    /**
+     * Constructor.
+     *
+     * @param context the context of the application.
+     */
+    public OBDSessionProfileCache(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public OBDSessionProfile getProfile(String deviceAddress) {
+        String serialized = getSharedPreferences().getString(deviceAddress, null);
+        OBDSessionProfile profile = OBDSessionProfile.parse(serialized);
+        if (profile == null && serialized != null) {
+            LOG.warn("Invalid OBD session profile: " + serialized);
+            removeProfile(deviceAddress);
+        }
+        return profile;
+    }
+
+    @Override
+    public void putProfile(String deviceAddress, OBDSessionProfile profile) {
+        getSharedPreferences().edit()
+                .putString(deviceAddress, profile.serialize())
+                .apply();
+    }
+
+    @Override
+    public void removeProfile(String deviceAddress) {
+        getSharedPreferences().edit()
+                .remove(deviceAddress)
+                .apply();
+    }
+
+    private SharedPreferences getSharedPreferences() {
+        return context.getSharedPreferences(OBD_SESSION_PROFILE_PREFS, Context.MODE_PRIVATE);
+    }
+}
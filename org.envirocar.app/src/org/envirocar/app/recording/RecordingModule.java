@@ -31,6 +31,7 @@ import org.envirocar.app.handler.preferences.CarPreferenceHandler;
 import org.envirocar.app.recording.notification.SpeechOutput;
 import org.envirocar.app.recording.provider.LocationProvider;
 import org.envirocar.app.recording.provider.RecordingDetailsProvider;
+import org.envirocar.app.recording.provider.RecordingJournal;
 import org.envirocar.app.recording.provider.TrackDatabaseSink;
 import org.envirocar.app.recording.strategy.GPSRecordingStrategy;
 import org.envirocar.app.recording.strategy.OBDRecordingStrategy;
@@ -62,8 +63,9 @@ public class RecordingModule {
     @Provides
     @RecordingScope
     public TrackDatabaseSink provideTrackDatabaseSink(
-            @InjectApplicationScope Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB, Bus eventBus) {
-        return new TrackDatabaseSink(context, carHandler, enviroCarDB, eventBus);
+            @InjectApplicationScope Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB, Bus eventBus,
+            RecordingJournal journal) {
+        return new TrackDatabaseSink(context, carHandler, enviroCarDB, eventBus, journal);
     }
 
     @Provides
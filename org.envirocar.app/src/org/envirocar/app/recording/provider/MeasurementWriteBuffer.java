@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.recording.provider;
+
+import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.envirocar.core.exception.MeasurementSerializationException;
+import org.envirocar.core.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Write-behind buffer for the measurements of the track that is currently recorded. Measurements
+ * are collected in a bounded buffer and committed together with the track row in one transaction
+ * as soon as either the buffer is full or the oldest pending measurement exceeds the maximum
+ * delay.
+ * <p>
+ * Every measurement is also appended to a {@link RecordingJournal}, which is marked as drained
+ * after each successful commit. If a commit fails, its measurements stay in the buffer and in the
+ * journal, so that a later flush retries them and a kill of the process does not lose them.
+ * Failed flushes are retried with an exponentially growing delay instead of on every added
+ * measurement. While commits fail, the buffer keeps at most {@link #MAX_PENDING_BATCHES} batches;
+ * beyond that the oldest measurements are dropped, and they only stay journaled until the next
+ * successful commit. Measurements that are still pending when the buffer is closed are retried by
+ * the next flush.
+ * <p>
+ * The summary fields of the track are copied whenever a measurement is added, so that a batch is
+ * always committed with the track state that belongs to its measurements, even if the recorder
+ * keeps modifying its track meanwhile.
+ * <p>
+ * The buffer owns the measurements that are added to it and recycles pooled measurements after
+ * they have been committed.
+ */
+public class MeasurementWriteBuffer {
+    private static final Logger LOG = Logger.getLogger(MeasurementWriteBuffer.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 10;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+    public static final int MAX_PENDING_BATCHES = 30;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final EnviroCarDB enviroCarDB;
+    private final RecordingJournal journal;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final int maxPendingSize;
+    private final Scheduler scheduler;
+
+    private final List<Measurement> pending;
+    private final Track track = new TrackImpl();
+    private Scheduler.Worker worker;
+    private Disposable scheduledFlush;
+    private int failedFlushes;
+
+    /**
+     * Constructor.
+     *
+     * @param enviroCarDB the database to write to.
+     * @param journal     the journal of pending measurements.
+     */
+    public MeasurementWriteBuffer(EnviroCarDB enviroCarDB, RecordingJournal journal) {
+        this(enviroCarDB, journal, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS,
+                Schedulers.io());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param enviroCarDB    the database to write to.
+     * @param journal        the journal of pending measurements.
+     * @param maxBatchSize   the number of measurements that triggers a flush.
+     * @param maxDelayMillis the maximum time a measurement stays in the buffer.
+     * @param scheduler      the scheduler on which timed flushes are executed.
+     */
+    public MeasurementWriteBuffer(EnviroCarDB enviroCarDB, RecordingJournal journal,
+                                  int maxBatchSize, long maxDelayMillis, Scheduler scheduler) {
+        this.enviroCarDB = enviroCarDB;
+        this.journal = journal;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxPendingSize = maxBatchSize * MAX_PENDING_BATCHES;
+        this.scheduler = scheduler;
+        this.pending = new ArrayList<>(maxBatchSize);
+    }
+
+    /**
+     * Adds a measurement of the given track to the buffer. If the buffer is full, it is flushed
+     * synchronously on the calling thread, unless a failed flush is waiting for its retry.
+     *
+     * @param track       the track the measurement belongs to.
+     * @param measurement the measurement to store.
+     * @throws MeasurementSerializationException if a synchronous flush failed.
+     */
+    public synchronized void add(Track track, Measurement measurement)
+            throws MeasurementSerializationException {
+        if (!pending.isEmpty() && !this.track.getTrackID().equals(track.getTrackID())) {
+            if (!flushSilently()) {
+                LOG.warn(String.format("Discarding %s measurements of track %s.",
+                        pending.size(), this.track.getTrackID()));
+                pending.clear();
+            }
+        }
+
+        if (pending.size() >= maxPendingSize) {
+            LOG.warn(String.format("Dropping the oldest pending measurement of track %s.",
+                    this.track.getTrackID()));
+            PrimitiveMeasurement.recycle(pending.remove(0));
+        }
+
+        copySummary(track, this.track);
+        this.pending.add(measurement);
+        try {
+            journal.append(measurement);
+        } catch (IOException e) {
+            LOG.warn("Unable to journal the measurement.", e);
+        }
+
+        if (pending.size() >= maxBatchSize && failedFlushes == 0) {
+            flush();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Commits all pending measurements and the current state of their track. If the commit
+     * fails, a retry is scheduled.
+     *
+     * @throws MeasurementSerializationException if the measurements could not be inserted.
+     */
+    public synchronized void flush() throws MeasurementSerializationException {
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // if the commit fails, the batch stays pending and journaled until a later flush.
+        try {
+            enviroCarDB.insertMeasurements(track, pending);
+        } catch (MeasurementSerializationException | RuntimeException e) {
+            failedFlushes++;
+            scheduleFlush();
+            throw e;
+        }
+        failedFlushes = 0;
+
+        for (int i = 0; i < pending.size(); i++) {
+            PrimitiveMeasurement.recycle(pending.get(i));
+        }
+        pending.clear();
+
+        try {
+            journal.markDrained();
+        } catch (IOException e) {
+            LOG.warn("Unable to drain the recording journal.", e);
+        }
+    }
+
+    /**
+     * Flushes all pending measurements and releases the resources of this buffer. The buffer
+     * can be used again afterwards.
+     */
+    public synchronized void close() {
+        if (!flushSilently()) {
+            LOG.warn(String.format("%s measurements remain pending.", pending.size()));
+        }
+
+        if (worker != null) {
+            worker.dispose();
+            worker = null;
+        }
+        scheduledFlush = null;
+    }
+
+    private synchronized void flushScheduled() {
+        scheduledFlush = null;
+        flushSilently();
+    }
+
+    private synchronized boolean flushSilently() {
+        try {
+            flush();
+            return true;
+        } catch (Exception e) {
+            LOG.error("Unable to flush pending measurements.", e);
+            return false;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null) {
+            if (worker == null) {
+                worker = scheduler.createWorker();
+            }
+            scheduledFlush = worker.schedule(this::flushScheduled, retryDelayMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the maximum delay, doubled for each failed flush up to a minute.
+     */
+    private long retryDelayMillis() {
+        return Math.min(maxDelayMillis << Math.min(failedFlushes, 16),
+                Math.max(maxDelayMillis, MAX_RETRY_DELAY_MILLIS));
+    }
+
+    private static void copySummary(Track source, Track target) {
+        target.setTrackID(source.getTrackID());
+        target.setRemoteID(source.getRemoteID());
+        target.setName(source.getName());
+        target.setDescription(source.getDescription());
+        target.setCar(source.getCar());
+        target.setStartTime(source.getStartTime());
+        target.setEndTime(source.getEndTime());
+        target.setLength(source.getLength());
+        target.setTrackStatus(source.getTrackStatus());
+        target.setMetadata(source.getMetadata());
+    }
+}
@@ -146,9 +146,12 @@ public class RecordingDetailsProvider implements LifecycleObserver {
     }
 
     private void updatePathOverlay(Measurement measurement) {
+        // the measurement is recycled after it has been stored, so only its position is kept.
+        double latitude = measurement.getLatitude();
+        double longitude = measurement.getLongitude();
         mMainThreadWorker.schedule(() -> {
-            LOG.info("Map being updated with new points: " + measurement.getLatitude() + measurement.getLongitude());
-            mTrackMapOverlay.addPoint(measurement.getLatitude(), measurement.getLongitude());
+            LOG.info("Map being updated with new points: " + latitude + longitude);
+            mTrackMapOverlay.addPoint(latitude, longitude);
         });
     }
 
@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.recording.provider;
+
+import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.exception.MeasurementSerializationException;
+import org.envirocar.core.logging.Logger;
+import org.envirocar.core.utils.LocationUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the measurements of the track that is currently recorded. The journal
+ * is a memory-mapped file, so appending a measurement is a plain memory write that survives a
+ * kill of the app process, because the dirty pages belong to the kernel. The
+ * {@link MeasurementWriteBuffer} marks the journal as drained whenever it has committed its
+ * measurements to the database, and on the next start the measurements that were never drained
+ * are replayed into their track.
+ * <p>
+ * Before the journal is appended to or drained for the first time in a process, the records left
+ * behind by the previous process are moved into a separate recovery journal. The recovery
+ * therefore never sees the records of a recording that has been started in the meantime.
+ * <p>
+ * Layout: a header of magic and version, followed by records of payload length, CRC32 of the
+ * payload and the payload itself. A record with a length of zero or a wrong checksum terminates
+ * the journal, which discards a record that was torn by the kill. Draining the journal rewinds
+ * it to its start, so the file does not grow beyond the measurements of one write batch.
+ */
+public class RecordingJournal {
+    private static final Logger LOG = Logger.getLogger(RecordingJournal.class);
+
+    public static final String FILE_NAME = "recording.journal";
+    public static final String RECOVERY_SUFFIX = ".recover";
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    private static final int MAGIC = 0x45434a4c; // "ECJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final Measurement.PropertyKey[] KEYS = Measurement.PropertyKey.values();
+    // track id, time, latitude, longitude and the property mask.
+    private static final int FIXED_PAYLOAD_SIZE = 5 * 8;
+
+    private final File file;
+    private final File recoveryFile;
+    private final int initialCapacity;
+    private final CRC32 crc = new CRC32();
+    private final Object recoveryLock = new Object();
+    private boolean detached;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final byte[] payload = new byte[FIXED_PAYLOAD_SIZE + KEYS.length * 8];
+
+    /**
+     * Constructor.
+     *
+     * @param file the journal file.
+     */
+    public RecordingJournal(File file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file     the journal file.
+     * @param capacity the initial size of the mapping in bytes. The mapping grows when required.
+     */
+    public RecordingJournal(File file, int capacity) {
+        this(file, capacity, new File(file.getPath() + RECOVERY_SUFFIX));
+    }
+
+    private RecordingJournal(File file, int capacity, File recoveryFile) {
+        this.file = file;
+        this.initialCapacity = capacity;
+        this.recoveryFile = recoveryFile;
+    }
+
+    /**
+     * Appends a measurement to the journal.
+     *
+     * @param measurement the measurement with the id of its track.
+     * @throws IOException if the journal file could not be mapped.
+     */
+    public synchronized void append(Measurement measurement) throws IOException {
+        ensureOpen();
+        detachLeftovers();
+        int length = encode(measurement);
+        int position = buffer.position();
+        // keep room for the terminating zero length.
+        while (position + RECORD_HEADER_SIZE + length + 4 > buffer.capacity()) {
+            remap(buffer.capacity() * 2);
+        }
+
+        crc.reset();
+        crc.update(payload, 0, length);
+
+        // the payload and checksum are written before the length, so that a record only becomes
+        // visible when it is complete.
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.put(payload, 0, length);
+        buffer.putInt(0);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+        buffer.position(position + RECORD_HEADER_SIZE + length);
+    }
+
+    /**
+     * Marks all appended measurements as committed to the database and rewinds the journal.
+     *
+     * @throws IOException if the journal file could not be mapped.
+     */
+    public synchronized void markDrained() throws IOException {
+        ensureOpen();
+        detachLeftovers();
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * Reads all measurements that have not been marked as drained.
+     *
+     * @return the pending measurements in the order of their recording.
+     * @throws IOException if the journal file could not be mapped.
+     */
+    public synchronized List<Measurement> readPending() throws IOException {
+        ensureOpen();
+        List<Measurement> result = new ArrayList<>();
+        scan(result);
+        return result;
+    }
+
+    /**
+     * Replays the measurements that have not been committed to the database before the previous
+     * process was killed into their track. Measurements of tracks that do not exist anymore or
+     * have been uploaded and measurements that are not newer than the end of their track are
+     * skipped. Only the track row and its latest measurement are read.
+     *
+     * @param enviroCarDB the database.
+     * @return the number of recovered measurements.
+     * @throws IOException                       if the journal file could not be mapped.
+     * @throws MeasurementSerializationException if the measurements could not be inserted.
+     */
+    public int recover(EnviroCarDB enviroCarDB)
+            throws IOException, MeasurementSerializationException {
+        synchronized (this) {
+            ensureOpen();
+            detachLeftovers();
+        }
+
+        synchronized (recoveryLock) {
+            if (!recoveryFile.exists()) {
+                return 0;
+            }
+
+            RecordingJournal recovery = new RecordingJournal(recoveryFile, initialCapacity, null);
+            List<Measurement> pending;
+            int recovered = 0;
+            try {
+                pending = recovery.readPending();
+                int index = 0;
+                while (index < pending.size()) {
+                    // the measurements of one track follow each other.
+                    Track.TrackId trackId = pending.get(index).getTrackId();
+                    int end = index;
+                    while (end < pending.size()
+                            && equals(trackId, pending.get(end).getTrackId())) {
+                        end++;
+                    }
+                    recovered += recoverTrack(enviroCarDB, trackId, pending.subList(index, end));
+                    index = end;
+                }
+            } finally {
+                // on failure, the recovery journal is kept for the next start.
+                recovery.close();
+            }
+
+            LOG.info(String.format("Recovered %s of %s journaled measurements.",
+                    recovered, pending.size()));
+            if (!recoveryFile.delete()) {
+                LOG.warn("Unable to delete the recovery journal.");
+            }
+            return recovered;
+        }
+    }
+
+    private int recoverTrack(EnviroCarDB enviroCarDB, Track.TrackId trackId,
+                             List<Measurement> pending) throws MeasurementSerializationException {
+        Track track = trackId == null ? null : enviroCarDB.getTrack(trackId, true)
+                .firstElement()
+                .onErrorComplete()
+                .blockingGet();
+        if (track == null || track.isRemoteTrack()) {
+            return 0;
+        }
+
+        Long endTime = track.getEndTime();
+        Measurement last = enviroCarDB.getLastMeasurement(trackId)
+                .firstElement()
+                .blockingGet();
+        double length = track.getLength() != null ? track.getLength() : 0.0;
+
+        List<Measurement> recovered = new ArrayList<>();
+        for (Measurement measurement : pending) {
+            if (endTime != null && measurement.getTime() <= endTime) {
+                continue;
+            }
+            if (last != null) {
+                length += LocationUtils.getDistance(last, measurement);
+            }
+            recovered.add(measurement);
+            last = measurement;
+            endTime = measurement.getTime();
+        }
+
+        if (!recovered.isEmpty()) {
+            track.setEndTime(endTime);
+            track.setLength(length);
+            enviroCarDB.insertMeasurements(track, recovered);
+        }
+        return recovered.size();
+    }
+
+    /**
+     * Moves the records of the previous process into the recovery journal, once per process.
+     */
+    private void detachLeftovers() throws IOException {
+        if (detached || recoveryFile == null) {
+            return;
+        }
+
+        if (buffer.position() > HEADER_SIZE) {
+            List<Measurement> leftovers = new ArrayList<>();
+            scan(leftovers);
+            synchronized (recoveryLock) {
+                RecordingJournal recovery =
+                        new RecordingJournal(recoveryFile, initialCapacity, null);
+                for (Measurement measurement : leftovers) {
+                    recovery.append(measurement);
+                }
+                recovery.close();
+            }
+            LOG.info(String.format("Detached %s journaled measurements for the recovery.",
+                    leftovers.size()));
+
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.position(HEADER_SIZE);
+            buffer.force();
+        }
+        detached = true;
+    }
+
+    private static boolean equals(Track.TrackId a, Track.TrackId b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Writes the journal to the storage device and closes the file.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close the recording journal.", e);
+        }
+        channel = null;
+        buffer = null;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        remap(Math.max(initialCapacity, (int) channel.size()));
+        if (!exists || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(HEADER_SIZE, 0);
+        }
+        // append behind the records that have not been drained yet.
+        scan(null);
+    }
+
+    private void scan(List<Measurement> result) {
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < FIXED_PAYLOAD_SIZE || length > payload.length
+                    || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.get(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                LOG.warn("Discarding a torn record of the recording journal.");
+                break;
+            }
+
+            if (result != null) {
+                result.add(decode(length));
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        buffer.position(position);
+    }
+
+    private void remap(int capacity) throws IOException {
+        int position = buffer != null ? buffer.position() : 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(position);
+    }
+
+    private int encode(Measurement measurement) {
+        ByteBuffer out = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(measurement.getTrackId() != null ? measurement.getTrackId().getId() : -1);
+        out.putLong(measurement.getTime());
+        out.putDouble(measurement.getLatitude() != null ? measurement.getLatitude() : Double.NaN);
+        out.putDouble(measurement.getLongitude() != null ? measurement.getLongitude() : Double.NaN);
+
+        int maskPosition = out.position();
+        out.putLong(0);
+        long mask = 0;
+        for (int i = 0; i < KEYS.length; i++) {
+            if (measurement.hasProperty(KEYS[i])) {
+                mask |= 1L << i;
+                out.putDouble(measurement.getPropertyAsDouble(KEYS[i]));
+            }
+        }
+        out.putLong(maskPosition, mask);
+        return out.position();
+    }
+
+    private Measurement decode(int length) {
+        ByteBuffer in = ByteBuffer.wrap(payload, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        PrimitiveMeasurement measurement = new PrimitiveMeasurement();
+        long trackId = in.getLong();
+        if (trackId != -1) {
+            measurement.setTrackId(new Track.TrackId(trackId));
+        }
+        measurement.setTime(in.getLong());
+        double latitude = in.getDouble();
+        double longitude = in.getDouble();
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            measurement.setLatitude(latitude);
+            measurement.setLongitude(longitude);
+        }
+
+        long mask = in.getLong();
+        for (int i = 0; i < KEYS.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                measurement.setProperty(KEYS[i], in.getDouble());
+            }
+        }
+        return measurement;
+    }
+}
@@ -26,7 +26,9 @@ import org.envirocar.app.R;
 import org.envirocar.app.handler.preferences.CarPreferenceHandler;
 import org.envirocar.core.entity.Car;
 import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
 import org.envirocar.core.entity.TrackImpl;
 import org.envirocar.core.events.recording.RecordingNewMeasurementEvent;
 import org.envirocar.core.exception.MeasurementSerializationException;
@@ -34,6 +36,7 @@ import org.envirocar.core.exception.TrackSerializationException;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.utils.LocationUtils;
 import org.envirocar.core.EnviroCarDB;
+import org.envirocar.obd.events.PropertyKeyEvent;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -44,6 +47,12 @@ import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableTransformer;
 
 /**
+ * Stores the recorded measurements in the current track. The sink takes ownership of the
+ * measurements it receives: their values are copied into the columns of the track, and the
+ * measurement objects are recycled by the {@link MeasurementWriteBuffer} once they have been
+ * persisted. Subscribers of {@link RecordingNewMeasurementEvent} therefore must not keep a
+ * reference to the measurement of the event.
+ *
  * @author dewall
  */
 public class TrackDatabaseSink {
@@ -54,7 +63,9 @@ public class TrackDatabaseSink {
     private final CarPreferenceHandler carHandler;
     private final EnviroCarDB enviroCarDB;
     private final Bus eventBus;
+    private final MeasurementWriteBuffer writeBuffer;
     private Track track;
+    private TrackData trackData;
 
     /**
      * Constructor.
@@ -62,12 +73,14 @@ public class TrackDatabaseSink {
      * @param context
      * @param carHandler
      * @param enviroCarDB
+     * @param journal
      */
-    public TrackDatabaseSink(Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB, Bus eventBus) {
+    public TrackDatabaseSink(Context context, CarPreferenceHandler carHandler, EnviroCarDB enviroCarDB, Bus eventBus, RecordingJournal journal) {
         this.context = context;
         this.carHandler = carHandler;
         this.enviroCarDB = enviroCarDB;
         this.eventBus = eventBus;
+        this.writeBuffer = new MeasurementWriteBuffer(enviroCarDB, journal);
     }
 
     /**
@@ -89,25 +102,26 @@ public class TrackDatabaseSink {
             }
 
             try {
-                // inserting measurement
                 measurement.setTrackId(track.getTrackID());
-                enviroCarDB.insertMeasurement(measurement);
 
                 // updating track information
                 track.setEndTime(measurement.getTime());
 
                 // update distance
-                int numOfTracks = track.getMeasurements().size();
-                if (numOfTracks > 0) {
-                    Measurement lastMeasurement = track.getMeasurements().get(numOfTracks - 1);
-                    double distanceToLast = LocationUtils.getDistance(lastMeasurement, measurement);
+                int last = trackData.size() - 1;
+                if (last >= 0) {
+                    double distanceToLast = LocationUtils.getDistance(
+                            trackData.getLatitude(last), trackData.getLongitude(last),
+                            measurement.getLatitude(), measurement.getLongitude());
                     track.setLength(track.getLength() + distanceToLast);
                 }
 
-                // update track in databse
-                track.getMeasurements().add(measurement);
-                enviroCarDB.updateTrack(track);
+                // the track keeps a copy, the measurement itself is recycled after the write.
+                trackData.add(measurement);
                 eventBus.post(new RecordingNewMeasurementEvent(measurement));
+
+                // measurement and track are written to the database in batches
+                writeBuffer.add(track, measurement);
                 LOG.info("Measurement stored");
             } catch (MeasurementSerializationException e) {
                 LOG.error(e.getMessage(), e);
@@ -130,6 +144,10 @@ public class TrackDatabaseSink {
         track.setStartTime(startTime);
 
         enviroCarDB.insertTrack(track);
+
+        trackData = new TrackData();
+        trackData.setTrackId(track.getTrackID());
+        track.setMeasurements(trackData.asList());
         return track;
     }
 
@@ -137,6 +155,9 @@ public class TrackDatabaseSink {
         if (track == null)
             return;
         LOG.info(String.format("Finishing current track %s", track.getDescription()));
+        writeBuffer.close();
+        LOG.info(String.format("Measurement pool: %s, property event pool: %s",
+                PrimitiveMeasurement.getPool(), PropertyKeyEvent.getPool()));
 
         if (track.getMeasurements().size() <= 1) {
             LOG.info("Track had not enough measurements. Deleting track.");
@@ -146,6 +167,7 @@ public class TrackDatabaseSink {
             enviroCarDB.updateTrack(track);
         }
         this.track = null;
+        this.trackData = null;
     }
 
 }
@@ -31,6 +31,7 @@ import org.envirocar.algorithm.MeasurementProvider;
 import org.envirocar.app.handler.ApplicationSettings;
 import org.envirocar.app.handler.BluetoothHandler;
 import org.envirocar.app.handler.preferences.CarPreferenceHandler;
+import org.envirocar.app.handler.preferences.OBDSessionProfileCache;
 import org.envirocar.app.recording.RecordingState;
 import org.envirocar.app.recording.events.EngineNotRunningEvent;
 import org.envirocar.app.recording.notification.SpeechOutput;
@@ -250,6 +251,12 @@ public class OBDRecordingStrategy implements RecordingStrategy {
                         emitter.onNext(socket);
                     }
 
+                    @Override
+                    public void onFirstMeasurement(long timeToFirstMeasurement) {
+                        LOG.info(String.format("First OBD value received %d ms after connecting.",
+                                timeToFirstMeasurement));
+                    }
+
                     @Override
                     public void onEngineNotRunning() {
                         listener.onRecordingStateChanged(RecordingState.RECORDING_STOPPED);
@@ -281,7 +288,8 @@ public class OBDRecordingStrategy implements RecordingStrategy {
                             speechOutput.doTextToSpeech("Connection lost. Trying to reconnect.");
                         }
                     }
-                }, eventBus);
+                }, eventBus, ApplicationSettings.isOBDFastModeEnabled(context),
+                        new OBDSessionProfileCache(context));
 
                 disposables.add(new Disposable() {
                     private boolean isDisposed = false;
@@ -77,6 +77,7 @@ public class MapExpandedActivity extends BaseInjectorActivity {
     protected static final DecimalFormat DECIMAL_FORMATTER = new DecimalFormat("#.##");
     private static final String EXTRA_TRACKID = "org.envirocar.app.extraTrackID";
     private static final String EXTRA_TITLE = "org.envirocar.app.extraTitle";
+    private static final int MEASUREMENT_PAGE_SIZE = 500;
 
     @Inject
     protected EnviroCarDB enviroCarDB;
@@ -134,7 +135,7 @@ public class MapExpandedActivity extends BaseInjectorActivity {
         // Get the track to show.
         int trackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(trackID);
-        Track track = enviroCarDB.getTrack(trackid)
+        Track track = enviroCarDB.getTrackWithPagedMeasurements(trackid, MEASUREMENT_PAGE_SIZE)
                 .subscribeOn(Schedulers.io())
                 .blockingFirst();
         this.track = track;
@@ -88,6 +88,8 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
 
     private static final String EXTRA_TRACKID = "org.envirocar.app.extraTrackID";
     private static final String EXTRA_TITLE = "org.envirocar.app.extraTitle";
+    // the measurements are paged in, so long tracks do not have to fit into the heap at once.
+    private static final int MEASUREMENT_PAGE_SIZE = 500;
     private static final DecimalFormat DECIMAL_FORMATTER_TWO_DIGITS = new DecimalFormat("#.##");
     private static final DateFormat DATE_FORMAT = DateFormat.getDateTimeInstance();
     private static final DateFormat UTC_DATE_FORMATTER = new SimpleDateFormat("HH:mm:ss", Locale.ENGLISH);
@@ -188,7 +190,7 @@ public class TrackDetailsActivity extends BaseInjectorActivity {
         // Get the track to show.
         int mTrackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(mTrackID);
-        Track track = mEnvirocarDB.getTrack(trackid)
+        Track track = mEnvirocarDB.getTrackWithPagedMeasurements(trackid, MEASUREMENT_PAGE_SIZE)
                 .subscribeOn(Schedulers.io())
                 .blockingFirst();
         this.track = track;
@@ -37,6 +37,7 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.logging.Logger;
+import org.envirocar.core.util.Downsampling;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -61,6 +62,12 @@ public class TrackMapLayer extends MapLayer{
     public static final String GRADIENT_LAYER = "gradient-layer";
     public static final String GRADIENT_SOURCE = "source-layer";
 
+    /**
+     * The maximum number of points of the path. Longer tracks are downsampled, which keeps the
+     * shape of the path while the map only has to render a few hundred vertices.
+     */
+    private static final int MAX_PATH_POINTS = 500;
+
     private Float gradMax, gradMin;
     private final Track mTrack;
     private List<Measurement> measurementList = new ArrayList<>();
@@ -75,11 +82,21 @@ public class TrackMapLayer extends MapLayer{
      * @param track the track to create a overlay for.
      */
     public TrackMapLayer(Track track) {
+        this(track, createPath(track));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param track the track to create a overlay for.
+     * @param path  the path of the track as returned by {@link #createPath(Track)}.
+     */
+    public TrackMapLayer(Track track, List<Measurement> path) {
         super();
         mTrack = track;
-        if(mTrack.getMeasurements() != null)
+        if(path != null)
         {
-            measurementList = mTrack.getMeasurements();
+            measurementList = path;
             hasNoMeasurements = false;
         }
         else
@@ -88,6 +105,18 @@ public class TrackMapLayer extends MapLayer{
         initPath();
     }
 
+    /**
+     * Downsamples the measurements of a track to the path of the overlay. For a track with paged
+     * measurements this reads from the database, so it should not be called on the main thread.
+     *
+     * @param track the track.
+     * @return the measurements of the path or null if the track has no measurements.
+     */
+    public static List<Measurement> createPath(Track track) {
+        return track.getMeasurements() != null ?
+                Downsampling.path(track.getMeasurements(), MAX_PATH_POINTS) : null;
+    }
+
     /**
      * Initializes the track path and the bounding boxes required by the mapviews.
      */
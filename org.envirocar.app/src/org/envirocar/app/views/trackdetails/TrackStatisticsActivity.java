@@ -38,8 +38,11 @@ import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
 import org.envirocar.app.injection.BaseInjectorActivity;
 import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.logging.Logger;
+import org.envirocar.core.util.Downsampling;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -47,7 +50,9 @@ import javax.inject.Inject;
 
 import butterknife.ButterKnife;
 import butterknife.BindView;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 import lecho.lib.hellocharts.formatter.SimpleAxisValueFormatter;
 import lecho.lib.hellocharts.gesture.ZoomType;
@@ -67,7 +72,9 @@ import lecho.lib.hellocharts.view.PreviewLineChartView;
  * @author dewall
  */
 public class TrackStatisticsActivity extends BaseInjectorActivity {
+    private static final Logger LOG = Logger.getLogger(TrackStatisticsActivity.class);
     private static final String EXTRA_TRACKID = "org.envirocar.app.extraTrackID";
+    private static final int MEASUREMENT_PAGE_SIZE = 500;
 
     public static void createInstance(Activity activity, int trackID) {
         Intent intent = new Intent(activity, TrackStatisticsActivity.class);
@@ -97,7 +104,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
         int trackID = getIntent().getIntExtra(EXTRA_TRACKID, -1);
         Track.TrackId trackid = new Track.TrackId(trackID);
 
-        enviroCarDB.getTrack(trackid)
+        enviroCarDB.getTrackWithPagedMeasurements(trackid, MEASUREMENT_PAGE_SIZE)
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(track -> {
@@ -163,6 +170,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
     }
 
     public static class PlaceholderFragment extends Fragment {
+        private static final int MAX_CHART_POINTS = 500;
 
         @BindView(R.id.activity_track_statistics_fragment_chart)
         protected LineChartView mChart;
@@ -171,6 +179,7 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
 
         private LineChartData mChartData;
         private LineChartData mPreviewChartData;
+        private Disposable mDataSubscription;
 
         private final Track mTrack;
 
@@ -213,10 +222,30 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
             return rootView;
         }
 
+        @Override
+        public void onDestroyView() {
+            if (mDataSubscription != null) {
+                mDataSubscription.dispose();
+            }
+            super.onDestroyView();
+        }
+
         private void generateData(Measurement.PropertyKey propertyKey) {
-            // Generate the PointValues for the Graph.
-            List<PointValue> values = generateDistancedBasedData(propertyKey, mTrack);
+            if (mDataSubscription != null) {
+                mDataSubscription.dispose();
+            }
+
+            // Generate the PointValues for the Graph. The measurements of the track are paged in
+            // from the database, so this must not run on the main thread.
+            mDataSubscription = Observable.fromCallable(
+                    () -> generateDistancedBasedData(propertyKey, mTrack))
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(values -> showData(propertyKey, values),
+                            e -> LOG.error(e.getMessage(), e));
+        }
 
+        private void showData(Measurement.PropertyKey propertyKey, List<PointValue> values) {
             Line line = new Line(values);
             line.setColor(getResources().getColor(R.color.green_dark_cario));
             line.setHasPoints(false);
@@ -250,25 +279,41 @@ public class TrackStatisticsActivity extends BaseInjectorActivity {
 
         private List<PointValue> generateDistancedBasedData(Measurement.PropertyKey propertyKey,
                                                             Track track) {
-            List<PointValue> values = new ArrayList<PointValue>();
+            // only the distance and the property are kept, the measurements are iterated once.
+            List<Measurement> measurements = track.getMeasurements();
+            double[] distances = new double[measurements.size()];
+            double[] properties = new double[measurements.size()];
+            int count = 0;
 
             // temporary array for computing distances.
             float[] tmp = new float[1];
             float distance = 0;
-
-            // temporary value for the last measurement
-            Measurement lastMeasurement = null;
-
-            for (Measurement m : track.getMeasurements()) {
-                if (lastMeasurement != null) {
-                    Location.distanceBetween(lastMeasurement.getLatitude(), lastMeasurement
-                            .getLongitude(), m.getLatitude(), m.getLongitude(), tmp);
-                    distance += tmp[0] / 1000f; // we need km not meters.
+            Measurement previous = null;
+
+            for (Measurement measurement : measurements) {
+                if (measurement.getLatitude() != null && measurement.getLongitude() != null) {
+                    if (previous != null) {
+                        Location.distanceBetween(previous.getLatitude(), previous.getLongitude(),
+                                measurement.getLatitude(), measurement.getLongitude(), tmp);
+                        distance += tmp[0] / 1000f; // we need km not meters.
+                    }
+                    previous = measurement;
                 }
-                if (m != null && m.hasProperty(propertyKey)) {
-                    values.add(new PointValue(distance, m.getProperty(propertyKey).floatValue()));
+                if (measurement.hasProperty(propertyKey)) {
+                    distances[count] = distance;
+                    properties[count] = measurement.getPropertyAsDouble(propertyKey);
+                    count++;
                 }
-                lastMeasurement = m;
+            }
+
+            // The chart cannot show more points than it has pixels, so only the points that
+            // keep the shape of the curve are handed over.
+            int[] selected = Downsampling.largestTriangleThreeBuckets(Downsampling.of(
+                    Arrays.copyOf(distances, count), Arrays.copyOf(properties, count)),
+                    MAX_CHART_POINTS);
+            List<PointValue> values = new ArrayList<PointValue>(selected.length);
+            for (int index : selected) {
+                values.add(new PointValue((float) distances[index], (float) properties[index]));
             }
 
             return values;
@@ -40,6 +40,7 @@ import com.mapbox.mapboxsdk.maps.Style;
 
 import org.envirocar.app.R;
 import org.envirocar.app.views.trackdetails.TrackMapLayer;
+import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.exception.NoMeasurementsException;
 import org.envirocar.core.logging.Logger;
@@ -57,6 +58,8 @@ import butterknife.BindView;
 import butterknife.ButterKnife;
 import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * TODO JavaDoc
@@ -67,6 +70,7 @@ public abstract class AbstractTrackListCardAdapter<E extends
         AbstractTrackListCardAdapter
                 .TrackCardViewHolder> extends RecyclerView.Adapter<E> {
     private static final Logger LOG = Logger.getLogger(AbstractTrackListCardAdapter.class);
+    private static final int MEASUREMENT_PAGE_SIZE = 500;
 
     protected static final DecimalFormat DECIMAL_FORMATTER_TWO = new DecimalFormat("#.##");
     protected static final DateFormat DATE_FORMAT = DateFormat.getDateTimeInstance();
@@ -80,15 +84,18 @@ public abstract class AbstractTrackListCardAdapter<E extends
     protected final List<Track> mTrackDataset;
     protected Scheduler.Worker mMainThreadWorker = AndroidSchedulers.mainThread().createWorker();
     protected final OnTrackInteractionCallback mTrackInteractionCallback;
+    protected final EnviroCarDB mEnvirocarDB;
 
     /**
      * Constructor.
      *
-     * @param tracks the list of tracks to show cards for.
+     * @param tracks      the list of tracks to show cards for.
+     * @param enviroCarDB the database to read the paths of the tracks from.
      */
-    public AbstractTrackListCardAdapter(List<Track> tracks, final OnTrackInteractionCallback
-            callback) {
+    public AbstractTrackListCardAdapter(List<Track> tracks, EnviroCarDB enviroCarDB,
+                                        final OnTrackInteractionCallback callback) {
         this.mTrackDataset = tracks;
+        this.mEnvirocarDB = enviroCarDB;
         this.mTrackInteractionCallback = callback;
     }
 
@@ -216,9 +223,29 @@ public abstract class AbstractTrackListCardAdapter<E extends
      * Initializes the MapView, its base layers and settings.
      */
     protected void initMapView(TrackCardViewHolder holder, Track track) {
-        // First, clear the overlays in the MapView.
         LOG.info("initMapView()");
-        TrackMapLayer trackMapOverlay = new TrackMapLayer(track);
+        if (holder.mPathSubscription != null) {
+            holder.mPathSubscription.dispose();
+        }
+
+        if (!track.isLazyLoadingMeasurements()) {
+            showTrackPath(holder, new TrackMapLayer(track));
+            return;
+        }
+
+        // The tracks of the list are loaded without their measurements. The path is downsampled
+        // from the paged measurements of the track in the background.
+        holder.mPathSubscription = mEnvirocarDB
+                .getTrackWithPagedMeasurements(track.getTrackID(), MEASUREMENT_PAGE_SIZE)
+                .take(1)
+                .map(TrackMapLayer::createPath)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(path -> showTrackPath(holder, new TrackMapLayer(track, path)),
+                        e -> LOG.warn(e.getMessage(), e));
+    }
+
+    private void showTrackPath(TrackCardViewHolder holder, TrackMapLayer trackMapOverlay) {
         final LatLngBounds viewBbox = trackMapOverlay.getViewBoundingBox();
         holder.mMapView.addOnDidFailLoadingMapListener(holder.failLoadingMapListener);
         holder.mMapView.getMapAsync(new OnMapReadyCallback() {
@@ -318,6 +345,7 @@ public abstract class AbstractTrackListCardAdapter<E extends
         protected LinearLayout cardViewLayout;
 
         protected MapView.OnDidFailLoadingMapListener failLoadingMapListener;
+        protected Disposable mPathSubscription;
 
         /**
          * Constructor.
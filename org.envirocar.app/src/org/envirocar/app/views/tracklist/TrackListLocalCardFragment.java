@@ -24,7 +24,10 @@ import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.afollestad.materialdialogs.DialogAction;
 import com.afollestad.materialdialogs.MaterialDialog;
@@ -40,6 +43,8 @@ import org.envirocar.app.interactor.UploadTrack;
 import org.envirocar.app.views.trackdetails.TrackDetailsActivity;
 import org.envirocar.app.views.utils.DialogUtils;
 import org.envirocar.app.views.utils.ECAnimationUtils;
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.exception.TrackUploadException;
@@ -53,10 +58,12 @@ import java.util.List;
 import javax.inject.Inject;
 
 import butterknife.OnClick;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.observers.DisposableObserver;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.DisposableSubscriber;
 
 
 /**
@@ -66,6 +73,7 @@ import io.reactivex.schedulers.Schedulers;
  */
 public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<TrackListLocalCardAdapter> {
     private static final Logger LOG = Logger.getLogger(TrackListLocalCardFragment.class);
+    private static final int PAGE_SIZE = 25;
 
     interface OnTrackUploadedListener {
         void onTrackUploaded(Track track);
@@ -80,6 +88,10 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
 
     private Disposable loadTracksSubscription;
     private Disposable uploadTrackSubscription;
+    private Disposable exportTrackSubscription;
+
+    private boolean isLoadingPage = false;
+    private boolean allTracksLoaded = false;
 
     @Override
     protected void injectDependencies(BaseApplicationComponent baseApplicationComponent) {
@@ -96,6 +108,22 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
         mainActivityComponent.inject(this);
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // load the next page of tracks when the end of the list is close.
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) mRecylcerViewLayoutManager;
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= mTrackList.size() - PAGE_SIZE / 2) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
     @Override
     public void onResume() {
         LOG.info("onResume()");
@@ -129,7 +157,7 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
 
     @Override
     public TrackListLocalCardAdapter getRecyclerViewAdapter() {
-        return new TrackListLocalCardAdapter(mTrackList, new OnTrackInteractionCallback() {
+        return new TrackListLocalCardAdapter(mTrackList, mEnvirocarDB, new OnTrackInteractionCallback() {
 
             /**
              * Inits the view transition to a {@link TrackDetailsActivity} showing the
@@ -163,15 +191,31 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
             @Override
             public void onExportTrackClicked(Track track) {
                 LOG.info(String.format("onExportTrackClicked(%s)", track.getTrackID()));
-                if (mUserManager.getUser() != null) {
-                    track.updateMetadata(new TrackMetadata(Util.getVersionString(getActivity()),
-                            mUserManager.getUser().getTermsOfUseVersion()));
-                } else {
-                    track.updateMetadata(new TrackMetadata(Util.getVersionString(getActivity()),
-                            null));
-
+                if (exportTrackSubscription != null && !exportTrackSubscription.isDisposed()) {
+                    exportTrackSubscription.dispose();
                 }
-                exportTrack(track);
+
+                // tracks of the list are loaded without their measurements.
+                Observable<Track> fullTrack = track.isLazyLoadingMeasurements() ?
+                        mEnvirocarDB.getTrack(track.getTrackID()).take(1) : Observable.just(track);
+                exportTrackSubscription = fullTrack
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(loadedTrack -> {
+                            if (mUserManager.getUser() != null) {
+                                loadedTrack.updateMetadata(new TrackMetadata(
+                                        Util.getVersionString(getActivity()),
+                                        mUserManager.getUser().getTermsOfUseVersion()));
+                            } else {
+                                loadedTrack.updateMetadata(new TrackMetadata(
+                                        Util.getVersionString(getActivity()), null));
+                            }
+                            exportTrack(loadedTrack);
+                        }, e -> {
+                            LOG.error(e.getMessage(), e);
+                            Snackbar.make(getView(), R.string.general_error_please_report,
+                                    Snackbar.LENGTH_LONG).show();
+                        });
             }
 
             @Override
@@ -209,6 +253,10 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
         if (uploadTrackSubscription != null && !uploadTrackSubscription.isDisposed()) {
             uploadTrackSubscription.dispose();
         }
+
+        if (exportTrackSubscription != null && !exportTrackSubscription.isDisposed()) {
+            exportTrackSubscription.dispose();
+        }
     }
 
     private final class LoadLocalTracksTask extends AsyncTask<Void, Void, Void> {
@@ -226,69 +274,84 @@ public class TrackListLocalCardFragment extends AbstractTrackListCardFragment<Tr
                 }
             }
 
-            loadTracksSubscription = mEnvirocarDB.getAllLocalTracks()
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribeWith(new DisposableObserver<List<Track>>() {
+            mMainThreadWorker.schedule(() -> loadNextPage());
 
-                        @Override
-                        public void onStart() {
-                            LOG.info("onStart() allLocalTracks");
-                            mMainThreadWorker.schedule(() -> {
-                                mProgressView.setVisibility(View.VISIBLE);
-                                mProgressText.setText(R.string.track_list_loading_tracks);
-                            });
+            return null;
+        }
+    }
 
+    private void loadNextPage() {
+        if (isLoadingPage || allTracksLoaded) {
+            return;
+        }
+        isLoadingPage = true;
+
+        // tracks that have been removed from the list (e.g. uploaded ones) are no longer part of
+        // the local tracks, hence the size of the list is the offset of the next page.
+        loadTracksSubscription = mEnvirocarDB.getTracks(TrackFilter.local(),
+                TrackSort.START_TIME_DESC, mTrackList.size(), PAGE_SIZE)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribeWith(new DisposableSubscriber<List<Track>>() {
+
+                    @Override
+                    public void onStart() {
+                        LOG.info("onStart() local tracks page");
+                        super.onStart();
+                        if (mTrackList.isEmpty()) {
+                            mProgressView.setVisibility(View.VISIBLE);
+                            mProgressText.setText(R.string.track_list_loading_tracks);
                         }
+                    }
 
-                        @Override
-                        public void onComplete() {
-                            LOG.info("onCompleted() allLocalTracks");
-                        }
+                    @Override
+                    public void onComplete() {
+                        LOG.info("onCompleted() local tracks page");
+                        isLoadingPage = false;
+                    }
 
-                        @Override
-                        public void onError(Throwable e) {
-                            LOG.error(e.getMessage(), e);
+                    @Override
+                    public void onError(Throwable e) {
+                        LOG.error(e.getMessage(), e);
+                        isLoadingPage = false;
 
-                            showText(R.drawable.img_alert,
-                                    R.string.track_list_bg_error,
-                                    R.string.track_list_bg_error_sub);
+                        showText(R.drawable.img_alert,
+                                R.string.track_list_bg_error,
+                                R.string.track_list_bg_error_sub);
 
-                            Snackbar.make(getView(),
-                                    R.string.track_list_loading_tracks_error_snackbar,
-                                    Snackbar.LENGTH_LONG).show();
-                        }
+                        Snackbar.make(getView(),
+                                R.string.track_list_loading_tracks_error_snackbar,
+                                Snackbar.LENGTH_LONG).show();
+                    }
 
-                        @Override
-                        public void onNext(List<Track> tracks) {
-                            LOG.info(String.format("onNext(%s)", tracks.size()));
+                    @Override
+                    public void onNext(List<Track> tracks) {
+                        LOG.info(String.format("onNext(%s)", tracks.size()));
+                        allTracksLoaded = tracks.size() < PAGE_SIZE;
 
-                            boolean newTrackAdded = false;
-                            for (Track track : tracks) {
-                                if (!mTrackList.contains(track)) {
-                                    mTrackList.add(track);
-                                    newTrackAdded = true;
-                                }
+                        boolean newTrackAdded = false;
+                        for (Track track : tracks) {
+                            if (!mTrackList.contains(track)) {
+                                mTrackList.add(track);
+                                newTrackAdded = true;
                             }
+                        }
 
-                            mProgressView.setVisibility(View.INVISIBLE);
-                            if (newTrackAdded) {
-                                Collections.sort(mTrackList);
+                        mProgressView.setVisibility(View.INVISIBLE);
+                        if (newTrackAdded) {
+                            Collections.sort(mTrackList);
 
-                                mRecyclerView.setVisibility(View.VISIBLE);
-                                infoView.setVisibility(View.GONE);
-                                mRecyclerViewAdapter.notifyDataSetChanged();
+                            mRecyclerView.setVisibility(View.VISIBLE);
+                            infoView.setVisibility(View.GONE);
+                            mRecyclerViewAdapter.notifyDataSetChanged();
 
-                                ECAnimationUtils.animateShowView(getActivity(), mFAB,
-                                        R.anim.translate_slide_in_bottom_fragment);
-                            } else if (mTrackList.isEmpty()) {
-                                showNoLocalTracksInfo();
-                            }
+                            ECAnimationUtils.animateShowView(getActivity(), mFAB,
+                                    R.anim.translate_slide_in_bottom_fragment);
+                        } else if (mTrackList.isEmpty()) {
+                            showNoLocalTracksInfo();
                         }
-                    });
-
-            return null;
-        }
+                    }
+                });
     }
 
     private void showNoLocalTracksInfo() {
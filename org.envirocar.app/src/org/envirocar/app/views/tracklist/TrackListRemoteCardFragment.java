@@ -22,7 +22,10 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.squareup.otto.Subscribe;
 
@@ -33,19 +36,24 @@ import org.envirocar.app.injection.components.MainActivityComponent;
 import org.envirocar.app.injection.modules.MainActivityModule;
 import org.envirocar.app.views.trackdetails.TrackDetailsActivity;
 import org.envirocar.app.views.utils.ECAnimationUtils;
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.events.NewUserSettingsEvent;
 import org.envirocar.core.exception.NotConnectedException;
 import org.envirocar.core.exception.UnauthorizedException;
 import org.envirocar.core.logging.Logger;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import io.reactivex.Flowable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.observers.DisposableObserver;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.DisposableSubscriber;
 
 
 /**
@@ -54,6 +62,9 @@ import io.reactivex.schedulers.Schedulers;
 public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<TrackListRemoteCardAdapter>
         implements TrackListLocalCardFragment.OnTrackUploadedListener {
     private static final Logger LOG = Logger.getLogger(TrackListRemoteCardFragment.class);
+    private static final int PAGE_SIZE = 25;
+    // stays below the limit of bind arguments of SQLite.
+    private static final int MAX_REMOTE_IDS_PER_QUERY = 500;
 
     private CompositeDisposable subscriptions = new CompositeDisposable();
 
@@ -61,6 +72,11 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
     private boolean hasLoadedStored = false;
     private boolean isSorted = false;
 
+    private boolean isOffline = false;
+    private int storedTracksOffset = 0;
+    private boolean isLoadingPage = false;
+    private boolean allStoredTracksLoaded = false;
+
     @Override
     protected void injectDependencies(BaseApplicationComponent baseApplicationComponent) {
         baseApplicationComponent.inject(this);
@@ -74,6 +90,23 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
         setRetainInstance(true);
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // without a connection, load the next page of stored tracks when the end of the list is
+        // close.
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) mRecylcerViewLayoutManager;
+                if (isOffline && dy > 0 && layoutManager.findLastVisibleItemPosition() >= mTrackList.size() - PAGE_SIZE / 2) {
+                    loadNextStoredPage();
+                }
+            }
+        });
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -119,7 +152,7 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
 
     @Override
     public TrackListRemoteCardAdapter getRecyclerViewAdapter() {
-        return new TrackListRemoteCardAdapter(mTrackList,
+        return new TrackListRemoteCardAdapter(mTrackList, mEnvirocarDB,
                 new OnTrackInteractionCallback() {
 
                     /**
@@ -187,6 +220,8 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
                 mRecyclerViewAdapter.mTrackDataset.clear();
                 mRecyclerViewAdapter.notifyDataSetChanged();
                 tracksLoaded = false;
+                storedTracksOffset = 0;
+                allStoredTracksLoaded = false;
             });
         }
     }
@@ -256,49 +291,6 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
                 }
             }
 
-            subscriptions.add(mEnvirocarDB.getAllRemoteTracks()
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribeWith(new DisposableObserver<List<Track>>() {
-
-                        @Override
-                        public void onStart() {
-                            LOG.info("onStart() tracks in db");
-                            mMainThreadWorker.schedule(() -> {
-                                mProgressView.setVisibility(View.VISIBLE);
-                                mProgressText.setText(R.string.track_list_loading_tracks);
-                            });
-                        }
-
-                        @Override
-                        public void onComplete() {
-                            sortTrackList();
-                        }
-
-                        @Override
-                        public void onError(Throwable e) {
-                            LOG.error(e.getMessage(), e);
-                            showSnackbar(R.string.track_list_loading_lremote_tracks_error);
-                        }
-
-                        @Override
-                        public void onNext(List<Track> tracks) {
-                            LOG.info("onNext(" + tracks.size() + ") locally stored tracks");
-                            for (Track track : tracks) {
-                                if (track.getMeasurements() != null && !track.getMeasurements().isEmpty()) {
-                                    if (mTrackList.contains(track)) {
-                                        mTrackList.set(mTrackList.indexOf(track), track);
-                                    } else {
-                                        mTrackList.add(track);
-                                    }
-                                }
-                            }
-
-                            hasLoadedStored = true;
-                            updateView();
-                        }
-                    }));
-
             subscriptions.add(mDAOProvider.getTrackDAO().getTrackIdsObservable()
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
@@ -322,6 +314,10 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
                         public void onError(Throwable e) {
                             LOG.error(e.getMessage(), e);
 
+                            // show the stored remote tracks at least.
+                            isOffline = true;
+                            loadNextStoredPage();
+
                             if (e instanceof NotConnectedException) {
                                 showSnackbar(R.string.track_list_loading_remote_tracks_error);
                                 if (mTrackList.isEmpty()) {
@@ -355,6 +351,10 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
                             }
                             hasLoadedRemote = true;
 
+                            // Replace the tracks that have already been downloaded by their
+                            // stored state.
+                            loadStoredTracks(tracks);
+
                             // Sort the list and update the list
                             updateView();
                         }
@@ -364,6 +364,117 @@ public class TrackListRemoteCardFragment extends AbstractTrackListCardFragment<T
         }
     }
 
+    private void loadStoredTracks(List<Track> remoteTracks) {
+        List<String> remoteIds = new ArrayList<>(remoteTracks.size());
+        for (Track track : remoteTracks) {
+            if (track.getRemoteID() != null) {
+                remoteIds.add(track.getRemoteID());
+            }
+        }
+        List<List<String>> queries = new ArrayList<>();
+        for (int i = 0; i < remoteIds.size(); i += MAX_REMOTE_IDS_PER_QUERY) {
+            queries.add(remoteIds.subList(i,
+                    Math.min(i + MAX_REMOTE_IDS_PER_QUERY, remoteIds.size())));
+        }
+
+        // only the stored tracks with measurements are downloaded, and they are loaded without
+        // their measurements.
+        subscriptions.add(Flowable.fromIterable(queries)
+                .concatMap(ids -> mEnvirocarDB.getTracks(TrackFilter.remote().remoteIds(ids)
+                        .withMeasurementsOnly(true), TrackSort.START_TIME_DESC, 0, ids.size()))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribeWith(new DisposableSubscriber<List<Track>>() {
+
+                    @Override
+                    public void onComplete() {
+                        hasLoadedStored = true;
+                        sortTrackList();
+                        updateView();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        LOG.error(e.getMessage(), e);
+                        showSnackbar(R.string.track_list_loading_lremote_tracks_error);
+                        hasLoadedStored = true;
+                        updateView();
+                    }
+
+                    @Override
+                    public void onNext(List<Track> tracks) {
+                        LOG.info("onNext(" + tracks.size() + ") locally stored tracks");
+                        for (Track track : tracks) {
+                            int index = mTrackList.indexOf(track);
+                            if (index != -1) {
+                                mTrackList.set(index, track);
+                            } else {
+                                mTrackList.add(track);
+                            }
+                        }
+                    }
+                }));
+    }
+
+    private void loadNextStoredPage() {
+        if (isLoadingPage || allStoredTracksLoaded) {
+            return;
+        }
+        isLoadingPage = true;
+
+        // only the stored remote tracks with measurements are of interest, and they are
+        // loaded without their measurements.
+        subscriptions.add(mEnvirocarDB.getTracks(
+                TrackFilter.remote().withMeasurementsOnly(true), TrackSort.START_TIME_DESC,
+                storedTracksOffset, PAGE_SIZE)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribeWith(new DisposableSubscriber<List<Track>>() {
+
+                    @Override
+                    public void onStart() {
+                        LOG.info("onStart() tracks in db");
+                        super.onStart();
+                        if (mTrackList.isEmpty()) {
+                            mProgressView.setVisibility(View.VISIBLE);
+                            mProgressText.setText(R.string.track_list_loading_tracks);
+                        }
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        isLoadingPage = false;
+                        sortTrackList();
+                        mRecyclerViewAdapter.notifyDataSetChanged();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        LOG.error(e.getMessage(), e);
+                        isLoadingPage = false;
+                        showSnackbar(R.string.track_list_loading_lremote_tracks_error);
+                    }
+
+                    @Override
+                    public void onNext(List<Track> tracks) {
+                        LOG.info("onNext(" + tracks.size() + ") locally stored tracks");
+                        storedTracksOffset += tracks.size();
+                        allStoredTracksLoaded = tracks.size() < PAGE_SIZE;
+
+                        for (Track track : tracks) {
+                            if (mTrackList.contains(track)) {
+                                mTrackList.set(mTrackList.indexOf(track), track);
+                            } else {
+                                mTrackList.add(track);
+                            }
+                        }
+
+                        hasLoadedStored = true;
+                        updateView();
+                    }
+                }));
+    }
+
     @Override
     public void onTrackUploaded(Track track) {
         mEnvirocarDB.getTrack(track.getTrackID())
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.test;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.app.recording.provider.MeasurementWriteBuffer;
+import org.envirocar.app.recording.provider.RecordingJournal;
+import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.envirocar.core.exception.MeasurementSerializationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * Tests the retries and the bounds of the {@link MeasurementWriteBuffer} while the database
+ * rejects the inserts.
+ */
+public class MeasurementWriteBufferTest extends InstrumentationTestCase {
+
+    private File file;
+    private RecordingJournal journal;
+    private FakeDatabase db;
+    private WorkerTrackingScheduler scheduler;
+    private MeasurementWriteBuffer buffer;
+    private Track track;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getInstrumentation().getTargetContext().getCacheDir(), "buffer.journal");
+        file.delete();
+        journal = new RecordingJournal(file);
+        db = new FakeDatabase();
+        scheduler = new WorkerTrackingScheduler();
+        buffer = new MeasurementWriteBuffer(db.proxy, journal, 10, 5000, scheduler);
+        track = new TrackImpl();
+        track.setTrackID(new Track.TrackId(42));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        journal.close();
+        file.delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testPendingMeasurementsAreBounded() throws Exception {
+        db.failing = true;
+        int failures = 0;
+        for (int i = 0; i < 1000; i++) {
+            try {
+                buffer.add(track, createMeasurement(i));
+            } catch (MeasurementSerializationException e) {
+                failures++;
+            }
+        }
+
+        // only the first full batch is flushed synchronously, the rest waits for the retry
+        Assert.assertEquals(1, failures);
+        Assert.assertEquals(1, db.attempts);
+
+        db.failing = false;
+        buffer.flush();
+        int maxPending = 10 * MeasurementWriteBuffer.MAX_PENDING_BATCHES;
+        Assert.assertEquals(maxPending, db.inserted.size());
+        Assert.assertEquals(1000 - maxPending, db.inserted.get(0).getTime());
+        Assert.assertEquals(999, db.inserted.get(maxPending - 1).getTime());
+    }
+
+    @Test
+    public void testFailedFlushIsRetriedWithBackoff() throws Exception {
+        db.failing = true;
+        buffer.add(track, createMeasurement(0));
+
+        scheduler.advanceTimeBy(5000);
+        Assert.assertEquals(1, db.attempts);
+
+        // the retry delay is doubled
+        scheduler.advanceTimeBy(9000);
+        Assert.assertEquals(1, db.attempts);
+        scheduler.advanceTimeBy(1000);
+        Assert.assertEquals(2, db.attempts);
+
+        db.failing = false;
+        scheduler.advanceTimeBy(20000);
+        Assert.assertEquals(3, db.attempts);
+        Assert.assertEquals(1, db.inserted.size());
+
+        // a successful flush resets the delay
+        buffer.add(track, createMeasurement(1));
+        scheduler.advanceTimeBy(5000);
+        Assert.assertEquals(2, db.inserted.size());
+    }
+
+    @Test
+    public void testCloseDisposesTheWorker() throws Exception {
+        buffer.add(track, createMeasurement(0));
+        buffer.close();
+
+        Assert.assertEquals(1, db.inserted.size());
+        Assert.assertEquals(1, scheduler.workers.size());
+        Assert.assertTrue(scheduler.workers.get(0).isDisposed());
+
+        // the next recording gets a new worker
+        buffer.add(track, createMeasurement(1));
+        scheduler.advanceTimeBy(5000);
+        Assert.assertEquals(2, db.inserted.size());
+        Assert.assertEquals(2, scheduler.workers.size());
+        Assert.assertFalse(scheduler.workers.get(1).isDisposed());
+    }
+
+    private Measurement createMeasurement(long time) {
+        Measurement measurement = new MeasurementImpl(51.9, 7.6);
+        measurement.setTrackId(track.getTrackID());
+        measurement.setTime(time);
+        return measurement;
+    }
+
+    private static class WorkerTrackingScheduler extends Scheduler {
+        private final TestScheduler testScheduler = new TestScheduler();
+        private final List<Worker> workers = new ArrayList<>();
+
+        @Override
+        public Worker createWorker() {
+            Worker worker = testScheduler.createWorker();
+            workers.add(worker);
+            return worker;
+        }
+
+        void advanceTimeBy(long millis) {
+            testScheduler.advanceTimeBy(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Implements the inserts of measurements, which can be made to fail. All other calls fail.
+     */
+    private static class FakeDatabase implements InvocationHandler {
+        private final List<Measurement> inserted = new ArrayList<>();
+        private final EnviroCarDB proxy = (EnviroCarDB) Proxy.newProxyInstance(
+                EnviroCarDB.class.getClassLoader(), new Class[]{EnviroCarDB.class}, this);
+        private boolean failing;
+        private int attempts;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("insertMeasurements")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+
+            attempts++;
+            if (failing) {
+                throw new MeasurementSerializationException("database not writable");
+            }
+            inserted.addAll((List<Measurement>) args[1]);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.test;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.app.recording.provider.RecordingJournal;
+import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+
+/**
+ * Tests the replay of the {@link RecordingJournal} after a process kill and the recovery of its
+ * measurements into the database.
+ */
+public class RecordingJournalTest extends InstrumentationTestCase {
+
+    private File file;
+    private File recoveryFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getInstrumentation().getTargetContext().getCacheDir(), "test.journal");
+        recoveryFile = new File(file.getPath() + RecordingJournal.RECOVERY_SUFFIX);
+        file.delete();
+        recoveryFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        recoveryFile.delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testReplayAfterReopen() throws Exception {
+        RecordingJournal journal = new RecordingJournal(file, 256);
+        for (int i = 0; i < 20; i++) {
+            journal.append(createMeasurement(1000 + i));
+        }
+        // no close, the mapped pages are all that is left of a killed process.
+
+        List<Measurement> pending = new RecordingJournal(file).readPending();
+        Assert.assertEquals(20, pending.size());
+        Measurement last = pending.get(19);
+        Assert.assertEquals(1019, last.getTime());
+        Assert.assertEquals(42L, last.getTrackId().getId());
+        Assert.assertEquals(51.9, last.getLatitude(), 1e-9);
+        Assert.assertEquals(49.0, last.getProperty(Measurement.PropertyKey.SPEED), 1e-9);
+        Assert.assertFalse(last.hasProperty(Measurement.PropertyKey.RPM));
+    }
+
+    @Test
+    public void testDrainedMeasurementsAreNotReplayed() throws Exception {
+        RecordingJournal journal = new RecordingJournal(file);
+        journal.append(createMeasurement(1000));
+        journal.append(createMeasurement(1001));
+        journal.markDrained();
+        journal.append(createMeasurement(1002));
+        journal.close();
+
+        List<Measurement> pending = new RecordingJournal(file).readPending();
+        Assert.assertEquals(1, pending.size());
+        Assert.assertEquals(1002, pending.get(0).getTime());
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws Exception {
+        RecordingJournal journal = new RecordingJournal(file);
+        journal.append(createMeasurement(1000));
+        journal.append(createMeasurement(1001));
+        journal.close();
+
+        // corrupt the time of the second record: file header (8), first record (8 + 48),
+        // record header (8) and track id (8).
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8 + 56 + 8 + 8);
+            raf.write(0x55);
+        }
+
+        List<Measurement> pending = new RecordingJournal(file).readPending();
+        Assert.assertEquals(1, pending.size());
+        Assert.assertEquals(1000, pending.get(0).getTime());
+    }
+
+    @Test
+    public void testRecoverIntoActiveTrack() throws Exception {
+        journalOfKilledProcess(createMeasurement(1000, 51.900), createMeasurement(1001, 51.901),
+                createMeasurement(1002, 51.902));
+        FakeDatabase db = new FakeDatabase();
+        Track track = db.addTrack(42, null, 0.0);
+
+        Assert.assertEquals(3, new RecordingJournal(file).recover(db.proxy));
+
+        Assert.assertEquals(3, db.inserted.size());
+        Assert.assertEquals(Long.valueOf(1002), track.getEndTime());
+        Assert.assertTrue(track.getLength() > 0.0);
+        Assert.assertFalse(recoveryFile.exists());
+    }
+
+    @Test
+    public void testRecoverSkipsCommittedMeasurements() throws Exception {
+        journalOfKilledProcess(createMeasurement(1000), createMeasurement(1001),
+                createMeasurement(1002), createMeasurement(1003));
+        FakeDatabase db = new FakeDatabase();
+        db.addTrack(42, 1001L, 1.0);
+        db.last = createMeasurement(1001);
+
+        Assert.assertEquals(2, new RecordingJournal(file).recover(db.proxy));
+
+        Assert.assertEquals(1002, db.inserted.get(0).getTime());
+        Assert.assertEquals(1003, db.inserted.get(1).getTime());
+    }
+
+    @Test
+    public void testRecoverSkipsOtherTracks() throws Exception {
+        Measurement ofDeletedTrack = createMeasurement(1000);
+        ofDeletedTrack.setTrackId(new Track.TrackId(7));
+        Measurement ofUploadedTrack = createMeasurement(1001);
+        ofUploadedTrack.setTrackId(new Track.TrackId(8));
+        journalOfKilledProcess(ofDeletedTrack, ofUploadedTrack, createMeasurement(1002));
+        FakeDatabase db = new FakeDatabase();
+        db.addTrack(42, null, 0.0);
+        db.addTrack(8, null, 0.0).setRemoteID("5a8c");
+
+        Assert.assertEquals(1, new RecordingJournal(file).recover(db.proxy));
+
+        Assert.assertEquals(1, db.inserted.size());
+        Assert.assertEquals(42L, db.inserted.get(0).getTrackId().getId());
+    }
+
+    @Test
+    public void testRecoverIgnoresTheNewRecording() throws Exception {
+        journalOfKilledProcess(createMeasurement(1000), createMeasurement(1001));
+        FakeDatabase db = new FakeDatabase();
+        db.addTrack(42, null, 0.0);
+        db.addTrack(43, null, 0.0);
+
+        // the new recording starts before the recovery has run.
+        RecordingJournal journal = new RecordingJournal(file);
+        Measurement ofNewTrack = createMeasurement(2000);
+        ofNewTrack.setTrackId(new Track.TrackId(43));
+        journal.append(ofNewTrack);
+
+        Assert.assertEquals(2, journal.recover(db.proxy));
+        for (Measurement measurement : db.inserted) {
+            Assert.assertEquals(42L, measurement.getTrackId().getId());
+        }
+
+        // the pending measurement of the new recording is still journaled.
+        List<Measurement> pending = journal.readPending();
+        Assert.assertEquals(1, pending.size());
+        Assert.assertEquals(2000, pending.get(0).getTime());
+    }
+
+    private void journalOfKilledProcess(Measurement... measurements) throws Exception {
+        RecordingJournal journal = new RecordingJournal(file);
+        for (Measurement measurement : measurements) {
+            journal.append(measurement);
+        }
+        journal.close();
+    }
+
+    /**
+     * Implements the database calls of the recovery, all other calls fail.
+     */
+    private static class FakeDatabase implements InvocationHandler {
+        private final Map<Track.TrackId, Track> tracks = new HashMap<>();
+        private final List<Measurement> inserted = new ArrayList<>();
+        private final EnviroCarDB proxy = (EnviroCarDB) Proxy.newProxyInstance(
+                EnviroCarDB.class.getClassLoader(), new Class[]{EnviroCarDB.class}, this);
+        private Measurement last;
+
+        Track addTrack(long id, Long endTime, double length) {
+            Track track = new TrackImpl();
+            track.setTrackID(new Track.TrackId(id));
+            track.setEndTime(endTime);
+            track.setLength(length);
+            tracks.put(track.getTrackID(), track);
+            return track;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getTrack":
+                    Track track = tracks.get(args[0]);
+                    return track != null ? Observable.just(track) : Observable.empty();
+                case "getLastMeasurement":
+                    return last != null ? Observable.just(last) : Observable.empty();
+                case "insertMeasurements":
+                    inserted.addAll((List<Measurement>) args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private Measurement createMeasurement(long time) {
+        return createMeasurement(time, 51.9);
+    }
+
+    private Measurement createMeasurement(long time, double latitude) {
+        Measurement measurement = new MeasurementImpl(latitude, 7.6);
+        measurement.setTrackId(new Track.TrackId(42));
+        measurement.setTime(time);
+        measurement.setProperty(Measurement.PropertyKey.SPEED, 30.0 + (time - 1000));
+        return measurement;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.test;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.util.Downsampling;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DownsamplingTest {
+
+    @Test
+    public void testLargestTriangleThreeBucketsKeepsEndpoints() {
+        Downsampling.Series series = sine(1000);
+
+        int[] selected = Downsampling.largestTriangleThreeBuckets(series, 50);
+        Assert.assertEquals(50, selected.length);
+        Assert.assertEquals(0, selected[0]);
+        Assert.assertEquals(999, selected[selected.length - 1]);
+        assertAscending(selected);
+    }
+
+    @Test
+    public void testLargestTriangleThreeBucketsKeepsPeaks() {
+        double[] y = new double[1000];
+        y[333] = 100;
+        y[666] = -100;
+
+        int[] selected = Downsampling.largestTriangleThreeBuckets(Downsampling.of(x(1000), y), 20);
+        Assert.assertTrue(contains(selected, 333));
+        Assert.assertTrue(contains(selected, 666));
+    }
+
+    @Test
+    public void testMinMaxKeepsPeaks() {
+        double[] y = new double[1000];
+        y[0] = -5;
+        y[333] = 100;
+        y[666] = -100;
+        y[999] = 5;
+
+        int[] selected = Downsampling.minMax(Downsampling.of(x(1000), y), 20);
+        Assert.assertTrue(selected.length <= 20);
+        Assert.assertTrue(contains(selected, 0));
+        Assert.assertTrue(contains(selected, 333));
+        Assert.assertTrue(contains(selected, 666));
+        Assert.assertTrue(contains(selected, 999));
+        assertAscending(selected);
+    }
+
+    @Test
+    public void testMinMaxOutputSize() {
+        int[] selected = Downsampling.minMax(sine(1000), 50);
+        Assert.assertEquals(50, selected.length);
+        assertAscending(selected);
+    }
+
+    @Test
+    public void testSmallInputsAreKept() {
+        Downsampling.Series series = sine(10);
+        Assert.assertArrayEquals(indices(10), Downsampling.largestTriangleThreeBuckets(series, 10));
+        Assert.assertArrayEquals(indices(10), Downsampling.largestTriangleThreeBuckets(series, 500));
+        Assert.assertArrayEquals(indices(10), Downsampling.minMax(series, 500));
+        Assert.assertEquals(0, Downsampling.largestTriangleThreeBuckets(sine(0), 500).length);
+    }
+
+    @Test
+    public void testMeasurementsWithoutPropertyAreSkipped() {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Measurement measurement = new MeasurementImpl(51.0, 7.0);
+            measurement.setTime(1000L * i);
+            if (i % 2 == 0) {
+                measurement.setProperty(Measurement.PropertyKey.SPEED, (double) (i % 120));
+            }
+            measurements.add(measurement);
+        }
+
+        List<Measurement> selected = Downsampling.largestTriangleThreeBuckets(
+                measurements, Measurement.PropertyKey.SPEED, 100);
+        Assert.assertEquals(100, selected.size());
+        Assert.assertSame(measurements.get(0), selected.get(0));
+        Assert.assertSame(measurements.get(998), selected.get(99));
+        for (Measurement measurement : selected) {
+            Assert.assertTrue(measurement.hasProperty(Measurement.PropertyKey.SPEED));
+        }
+    }
+
+    private static Downsampling.Series sine(int size) {
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            y[i] = Math.sin(i / 20.0);
+        }
+        return Downsampling.of(x(size), y);
+    }
+
+    private static double[] x(int size) {
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = i;
+        }
+        return x;
+    }
+
+    private static int[] indices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static boolean contains(int[] indices, int index) {
+        for (int i : indices) {
+            if (i == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertAscending(int[] indices) {
+        for (int i = 1; i < indices.length; i++) {
+            Assert.assertTrue(indices[i - 1] < indices[i]);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.app.test;
+
+import org.envirocar.core.util.ObjectPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+    @Test
+    public void testReleasedObjectsAreReused() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(2, StringBuilder::new);
+
+        StringBuilder first = pool.acquire();
+        StringBuilder second = pool.acquire();
+        Assert.assertEquals(2, pool.getAllocations());
+
+        pool.release(first);
+        pool.release(second);
+        Assert.assertSame(second, pool.acquire());
+        Assert.assertSame(first, pool.acquire());
+        Assert.assertEquals(2, pool.getAllocations());
+        Assert.assertEquals(2, pool.getReuses());
+    }
+
+    @Test
+    public void testFullPoolDropsObjects() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(1, StringBuilder::new);
+
+        pool.release(new StringBuilder());
+        pool.release(new StringBuilder());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getDrops());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleReleaseIsRejected() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(2, StringBuilder::new);
+
+        StringBuilder object = pool.acquire();
+        pool.release(object);
+        pool.release(object);
+    }
+}
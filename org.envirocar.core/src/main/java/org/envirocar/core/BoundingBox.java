@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core;
+
+/**
+ * Geographic bounding box in WGS84 coordinates. The bounds are inclusive.
+ */
+public final class BoundingBox {
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    /**
+     * Constructor.
+     *
+     * @param minLatitude  the southern bound.
+     * @param minLongitude the western bound.
+     * @param maxLatitude  the northern bound.
+     * @param maxLongitude the eastern bound.
+     */
+    public BoundingBox(double minLatitude, double minLongitude,
+                       double maxLatitude, double maxLongitude) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid bounding box [%s, %s, %s, %s].",
+                    minLatitude, minLongitude, maxLatitude, maxLongitude));
+        }
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * @param latitude  the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @return true if the point lies within this box.
+     */
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BoundingBox[%s, %s, %s, %s]",
+                minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+}
@@ -26,6 +26,7 @@ import org.envirocar.core.util.TrackMetadata;
 
 import java.util.List;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
 
@@ -40,6 +41,26 @@ public interface EnviroCarDB {
 
     Observable<Track> getTrack(Track.TrackId trackId, boolean lazy);
 
+    /**
+     * Returns a track whose measurements are a read-only view that pages rows in from the
+     * database on demand. Only a bounded number of pages is kept in memory.
+     *
+     * @param trackId  the id of the track.
+     * @param pageSize the number of measurements per page.
+     * @return the track as observable.
+     */
+    Observable<Track> getTrackWithPagedMeasurements(Track.TrackId trackId, int pageSize);
+
+    /**
+     * Streams the measurements of a track in time order. Rows are read in windows of the given
+     * size when requested downstream, so at most one window is held in memory at a time.
+     *
+     * @param trackId the id of the track.
+     * @param window  the number of measurements read per database query.
+     * @return a backpressured flowable emitting the measurements of the track.
+     */
+    Flowable<Measurement> streamMeasurements(Track.TrackId trackId, int window);
+
     /**
      * Returns an observable providing all tracks as an {@link List}.
      *
@@ -67,6 +88,53 @@ public interface EnviroCarDB {
 
     Observable<List<Track>> getAllRemoteTracks(boolean lazy);
 
+    /**
+     * Returns a single page of lazily loaded tracks. Filtering, sorting and paging are executed by
+     * the database, so only the requested page is materialized.
+     *
+     * @param filter the filter criteria of the tracks.
+     * @param sort   the order of the tracks.
+     * @param offset the number of matching tracks to skip.
+     * @param limit  the maximum number of tracks of the page.
+     * @return a flowable emitting the page and completing afterwards.
+     */
+    Flowable<List<Track>> getTracks(TrackFilter filter, TrackSort sort, int offset, int limit);
+
+    /**
+     * Returns all tracks with at least one stored measurement within the bounding box. The
+     * lookup is an index probe and does not load any measurements.
+     *
+     * @param boundingBox the bounding box.
+     * @return an observable emitting the lazily loaded tracks.
+     */
+    Observable<List<Track>> getTracksIntersecting(BoundingBox boundingBox);
+
+    /**
+     * Returns the latest measurement of a track without loading the other measurements.
+     *
+     * @param trackId the id of the track.
+     * @return an observable emitting the measurement or completing empty if the track has none.
+     */
+    Observable<Measurement> getLastMeasurement(Track.TrackId trackId);
+
+    /**
+     * Returns the measurements of a track within the bounding box in time order.
+     *
+     * @param trackId     the id of the track.
+     * @param boundingBox the bounding box.
+     * @return an observable emitting the measurements.
+     */
+    Observable<List<Measurement>> getMeasurementsInBox(Track.TrackId trackId,
+                                                       BoundingBox boundingBox);
+
+    /**
+     * Moves the measurements of all finished tracks into the compressed cold storage. Archived
+     * tracks are read transparently by all other queries.
+     *
+     * @return an observable emitting the ids of the archived tracks.
+     */
+    Observable<Track.TrackId> archiveFinishedTracks();
+
     Observable<Void> clearTables();
 
     void insertTrack(Track track) throws TrackSerializationException;
@@ -89,6 +157,17 @@ public interface EnviroCarDB {
 
     void insertMeasurement(Measurement measurement) throws MeasurementSerializationException;
 
+    /**
+     * Inserts a batch of measurements and updates the row of their track within a single
+     * transaction.
+     *
+     * @param track        the track the measurements belong to.
+     * @param measurements the measurements to insert.
+     * @throws MeasurementSerializationException if one of the measurements could not be inserted.
+     */
+    void insertMeasurements(Track track, List<Measurement> measurements)
+            throws MeasurementSerializationException;
+
     void automaticDeleteMeasurements(long time, Track.TrackId trackId);
 
     Observable<Void> insertMeasurementObservable(Measurement measurement);
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core;
+
+import java.util.Collection;
+
+/**
+ * Filter criteria for paged track queries on the {@link EnviroCarDB}. All criteria are optional
+ * and combined with AND.
+ */
+public class TrackFilter {
+
+    /**
+     * Restricts the tracks to their origin.
+     */
+    public enum Origin {
+        ALL,
+        LOCAL,
+        REMOTE
+    }
+
+    private Origin origin = Origin.ALL;
+    private Long startedAfter;
+    private Long startedBefore;
+    private String carId;
+    private Collection<String> remoteIds;
+    private Double minLength;
+    private Double maxLength;
+    private boolean withMeasurementsOnly = false;
+
+    /**
+     * @return a filter that matches all tracks.
+     */
+    public static TrackFilter all() {
+        return new TrackFilter();
+    }
+
+    /**
+     * @return a filter that matches all local tracks.
+     */
+    public static TrackFilter local() {
+        return new TrackFilter().origin(Origin.LOCAL);
+    }
+
+    /**
+     * @return a filter that matches all remote tracks.
+     */
+    public static TrackFilter remote() {
+        return new TrackFilter().origin(Origin.REMOTE);
+    }
+
+    public TrackFilter origin(Origin origin) {
+        this.origin = origin;
+        return this;
+    }
+
+    /**
+     * @param startedAfter inclusive lower bound of the start time in milliseconds.
+     */
+    public TrackFilter startedAfter(Long startedAfter) {
+        this.startedAfter = startedAfter;
+        return this;
+    }
+
+    /**
+     * @param startedBefore exclusive upper bound of the start time in milliseconds.
+     */
+    public TrackFilter startedBefore(Long startedBefore) {
+        this.startedBefore = startedBefore;
+        return this;
+    }
+
+    public TrackFilter carId(String carId) {
+        this.carId = carId;
+        return this;
+    }
+
+    /**
+     * @param remoteIds the remote ids the tracks must have. Every id is a bind argument of the
+     *                  query, so only a few hundred ids should be given at once.
+     */
+    public TrackFilter remoteIds(Collection<String> remoteIds) {
+        this.remoteIds = remoteIds;
+        return this;
+    }
+
+    /**
+     * @param minLength inclusive lower bound of the track length in kilometers.
+     */
+    public TrackFilter minLength(Double minLength) {
+        this.minLength = minLength;
+        return this;
+    }
+
+    /**
+     * @param maxLength inclusive upper bound of the track length in kilometers.
+     */
+    public TrackFilter maxLength(Double maxLength) {
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    /**
+     * @param withMeasurementsOnly whether only tracks with stored measurements should match.
+     */
+    public TrackFilter withMeasurementsOnly(boolean withMeasurementsOnly) {
+        this.withMeasurementsOnly = withMeasurementsOnly;
+        return this;
+    }
+
+    public Origin getOrigin() {
+        return origin;
+    }
+
+    public Long getStartedAfter() {
+        return startedAfter;
+    }
+
+    public Long getStartedBefore() {
+        return startedBefore;
+    }
+
+    public String getCarId() {
+        return carId;
+    }
+
+    public Collection<String> getRemoteIds() {
+        return remoteIds;
+    }
+
+    public Double getMinLength() {
+        return minLength;
+    }
+
+    public Double getMaxLength() {
+        return maxLength;
+    }
+
+    public boolean isWithMeasurementsOnly() {
+        return withMeasurementsOnly;
+    }
+}
@@ -370,6 +370,14 @@ public interface Measurement extends BaseEntity<Measurement> {
 
     Double getProperty(PropertyKey key);
 
+    /**
+     * Returns a property without boxing.
+     *
+     * @param key the property key.
+     * @return the value or {@link Double#NaN} if the property is not present.
+     */
+    double getPropertyAsDouble(PropertyKey key);
+
     void setProperty(PropertyKey key, Double value);
 
     boolean hasProperty(PropertyKey key);
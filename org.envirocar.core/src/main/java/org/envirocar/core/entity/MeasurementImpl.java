@@ -96,6 +96,12 @@ public class MeasurementImpl implements Measurement {
         return propertyMap.get(key);
     }
 
+    @Override
+    public double getPropertyAsDouble(PropertyKey key) {
+        Double value = propertyMap.get(key);
+        return value != null ? value : Double.NaN;
+    }
+
     @Override
     public void setProperty(PropertyKey key, Double value) {
         if (value != null) {
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import org.envirocar.core.util.ObjectPool;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measurement that keeps its values in primitive fields. The properties are stored in a double
+ * array indexed by the ordinal of the property key together with a bit mask of the present
+ * properties, so a measurement consists of two objects instead of a map with an entry and a
+ * boxed value per property. The boxed accessors of {@link Measurement} box on every call, hot
+ * paths should use {@link #getPropertyAsDouble(PropertyKey)}.
+ * <p>
+ * Measurements of the recording pipeline are taken from a pool with {@link #obtain()}. The owner
+ * of a measurement, which is the sink that persists it, returns it with
+ * {@link #recycle(Measurement)} once nothing references it anymore.
+ */
+public class PrimitiveMeasurement implements Measurement {
+    private static final PropertyKey[] KEYS = PropertyKey.values();
+    private static final int MAX_POOL_SIZE = 32;
+    private static final ObjectPool<PrimitiveMeasurement> POOL =
+            new ObjectPool<>(MAX_POOL_SIZE, PrimitiveMeasurement::new);
+
+    static {
+        if (KEYS.length > Long.SIZE) {
+            throw new IllegalStateException("The presence mask supports at most 64 properties.");
+        }
+    }
+
+    protected Track.TrackId trackId;
+    protected double latitude = Double.NaN;
+    protected double longitude = Double.NaN;
+    protected long time;
+    protected final double[] values = new double[KEYS.length];
+    protected long presence;
+
+    /**
+     * Constructor.
+     */
+    public PrimitiveMeasurement() {
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param latitude  the latitude value
+     * @param longitude the longitude value
+     */
+    public PrimitiveMeasurement(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * @return an empty measurement from the pool.
+     */
+    public static PrimitiveMeasurement obtain() {
+        PrimitiveMeasurement measurement = POOL.acquire();
+        measurement.trackId = null;
+        measurement.time = 0;
+        measurement.reset();
+        return measurement;
+    }
+
+    /**
+     * @return the pool of {@link #obtain()}, e.g. to log its allocation counters.
+     */
+    public static ObjectPool<PrimitiveMeasurement> getPool() {
+        return POOL;
+    }
+
+    /**
+     * Returns a measurement to the pool, if it is a measurement of the pool. The caller must not
+     * use the measurement afterwards.
+     *
+     * @param measurement the measurement to recycle.
+     */
+    public static void recycle(Measurement measurement) {
+        if (measurement != null && measurement.getClass() == PrimitiveMeasurement.class) {
+            POOL.release((PrimitiveMeasurement) measurement);
+        }
+    }
+
+    @Override
+    public Track.TrackId getTrackId() {
+        return trackId;
+    }
+
+    @Override
+    public void setTrackId(Track.TrackId trackId) {
+        this.trackId = trackId;
+    }
+
+    @Override
+    public Double getLatitude() {
+        return Double.isNaN(latitude) ? null : latitude;
+    }
+
+    @Override
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    @Override
+    public Double getLongitude() {
+        return Double.isNaN(longitude) ? null : longitude;
+    }
+
+    @Override
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public Double getProperty(PropertyKey key) {
+        return hasProperty(key) ? values[key.ordinal()] : null;
+    }
+
+    @Override
+    public double getPropertyAsDouble(PropertyKey key) {
+        return hasProperty(key) ? values[key.ordinal()] : Double.NaN;
+    }
+
+    @Override
+    public void setProperty(PropertyKey key, Double value) {
+        if (key != null && value != null) {
+            setProperty(key, value.doubleValue());
+        }
+    }
+
+    /**
+     * Sets a property without boxing.
+     *
+     * @param key   the property key.
+     * @param value the value.
+     */
+    public void setProperty(PropertyKey key, double value) {
+        values[key.ordinal()] = value;
+        presence |= 1L << key.ordinal();
+    }
+
+    @Override
+    public boolean hasProperty(PropertyKey key) {
+        return key != null && (presence & (1L << key.ordinal())) != 0;
+    }
+
+    /**
+     * Returns a snapshot of the properties. Changes of the returned map are not written back,
+     * use {@link #setAllProperties(Map)} instead.
+     */
+    @Override
+    public Map<PropertyKey, Double> getAllProperties() {
+        Map<PropertyKey, Double> result = new EnumMap<>(PropertyKey.class);
+        for (int i = 0; i < KEYS.length; i++) {
+            if ((presence & (1L << i)) != 0) {
+                result.put(KEYS[i], values[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setAllProperties(Map<PropertyKey, Double> properties) {
+        presence = 0;
+        for (Map.Entry<PropertyKey, Double> entry : properties.entrySet()) {
+            setProperty(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Measurement carbonCopy() {
+        PrimitiveMeasurement res = new PrimitiveMeasurement(latitude, longitude);
+        System.arraycopy(values, 0, res.values, 0, values.length);
+        res.presence = presence;
+        res.trackId = trackId;
+        res.time = time;
+        return res;
+    }
+
+    @Override
+    public void reset() {
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        presence = 0;
+    }
+}
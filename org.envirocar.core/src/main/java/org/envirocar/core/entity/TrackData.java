@@ -0,0 +1,456 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar representation of the measurements of a track. Times, latitudes and longitudes are
+ * stored in primitive arrays, and every property key that is present in at least one measurement
+ * has its own column. Absent values are {@link Double#NaN}. Analytics can loop over the columns
+ * directly, legacy callers use the {@link List} view returned by {@link #asList()}. The view
+ * does not copy the columns, but every access of an element allocates a small object that reads
+ * and writes through to its row, so hot loops should use the columns.
+ * <p>
+ * Rows can only be appended. All measurements belong to the same track.
+ */
+public final class TrackData {
+    private static final Measurement.PropertyKey[] KEYS = Measurement.PropertyKey.values();
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Track.TrackId trackId;
+    private int size;
+    private long[] times;
+    private double[] latitudes;
+    private double[] longitudes;
+    private final double[][] properties = new double[KEYS.length][];
+    private final MeasurementList list = new MeasurementList();
+
+    /**
+     * Constructor.
+     */
+    public TrackData() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the initial number of rows.
+     */
+    public TrackData(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.times = new long[capacity];
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+    }
+
+    /**
+     * Returns the columns of a list of measurements. If the list is a view of a
+     * {@link TrackData}, it is returned without copying.
+     *
+     * @param measurements the measurements.
+     * @return the columnar representation.
+     */
+    public static TrackData of(List<Measurement> measurements) {
+        TrackData data = unwrap(measurements);
+        if (data != null) {
+            return data;
+        }
+
+        data = new TrackData(measurements.size());
+        for (Measurement measurement : measurements) {
+            data.add(measurement);
+        }
+        return data;
+    }
+
+    /**
+     * @param measurements the measurements.
+     * @return the {@link TrackData} the list is a view of or null if it is no view.
+     */
+    public static TrackData unwrap(List<Measurement> measurements) {
+        return measurements instanceof MeasurementList ?
+                ((MeasurementList) measurements).data() : null;
+    }
+
+    public Track.TrackId getTrackId() {
+        return trackId;
+    }
+
+    public void setTrackId(Track.TrackId trackId) {
+        this.trackId = trackId;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the time column. Only the first {@link #size()} entries are valid.
+     */
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the latitude column. Only the first {@link #size()} entries are valid.
+     */
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    /**
+     * @return the longitude column. Only the first {@link #size()} entries are valid.
+     */
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    /**
+     * @param key the property key.
+     * @return the column of the property or null if no row has the property. Only the first
+     * {@link #size()} entries are valid.
+     */
+    public double[] getColumn(Measurement.PropertyKey key) {
+        return properties[key.ordinal()];
+    }
+
+    /**
+     * @param key the property key.
+     * @return true if at least one row has the property.
+     */
+    public boolean hasProperty(Measurement.PropertyKey key) {
+        double[] column = properties[key.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < size; i++) {
+                if (!Double.isNaN(column[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getTime(int row) {
+        return times[checkRow(row)];
+    }
+
+    public double getLatitude(int row) {
+        return latitudes[checkRow(row)];
+    }
+
+    public double getLongitude(int row) {
+        return longitudes[checkRow(row)];
+    }
+
+    /**
+     * @param row the index of the row.
+     * @param key the property key.
+     * @return the value or {@link Double#NaN} if the row does not have the property.
+     */
+    public double getProperty(int row, Measurement.PropertyKey key) {
+        double[] column = properties[key.ordinal()];
+        return column != null ? column[checkRow(row)] : Double.NaN;
+    }
+
+    /**
+     * Appends a row without properties.
+     *
+     * @param time      the time.
+     * @param latitude  the latitude or {@link Double#NaN}.
+     * @param longitude the longitude or {@link Double#NaN}.
+     * @return the index of the row.
+     */
+    public int add(long time, double latitude, double longitude) {
+        if (size == times.length) {
+            grow();
+        }
+        times[size] = time;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        for (double[] column : properties) {
+            if (column != null) {
+                column[size] = Double.NaN;
+            }
+        }
+        return size++;
+    }
+
+    /**
+     * Appends a copy of a measurement.
+     *
+     * @param measurement the measurement.
+     * @return the index of the row.
+     */
+    public int add(Measurement measurement) {
+        if (trackId == null) {
+            trackId = measurement.getTrackId();
+        }
+        Double latitude = measurement.getLatitude();
+        Double longitude = measurement.getLongitude();
+        int row = add(measurement.getTime(),
+                latitude != null ? latitude : Double.NaN,
+                longitude != null ? longitude : Double.NaN);
+        for (Measurement.PropertyKey key : KEYS) {
+            if (measurement.hasProperty(key)) {
+                setProperty(row, key, measurement.getPropertyAsDouble(key));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Sets a property of a row.
+     *
+     * @param row   the index of the row.
+     * @param key   the property key.
+     * @param value the value or {@link Double#NaN} to remove the property.
+     */
+    public void setProperty(int row, Measurement.PropertyKey key, double value) {
+        checkRow(row);
+        double[] column = properties[key.ordinal()];
+        if (column == null) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+            column = new double[times.length];
+            Arrays.fill(column, Double.NaN);
+            properties[key.ordinal()] = column;
+        }
+        column[row] = value;
+    }
+
+    /**
+     * @return a copy of all rows.
+     */
+    public TrackData copy() {
+        return slice(0, size);
+    }
+
+    /**
+     * @param from the index of the first row.
+     * @param to   the index after the last row.
+     * @return a copy of the rows in the range.
+     */
+    public TrackData slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to);
+        }
+        int length = to - from;
+        TrackData result = new TrackData(length);
+        result.trackId = trackId;
+        result.size = length;
+        System.arraycopy(times, from, result.times, 0, length);
+        System.arraycopy(latitudes, from, result.latitudes, 0, length);
+        System.arraycopy(longitudes, from, result.longitudes, 0, length);
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] != null) {
+                result.properties[i] = Arrays.copyOfRange(properties[i], from,
+                        from + Math.max(length, 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a view of the rows as measurements. Changes of the measurements are written to
+     * the columns and added measurements are appended as rows.
+     *
+     * @return the list view.
+     */
+    public List<Measurement> asList() {
+        return list;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] != null) {
+                properties[i] = Arrays.copyOf(properties[i], capacity);
+            }
+        }
+    }
+
+    private final class MeasurementList extends AbstractList<Measurement>
+            implements RandomAccess {
+
+        TrackData data() {
+            return TrackData.this;
+        }
+
+        @Override
+        public Measurement get(int index) {
+            return new Row(checkRow(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(Measurement measurement) {
+            TrackData.this.add(measurement);
+            modCount++;
+            return true;
+        }
+    }
+
+    /**
+     * A measurement that reads from and writes to a row of the columns.
+     */
+    private final class Row implements Measurement {
+        private final int row;
+
+        Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Track.TrackId getTrackId() {
+            return trackId;
+        }
+
+        @Override
+        public void setTrackId(Track.TrackId trackId) {
+            TrackData.this.trackId = trackId;
+        }
+
+        @Override
+        public Double getLatitude() {
+            return Double.isNaN(latitudes[row]) ? null : latitudes[row];
+        }
+
+        @Override
+        public void setLatitude(double latitude) {
+            latitudes[row] = latitude;
+        }
+
+        @Override
+        public Double getLongitude() {
+            return Double.isNaN(longitudes[row]) ? null : longitudes[row];
+        }
+
+        @Override
+        public void setLongitude(double longitude) {
+            longitudes[row] = longitude;
+        }
+
+        @Override
+        public long getTime() {
+            return times[row];
+        }
+
+        @Override
+        public void setTime(long time) {
+            times[row] = time;
+        }
+
+        @Override
+        public Double getProperty(PropertyKey key) {
+            double value = getPropertyAsDouble(key);
+            return Double.isNaN(value) ? null : value;
+        }
+
+        @Override
+        public double getPropertyAsDouble(PropertyKey key) {
+            return TrackData.this.getProperty(row, key);
+        }
+
+        @Override
+        public void setProperty(PropertyKey key, Double value) {
+            if (key != null && value != null) {
+                TrackData.this.setProperty(row, key, value);
+            }
+        }
+
+        @Override
+        public boolean hasProperty(PropertyKey key) {
+            return key != null && !Double.isNaN(getPropertyAsDouble(key));
+        }
+
+        @Override
+        public Map<PropertyKey, Double> getAllProperties() {
+            Map<PropertyKey, Double> result = new EnumMap<>(PropertyKey.class);
+            for (PropertyKey key : KEYS) {
+                double value = getPropertyAsDouble(key);
+                if (!Double.isNaN(value)) {
+                    result.put(key, value);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void setAllProperties(Map<PropertyKey, Double> properties) {
+            clearProperties();
+            for (Map.Entry<PropertyKey, Double> entry : properties.entrySet()) {
+                setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public Measurement carbonCopy() {
+            PrimitiveMeasurement result = new PrimitiveMeasurement(latitudes[row], longitudes[row]);
+            result.setTrackId(trackId);
+            result.setTime(times[row]);
+            for (PropertyKey key : KEYS) {
+                double value = getPropertyAsDouble(key);
+                if (!Double.isNaN(value)) {
+                    result.setProperty(key, value);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            latitudes[row] = Double.NaN;
+            longitudes[row] = Double.NaN;
+            clearProperties();
+        }
+
+        private void clearProperties() {
+            for (double[] column : TrackData.this.properties) {
+                if (column != null) {
+                    column[row] = Double.NaN;
+                }
+            }
+        }
+    }
+}
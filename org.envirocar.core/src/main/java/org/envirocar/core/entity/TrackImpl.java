@@ -35,6 +35,8 @@ import java.util.List;
  * @author dewall
  */
 public class TrackImpl implements Track, TrackStatisticsProvider {
+    private static final Measurement.PropertyKey[] KEYS = Measurement.PropertyKey.values();
+
     private TrackStatisticsProcessor STATISTICS_PROCESSOR;
 
     protected TrackId trackID;
@@ -53,6 +55,11 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
 
     protected boolean isLazyLoadingMeasurements = false;
 
+    // bit mask of the properties of the first propertyMaskCount measurements. Appended
+    // measurements are folded in on the next query.
+    protected long propertyMask;
+    protected int propertyMaskCount;
+
     protected Double distanceOfTrack;
     protected Double consumptionPerHour;
     protected Double co2Average;
@@ -97,7 +104,7 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
 
     @Override
     public boolean isLazyLoadingMeasurements() {
-        return false;
+        return isLazyLoadingMeasurements;
     }
 
     @Override
@@ -120,6 +127,8 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
         track.setMeasurements(new ArrayList<>(measurements));
         track.setLazyMeasurements(isLazyLoadingMeasurements);
         track.setLength(length);
+        ((TrackImpl) track).propertyMask = propertyMask;
+        ((TrackImpl) track).propertyMaskCount = propertyMaskCount;
         return track;
     }
 
@@ -297,24 +306,70 @@ public class TrackImpl implements Track, TrackStatisticsProvider {
         // track is not" +
         //                " allowed to have empty measuremnts");
         this.measurements = measurements;
+        this.propertyMask = 0;
+        this.propertyMaskCount = 0;
     }
 
-    @Override
-    public boolean hasProperty(Measurement.PropertyKey propertyKey) {
-        for (Measurement m : measurements) {
-            if (m.hasProperty(propertyKey)) {
-                return true;
+    /**
+     * Sets the bit mask of the present properties as persisted with the track row. Bit i
+     * stands for the property key with ordinal i.
+     *
+     * @param propertyMask the bit mask.
+     */
+    public void setPropertyMask(long propertyMask) {
+        this.propertyMask = propertyMask;
+        this.propertyMaskCount = measurements.size();
+    }
+
+    /**
+     * @return the bit mask of the properties present in at least one measurement.
+     */
+    public long getPropertyMask() {
+        int size = measurements.size();
+        if (propertyMaskCount > size) {
+            // measurements have been removed from the list.
+            propertyMask = 0;
+            propertyMaskCount = 0;
+        }
+
+        TrackData data = TrackData.unwrap(measurements);
+        for (int i = 0; i < KEYS.length && propertyMaskCount < size; i++) {
+            if ((propertyMask & (1L << i)) != 0) {
+                continue;
+            }
+            if (data != null) {
+                double[] column = data.getColumn(KEYS[i]);
+                for (int row = propertyMaskCount; column != null && row < size; row++) {
+                    if (!Double.isNaN(column[row])) {
+                        propertyMask |= 1L << i;
+                        break;
+                    }
+                }
+            } else {
+                for (int row = propertyMaskCount; row < size; row++) {
+                    if (measurements.get(row).hasProperty(KEYS[i])) {
+                        propertyMask |= 1L << i;
+                        break;
+                    }
+                }
             }
         }
-        return false;
+        propertyMaskCount = size;
+        return propertyMask;
+    }
+
+    @Override
+    public boolean hasProperty(Measurement.PropertyKey propertyKey) {
+        return (getPropertyMask() & (1L << propertyKey.ordinal())) != 0;
     }
 
     @Override
     public List<Measurement.PropertyKey> getSupportedProperties() {
-        List<Measurement.PropertyKey> result = new ArrayList<>();
-        for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
-            if (hasProperty(key)) {
-                result.add(key);
+        long mask = getPropertyMask();
+        List<Measurement.PropertyKey> result = new ArrayList<>(Long.bitCount(mask));
+        for (int i = 0; i < KEYS.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                result.add(KEYS[i]);
             }
         }
         return result;
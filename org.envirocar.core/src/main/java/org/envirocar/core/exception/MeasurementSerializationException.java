@@ -26,6 +26,10 @@ public class MeasurementSerializationException extends Exception {
 		super(e);
 	}
 
+	public MeasurementSerializationException(String message) {
+		super(message);
+	}
+
 	/**
 	 * 
 	 */
@@ -22,6 +22,7 @@ import android.location.Location;
 
 import org.envirocar.core.entity.Car;
 import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.TrackData;
 import org.envirocar.core.exception.FuelConsumptionException;
 import org.envirocar.core.exception.UnsupportedFuelTypeException;
 import org.envirocar.core.logging.Logger;
@@ -50,6 +51,11 @@ public class TrackStatisticsProcessor {
     }
 
     public double computeDistanceOfTrack(List<Measurement> measurements) {
+        TrackData data = measurements != null ? TrackData.unwrap(measurements) : null;
+        if (data != null) {
+            return computeDistanceOfTrack(data);
+        }
+
         double distance = 0.0;
 
         // Return a distance of one if only one measurement exists.
@@ -74,12 +80,50 @@ public class TrackStatisticsProcessor {
         return distance / 1000.0d;
     }
 
+    /**
+     * Computes the distance of a track in kilometers with a loop over the coordinate columns.
+     *
+     * @param data the columns of the track.
+     * @return the distance in kilometers.
+     */
+    public double computeDistanceOfTrack(TrackData data) {
+        int size = data.size();
+        if (size <= 1) {
+            return 0.0;
+        }
+
+        double[] latitudes = data.getLatitudes();
+        double[] longitudes = data.getLongitudes();
+        float[] distanceArray = new float[1];
+        double distance = 0.0;
+        for (int i = 1; i < size; i++) {
+            Location.distanceBetween(latitudes[i - 1], longitudes[i - 1],
+                    latitudes[i], longitudes[i], distanceArray);
+            distance += distanceArray[0];
+            distanceArray[0] = 0;
+        }
+        return distance / 1000.0d;
+    }
+
     public Double getCO2Average(List<Measurement> measurements) throws FuelConsumptionException {
         double co2Avg = 0.0;
         if (consumptionAlgorithm == null) {
             return null;
         }
 
+        TrackData data = TrackData.unwrap(measurements);
+        if (data != null) {
+            double[] consumption = data.getColumn(Measurement.PropertyKey.CONSUMPTION);
+            if (consumption != null) {
+                for (int i = 0; i < data.size(); i++) {
+                    if (!Double.isNaN(consumption[i])) {
+                        co2Avg += consumptionAlgorithm.calculateCO2FromConsumption(consumption[i]);
+                    }
+                }
+            }
+            return co2Avg / data.size();
+        }
+
         for (Measurement measurement : measurements) {
             Double property = measurement.getProperty(Measurement.PropertyKey.CONSUMPTION);
 
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.util;
+
+import org.envirocar.core.entity.Measurement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Downsampling of measurement series for charts and map paths, which can only show a few hundred
+ * points anyway. Two algorithms are provided: Largest-Triangle-Three-Buckets (see Steinarsson,
+ * "Downsampling Time Series for Visual Representation"), which keeps the visual shape of a
+ * series, and min/max decimation, which keeps the extremes of every bucket.
+ * <p>
+ * All methods access the input in index order with a lookahead of one bucket, so they work on
+ * paged measurement lists. The helpers over measurement lists do not hold on to measurements, but
+ * keep the index of every measurement with a position or property, i.e. four bytes per
+ * measurement.
+ */
+public final class Downsampling {
+
+    /**
+     * A series of points with ascending x values.
+     */
+    public interface Series {
+        int size();
+
+        double x(int index);
+
+        double y(int index);
+    }
+
+    private Downsampling() {
+        // no instance creation
+    }
+
+    /**
+     * @param x the x values.
+     * @param y the y values.
+     * @return a series over the arrays.
+     */
+    public static Series of(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length.");
+        }
+        return new Series() {
+            @Override
+            public int size() {
+                return x.length;
+            }
+
+            @Override
+            public double x(int index) {
+                return x[index];
+            }
+
+            @Override
+            public double y(int index) {
+                return y[index];
+            }
+        };
+    }
+
+    /**
+     * Selects at most {@code maxPoints} points of a series with Largest-Triangle-Three-Buckets.
+     * The first and the last point are always selected.
+     *
+     * @param series    the series.
+     * @param maxPoints the maximum number of points.
+     * @return the ascending indices of the selected points.
+     */
+    public static int[] largestTriangleThreeBuckets(Series series, int maxPoints) {
+        int size = series.size();
+        if (maxPoints >= size || maxPoints < 3) {
+            return identity(size);
+        }
+
+        int[] selected = new int[maxPoints];
+        int count = 0;
+        selected[count++] = 0;
+
+        double bucketSize = (double) (size - 2) / (maxPoints - 2);
+        int anchor = 0;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            // average of the next bucket as third point of the triangle.
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += series.x(i);
+                averageY += series.y(i);
+            }
+            int nextLength = nextEnd - nextStart;
+            averageX /= nextLength;
+            averageY /= nextLength;
+
+            // the point of the current bucket that spans the largest triangle.
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double anchorX = series.x(anchor);
+            double anchorY = series.y(anchor);
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((anchorX - averageX) * (series.y(i) - anchorY)
+                        - (anchorX - series.x(i)) * (averageY - anchorY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            selected[count++] = maxIndex;
+            anchor = maxIndex;
+        }
+
+        selected[count] = size - 1;
+        return selected;
+    }
+
+    /**
+     * Selects at most {@code maxPoints} points of a series by keeping the minimum and the
+     * maximum of {@code maxPoints / 2} equally sized buckets.
+     *
+     * @param series    the series.
+     * @param maxPoints the maximum number of points.
+     * @return the ascending indices of the selected points.
+     */
+    public static int[] minMax(Series series, int maxPoints) {
+        int size = series.size();
+        int buckets = maxPoints / 2;
+        if (maxPoints >= size || buckets < 1) {
+            return identity(size);
+        }
+
+        int[] selected = new int[buckets * 2];
+        int count = 0;
+        double bucketSize = (double) size / buckets;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize);
+            int end = Math.min((int) Math.floor((bucket + 1) * bucketSize), size);
+            int minIndex = start;
+            int maxIndex = start;
+            for (int i = start + 1; i < end; i++) {
+                double y = series.y(i);
+                if (y < series.y(minIndex)) {
+                    minIndex = i;
+                }
+                if (y > series.y(maxIndex)) {
+                    maxIndex = i;
+                }
+            }
+            selected[count++] = Math.min(minIndex, maxIndex);
+            if (minIndex != maxIndex) {
+                selected[count++] = Math.max(minIndex, maxIndex);
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Downsamples the measurements of a track for a chart of a property over time. Measurements
+     * without the property are skipped.
+     *
+     * @param measurements the measurements in time order.
+     * @param key          the property to plot.
+     * @param maxPoints    the maximum number of measurements.
+     * @return the selected measurements.
+     */
+    public static List<Measurement> largestTriangleThreeBuckets(
+            List<Measurement> measurements, Measurement.PropertyKey key, int maxPoints) {
+        Series series = propertySeries(measurements, key);
+        return select(measurements, series, largestTriangleThreeBuckets(series, maxPoints));
+    }
+
+    /**
+     * Downsamples the measurements of a track by keeping the extremes of a property. Measurements
+     * without the property are skipped.
+     *
+     * @param measurements the measurements in time order.
+     * @param key          the property.
+     * @param maxPoints    the maximum number of measurements.
+     * @return the selected measurements.
+     */
+    public static List<Measurement> minMax(
+            List<Measurement> measurements, Measurement.PropertyKey key, int maxPoints) {
+        Series series = propertySeries(measurements, key);
+        return select(measurements, series, minMax(series, maxPoints));
+    }
+
+    /**
+     * Downsamples the measurements of a track for a map path. Largest-Triangle-Three-Buckets is
+     * applied in the plane of longitude and latitude, which keeps the corners of the path.
+     * Measurements without a position are skipped.
+     *
+     * @param measurements the measurements in time order.
+     * @param maxPoints    the maximum number of measurements.
+     * @return the selected measurements.
+     */
+    public static List<Measurement> path(List<Measurement> measurements, int maxPoints) {
+        int[] positions = new int[measurements.size()];
+        int count = 0;
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement measurement = measurements.get(i);
+            if (measurement.getLatitude() != null && measurement.getLongitude() != null) {
+                positions[count++] = i;
+            }
+        }
+
+        FilteredSeries series = new FilteredSeries(measurements, positions, count) {
+            @Override
+            public double x(int index) {
+                return get(index).getLongitude();
+            }
+
+            @Override
+            public double y(int index) {
+                return get(index).getLatitude();
+            }
+        };
+        return select(measurements, series, largestTriangleThreeBuckets(series, maxPoints));
+    }
+
+    private static FilteredSeries propertySeries(List<Measurement> measurements,
+                                                 Measurement.PropertyKey key) {
+        int[] positions = new int[measurements.size()];
+        int count = 0;
+        for (int i = 0; i < measurements.size(); i++) {
+            if (measurements.get(i).hasProperty(key)) {
+                positions[count++] = i;
+            }
+        }
+
+        return new FilteredSeries(measurements, positions, count) {
+            @Override
+            public double x(int index) {
+                return get(index).getTime();
+            }
+
+            @Override
+            public double y(int index) {
+                return get(index).getPropertyAsDouble(key);
+            }
+        };
+    }
+
+    private static List<Measurement> select(List<Measurement> measurements, Series series,
+                                            int[] indices) {
+        FilteredSeries filtered = (FilteredSeries) series;
+        List<Measurement> result = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            result.add(measurements.get(filtered.positions[index]));
+        }
+        return result;
+    }
+
+    private static int[] identity(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Series over the measurements at the given positions of a list.
+     */
+    private abstract static class FilteredSeries implements Series {
+        private final List<Measurement> measurements;
+        private final int[] positions;
+        private final int size;
+
+        FilteredSeries(List<Measurement> measurements, int[] positions, int size) {
+            this.measurements = measurements;
+            this.positions = positions;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        Measurement get(int index) {
+            return measurements.get(positions[index]);
+        }
+    }
+}
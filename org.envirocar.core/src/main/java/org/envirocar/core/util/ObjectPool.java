@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.core.util;
+
+/**
+ * Bounded pool of recyclable objects for hot paths that would otherwise allocate an object per
+ * sample. {@link #acquire()} returns an idle object or creates a new one, {@link #release(Object)}
+ * returns an object that is no longer referenced by its owner. Objects that are never released
+ * are simply garbage collected, so releasing is an optimization and not an obligation. Objects
+ * released to a full pool are dropped.
+ * <p>
+ * The pool does not reset objects, this is up to the caller of {@link #acquire()}. The counters
+ * show how many objects had to be allocated, which should stay constant in a steady state.
+ *
+ * @param <T> the type of the pooled objects.
+ */
+public final class ObjectPool<T> {
+
+    /**
+     * Creates new instances when the pool is empty.
+     *
+     * @param <T> the type of the pooled objects.
+     */
+    public interface Factory<T> {
+        T create();
+    }
+
+    private final Factory<T> factory;
+    private final Object[] idle;
+    private int idleCount;
+
+    private long allocations;
+    private long reuses;
+    private long releases;
+    private long drops;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of idle objects.
+     * @param factory  the factory of new instances.
+     */
+    public ObjectPool(int capacity, Factory<T> factory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity has to be positive.");
+        }
+        this.factory = factory;
+        this.idle = new Object[capacity];
+    }
+
+    /**
+     * @return an idle object, or a new one if the pool is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T acquire() {
+        if (idleCount == 0) {
+            allocations++;
+            return factory.create();
+        }
+        reuses++;
+        T result = (T) idle[--idleCount];
+        idle[idleCount] = null;
+        return result;
+    }
+
+    /**
+     * Returns an object to the pool. The caller must not use the object afterwards.
+     *
+     * @param object the object to release.
+     * @throws IllegalStateException if the object already is idle in this pool.
+     */
+    public synchronized void release(T object) {
+        if (object == null) {
+            return;
+        }
+        for (int i = 0; i < idleCount; i++) {
+            if (idle[i] == object) {
+                throw new IllegalStateException("The object has already been released.");
+            }
+        }
+        releases++;
+        if (idleCount == idle.length) {
+            drops++;
+            return;
+        }
+        idle[idleCount++] = object;
+    }
+
+    /**
+     * @return the number of objects that were created because the pool was empty.
+     */
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * @return the number of acquired objects that were recycled.
+     */
+    public synchronized long getReuses() {
+        return reuses;
+    }
+
+    /**
+     * @return the number of released objects.
+     */
+    public synchronized long getReleases() {
+        return releases;
+    }
+
+    /**
+     * @return the number of released objects that were dropped because the pool was full.
+     */
+    public synchronized long getDrops() {
+        return drops;
+    }
+
+    /**
+     * @return the number of idle objects.
+     */
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ObjectPool[allocations=%d, reuses=%d, releases=%d, drops=%d, idle=%d]",
+                allocations, reuses, releases, drops, idleCount);
+    }
+}
@@ -20,6 +20,7 @@ package org.envirocar.core.utils;
 
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
 import org.envirocar.core.exception.NoMeasurementsException;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.core.util.Util;
@@ -67,6 +68,11 @@ public class TrackUtils {
                 throw new NoMeasurementsException("No obfuscated measurements available.");
             }
 
+            TrackData data = TrackData.unwrap(measurements);
+            if (data != null) {
+                return data.slice(first, last + 1).asList();
+            }
+
             for (int i = first; i <= last; i++) {
                 nonPrivateMeasurements.add(measurements.get(i));
             }
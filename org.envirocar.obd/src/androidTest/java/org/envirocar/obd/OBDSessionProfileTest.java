@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.PID;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+/**
+ * Tests the serialization of the {@link OBDSessionProfile}.
+ */
+public class OBDSessionProfileTest extends InstrumentationTestCase {
+
+    @Test
+    public void testSerialize() {
+        OBDSessionProfile profile = new OBDSessionProfile("org.envirocar.obd.adapter.ELM327Adapter",
+                6, EnumSet.of(PID.SPEED, PID.ENGINE_FUEL_RATE));
+
+        // 0x0D is bit 12 of the first group, 0x5E is bit 29 of the third group
+        Assert.assertThat(profile.serialize(), CoreMatchers.is(
+                "1;org.envirocar.obd.adapter.ELM327Adapter;6;00080000000000000000000400000000"));
+    }
+
+    @Test
+    public void testParse() {
+        OBDSessionProfile profile = new OBDSessionProfile("org.envirocar.obd.adapter.OBDLinkAdapter",
+                0xA, EnumSet.of(PID.CALCULATED_ENGINE_LOAD, PID.RPM, PID.SPEED, PID.MAF,
+                        PID.ENGINE_FUEL_RATE));
+
+        OBDSessionProfile parsed = OBDSessionProfile.parse(profile.serialize());
+        Assert.assertThat(parsed.getAdapterClass(), CoreMatchers.is(profile.getAdapterClass()));
+        Assert.assertThat(parsed.getProtocol(), CoreMatchers.is(0xA));
+        Assert.assertThat(parsed.getSupportedPIDs(), CoreMatchers.is(profile.getSupportedPIDs()));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        Assert.assertThat(OBDSessionProfile.parse(null), CoreMatchers.nullValue());
+        Assert.assertThat(OBDSessionProfile.parse(""), CoreMatchers.nullValue());
+        Assert.assertThat(OBDSessionProfile.parse("2;Adapter;6;00080000000000000000000400000000"),
+                CoreMatchers.nullValue());
+        Assert.assertThat(OBDSessionProfile.parse("1;Adapter;X;00080000000000000000000400000000"),
+                CoreMatchers.nullValue());
+        Assert.assertThat(OBDSessionProfile.parse("1;Adapter;6;0008"), CoreMatchers.nullValue());
+    }
+}
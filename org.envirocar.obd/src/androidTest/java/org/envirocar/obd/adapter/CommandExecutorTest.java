@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.exception.ResponseTimeoutException;
+import org.envirocar.obd.exception.StreamFinishedException;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests the chunked and timed line reading of the {@link CommandExecutor}.
+ */
+public class CommandExecutorTest extends InstrumentationTestCase {
+
+    @Test
+    public void testLinesAcrossChunks() throws IOException, StreamFinishedException {
+        CommandExecutor executor = createExecutor("41 0C 1A F8\r\r>41 0D 3C\r>", 3);
+
+        assertResponse(executor, "410C1AF8");
+        assertResponse(executor, "410D3C");
+    }
+
+    @Test
+    public void testResponseBufferIsReused() throws IOException, StreamFinishedException {
+        CommandExecutor executor = createExecutor("410C1AF8>410D3C>", 64);
+
+        byte[] buffer = executor.getResponseBuffer();
+        assertResponse(executor, "410C1AF8");
+        assertResponse(executor, "410D3C");
+        Assert.assertThat(executor.getResponseBuffer(), CoreMatchers.sameInstance(buffer));
+    }
+
+    @Test
+    public void testLongLine() throws IOException, StreamFinishedException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append((char) ('A' + i % 6));
+        }
+        CommandExecutor executor = createExecutor(sb + ">OK>", 1024);
+
+        assertResponse(executor, sb.toString());
+        assertResponse(executor, "OK");
+    }
+
+    @Test
+    public void testEmptyLine() throws IOException, StreamFinishedException {
+        CommandExecutor executor = createExecutor(">410D3C>", 1024);
+
+        // the empty line is skipped as the next one is already available
+        assertResponse(executor, "410D3C");
+        Assert.assertThat(executor.isDataAvailable(), CoreMatchers.is(false));
+    }
+
+    @Test
+    public void testRetrieveLatestResponse() throws IOException, StreamFinishedException {
+        CommandExecutor executor = createExecutor("410D3C>", 2);
+
+        byte[] response = executor.retrieveLatestResponse();
+        Assert.assertTrue(Arrays.equals(response, "410D3C".getBytes()));
+    }
+
+    @Test
+    public void testStreamFinished() throws IOException {
+        CommandExecutor executor = createExecutor("410D", 1024);
+
+        try {
+            executor.readResponse();
+            Assert.fail("Expected the stream to finish");
+        } catch (StreamFinishedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testResponseTimeout() throws IOException, StreamFinishedException {
+        // a silent adapter: the partial line stays open and no more data arrives
+        final ByteArrayInputStream partial = new ByteArrayInputStream("410D".getBytes());
+        InputStream is = new InputStream() {
+            @Override
+            public int read() {
+                return partial.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return partial.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                return partial.available();
+            }
+        };
+        CommandExecutor executor = new CommandExecutor(is, new ByteArrayOutputStream(),
+                new HashSet<>(Arrays.asList(' ', '\r')), '>', '\r');
+
+        long start = System.currentTimeMillis();
+        try {
+            executor.readResponse(200);
+            Assert.fail("Expected the response to time out");
+        } catch (ResponseTimeoutException e) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testDiscardResponse() throws IOException, StreamFinishedException {
+        // the rest of a response whose beginning has been read before a timeout
+        CommandExecutor executor = createExecutor("0D 3C\r>410C1AF8>", 3);
+
+        executor.discardResponse(200);
+        assertResponse(executor, "410C1AF8");
+    }
+
+    @Test
+    public void testDiscardResponseOfSilentAdapter() throws IOException, StreamFinishedException {
+        CommandExecutor executor = createExecutor("", 1024);
+
+        long start = System.currentTimeMillis();
+        executor.discardResponse(200);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    private void assertResponse(CommandExecutor executor, String expected)
+            throws IOException, StreamFinishedException {
+        int length = executor.readResponse();
+        Assert.assertThat(new String(executor.getResponseBuffer(), 0, length),
+                CoreMatchers.is(expected));
+    }
+
+    /**
+     * @param chunkSize the maximum number of bytes returned by one read of the stream
+     */
+    private CommandExecutor createExecutor(String input, final int chunkSize) {
+        ByteArrayInputStream is = new ByteArrayInputStream(input.getBytes()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunkSize));
+            }
+        };
+
+        return new CommandExecutor(is, new ByteArrayOutputStream(),
+                new HashSet<>(Arrays.asList(' ', '\r')), '>', '\r');
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.PIDUtil;
+import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.response.entity.EngineRPMResponse;
+import org.envirocar.obd.commands.response.entity.SpeedResponse;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the deadline based PID scheduling of the {@link SyncAdapter}.
+ */
+public class DeadlinePIDSchedulerTest extends InstrumentationTestCase {
+
+    private static final long REQUEST_DURATION = 50;
+
+    @Test
+    public void testInitialRoundInOrder() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.INTAKE_AIR_TEMP, PID.RPM, PID.TPS);
+
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.INTAKE_AIR_TEMP));
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.RPM));
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.TPS));
+    }
+
+    @Test
+    public void testFastPIDsGetTheBusTime() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.RPM, PID.SPEED, PID.MAF,
+                PID.INTAKE_AIR_TEMP, PID.O2_LAMBDA_PROBE_1_VOLTAGE, PID.TPS);
+
+        Map<PID, Integer> polls = run(scheduler, 0, 10000);
+
+        // intake temperature every 5 seconds, lambda every second
+        Assert.assertThat(polls.get(PID.INTAKE_AIR_TEMP), CoreMatchers.is(2));
+        Assert.assertThat(polls.get(PID.O2_LAMBDA_PROBE_1_VOLTAGE), CoreMatchers.is(10));
+        Assert.assertTrue(polls.get(PID.RPM) > 40);
+        Assert.assertTrue(polls.get(PID.MAF) > 40);
+        Assert.assertTrue(polls.get(PID.SPEED) > 40);
+    }
+
+    @Test
+    public void testFailingPIDsBackOff() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.RPM, PID.TPS);
+
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.RPM));
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.TPS));
+        scheduler.onFailure(PID.TPS, 0);
+        scheduler.onFailure(PID.TPS, 0);
+
+        // TPS is due at 500 ms, backed off to 2 seconds
+        Map<PID, Integer> polls = run(scheduler, 0, 1900);
+        Assert.assertThat(polls.get(PID.TPS), CoreMatchers.nullValue());
+
+        scheduler.onResponse(new EngineRPMResponse(800), 2000);
+        Assert.assertThat(run(scheduler, 1900, 2100).get(PID.TPS), CoreMatchers.is(1));
+    }
+
+    @Test
+    public void testIdleDemotion() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.RPM, PID.TPS);
+
+        scheduler.onResponse(new SpeedResponse(0), 0);
+        Assert.assertThat(scheduler.isIdle(), CoreMatchers.is(true));
+        int idlePolls = run(scheduler, 0, 10000).get(PID.TPS);
+
+        scheduler.onResponse(new SpeedResponse(30), 10000);
+        Assert.assertThat(scheduler.isIdle(), CoreMatchers.is(false));
+        int drivingPolls = run(scheduler, 10000, 20000).get(PID.TPS);
+
+        // every 2 seconds instead of every 500 ms
+        Assert.assertTrue(idlePolls >= 5 && idlePolls <= 6);
+        Assert.assertTrue(drivingPolls >= 20);
+    }
+
+    @Test
+    public void testAchievedRate() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.RPM);
+
+        for (long now = 1000; now <= 5000; now += 250) {
+            scheduler.onResponse(new EngineRPMResponse(800), now);
+        }
+
+        Assert.assertThat(scheduler.getAchievedRate(PID.RPM), CoreMatchers.is(4.0));
+        Assert.assertThat(scheduler.getAchievedRate(PID.SPEED), CoreMatchers.is(0.0));
+    }
+
+    @Test
+    public void testRemove() {
+        DeadlinePIDScheduler scheduler = createScheduler(PID.RPM, PID.SPEED);
+
+        scheduler.remove(PID.RPM);
+        Assert.assertThat(scheduler.poll(0).getPid(), CoreMatchers.is(PID.SPEED));
+        Assert.assertThat(scheduler.poll(50).getPid(), CoreMatchers.is(PID.SPEED));
+
+        scheduler.remove(PID.SPEED);
+        Assert.assertThat(scheduler.peek(), CoreMatchers.nullValue());
+        Assert.assertThat(scheduler.poll(100), CoreMatchers.nullValue());
+    }
+
+    private DeadlinePIDScheduler createScheduler(PID... pids) {
+        PIDCommand[] commands = new PIDCommand[pids.length];
+        for (int i = 0; i < pids.length; i++) {
+            commands[i] = PIDUtil.instantiateCommand(pids[i]);
+        }
+
+        List<PIDCommand> list = Arrays.asList(commands);
+        DeadlinePIDScheduler scheduler = new DeadlinePIDScheduler();
+        scheduler.schedule(list, 0);
+        return scheduler;
+    }
+
+    /**
+     * Polls the scheduler as if each request takes {@link #REQUEST_DURATION}.
+     */
+    private Map<PID, Integer> run(DeadlinePIDScheduler scheduler, long start, long end) {
+        Map<PID, Integer> polls = new EnumMap<>(PID.class);
+        for (long now = start; now < end; now += REQUEST_DURATION) {
+            PID pid = scheduler.poll(now).getPid();
+            Integer count = polls.get(pid);
+            polls.put(pid, count == null ? 1 : count + 1);
+        }
+        return polls;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.OBDSessionProfile;
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.exception.EngineNotRunningException;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import io.reactivex.observers.TestObserver;
+
+/**
+ * Tests the reconnect of the {@link ELM327Adapter} with a session profile.
+ */
+public class ELM327SessionProfileTest extends InstrumentationTestCase {
+
+    private static final String INIT_RESPONSES = "ELM327 v1.5>OK>OK>OK>OK>OK>OK>";
+    private static final String ALL_PID_GROUPS = "4100BE1FA813>41201A090F01>NO DATA>NO DATA>";
+    private static final String PROTOCOL = "A6>";
+
+    @Test
+    public void testDiscovery() {
+        ELM327Adapter adapter = new ELM327Adapter();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        initialize(adapter, INIT_RESPONSES + ALL_PID_GROUPS + PROTOCOL, bos);
+
+        String sent = bos.toString();
+        Assert.assertTrue(sent.contains("AT SP 0\r"));
+        Assert.assertTrue(sent.contains("01 20\r01 40\r01 80\r"));
+
+        OBDSessionProfile profile = adapter.createSessionProfile();
+        Assert.assertThat(profile.getAdapterClass(), CoreMatchers.is(ELM327Adapter.class.getName()));
+        Assert.assertThat(profile.getProtocol(), CoreMatchers.is(6));
+        Assert.assertFalse(profile.getSupportedPIDs().isEmpty());
+    }
+
+    @Test
+    public void testReconnect() {
+        OBDSessionProfile profile = discover();
+
+        ELM327Adapter adapter = new ELM327Adapter();
+        adapter.setSessionProfile(OBDSessionProfile.parse(profile.serialize()));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        initialize(adapter, INIT_RESPONSES + "4100BE1FA813>" + PROTOCOL, bos);
+
+        // the cached protocol is tried first, the remaining PID groups are not requested
+        String sent = bos.toString();
+        Assert.assertTrue(sent.contains("AT SP A6\r"));
+        Assert.assertFalse(sent.contains("01 20\r"));
+        Assert.assertThat(adapter.createSessionProfile().getSupportedPIDs(),
+                CoreMatchers.is(profile.getSupportedPIDs()));
+    }
+
+    @Test
+    public void testReconnectToAnotherVehicle() {
+        OBDSessionProfile profile = discover();
+
+        ELM327Adapter adapter = new ELM327Adapter();
+        adapter.setSessionProfile(profile);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        initialize(adapter, INIT_RESPONSES + "4100AE1FA813>41201A090F01>NO DATA>NO DATA>"
+                + PROTOCOL, bos);
+
+        // the engine load is not supported anymore: all PID groups are requested
+        Assert.assertTrue(bos.toString().contains("01 20\r01 40\r01 80\r"));
+        Assert.assertFalse(adapter.createSessionProfile().getSupportedPIDs()
+                .contains(PID.CALCULATED_ENGINE_LOAD));
+        Assert.assertTrue(profile.getSupportedPIDs().contains(PID.CALCULATED_ENGINE_LOAD));
+    }
+
+    @Test
+    public void testPIDGroupNotReported() {
+        ELM327Adapter adapter = new ELM327Adapter();
+        ScriptedConnection connection = new ScriptedConnection("ELM327 v1.5", "OK", "OK", "OK",
+                "OK", "OK", "OK", "4100BE1FA813", "41201A090F01", null, "NO DATA", "A6");
+
+        long start = System.currentTimeMillis();
+        TestObserver<Boolean> initObserver = adapter.initialize(connection.getInputStream(),
+                connection.getOutputStream()).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+
+        // the unanswered group is skipped after the short deadline
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertTrue(connection.getSent().contains("01 40\r01 80\rAT DPN\r"));
+        Assert.assertThat(adapter.createSessionProfile().getProtocol(), CoreMatchers.is(6));
+        Assert.assertTrue(adapter.createSessionProfile().getSupportedPIDs()
+                .contains(PID.CALCULATED_ENGINE_LOAD));
+    }
+
+    @Test
+    public void testProtocolNotReported() {
+        ELM327Adapter adapter = new ELM327Adapter();
+        ScriptedConnection connection = new ScriptedConnection("ELM327 v1.5", "OK", "OK", "OK",
+                "OK", "OK", "OK", "4100BE1FA813", "41201A090F01", "NO DATA", "NO DATA", null);
+
+        TestObserver<Boolean> initObserver = adapter.initialize(connection.getInputStream(),
+                connection.getOutputStream()).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+
+        Assert.assertTrue(connection.getSent().endsWith("AT DPN\r"));
+        Assert.assertThat(adapter.createSessionProfile().getProtocol(),
+                CoreMatchers.is(OBDSessionProfile.PROTOCOL_AUTOMATIC));
+    }
+
+    @Test
+    public void testEngineNotRunning() {
+        ELM327Adapter adapter = new ELM327Adapter();
+        ScriptedConnection connection = new ScriptedConnection("ELM327 v1.5", "OK", "OK", "OK",
+                "OK", "OK", "OK", "NO DATA", "NO DATA", "NO DATA", "NO DATA", "A6");
+
+        TestObserver<Boolean> initObserver = adapter.initialize(connection.getInputStream(),
+                connection.getOutputStream()).test();
+        initObserver.assertError(EngineNotRunningException.class);
+        initObserver.assertNoValues();
+
+        // nothing is sent after the initialization has failed
+        Assert.assertFalse(connection.getSent().contains("AT DPN\r"));
+    }
+
+    private OBDSessionProfile discover() {
+        ELM327Adapter adapter = new ELM327Adapter();
+        initialize(adapter, INIT_RESPONSES + ALL_PID_GROUPS + PROTOCOL, new ByteArrayOutputStream());
+        return adapter.createSessionProfile();
+    }
+
+    private void initialize(ELM327Adapter adapter, String responses, ByteArrayOutputStream bos) {
+        ByteArrayInputStream bis = new ByteArrayInputStream(responses.getBytes());
+
+        TestObserver<Boolean> initObserver = adapter.initialize(bis, bos).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+    }
+}
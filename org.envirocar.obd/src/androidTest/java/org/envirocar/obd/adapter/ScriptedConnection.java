@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simulates an adapter which answers each command with the next scripted response once the
+ * command has been sent. A response of null leaves the command unanswered, the input ends after
+ * the last response. Subclasses may answer depending on the command instead.
+ */
+class ScriptedConnection {
+
+    private final List<String> responses;
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private int nextResponse;
+    private byte[] pending = new byte[0];
+    private int position;
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() {
+            return position < pending.length ? pending[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == pending.length) {
+                return -1;
+            }
+            int count = Math.min(len, pending.length - position);
+            System.arraycopy(pending, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return pending.length - position;
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        private final StringBuilder command = new StringBuilder();
+
+        @Override
+        public void write(int b) {
+            sent.write(b);
+            if (b == '\r') {
+                answer(respond(command.toString()));
+                command.setLength(0);
+            } else {
+                command.append((char) b);
+            }
+        }
+    };
+
+    ScriptedConnection(String... responses) {
+        this.responses = Arrays.asList(responses);
+    }
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * @return all commands sent so far
+     */
+    String getSent() {
+        return sent.toString();
+    }
+
+    /**
+     * @param command the command which has been sent
+     * @return the response to the command or null to leave it unanswered
+     */
+    protected String respond(String command) {
+        return nextResponse < responses.size() ? responses.get(nextResponse++) : null;
+    }
+
+    private void answer(String response) {
+        if (response != null) {
+            byte[] bytes = (response + ">").getBytes();
+            byte[] rest = Arrays.copyOfRange(pending, position, pending.length);
+            pending = Arrays.copyOf(rest, rest.length + bytes.length);
+            System.arraycopy(bytes, 0, pending, rest.length, bytes.length);
+            position = 0;
+        }
+    }
+}
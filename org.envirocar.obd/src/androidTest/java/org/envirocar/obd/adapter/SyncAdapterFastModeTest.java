@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.PIDUtil;
+import org.envirocar.obd.commands.request.BasicCommand;
+import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
+import org.envirocar.obd.commands.request.elm.Timeout;
+import org.envirocar.obd.commands.response.DataResponse;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import io.reactivex.observers.TestObserver;
+
+/**
+ * Tests the fast mode of the {@link SyncAdapter}: response count suffix, fallback and
+ * pipelining.
+ */
+public class SyncAdapterFastModeTest extends InstrumentationTestCase {
+
+    private static final String INIT_RESPONSES = "OK>OK>4100BE1FA813>41201A090F01>NO DATA>NO DATA>";
+
+    @Test
+    public void testFastMode() {
+        MockAdapter adapter = new MockAdapter(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        List<DataResponse> received = run(adapter, "OK>OK>4110AABB>410D3C>", bos);
+
+        Assert.assertThat(received.size(), CoreMatchers.is(2));
+        Assert.assertThat(received.get(0).getPid(), CoreMatchers.is(PID.MAF));
+        Assert.assertThat(received.get(1).getPid(), CoreMatchers.is(PID.SPEED));
+
+        String sent = bos.toString();
+        Assert.assertTrue(sent.contains("AT AT2\r"));
+        Assert.assertTrue(sent.contains("01 101\r"));
+        Assert.assertTrue(sent.contains("01 0D1\r"));
+        Assert.assertThat(adapter.getRoundTripStatistics(true).getCount(), CoreMatchers.is(2L));
+        Assert.assertThat(adapter.getRoundTripStatistics(false).getCount(), CoreMatchers.is(0L));
+    }
+
+    @Test
+    public void testFallbackToNormalMode() {
+        MockAdapter adapter = new MockAdapter(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        List<DataResponse> received = run(adapter,
+                "OK>OK>NO DATA>NO DATA>NO DATA>OK>OK>410D3C>", bos);
+
+        Assert.assertThat(received.size(), CoreMatchers.is(1));
+
+        String sent = bos.toString();
+        String afterFallback = sent.substring(sent.indexOf("AT AT1\r"));
+        Assert.assertTrue(afterFallback.matches("AT AT1\rAT ST 3e\r(01 [0-9A-F]{2}\r)+"));
+        Assert.assertThat(adapter.getRoundTripStatistics(true).getCount(), CoreMatchers.is(3L));
+        Assert.assertThat(adapter.getRoundTripStatistics(false).getCount(), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void testNotAcknowledged() {
+        MockAdapter adapter = new MockAdapter(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        List<DataResponse> received = run(adapter, "?>OK>OK>4110AABB>", bos);
+
+        Assert.assertThat(received.size(), CoreMatchers.is(1));
+        Assert.assertTrue(bos.toString().contains("AT AT2\rAT AT1\rAT ST 3e\r01 10\r"));
+    }
+
+    @Test
+    public void testNotAnswered() {
+        MockAdapter adapter = new MockAdapter(false);
+        ScriptedConnection connection = new ScriptedConnection("OK", "OK", "4100BE1FA813",
+                "41201A090F01", "NO DATA", "NO DATA", null, "OK", "OK", "4110AABB");
+
+        TestObserver<Boolean> initObserver = adapter.initialize(connection.getInputStream(),
+                connection.getOutputStream()).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+
+        TestObserver<DataResponse> dataObserver = adapter.observe().test();
+        dataObserver.assertNoErrors();
+        Assert.assertThat(dataObserver.values().size(), CoreMatchers.is(1));
+
+        // the adapter ignores the fast mode and stays in the normal mode
+        Assert.assertTrue(connection.getSent().contains("AT AT2\rAT AT1\rAT ST 3e\r01 10\r"));
+        Assert.assertThat(adapter.getRoundTripStatistics(false).getCount(), CoreMatchers.is(1L));
+    }
+
+    @Test
+    public void testPipelining() {
+        MockAdapter adapter = new MockAdapter(true);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        List<DataResponse> received = run(adapter, "OK>OK>4110AABB>410D3C>4110AABB>", bos);
+
+        Assert.assertThat(received.size(), CoreMatchers.is(3));
+
+        // the next request has been sent before the last response was parsed
+        String sent = bos.toString();
+        String requests = sent.substring(sent.indexOf("AT ST 19\r") + "AT ST 19\r".length());
+        Assert.assertThat(requests.split("\r").length, CoreMatchers.is(4));
+    }
+
+    @Test
+    public void testPipeliningAfterMultiplePIDFallback() {
+        MockAdapter adapter = new MockAdapter(true, true);
+        ScriptedConnection connection = new ScriptedConnection("OK", "OK", "4100BE1FA813",
+                "41201A090F01", "NO DATA", "NO DATA", "A6", "OK", "OK") {
+            private int dataResponses;
+
+            @Override
+            protected String respond(String command) {
+                if (!command.startsWith("01 1") && !command.startsWith("01 0D")) {
+                    return super.respond(command);
+                }
+                if (++dataResponses > 10) {
+                    return null;
+                }
+                // the ECU only answers the first PID of a request with multiple PIDs
+                return command.startsWith("01 0D") ? "410D3C" : "4110AABB";
+            }
+        };
+
+        TestObserver<Boolean> initObserver = adapter.initialize(connection.getInputStream(),
+                connection.getOutputStream()).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+
+        // a response is pending while the previous one is emitted if the request was pipelined
+        final List<Boolean> pipelined = new ArrayList<>();
+        TestObserver<DataResponse> dataObserver = adapter.observe()
+                .doOnNext(response -> pipelined.add(connection.getInputStream().available() > 0))
+                .test();
+        dataObserver.assertNoErrors();
+
+        Assert.assertTrue(connection.getSent().contains("01 10 0D\r"));
+        Assert.assertThat(pipelined.get(0), CoreMatchers.is(false));
+        Assert.assertTrue(pipelined.contains(true));
+    }
+
+    private List<DataResponse> run(MockAdapter adapter, String responses, ByteArrayOutputStream bos) {
+        ByteArrayInputStream bis = new ByteArrayInputStream((INIT_RESPONSES + responses).getBytes());
+
+        TestObserver<Boolean> initObserver = adapter.initialize(bis, bos).test();
+        initObserver.assertNoErrors();
+        initObserver.assertValueCount(1);
+
+        TestObserver<DataResponse> dataObserver = adapter.observe().test();
+        dataObserver.assertNoErrors();
+        dataObserver.assertComplete();
+        return dataObserver.values();
+    }
+
+    private static class MockAdapter extends SyncAdapter {
+
+        private final Queue<BasicCommand> initCommands = new ArrayDeque<>();
+        private final boolean pipelining;
+        private final boolean multiplePIDs;
+        private int metaResponse;
+
+        MockAdapter(boolean pipelining) {
+            this(pipelining, false);
+        }
+
+        MockAdapter(boolean pipelining, boolean multiplePIDs) {
+            this.pipelining = pipelining;
+            this.multiplePIDs = multiplePIDs;
+            this.initCommands.offer(ConfigurationCommand.instance(ConfigurationCommand.Instance.ECHO_OFF));
+            this.initCommands.offer(ConfigurationCommand.instance(ConfigurationCommand.Instance.HEADERS_OFF));
+            setFastModeEnabled(true);
+        }
+
+        @Override
+        protected BasicCommand pollNextInitializationCommand() {
+            return this.initCommands.poll();
+        }
+
+        @Override
+        protected List<PIDCommand> providePendingCommands() {
+            return Arrays.asList(
+                    PIDUtil.instantiateCommand(PID.MAF),
+                    PIDUtil.instantiateCommand(PID.SPEED));
+        }
+
+        @Override
+        protected boolean analyzeMetadataResponse(byte[] response, BasicCommand sentCommand) {
+            return ++metaResponse >= 2;
+        }
+
+        @Override
+        protected List<BasicCommand> provideFastModeCommands() {
+            return Arrays.asList(
+                    ConfigurationCommand.instance(ConfigurationCommand.Instance.ADAPTIVE_TIMING_AGGRESSIVE),
+                    new Timeout(25));
+        }
+
+        @Override
+        protected List<BasicCommand> provideNormalModeCommands() {
+            return Arrays.asList(
+                    ConfigurationCommand.instance(ConfigurationCommand.Instance.ADAPTIVE_TIMING_AUTO),
+                    new Timeout(62));
+        }
+
+        @Override
+        protected boolean supportsPipelining() {
+            return pipelining;
+        }
+
+        @Override
+        protected boolean supportsMultiplePIDRequests() {
+            return multiplePIDs;
+        }
+
+        @Override
+        public boolean supportsDevice(String deviceName) {
+            return true;
+        }
+
+        @Override
+        public boolean hasCertifiedConnection() {
+            return true;
+        }
+    }
+}
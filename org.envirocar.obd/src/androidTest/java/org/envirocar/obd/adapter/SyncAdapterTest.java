@@ -143,11 +143,6 @@ public class SyncAdapterTest extends InstrumentationTestCase {
             return ++metaResponse >= 2;
         }
 
-        @Override
-        protected byte[] preProcess(byte[] bytes) {
-            return bytes;
-        }
-
         @Override
         public boolean supportsDevice(String deviceName) {
             return true;
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.response;
+
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures {@link ResponseParser#parse(byte[])} for the responses of a typical PID cycle. The
+ * parser should not allocate anything but the parsed response. Timings and allocations are
+ * written to logcat.
+ */
+public class ResponseParserBenchmark extends InstrumentationTestCase {
+    private static final String TAG = ResponseParserBenchmark.class.getSimpleName();
+
+    private static final int CYCLES = 20000;
+    private static final byte[][] RESPONSES = {
+            "410D3C".getBytes(), "410C1AF8".getBytes(), "41100BB8".getBytes(),
+            "410F46".getBytes(), "410B64".getBytes(), "410480".getBytes(),
+            "41117F".getBytes(), "410680".getBytes()};
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testParse() throws Exception {
+        ResponseParser parser = new ResponseParser();
+
+        // warm up
+        parseAll(parser);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        parseAll(parser);
+        long nanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        long allocations = Debug.getThreadAllocCount();
+
+        int parses = CYCLES * RESPONSES.length;
+        Log.i(TAG, String.format("parse: %.0f ns per response, %.2f allocations per response",
+                (double) nanos / parses, (double) allocations / parses));
+
+        // one allocation per parse for the response entity
+        Assert.assertTrue(allocations <= parses);
+    }
+
+    private static void parseAll(ResponseParser parser) throws Exception {
+        for (int i = 0; i < CYCLES; i++) {
+            for (byte[] response : RESPONSES) {
+                Assert.assertNotNull(parser.parse(response));
+            }
+        }
+    }
+}
@@ -30,6 +30,9 @@ import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ResponseParserTest extends InstrumentationTestCase {
 
     @Test
@@ -61,4 +64,76 @@ public class ResponseParserTest extends InstrumentationTestCase {
         Assert.assertThat(parse, CoreMatchers.instanceOf(LambdaProbeVoltageResponse.class));
     }
 
+    @Test
+    public void testParseInPlace() throws InvalidCommandResponseException, NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+
+        DataResponse rpm = responseParser.parse("410c1af8".getBytes());
+        Assert.assertThat(rpm.getPid(), CoreMatchers.is(PID.RPM));
+        Assert.assertThat(rpm.getValue().intValue(), CoreMatchers.is((0x1A * 256 + 0xF8) / 4));
+
+        // a header in front of the response is skipped without copying
+        byte[] withHeader = "7E803410D3C".getBytes();
+        DataResponse speed = responseParser.parse(withHeader, 5, withHeader.length);
+        Assert.assertThat(speed.getPid(), CoreMatchers.is(PID.SPEED));
+        Assert.assertThat(speed.getValue().intValue(), CoreMatchers.is(60));
+    }
+
+    @Test
+    public void testTruncatedResponse() throws InvalidCommandResponseException, NoDataReceivedException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+        try {
+            responseParser.parse("412407FF0028".getBytes());
+            // the second byte of the RPM must not be taken from the previous response
+            responseParser.parse("410C1A".getBytes());
+            Assert.fail("Expected an UnmatchedResponseException");
+        } catch (UnmatchedResponseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseMultiple() throws InvalidCommandResponseException, NoDataReceivedException, UnmatchedResponseException, AdapterSearchingException {
+        ResponseParser responseParser = new ResponseParser();
+        List<DataResponse> responses = new ArrayList<>();
+
+        byte[] singleFrame = "410C1AF80D3C".getBytes();
+        Assert.assertThat(responseParser.parseMultiple(singleFrame, 0, singleFrame.length, responses), CoreMatchers.is(2));
+        Assert.assertThat(responses.get(0).getPid(), CoreMatchers.is(PID.RPM));
+        Assert.assertThat(responses.get(1).getPid(), CoreMatchers.is(PID.SPEED));
+        Assert.assertThat(responses.get(1).getValue().intValue(), CoreMatchers.is(60));
+
+        // 13 bytes in two ISO-TP frames, the last one padded
+        responses.clear();
+        byte[] multiFrame = "00D0:410C1AF80D3C1:100BB80F460480AAAA".getBytes();
+        Assert.assertThat(responseParser.parseMultiple(multiFrame, 0, multiFrame.length, responses), CoreMatchers.is(5));
+        Assert.assertThat(responses.get(2).getPid(), CoreMatchers.is(PID.MAF));
+        Assert.assertThat(responses.get(2).getValue().doubleValue(), CoreMatchers.is(30.0));
+        Assert.assertThat(responses.get(3).getValue().intValue(), CoreMatchers.is(30));
+        Assert.assertThat(responses.get(4).getPid(), CoreMatchers.is(PID.CALCULATED_ENGINE_LOAD));
+    }
+
+    @Test
+    public void testStatusResponses() throws InvalidCommandResponseException, UnmatchedResponseException {
+        ResponseParser responseParser = new ResponseParser();
+        try {
+            responseParser.parse("SEARCHING...".getBytes());
+            Assert.fail("Expected an AdapterSearchingException");
+        } catch (AdapterSearchingException | NoDataReceivedException e) {
+            Assert.assertThat(e, CoreMatchers.instanceOf(AdapterSearchingException.class));
+        }
+        try {
+            responseParser.parse("NODATA".getBytes());
+            Assert.fail("Expected a NoDataReceivedException");
+        } catch (AdapterSearchingException | NoDataReceivedException e) {
+            Assert.assertThat(e, CoreMatchers.instanceOf(NoDataReceivedException.class));
+        }
+        try {
+            responseParser.parse("410DZZ".getBytes());
+            Assert.fail("Expected an InvalidCommandResponseException");
+        } catch (AdapterSearchingException | NoDataReceivedException | InvalidCommandResponseException e) {
+            Assert.assertThat(e, CoreMatchers.instanceOf(InvalidCommandResponseException.class));
+        }
+    }
+
 }
@@ -44,6 +44,13 @@ public interface ConnectionListener {
 	 */
     void onConnectionVerified();
 
+	/**
+	 * called when the first value has been received from the car
+	 *
+	 * @param timeToFirstMeasurement the time (in ms) since the connection attempt was started
+	 */
+	void onFirstMeasurement(long timeToFirstMeasurement);
+
 	/**
 	 * called when the connection is established but no PIDs have been returned (i.e. engine not runngin)
 	 */
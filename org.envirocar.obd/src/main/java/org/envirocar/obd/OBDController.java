@@ -18,6 +18,8 @@
  */
 package org.envirocar.obd;
 
+import android.os.SystemClock;
+
 import com.google.common.base.Preconditions;
 import com.squareup.otto.Bus;
 
@@ -28,6 +30,7 @@ import org.envirocar.obd.adapter.CarTrendAdapter;
 import org.envirocar.obd.adapter.ELM327Adapter;
 import org.envirocar.obd.adapter.OBDAdapter;
 import org.envirocar.obd.adapter.OBDLinkAdapter;
+import org.envirocar.obd.adapter.SyncAdapter;
 import org.envirocar.obd.adapter.async.DriveDeckSportAdapter;
 import org.envirocar.obd.bluetooth.BluetoothSocketWrapper;
 import org.envirocar.obd.commands.PID;
@@ -65,8 +68,15 @@ import io.reactivex.schedulers.Schedulers;
  */
 public class OBDController {
     private static final Logger LOG = Logger.getLogger(OBDController.class);
+    private static final PropertyKeyEvent[] NO_EVENTS = new PropertyKeyEvent[0];
     public static final long MAX_NODATA_TIME = 10000;
 
+    /**
+     * maximum time (in ms) for the initialization of an adapter candidate that was not
+     * preferred by the device name
+     */
+    public static final long CANDIDATE_INIT_PERIOD = 20000;
+
     private Disposable initSubscription;
     private Disposable dataSubscription;
 
@@ -76,7 +86,14 @@ public class OBDController {
     private OutputStream outputStream;
     private ConnectionListener connectionListener;
     private String deviceName;
+    private String deviceAddress;
+    private OBDSessionProfileStore profileStore;
+    private OBDAdapter profileAdapter;
     private boolean userRequestedStop = false;
+    private boolean fastMode;
+    private long connectStartedAt;
+    private int initAttempts;
+    private boolean firstMeasurementReceived;
     private Bus eventBus;
     private Scheduler.Worker eventBusWorker;
 
@@ -89,10 +106,36 @@ public class OBDController {
      */
     public OBDController(BluetoothSocketWrapper bluetoothSocketWrapper, ConnectionListener cl,
                          Bus bus) throws IOException {
+        this(bluetoothSocketWrapper, cl, bus, false);
+    }
+
+    /**
+     * @param bluetoothSocketWrapper
+     * @param cl
+     * @param bus
+     * @param fastMode true if the ELM327 based adapters shall negotiate a faster timing
+     */
+    public OBDController(BluetoothSocketWrapper bluetoothSocketWrapper, ConnectionListener cl,
+                         Bus bus, boolean fastMode) throws IOException {
+        this(bluetoothSocketWrapper, cl, bus, fastMode, null);
+    }
+
+    /**
+     * @param bluetoothSocketWrapper
+     * @param cl
+     * @param bus
+     * @param fastMode     true if the ELM327 based adapters shall negotiate a faster timing
+     * @param profileStore the session profiles of the devices, used to skip the adapter discovery
+     *                     on a reconnect. May be null.
+     */
+    public OBDController(BluetoothSocketWrapper bluetoothSocketWrapper, ConnectionListener cl,
+                         Bus bus, boolean fastMode, OBDSessionProfileStore profileStore)
+            throws IOException {
         this(bluetoothSocketWrapper.getInputStream(),
                 bluetoothSocketWrapper.getOutputStream(),
                 bluetoothSocketWrapper.getRemoteDeviceName(),
-                cl, bus);
+                bluetoothSocketWrapper.getRemoteDeviceAddress(),
+                cl, bus, fastMode, profileStore);
     }
 
     /**
@@ -104,6 +147,39 @@ public class OBDController {
      */
     public OBDController(InputStream in, OutputStream out,
                          String deviceName, ConnectionListener cl, Bus bus) {
+        this(in, out, deviceName, cl, bus, false);
+    }
+
+    /**
+     * Init the OBD control layer with the streams and listeners to be used.
+     *
+     * @param in       the inputStream of the connection
+     * @param out      the outputStream of the connection
+     * @param cl       the connection listener which receives connection state changes
+     * @param fastMode true if the ELM327 based adapters shall negotiate a faster timing
+     */
+    public OBDController(InputStream in, OutputStream out,
+                         String deviceName, ConnectionListener cl, Bus bus, boolean fastMode) {
+        this(in, out, deviceName, null, cl, bus, fastMode, null);
+    }
+
+    /**
+     * Init the OBD control layer with the streams and listeners to be used.
+     *
+     * @param in            the inputStream of the connection
+     * @param out           the outputStream of the connection
+     * @param deviceAddress the MAC address of the device, the key of its session profile
+     * @param cl            the connection listener which receives connection state changes
+     * @param fastMode      true if the ELM327 based adapters shall negotiate a faster timing
+     * @param profileStore  the session profiles of the devices. May be null.
+     */
+    public OBDController(InputStream in, OutputStream out, String deviceName,
+                         String deviceAddress, ConnectionListener cl, Bus bus, boolean fastMode,
+                         OBDSessionProfileStore profileStore) {
+        this.fastMode = fastMode;
+        this.deviceAddress = deviceAddress;
+        this.profileStore = deviceAddress != null ? profileStore : null;
+        this.connectStartedAt = SystemClock.elapsedRealtime();
         this.inputStream = Preconditions.checkNotNull(in);
         this.outputStream = Preconditions.checkNotNull(out);
         this.connectionListener = Preconditions.checkNotNull(cl);
@@ -123,8 +199,15 @@ public class OBDController {
      */
     private void setupAdapterCandidates() {
         adapterCandidates.clear();
-        adapterCandidates.offer(new ELM327Adapter());
-        adapterCandidates.offer(new OBDLinkAdapter());
+
+        ELM327Adapter elm327Adapter = new ELM327Adapter();
+        elm327Adapter.setFastModeEnabled(fastMode);
+        adapterCandidates.offer(elm327Adapter);
+
+        OBDLinkAdapter obdLinkAdapter = new OBDLinkAdapter();
+        obdLinkAdapter.setFastModeEnabled(fastMode);
+        adapterCandidates.offer(obdLinkAdapter);
+
         adapterCandidates.offer(new CarTrendAdapter());
         adapterCandidates.offer(new AposW3Adapter());
         adapterCandidates.offer(new DriveDeckSportAdapter());
@@ -134,10 +217,14 @@ public class OBDController {
      * start the preferred adapter, determined by the device name
      */
     private void startPreferredAdapter() {
-        for (OBDAdapter ac : adapterCandidates) {
-            if (ac.supportsDevice(this.deviceName)) {
-                this.obdAdapter = ac;
-                break;
+        this.obdAdapter = selectProfileAdapter();
+
+        if (this.obdAdapter == null) {
+            for (OBDAdapter ac : adapterCandidates) {
+                if (ac.supportsDevice(this.deviceName)) {
+                    this.obdAdapter = ac;
+                    break;
+                }
             }
         }
 
@@ -151,7 +238,68 @@ public class OBDController {
 
         LOG.info("Using " + this.obdAdapter.getClass().getSimpleName() + " connector as the " +
                 "preferred adapter.");
-        startInitialization(false);
+        startInitialization(false, this.obdAdapter.getExpectedInitPeriod());
+    }
+
+    /**
+     * select the adapter of the last successful connection with the device
+     *
+     * @return the adapter with the session profile applied or null if there is no profile
+     */
+    private OBDAdapter selectProfileAdapter() {
+        if (this.profileStore == null) {
+            return null;
+        }
+
+        OBDSessionProfile profile = this.profileStore.getProfile(this.deviceAddress);
+        if (profile == null) {
+            return null;
+        }
+
+        for (OBDAdapter ac : adapterCandidates) {
+            if (ac.getClass().getName().equals(profile.getAdapterClass())) {
+                LOG.info(String.format("Using the session profile of %s: %s",
+                        this.deviceAddress, profile));
+                if (ac instanceof SyncAdapter) {
+                    ((SyncAdapter) ac).setSessionProfile(profile);
+                }
+                this.profileAdapter = ac;
+                return ac;
+            }
+        }
+
+        LOG.info("Unknown adapter in the session profile: " + profile.getAdapterClass());
+        this.profileStore.removeProfile(this.deviceAddress);
+        return null;
+    }
+
+    /**
+     * the adapter failed with the session profile: the vehicle or the adapter changed
+     */
+    private void discardSessionProfile() {
+        if (this.profileAdapter == null) {
+            return;
+        }
+
+        LOG.info("Discarding the session profile of " + this.deviceAddress);
+        if (this.profileAdapter instanceof SyncAdapter) {
+            ((SyncAdapter) this.profileAdapter).setSessionProfile(null);
+        }
+        this.profileStore.removeProfile(this.deviceAddress);
+        this.profileAdapter = null;
+    }
+
+    private void storeSessionProfile() {
+        if (this.profileStore == null) {
+            return;
+        }
+
+        OBDSessionProfile profile = this.obdAdapter instanceof SyncAdapter ?
+                ((SyncAdapter) this.obdAdapter).createSessionProfile() :
+                new OBDSessionProfile(this.obdAdapter.getClass().getName());
+        LOG.info(String.format("Storing the session profile of %s: %s", this.deviceAddress,
+                profile));
+        this.profileStore.putProfile(this.deviceAddress, profile);
     }
 
     /**
@@ -172,16 +320,18 @@ public class OBDController {
      * to bootstrap and verify the connection of the adapter
      * with the ECU.
      * <p>
-     * The init times out after a pre-defined period.
+     * The init times out after the given period.
      */
-    private void startInitialization(boolean alreadyTried) {
-        LOG.info("startInitialization()");
+    private void startInitialization(boolean alreadyTried, long initPeriod) {
+        LOG.info(String.format("startInitialization(): %s, timeout %d ms",
+                this.obdAdapter.getClass().getSimpleName(), initPeriod));
+        initAttempts++;
 
         // start the observable and subscribe to it
         this.initSubscription = this.obdAdapter.initialize(this.inputStream, this.outputStream)
                 .subscribeOn(Schedulers.io())
                 .observeOn(OBDSchedulers.scheduler())
-                .timeout(this.obdAdapter.getExpectedInitPeriod(), TimeUnit.MILLISECONDS)
+                .timeout(initPeriod, TimeUnit.MILLISECONDS)
                 .subscribeWith(getInitSubscriber(alreadyTried));
     }
 
@@ -196,6 +346,8 @@ public class OBDController {
                     return;
                 }
 
+                discardSessionProfile();
+
                 try {
                     LOG.info("State message is: "+obdAdapter.getStateMessage());
                 }
@@ -209,7 +361,7 @@ public class OBDController {
                     if (obdAdapter.hasCertifiedConnection()) {
                         if (!alreadyTried) {
                             // one retry if it was verified!
-                            startInitialization(true);
+                            startInitialization(true, obdAdapter.getExpectedInitPeriod());
                         } else {
                             throw new AllAdaptersFailedException(
                                     "Adapter verified a connection but could not establishe data: "
@@ -218,8 +370,9 @@ public class OBDController {
                     } else {
                         selectNextAdapter();
 
-                        // try the selected adapter
-                        startInitialization(false);
+                        // try the selected adapter, it was not preferred by the device name
+                        startInitialization(false, Math.min(
+                                obdAdapter.getExpectedInitPeriod(), CANDIDATE_INIT_PERIOD));
                     }
 
                 } catch (AllAdaptersFailedException e1) {
@@ -237,7 +390,9 @@ public class OBDController {
 
             @Override
             public void onNext(Boolean b) {
-                LOG.info("Connection verified - starting data collection");
+                LOG.info(String.format("Connection verified after %d ms and %d attempts - " +
+                                "starting data collection",
+                        SystemClock.elapsedRealtime() - connectStartedAt, initAttempts));
                 try {
                     LOG.info("State message from adapter: "+obdAdapter.getStateMessage());
                 }
@@ -306,6 +461,14 @@ public class OBDController {
 
             @Override
             public void onNext(DataResponse dataResponse) {
+                if (!firstMeasurementReceived) {
+                    firstMeasurementReceived = true;
+                    long timeToFirstMeasurement = SystemClock.elapsedRealtime() - connectStartedAt;
+                    LOG.info(String.format("Time to first measurement: %d ms using %s",
+                            timeToFirstMeasurement, obdAdapter.getClass().getSimpleName()));
+                    connectionListener.onFirstMeasurement(timeToFirstMeasurement);
+                    storeSessionProfile();
+                }
                 pushToEventBus(dataResponse);
             }
         };
@@ -343,8 +506,8 @@ public class OBDController {
             case MAF:
             case TPS:
                 return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(PIDUtil.toPropertyKey(pid),
-                                dataResponse.getValue(), dataResponse.getTimestamp())
+                        PropertyKeyEvent.obtain(PIDUtil.toPropertyKey(pid),
+                                dataResponse.getValue().doubleValue(), dataResponse.getTimestamp())
                 };
             case O2_LAMBDA_PROBE_1_VOLTAGE:
             case O2_LAMBDA_PROBE_2_VOLTAGE:
@@ -355,10 +518,12 @@ public class OBDController {
             case O2_LAMBDA_PROBE_7_VOLTAGE:
             case O2_LAMBDA_PROBE_8_VOLTAGE:
                 return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_VOLTAGE_ER,
-                                dataResponse.getCompositeValues()[0], dataResponse.getTimestamp()),
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_VOLTAGE,
-                                dataResponse.getCompositeValues()[1], dataResponse.getTimestamp())
+                        PropertyKeyEvent.obtain(Measurement.PropertyKey.LAMBDA_VOLTAGE_ER,
+                                dataResponse.getCompositeValues()[0].doubleValue(),
+                                dataResponse.getTimestamp()),
+                        PropertyKeyEvent.obtain(Measurement.PropertyKey.LAMBDA_VOLTAGE,
+                                dataResponse.getCompositeValues()[1].doubleValue(),
+                                dataResponse.getTimestamp())
                 };
             case O2_LAMBDA_PROBE_1_CURRENT:
             case O2_LAMBDA_PROBE_2_CURRENT:
@@ -369,14 +534,16 @@ public class OBDController {
             case O2_LAMBDA_PROBE_7_CURRENT:
             case O2_LAMBDA_PROBE_8_CURRENT:
                 return new PropertyKeyEvent[]{
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_CURRENT_ER,
-                                dataResponse.getCompositeValues()[0], dataResponse.getTimestamp()),
-                        new PropertyKeyEvent(Measurement.PropertyKey.LAMBDA_CURRENT,
-                                dataResponse.getCompositeValues()[1], dataResponse.getTimestamp())
+                        PropertyKeyEvent.obtain(Measurement.PropertyKey.LAMBDA_CURRENT_ER,
+                                dataResponse.getCompositeValues()[0].doubleValue(),
+                                dataResponse.getTimestamp()),
+                        PropertyKeyEvent.obtain(Measurement.PropertyKey.LAMBDA_CURRENT,
+                                dataResponse.getCompositeValues()[1].doubleValue(),
+                                dataResponse.getTimestamp())
                 };
         }
 
-        return new PropertyKeyEvent[0];
+        return NO_EVENTS;
     }
 
     /**
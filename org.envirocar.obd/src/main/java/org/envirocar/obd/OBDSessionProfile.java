@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.PIDUtil;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The outcome of the connection setup with a bluetooth device: the adapter implementation, the
+ * protocol of the vehicle and its supported PIDs. It is used to skip the discovery when the
+ * device reconnects.
+ */
+public class OBDSessionProfile {
+
+    /**
+     * the automatic protocol search of the ELM327
+     */
+    public static final int PROTOCOL_AUTOMATIC = 0;
+
+    private static final String FORMAT_VERSION = "1";
+    private static final String SEPARATOR = ";";
+
+    /**
+     * the PIDs 0x01 to 0x80 as returned by the four PIDSupported requests
+     */
+    private static final int PID_GROUPS = 4;
+    private static final int PIDS_PER_GROUP = 32;
+
+    private final String adapterClass;
+    private final int protocol;
+    private final Set<PID> supportedPIDs;
+
+    /**
+     * @param adapterClass the class name of the adapter implementation
+     */
+    public OBDSessionProfile(String adapterClass) {
+        this(adapterClass, PROTOCOL_AUTOMATIC, Collections.<PID>emptySet());
+    }
+
+    /**
+     * @param adapterClass  the class name of the adapter implementation
+     * @param protocol      the protocol number as reported by the ELM327 or
+     *                      {@link #PROTOCOL_AUTOMATIC}
+     * @param supportedPIDs the PIDs supported by the vehicle
+     */
+    public OBDSessionProfile(String adapterClass, int protocol, Set<PID> supportedPIDs) {
+        this.adapterClass = adapterClass;
+        this.protocol = protocol;
+        this.supportedPIDs = EnumSet.noneOf(PID.class);
+        this.supportedPIDs.addAll(supportedPIDs);
+    }
+
+    public String getAdapterClass() {
+        return adapterClass;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public Set<PID> getSupportedPIDs() {
+        return Collections.unmodifiableSet(supportedPIDs);
+    }
+
+    /**
+     * @return the profile as a single line, the supported PIDs encoded in the bitmap format of the
+     * PIDSupported responses
+     */
+    public String serialize() {
+        int[] groups = new int[PID_GROUPS];
+        for (PID pid : supportedPIDs) {
+            int index = Integer.parseInt(pid.getHexadecimalRepresentation(), 16) - 1;
+            if (index >= 0 && index < PID_GROUPS * PIDS_PER_GROUP) {
+                // the first PID of a group is the most significant bit
+                groups[index / PIDS_PER_GROUP] |= 1 << (PIDS_PER_GROUP - 1 - index % PIDS_PER_GROUP);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT_VERSION).append(SEPARATOR)
+                .append(adapterClass).append(SEPARATOR)
+                .append(Integer.toHexString(protocol).toUpperCase()).append(SEPARATOR);
+        for (int group : groups) {
+            sb.append(String.format("%08X", group));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param serialized a profile created by {@link #serialize()}
+     * @return the profile or null if the given string is not a valid profile
+     */
+    public static OBDSessionProfile parse(String serialized) {
+        if (serialized == null) {
+            return null;
+        }
+
+        String[] parts = serialized.split(SEPARATOR);
+        if (parts.length != 4 || !FORMAT_VERSION.equals(parts[0]) || parts[1].isEmpty()
+                || parts[3].length() != PID_GROUPS * 8) {
+            return null;
+        }
+
+        try {
+            int protocol = Integer.parseInt(parts[2], 16);
+
+            Set<PID> supportedPIDs = EnumSet.noneOf(PID.class);
+            for (int g = 0; g < PID_GROUPS; g++) {
+                long group = Long.parseLong(parts[3].substring(g * 8, g * 8 + 8), 16);
+                for (int i = 0; i < PIDS_PER_GROUP; i++) {
+                    if ((group & (1L << (PIDS_PER_GROUP - 1 - i))) != 0) {
+                        PID pid = PIDUtil.fromCode(g * PIDS_PER_GROUP + i + 1);
+                        if (pid != null) {
+                            supportedPIDs.add(pid);
+                        }
+                    }
+                }
+            }
+
+            return new OBDSessionProfile(parts[1], protocol, supportedPIDs);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, protocol %X, supported PIDs %s", adapterClass, protocol,
+                supportedPIDs);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd;
+
+/**
+ * Persists the {@link OBDSessionProfile} of bluetooth devices across connections.
+ */
+public interface OBDSessionProfileStore {
+
+    /**
+     * @param deviceAddress the MAC address of the bluetooth device
+     * @return the profile of the last successful connection or null if there is none
+     */
+    OBDSessionProfile getProfile(String deviceAddress);
+
+    /**
+     * @param deviceAddress the MAC address of the bluetooth device
+     * @param profile       the profile of the current connection
+     */
+    void putProfile(String deviceAddress, OBDSessionProfile profile);
+
+    /**
+     * Removes an outdated profile, e.g. if the adapter is plugged into another vehicle.
+     *
+     * @param deviceAddress the MAC address of the bluetooth device
+     */
+    void removeProfile(String deviceAddress);
+}
@@ -23,12 +23,12 @@ import android.util.Base64;
 import org.envirocar.core.logging.Logger;
 import org.envirocar.obd.commands.request.BasicCommand;
 import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.response.ResponseParser;
 import org.envirocar.obd.exception.AdapterFailedException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayDeque;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 
@@ -38,6 +38,7 @@ public class CarTrendAdapter extends SyncAdapter {
     private static final int MAX_METADATA_COUNT = 25;
     private static final byte[] LOG_RESPONSE_SEPARATOR = "§|§".getBytes();
     private static final long EXPECTED_INIT_PERIOD = 27500;
+    private static final byte[] STATUS_OK = ResponseParser.STATUS_OK.getBytes();
 
     private int requiredCount;
     private boolean protocolFound;
@@ -138,15 +139,14 @@ public class CarTrendAdapter extends SyncAdapter {
     }
 
     @Override
-    protected byte[] preProcess(byte[] bytes) throws AdapterFailedException {
+    protected int responseOffset(byte[] bytes, int length) throws AdapterFailedException {
         if (dataStartPosition == -1) {
-            String data = new String(bytes);
             /**
              * search for "41" (= status ok)
              */
-            dataStartPosition = data.indexOf("41");
+            dataStartPosition = ResponseParser.indexOf(bytes, 0, length, STATUS_OK);
             logger.info(String.format("Identified start position %s by response '%s'",
-                    dataStartPosition, new String(bytes)));
+                    dataStartPosition, new String(bytes, 0, length)));
 
             if (dataStartPosition == -1) {
                 //still -1, throw exception
@@ -154,12 +154,8 @@ public class CarTrendAdapter extends SyncAdapter {
             }
         }
 
-        if (dataStartPosition != -1 && dataStartPosition < bytes.length) {
-            return Arrays.copyOfRange(bytes, dataStartPosition, bytes.length);
-        }
-        else {
-            return bytes;
-        }
+        // the response is parsed in place instead of copying the data behind the header
+        return dataStartPosition < length ? dataStartPosition : 0;
     }
 
     @Override
@@ -172,6 +168,12 @@ public class CarTrendAdapter extends SyncAdapter {
         return this.identifySuccess;
     }
 
+    @Override
+    protected long getResponseTimeout(BasicCommand command) {
+        return command instanceof ProtocolCommand ?
+                PROTOCOL_SEARCH_TIMEOUT : super.getResponseTimeout(command);
+    }
+
     @Override
     public long getExpectedInitPeriod() {
         return EXPECTED_INIT_PERIOD;
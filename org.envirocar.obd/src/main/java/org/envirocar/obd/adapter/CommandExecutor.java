@@ -18,27 +18,46 @@
  */
 package org.envirocar.obd.adapter;
 
+import android.os.SystemClock;
 import android.util.Base64;
 
 import org.envirocar.core.logging.Logger;
 import org.envirocar.obd.commands.request.BasicCommand;
+import org.envirocar.obd.exception.ResponseTimeoutException;
 import org.envirocar.obd.exception.StreamFinishedException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 
+/**
+ * Writes commands to the adapter and reads its responses. The input stream is read in chunks
+ * into a reusable buffer, and each line is collected into a second reusable buffer which
+ * can be accessed without copying via {@link #readResponse()} and {@link #getResponseBuffer()}.
+ */
 public class CommandExecutor {
 
     private static final Logger LOGGER = Logger.getLogger(CommandExecutor.class.getName());
-    private final Set<Byte> ignoredChars;
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int INITIAL_LINE_SIZE = 128;
+    private static final long EMPTY_LINE_TIMEOUT = 100;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static final long DATA_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final byte DATA = 0;
+    private static final byte IGNORED = 1;
+    private static final byte END_OF_LINE = 2;
+
+    private final byte[] charClasses = new byte[256];
     private final byte endOfLineOutput;
     private final byte endOfLineInput;
     private OutputStream outputStream;
@@ -47,23 +66,27 @@ public class CommandExecutor {
     private boolean logEverything = false;
     private int currentLogLevel = Logger.DEBUG;
 
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private int readPosition;
+    private int readLimit;
+    private byte[] line = new byte[INITIAL_LINE_SIZE];
+
 
     public CommandExecutor(InputStream is, OutputStream os,
                            Set<Character> ignoredChars, Character endOfLineInput, Character endOfLineOutput) {
         this.inputStream = is;
         this.outputStream = os;
-        this.ignoredChars = new HashSet<>(ignoredChars.size());
 
         for (Character c : ignoredChars) {
-            this.ignoredChars.add((byte) c.charValue());
+            this.charClasses[c & 0xFF] = IGNORED;
         }
 
         this.endOfLineOutput = (byte) endOfLineOutput.charValue();
         this.endOfLineInput = (byte) endOfLineInput.charValue();
+        this.charClasses[this.endOfLineInput & 0xFF] = END_OF_LINE;
 
         this.setLogEverything(false);
     }
-
     public final void setLogEverything(boolean logEverything) {
         this.logEverything = logEverything;
         if (this.logEverything && !LOGGER.isEnabled(Logger.DEBUG)) {
@@ -102,7 +125,7 @@ public class CommandExecutor {
             public void subscribe(ObservableEmitter<byte[]> emitter) throws Exception {
                 try {
                     while (!emitter.isDisposed()) {
-                        byte[] bytes = readResponseLine();
+                        byte[] bytes = retrieveLatestResponse();
                         emitter.onNext(bytes);
                     }
                 } catch (IOException e) {
@@ -114,77 +137,158 @@ public class CommandExecutor {
         });
     }
 
+    /**
+     * Reads the next response line into the response buffer.
+     *
+     * @return the length of the response, which starts at index 0 of {@link #getResponseBuffer()}
+     */
+    public int readResponse() throws IOException, StreamFinishedException {
+        return readResponseUntil(NO_DEADLINE);
+    }
 
-    private byte[] readResponseLine() throws IOException, StreamFinishedException {
-        // TODO
-//        LOGGER.info("Reading response line...");
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    /**
+     * Reads the next response line into the response buffer.
+     *
+     * @param timeout the time (in ms) in which the response has to be completed
+     * @return the length of the response, which starts at index 0 of {@link #getResponseBuffer()}
+     * @throws ResponseTimeoutException if the response was not completed in time
+     */
+    public int readResponse(long timeout) throws IOException, StreamFinishedException {
+        return readResponseUntil(SystemClock.elapsedRealtime() + timeout);
+    }
 
+    private int readResponseUntil(long deadline) throws IOException, StreamFinishedException {
         // read until end of line arrives
-        readUntilLineEnd(baos);
-
-        byte[] byteArray = baos.toByteArray();
+        int length = readUntilLineEnd(0, deadline);
 
         //some adapter (i.e. the drivedeck) MIGHT respond with linebreaks as actual data - detect this
-        if (quirk != null && quirk.shouldWaitForNextTokenLine(byteArray)) {
+        if (quirk != null && quirk.shouldWaitForNextTokenLine(Arrays.copyOf(line, length))) {
             LOGGER.info("Detected quirk: " + this.quirk.getClass().getSimpleName());
 
             //re-add the end of line, it was dismissed previously
-            baos.write(this.endOfLineInput);
-            readUntilLineEnd(baos);
-            byteArray = baos.toByteArray();
+            length = append(length, this.endOfLineInput);
+            length = readUntilLineEnd(length, deadline);
         }
 
-        if (byteArray.length == 0) {
+        if (length == 0) {
             LOGGER.info("Unexpected empty line anomaly detected. Try to read next line.");
-//            baos.reset();
-
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-            }
 
-            if (isDataAvailable()){
-                readUntilLineEnd(baos);
-                byteArray = baos.toByteArray();
+            if (awaitData(Math.min(deadline, SystemClock.elapsedRealtime() + EMPTY_LINE_TIMEOUT))) {
+                length = readUntilLineEnd(0, deadline);
             }
-
         }
 
         if (LOGGER.isEnabled(currentLogLevel)) {
-            LOGGER.log(currentLogLevel, "Received bytes: " + Base64.encodeToString(byteArray, Base64.DEFAULT));
+            LOGGER.log(currentLogLevel, "Received bytes: " + Base64.encodeToString(line, 0, length, Base64.DEFAULT));
         }
 
-        return byteArray;
+        return length;
+    }
+
+    /**
+     * @return the buffer holding the latest response. It is reused by the next call of
+     * {@link #readResponse()}.
+     */
+    public byte[] getResponseBuffer() {
+        return line;
     }
 
     public boolean isDataAvailable(){
         try {
-            return inputStream.available() > 0;
+            return readPosition < readLimit || inputStream.available() > 0;
         } catch (Exception e){
             return false;
         }
     }
 
-    private void readUntilLineEnd(ByteArrayOutputStream baos) throws IOException, StreamFinishedException {
-        int i = inputStream.read();
-        byte b = (byte) i;
-        while (b != this.endOfLineInput) {
-            if (i == -1) {
-                throw new StreamFinishedException("Stream finished");
+    /**
+     * Waits until data is available or the deadline has passed.
+     *
+     * @param deadline the deadline as of {@link SystemClock#elapsedRealtime()}
+     * @return true if data is available
+     */
+    private boolean awaitData(long deadline) {
+        while (!isDataAvailable()) {
+            if (SystemClock.elapsedRealtime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(DATA_POLL_INTERVAL_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Discards the rest of a response that has not been completed in time, so that it is not
+     * taken as the response to the next command. Input is skipped up to and including the next
+     * end of line, or until no data arrives within the timeout.
+     *
+     * @param timeout the time (in ms) to wait for the rest of the response
+     */
+    public void discardResponse(long timeout) throws IOException, StreamFinishedException {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        int discarded = 0;
+        while (readPosition < readLimit || awaitData(deadline)) {
+            if (readPosition == readLimit) {
+                fillReadBuffer();
             }
 
-            if (!ignoredChars.contains(b)) {
-                baos.write(b);
+            discarded++;
+            if (readBuffer[readPosition++] == endOfLineInput) {
+                break;
             }
+        }
+        LOGGER.info("Discarded " + discarded + " bytes of an incomplete response.");
+    }
 
-            i = inputStream.read();
-            b = (byte) i;
+    private int readUntilLineEnd(int length, long deadline) throws IOException, StreamFinishedException {
+        while (true) {
+            if (readPosition == readLimit) {
+                if (deadline != NO_DEADLINE && !awaitData(deadline)) {
+                    throw new ResponseTimeoutException("No complete response received in time");
+                }
+                fillReadBuffer();
+            }
+
+            byte b = readBuffer[readPosition++];
+            switch (charClasses[b & 0xFF]) {
+                case END_OF_LINE:
+                    return length;
+                case DATA:
+                    length = append(length, b);
+                    break;
+                default:
+                    break;
+            }
         }
     }
 
+    private void fillReadBuffer() throws IOException, StreamFinishedException {
+        int count = inputStream.read(readBuffer, 0, readBuffer.length);
+        if (count == -1) {
+            throw new StreamFinishedException("Stream finished");
+        }
+        readPosition = 0;
+        readLimit = count;
+    }
+
+    private int append(int length, byte b) {
+        if (length == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[length] = b;
+        return length + 1;
+    }
+
     public byte[] retrieveLatestResponse() throws IOException, StreamFinishedException {
-        return readResponseLine();
+        return Arrays.copyOf(line, readResponse());
+    }
+
+    /**
+     * @param timeout the time (in ms) in which the response has to be completed
+     * @return a copy of the next response line
+     * @throws ResponseTimeoutException if the response was not completed in time
+     */
+    public byte[] retrieveLatestResponse(long timeout) throws IOException, StreamFinishedException {
+        return Arrays.copyOf(line, readResponse(timeout));
     }
 }
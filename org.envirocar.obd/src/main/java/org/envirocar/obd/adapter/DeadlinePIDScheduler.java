@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.response.DataResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schedules each PID at its own target refresh period and always requests the PID with the
+ * earliest deadline. PIDs which drive the consumption (speed, RPM, MAF, ...) are therefore
+ * requested far more often than slowly changing ones like the intake temperature. Failing
+ * PIDs are backed off exponentially, and most PIDs are demoted while the vehicle stands
+ * with the engine idling.
+ */
+public class DeadlinePIDScheduler implements PIDScheduler {
+
+    protected static final long FAST_PERIOD = 200;
+    protected static final long MEDIUM_PERIOD = 500;
+    protected static final long SLOW_PERIOD = 1000;
+    protected static final long VERY_SLOW_PERIOD = 5000;
+
+    private static final int IDLE_DEMOTION_FACTOR = 4;
+    private static final int MAX_BACKOFF_SHIFT = 5;
+    private static final double RATE_SMOOTHING = 0.2;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean idle;
+
+    @Override
+    public void schedule(List<PIDCommand> commands, long now) {
+        entries.clear();
+        for (PIDCommand command : commands) {
+            if (command != null) {
+                entries.add(new Entry(command, getTargetPeriod(command.getPid()),
+                        isDemotedWhenIdle(command.getPid()), now));
+            }
+        }
+    }
+
+    @Override
+    public PIDCommand peek() {
+        Entry next = next();
+        return next != null ? next.command : null;
+    }
+
+    @Override
+    public PIDCommand poll(long now) {
+        Entry next = next();
+        if (next == null) {
+            return null;
+        }
+
+        next.deadline = now + period(next);
+        return next.command;
+    }
+
+    @Override
+    public void remove(PID pid) {
+        Entry entry = find(pid);
+        if (entry != null) {
+            entries.remove(entry);
+        }
+    }
+
+    @Override
+    public void onResponse(DataResponse response, long now) {
+        PID pid = response.getPid();
+        if (pid == PID.SPEED) {
+            setIdle(response.getValue().intValue() == 0, now);
+        }
+
+        Entry entry = find(pid);
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.failures > 0) {
+            entry.failures = 0;
+            entry.deadline = Math.min(entry.deadline, now + period(entry));
+        }
+
+        if (entry.lastResponse >= 0) {
+            long interval = now - entry.lastResponse;
+            entry.interval = entry.interval == 0 ? interval
+                    : entry.interval + (interval - entry.interval) * RATE_SMOOTHING;
+        }
+        entry.lastResponse = now;
+    }
+
+    @Override
+    public void onFailure(PID pid, long now) {
+        Entry entry = find(pid);
+        if (entry != null) {
+            entry.failures++;
+            entry.deadline = now + (period(entry) << Math.min(entry.failures, MAX_BACKOFF_SHIFT));
+        }
+    }
+
+    @Override
+    public double getAchievedRate(PID pid) {
+        Entry entry = find(pid);
+        if (entry == null || entry.interval <= 0) {
+            return 0;
+        }
+        return 1000 / entry.interval;
+    }
+
+    /**
+     * @return true if the last speed received was 0
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * @param pid the PID
+     * @return the period (in ms) at which the PID shall be refreshed
+     */
+    protected long getTargetPeriod(PID pid) {
+        switch (pid) {
+            case SPEED:
+            case RPM:
+            case MAF:
+            case ENGINE_FUEL_RATE:
+                return FAST_PERIOD;
+            case INTAKE_MAP:
+            case CALCULATED_ENGINE_LOAD:
+            case TPS:
+                return MEDIUM_PERIOD;
+            case INTAKE_AIR_TEMP:
+            case LONG_TERM_FUEL_TRIM_BANK_1:
+                return VERY_SLOW_PERIOD;
+            default:
+                return SLOW_PERIOD;
+        }
+    }
+
+    /**
+     * @param pid the PID
+     * @return true if the PID shall be requested less often while the engine idles
+     */
+    protected boolean isDemotedWhenIdle(PID pid) {
+        switch (pid) {
+            case SPEED:
+            case RPM:
+            case MAF:
+            case ENGINE_FUEL_RATE:
+            case INTAKE_MAP:
+            case INTAKE_AIR_TEMP:
+                // required to compute the consumption
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void setIdle(boolean idle, long now) {
+        if (this.idle == idle) {
+            return;
+        }
+
+        this.idle = idle;
+        if (!idle) {
+            // catch up on the PIDs demoted while idling
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.demotedWhenIdle && entry.failures == 0) {
+                    entry.deadline = Math.min(entry.deadline, now + entry.period);
+                }
+            }
+        }
+    }
+
+    private long period(Entry entry) {
+        return idle && entry.demotedWhenIdle ? entry.period * IDLE_DEMOTION_FACTOR : entry.period;
+    }
+
+    private Entry next() {
+        Entry next = null;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (next == null || entry.deadline < next.deadline) {
+                next = entry;
+            }
+        }
+        return next;
+    }
+
+    private Entry find(PID pid) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).command.getPid() == pid) {
+                return entries.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DeadlinePIDScheduler{idle=").append(idle);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            sb.append(", ").append(entry.command.getPid()).append('=')
+                    .append(Math.round(getAchievedRate(entry.command.getPid()) * 10) / 10.0)
+                    .append("Hz");
+        }
+        return sb.append('}').toString();
+    }
+
+    private static class Entry {
+        private final PIDCommand command;
+        private final long period;
+        private final boolean demotedWhenIdle;
+        private long deadline;
+        private int failures;
+        private long lastResponse = -1;
+        private double interval;
+
+        private Entry(PIDCommand command, long period, boolean demotedWhenIdle, long deadline) {
+            this.command = command;
+            this.period = period;
+            this.demotedWhenIdle = demotedWhenIdle;
+            this.deadline = deadline;
+        }
+    }
+}
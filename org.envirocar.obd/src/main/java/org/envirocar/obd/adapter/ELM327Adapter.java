@@ -21,6 +21,7 @@ package org.envirocar.obd.adapter;
 import android.util.Base64;
 
 import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.OBDSessionProfile;
 import org.envirocar.obd.commands.request.BasicCommand;
 import org.envirocar.obd.commands.request.PIDCommand;
 import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
@@ -30,6 +31,7 @@ import org.envirocar.obd.exception.AdapterFailedException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 
@@ -43,6 +45,16 @@ public class ELM327Adapter extends SyncAdapter {
 
     private static final Logger LOG = Logger.getLogger(ELM327Adapter.class);
 
+    /**
+     * 62 * 4 ms = 248 ms
+     */
+    protected static final int DEFAULT_TIMEOUT = 62;
+
+    /**
+     * 25 * 4 ms = 100 ms. Adaptive timing only shortens the waiting time below this maximum.
+     */
+    protected static final int FAST_MODE_TIMEOUT = 25;
+
     private Queue<BasicCommand> initCommands;
     protected int succesfulCount;
     protected boolean certifiedConnection;
@@ -66,16 +78,41 @@ public class ELM327Adapter extends SyncAdapter {
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.ECHO_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.MEMORY_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.LINE_FEED_OFF));
-        result.add(new Timeout(62));
-        result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL));
+        result.add(new Timeout(DEFAULT_TIMEOUT));
+        result.add(selectProtocolCommand());
         return result;
     }
 
+    /**
+     * @return the command selecting the protocol of the session profile or the automatic search
+     */
+    protected BasicCommand selectProtocolCommand() {
+        OBDSessionProfile profile = getSessionProfile();
+        if (profile != null) {
+            return ConfigurationCommand.selectProtocol(profile.getProtocol());
+        }
+        return ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL);
+    }
+
     @Override
     protected List<PIDCommand> providePendingCommands() {
         return super.defaultCycleCommands();
     }
 
+    @Override
+    protected List<BasicCommand> provideFastModeCommands() {
+        return Arrays.asList(
+                ConfigurationCommand.instance(ConfigurationCommand.Instance.ADAPTIVE_TIMING_AGGRESSIVE),
+                new Timeout(FAST_MODE_TIMEOUT));
+    }
+
+    @Override
+    protected List<BasicCommand> provideNormalModeCommands() {
+        return Arrays.asList(
+                ConfigurationCommand.instance(ConfigurationCommand.Instance.ADAPTIVE_TIMING_AUTO),
+                new Timeout(DEFAULT_TIMEOUT));
+    }
+
     @Override
     protected boolean analyzeMetadataResponse(byte[] response, BasicCommand sentCommand) throws AdapterFailedException {
         String content = new String(response);
@@ -119,8 +156,13 @@ public class ELM327Adapter extends SyncAdapter {
     }
 
     @Override
-    protected byte[] preProcess(byte[] bytes) {
-        return bytes;
+    protected boolean supportsMultiplePIDRequests() {
+        return true;
+    }
+
+    @Override
+    protected boolean supportsProtocolSelection() {
+        return true;
     }
 
     @Override
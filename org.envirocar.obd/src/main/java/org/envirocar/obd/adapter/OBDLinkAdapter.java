@@ -43,8 +43,8 @@ public class OBDLinkAdapter extends ELM327Adapter{
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.ECHO_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.MEMORY_OFF));
         result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.LINE_FEED_OFF));
-        result.add(new Timeout(62));
-        result.add(ConfigurationCommand.instance(ConfigurationCommand.Instance.SELECT_AUTO_PROTOCOL));
+        result.add(new Timeout(DEFAULT_TIMEOUT));
+        result.add(selectProtocolCommand());
         return result;
     }
 
@@ -64,11 +64,6 @@ public class OBDLinkAdapter extends ELM327Adapter{
                 succesfulCount++;
                 certifiedConnection = true;
             }
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
 
         if (sent.getInstance() == ConfigurationCommand.Instance.ECHO_OFF) {
@@ -102,6 +97,12 @@ public class OBDLinkAdapter extends ELM327Adapter{
         return succesfulCount >= 5;
     }
 
+    @Override
+    protected boolean supportsPipelining() {
+        // STN chips accept the next request right after the prompt
+        return true;
+    }
+
     @Override
     public boolean supportsDevice(String deviceName) {
         return deviceName.toLowerCase().contains("obdlink");
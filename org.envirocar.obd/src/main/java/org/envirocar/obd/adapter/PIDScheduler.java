@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+import org.envirocar.obd.commands.PID;
+import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.response.DataResponse;
+
+import java.util.List;
+
+/**
+ * Decides which PID a {@link SyncAdapter} requests next. All times are in milliseconds of a
+ * monotonic clock, e.g. {@link android.os.SystemClock#elapsedRealtime()}.
+ */
+public interface PIDScheduler {
+
+    /**
+     * Replaces the scheduled commands.
+     *
+     * @param commands the commands to be requested cyclically
+     * @param now      the current time
+     */
+    void schedule(List<PIDCommand> commands, long now);
+
+    /**
+     * @return the command that would be returned by the next call of {@link #poll(long)} or
+     * null if there are no commands left
+     */
+    PIDCommand peek();
+
+    /**
+     * Returns the next command to be requested and reschedules it.
+     *
+     * @param now the current time
+     * @return the next command or null if there are no commands left
+     */
+    PIDCommand poll(long now);
+
+    /**
+     * Stops requesting the given PID, e.g. because it failed too often.
+     *
+     * @param pid the PID to be removed
+     */
+    void remove(PID pid);
+
+    /**
+     * @param response the response received for a previously polled command
+     * @param now      the current time
+     */
+    void onResponse(DataResponse response, long now);
+
+    /**
+     * @param pid the PID of a previously polled command that could not be retrieved
+     * @param now the current time
+     */
+    void onFailure(PID pid, long now);
+
+    /**
+     * @param pid the PID
+     * @return the rate (in Hz) at which responses of the PID are currently received
+     */
+    double getAchievedRate(PID pid);
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.adapter;
+
+/**
+ * Collects the round trip times between sending a request to the adapter and receiving its
+ * response.
+ */
+public class RoundTripStatistics {
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * @param nanos the round trip time of a request in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the average round trip time in milliseconds or 0 if nothing was recorded
+     */
+    public synchronized double getAverageMillis() {
+        return count == 0 ? 0 : totalNanos / NANOS_PER_MILLI / count;
+    }
+
+    /**
+     * @return the longest round trip time in milliseconds
+     */
+    public synchronized double getMaxMillis() {
+        return maxNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d requests, %.1f ms average, %.1f ms max",
+                count, getAverageMillis(), getMaxMillis());
+    }
+}
@@ -18,14 +18,18 @@
  */
 package org.envirocar.obd.adapter;
 
+import android.os.SystemClock;
 import android.util.Base64;
 
 import org.envirocar.core.logging.Logger;
+import org.envirocar.obd.OBDSessionProfile;
 import org.envirocar.obd.commands.PID;
 import org.envirocar.obd.commands.PIDSupported;
 import org.envirocar.obd.commands.PIDUtil;
 import org.envirocar.obd.commands.request.BasicCommand;
+import org.envirocar.obd.commands.request.MultiPIDCommand;
 import org.envirocar.obd.commands.request.PIDCommand;
+import org.envirocar.obd.commands.request.elm.ConfigurationCommand;
 import org.envirocar.obd.commands.response.DataResponse;
 import org.envirocar.obd.commands.response.ResponseParser;
 import org.envirocar.obd.exception.AdapterFailedException;
@@ -33,6 +37,7 @@ import org.envirocar.obd.exception.AdapterSearchingException;
 import org.envirocar.obd.exception.EngineNotRunningException;
 import org.envirocar.obd.exception.InvalidCommandResponseException;
 import org.envirocar.obd.exception.NoDataReceivedException;
+import org.envirocar.obd.exception.ResponseTimeoutException;
 import org.envirocar.obd.exception.StreamFinishedException;
 import org.envirocar.obd.exception.UnmatchedResponseException;
 
@@ -42,6 +47,8 @@ import java.io.OutputStream;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -51,18 +58,37 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
 
 
 public abstract class SyncAdapter implements OBDAdapter {
 
     private static final Logger LOGGER = Logger.getLogger(SyncAdapter.class.getName());
 
-    protected static final long ADAPTER_TRY_PERIOD = 100000;
+    protected static final long ADAPTER_TRY_PERIOD = 30000;
+
+    /**
+     * time (in ms) in which an adapter has to answer an initialization command
+     */
+    protected static final long INIT_RESPONSE_TIMEOUT = 1000;
+
+    /**
+     * time (in ms) in which an adapter has to complete its reset
+     */
+    protected static final long RESET_RESPONSE_TIMEOUT = 3000;
+
+    /**
+     * time (in ms) in which the adapter has to find the protocol of the vehicle
+     */
+    protected static final long PROTOCOL_SEARCH_TIMEOUT = 15000;
 
     private static final char COMMAND_SEND_END = '\r';
     private static final char COMMAND_RECEIVE_END = '>';
     private static final char COMMAND_RECEIVE_SPACE = ' ';
     private static final int MAX_ERROR_PER_COMMAND = 5;
+    private static final int MAX_MULTI_PID_FAILURES = 3;
+    private static final long RATE_LOG_PERIOD = 60000;
+    private static final int MAX_FAST_MODE_ERRORS = 3;
 
     private Set<Character> ignoredChars = new HashSet<>(Arrays.asList(COMMAND_RECEIVE_SPACE, COMMAND_SEND_END));
     private CommandExecutor commandExecutor;
@@ -72,7 +98,25 @@ public abstract class SyncAdapter implements OBDAdapter {
 
     private Map<PID, AtomicInteger> failureMap = new HashMap<>();
     private List<PIDCommand> requestCommands;
-    private Queue<PIDCommand> commandRingBuffer = new ArrayDeque<>();
+    private PIDScheduler scheduler;
+    private boolean fastModeEnabled;
+    private OBDSessionProfile sessionProfile;
+    private int protocol = OBDSessionProfile.PROTOCOL_AUTOMATIC;
+    private boolean fastMode;
+    private boolean pipelining;
+    private boolean fastModeFallback;
+    private int fastModeErrors;
+    private long requestSentAt;
+    private final Map<PID, PIDCommand> fastCommands = new EnumMap<>(PID.class);
+    private final RoundTripStatistics normalRoundTrips = new RoundTripStatistics();
+    private final RoundTripStatistics fastRoundTrips = new RoundTripStatistics();
+    private PIDCommand pendingCommand;
+    private long lastRateLog;
+    private boolean multiPIDRequests;
+    private boolean multiPIDConfirmed;
+    private int multiPIDFailures;
+    private final List<PID> batch = new ArrayList<>(MultiPIDCommand.MAX_PIDS);
+    private final List<DataResponse> batchResponses = new ArrayList<>(MultiPIDCommand.MAX_PIDS);
     private Queue<PIDSupported> pidSupportedCommands = new ArrayDeque<>(
             Arrays.asList(
                     new PIDSupported(),
@@ -101,22 +145,58 @@ public abstract class SyncAdapter implements OBDAdapter {
                          * a successful data connection has been established:
                          * retrieve the supported PIDs
                          */
+                        Set<PID> cachedPIDs = sessionProfile != null ?
+                                sessionProfile.getSupportedPIDs() : Collections.<PID>emptySet();
                         PIDSupported pid = pidSupportedCommands.poll();
+                        // the first request starts the protocol search
+                        long timeout = PROTOCOL_SEARCH_TIMEOUT;
                         while (pid != null) {
                             commandExecutor.execute(pid);
-                            byte[] resp = commandExecutor.retrieveLatestResponse();
+                            Set<PID> groupPIDs = Collections.emptySet();
                             try {
-                                supportedPIDs.addAll(pid.parsePIDs(resp));
+                                byte[] resp = commandExecutor.retrieveLatestResponse(timeout);
+                                groupPIDs = pid.parsePIDs(resp);
+                                supportedPIDs.addAll(groupPIDs);
+                            } catch (ResponseTimeoutException e) {
+                                LOGGER.warn("PID group not reported in time, not supported: " + pid.getGroup());
+                                commandExecutor.discardResponse(INIT_RESPONSE_TIMEOUT);
                             } catch (InvalidCommandResponseException e) {
                                 LOGGER.warn(e.getMessage(), e);
                             }
+                            timeout = INIT_RESPONSE_TIMEOUT;
                             LOGGER.info("Currently supported PIDs: " + supportedPIDs.toString());
+
+                            if (!cachedPIDs.isEmpty()) {
+                                if (matchesSessionProfile(pid, groupPIDs, cachedPIDs)) {
+                                    // the same vehicle: the remaining groups are known
+                                    LOGGER.info("Supported PIDs taken from the session profile.");
+                                    supportedPIDs.addAll(cachedPIDs);
+                                    pidSupportedCommands.clear();
+                                } else {
+                                    LOGGER.info("Supported PIDs differ from the session profile.");
+                                    cachedPIDs = Collections.emptySet();
+                                }
+                            }
                             pid = pidSupportedCommands.poll();
                         }
 
                         // If the supported PIDs is empty, then usually the engine isn't running.
                         if (supportedPIDs.size() == 0) {
                             subscriber.onError(new EngineNotRunningException("No PIDs returned. Possibly the car engine is not running."));
+                            return;
+                        }
+
+                        if (supportsMultiplePIDRequests() || supportsProtocolSelection()) {
+                            protocol = describeProtocol();
+                        }
+
+                        if (supportsMultiplePIDRequests()) {
+                            multiPIDRequests = isCANProtocol(protocol);
+                            LOGGER.info("Multiple PIDs per request: " + multiPIDRequests);
+                        }
+
+                        if (fastModeEnabled) {
+                            enableFastMode();
                         }
 
                         subscriber.onNext(true);
@@ -127,34 +207,47 @@ public abstract class SyncAdapter implements OBDAdapter {
                         if (cc == null) {
                             subscriber.onError(new AdapterFailedException(
                                     "All init commands sent, but could not verify connection"));
+                            return;
                         }
 
                         LOGGER.info("Sending Init Command: " + cc.toString());
                         //push the command to the output stream
                         commandExecutor.execute(cc);
+                        long timeout = getResponseTimeout(cc);
 
                         //check if the command needs a response (most likely)
                         if (cc.awaitsResults()) {
                             try {
-                                Thread.sleep(750);
                                 LOGGER.info("Retrieving initial phase response...");
-                                byte[] resp = commandExecutor.retrieveLatestResponse();
+                                byte[] resp = commandExecutor.retrieveLatestResponse(timeout);
                                 LOGGER.info("Retrieved initial phase response: " + Base64.encodeToString(resp, Base64.DEFAULT));
                                 analyzedSuccessfully = analyzedSuccessfully | analyzeMetadataResponse(resp, cc);
-                            } catch (InterruptedException e) {
-                                LOGGER.warn(e.getMessage());
+                            } catch (StreamFinishedException e) {
+                                throw e;
                             } catch (Exception e) {
+                                if (e instanceof ResponseTimeoutException) {
+                                    // the late rest of the response would be read as the
+                                    // response to the retry
+                                    commandExecutor.discardResponse(timeout);
+                                }
+
                                 // retry
+                                LOGGER.info("Retrying init command: " + e.getMessage());
                                 commandExecutor.execute(cc);
-                                Thread.sleep(750);
                                 LOGGER.info("Retrieving initial phase response...");
-                                byte[] resp = commandExecutor.retrieveLatestResponse();
+                                byte[] resp = commandExecutor.retrieveLatestResponse(timeout);
                                 LOGGER.info("Retrieved initial phase response: " + Base64.encodeToString(resp, Base64.DEFAULT));
                                 analyzedSuccessfully = analyzedSuccessfully | analyzeMetadataResponse(resp, cc);
                             }
 
                         } else {
-                            LOGGER.info("Command does not expect a result, continuing.");
+                            // e.g. a reset: wait for the prompt, otherwise its output is taken
+                            // as the response to the next command
+                            try {
+                                commandExecutor.retrieveLatestResponse(timeout);
+                            } catch (ResponseTimeoutException e) {
+                                LOGGER.info("Command does not expect a result, continuing.");
+                            }
                         }
                     }
                 }
@@ -182,29 +275,59 @@ public abstract class SyncAdapter implements OBDAdapter {
             preparePendingCommands();
 
             PIDCommand latestCommand = null;
+            PIDCommand inFlight = null;
             byte[] bytes = null;
+            int length = 0;
             while (!subscriber.isDisposed()) {
                 try {
-                    latestCommand = pollNextCommand();
-                    LOGGER.debug("Sending command " + (latestCommand != null ? latestCommand.getPid().toString() : "n/a"));
+                    if (inFlight == null) {
+                        if (fastModeFallback) {
+                            disableFastMode();
+                        }
 
-                    /**
-                     * write the next pending command
-                     */
-                    if (latestCommand != null) {
-                        commandExecutor.execute(latestCommand);
+                        if (multiPIDRequests && pollNextBatch()) {
+                            requestBatch(subscriber);
+                            continue;
+                        }
+
+                        inFlight = pendingCommand != null ? pendingCommand : pollNextCommand();
+                        pendingCommand = null;
+                        LOGGER.debug("Sending command " + (inFlight != null ? inFlight.getPid().toString() : "n/a"));
+
+                        /**
+                         * write the next pending command
+                         */
+                        if (inFlight != null) {
+                            send(inFlight);
+                        }
                     }
+                    latestCommand = inFlight;
+                    inFlight = null;
 
                     /**
                      * read the next incoming response
                      */
-                    bytes = commandExecutor.retrieveLatestResponse();
+                    length = commandExecutor.readResponse();
+                    bytes = commandExecutor.getResponseBuffer();
+                    recordRoundTrip();
+
+                    if (pipelining && !fastModeFallback) {
+                        /**
+                         * the adapter already processes the next request while this
+                         * response is parsed
+                         */
+                        inFlight = pollNextCommand();
+                        if (inFlight != null) {
+                            send(inFlight);
+                        }
+                    }
 
-                    DataResponse response = parser.parse(preProcess(bytes));
+                    DataResponse response = parser.parse(bytes, responseOffset(bytes, length),
+                            length);
 
                     if (response != null) {
                         LOGGER.debug("isDisposed? " + subscriber.isDisposed());
-                        subscriber.onNext(response);
+                        emit(subscriber, response);
                     }
                 } catch (IOException e) {
                     if (!subscriber.isDisposed())
@@ -213,7 +336,7 @@ public abstract class SyncAdapter implements OBDAdapter {
                     LOGGER.warn(e.getMessage(), e);
                     LOGGER.warn(String.format("Sent Command was: %s; Received response was: %s",
                             latestCommand.getPid().toString(),
-                            Base64.encodeToString(bytes, Base64.DEFAULT)));
+                            bytes != null ? Base64.encodeToString(bytes, 0, length, Base64.DEFAULT) : null));
                     subscriber.onError(e);
                 } catch (StreamFinishedException e) {
                     LOGGER.info("Stream finished: " + e.getMessage());
@@ -223,38 +346,284 @@ public abstract class SyncAdapter implements OBDAdapter {
                 } catch (NoDataReceivedException e) {
                     LOGGER.warn("No data received: " + e.getMessage());
                     increaseFailureCount(latestCommand.getPid());
+                    onFastModeError();
                 } catch (InvalidCommandResponseException e) {
                     LOGGER.warn("Received InvalidCommandResponseException: " + e.getCommand());
                     increaseFailureCount(PIDUtil.fromString(e.getCommand()));
+                    onFastModeError();
                 } catch (UnmatchedResponseException e) {
                     LOGGER.warn("Unmatched response: " + e.getMessage());
+                    onFastModeError();
                 }
             }
 
         });
     }
 
-    protected PIDCommand pollNextCommand() throws AdapterFailedException {
-        if (this.commandRingBuffer.isEmpty()) {
-            throw new AdapterFailedException("No available commands left in the buffer");
+    private void emit(ObservableEmitter<DataResponse> subscriber, DataResponse response) {
+        long now = SystemClock.elapsedRealtime();
+        scheduler.onResponse(response, now);
+        fastModeErrors = 0;
+        subscriber.onNext(response);
+
+        if (now - lastRateLog > RATE_LOG_PERIOD) {
+            LOGGER.info("Achieved PID rates: " + scheduler);
+            LOGGER.info(String.format("Round trips: normal mode %s; fast mode %s",
+                    normalRoundTrips, fastRoundTrips));
+            lastRateLog = now;
         }
+    }
 
-        PIDCommand cmd = commandRingBuffer.poll();
+    private void send(PIDCommand command) throws IOException {
+        commandExecutor.execute(fastMode ? toFastCommand(command) : command);
+        requestSentAt = System.nanoTime();
+    }
 
-        if (cmd != null) {
-            if (!checkIsBlacklisted(cmd.getPid())) {
-                /**
-                 * not blacklisted: add it back as the last element of the ring
-                 */
-                commandRingBuffer.offer(cmd);
-                return cmd;
+    private void recordRoundTrip() {
+        if (requestSentAt != 0) {
+            getRoundTripStatistics(fastMode).record(System.nanoTime() - requestSentAt);
+            requestSentAt = 0;
+        }
+    }
+
+    /**
+     * @return the command which makes the adapter return as soon as the first ECU has answered
+     */
+    private PIDCommand toFastCommand(PIDCommand command) {
+        PIDCommand fastCommand = fastCommands.get(command.getPid());
+        if (fastCommand == null) {
+            fastCommand = new PIDCommand(command.getMode(), command.getPid(), 1);
+            fastCommands.put(command.getPid(), fastCommand);
+        }
+        return fastCommand;
+    }
+
+    private void enableFastMode() throws IOException, StreamFinishedException {
+        List<BasicCommand> commands = provideFastModeCommands();
+        if (commands.isEmpty()) {
+            LOGGER.info("Fast mode not supported by " + getClass().getSimpleName());
+            return;
+        }
+
+        fastMode = configure(commands);
+        if (!fastMode && !configure(provideNormalModeCommands())) {
+            LOGGER.warn("Could not restore the normal mode of the adapter.");
+        }
+
+        updatePipelining();
+        LOGGER.info(String.format("Fast mode: %s; pipelining: %s", fastMode, pipelining));
+    }
+
+    /**
+     * Pipelining needs the fast mode and is not used together with multiple PIDs per request.
+     */
+    private void updatePipelining() {
+        pipelining = fastMode && supportsPipelining() && !multiPIDRequests;
+    }
+
+    private void disableFastMode() throws IOException, StreamFinishedException {
+        LOGGER.warn(String.format("Falling back to the normal mode. Round trips in fast mode: %s",
+                fastRoundTrips));
+        fastMode = false;
+        pipelining = false;
+        fastModeFallback = false;
+
+        if (!configure(provideNormalModeCommands())) {
+            LOGGER.warn("Could not restore the normal mode of the adapter.");
+        }
+    }
+
+    private void onFastModeError() {
+        if (fastMode && ++fastModeErrors >= MAX_FAST_MODE_ERRORS) {
+            // switched back as soon as no request is pending anymore
+            fastModeFallback = true;
+        }
+    }
+
+    /**
+     * Sends the given configuration commands.
+     *
+     * @return true if all commands have been acknowledged with "OK" in time
+     */
+    private boolean configure(List<BasicCommand> commands) throws IOException, StreamFinishedException {
+        for (BasicCommand command : commands) {
+            commandExecutor.execute(command);
+            if (command.awaitsResults()) {
+                String response;
+                try {
+                    response = new String(commandExecutor.retrieveLatestResponse(INIT_RESPONSE_TIMEOUT));
+                } catch (ResponseTimeoutException e) {
+                    LOGGER.warn(String.format("Command %s not answered in time", command));
+                    commandExecutor.discardResponse(INIT_RESPONSE_TIMEOUT);
+                    return false;
+                }
+                if (!response.contains("OK")) {
+                    LOGGER.warn(String.format("Command %s not acknowledged: %s", command, response));
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the next scheduled PIDs that can be requested together.
+     *
+     * @return true if there are at least two PIDs in the batch.
+     */
+    private boolean pollNextBatch() {
+        batch.clear();
+        long now = SystemClock.elapsedRealtime();
+        PIDCommand first = null;
+        while (batch.size() < MultiPIDCommand.MAX_PIDS) {
+            PIDCommand next = scheduler.peek();
+            if (next == null || !isBatchable(next) || batch.contains(next.getPid())) {
+                break;
+            }
+            scheduler.poll(now);
+            batch.add(next.getPid());
+            if (first == null) {
+                first = next;
+            }
+        }
+
+        if (batch.size() == 1) {
+            // not worth a batch, request it on its own
+            pendingCommand = first;
+        }
+        return batch.size() > 1;
+    }
+
+    private boolean isBatchable(PIDCommand command) {
+        return "01".equals(command.getMode())
+                && PIDUtil.getDataLength(command.getPid()) > 0;
+    }
+
+    /**
+     * Requests the PIDs of the current batch with a single message and emits the responses.
+     * PIDs missing in the response count as failures. If the adapter or the ECU does not
+     * support such requests, the adapter falls back to one PID per request.
+     */
+    private void requestBatch(ObservableEmitter<DataResponse> subscriber) {
+        byte[] bytes = null;
+        int length = 0;
+        try {
+            commandExecutor.execute(new MultiPIDCommand(batch));
+            requestSentAt = System.nanoTime();
+            length = commandExecutor.readResponse();
+            bytes = commandExecutor.getResponseBuffer();
+            recordRoundTrip();
+
+            batchResponses.clear();
+            parser.parseMultiple(bytes, responseOffset(bytes, length), length, batchResponses);
+
+            for (int i = 0; i < batchResponses.size(); i++) {
+                DataResponse response = batchResponses.get(i);
+                batch.remove(response.getPid());
+                emit(subscriber, response);
+            }
+            batchResponses.clear();
+
+            if (!multiPIDConfirmed && batch.size() > 0) {
+                // e.g. ECUs which only answer the first PID of the request
+                onMultiPIDFailure("Incomplete response to multiple PIDs: " + batch);
+                return;
+            }
+            multiPIDConfirmed = true;
+
+            for (PID missing : batch) {
+                increaseFailureCount(missing);
+            }
+        } catch (IOException e) {
+            if (!subscriber.isDisposed())
+                subscriber.onError(e);
+        } catch (AdapterFailedException e) {
+            LOGGER.warn(e.getMessage(), e);
+            subscriber.onError(e);
+        } catch (StreamFinishedException e) {
+            LOGGER.info("Stream finished: " + e.getMessage());
+            subscriber.onComplete();
+        } catch (AdapterSearchingException e) {
+            LOGGER.warn("Adapter still searching: " + e.getMessage());
+        } catch (NoDataReceivedException | InvalidCommandResponseException
+                | UnmatchedResponseException e) {
+            onFastModeError();
+            if (multiPIDConfirmed) {
+                LOGGER.warn("Invalid response to multiple PIDs: " + e.getMessage());
+                for (PID pid : batch) {
+                    increaseFailureCount(pid);
+                }
             } else {
-                /**
-                 * blacklisted: do not re-add it and return the next candidate
-                 */
-                return pollNextCommand();
+                onMultiPIDFailure(String.format("Multiple PIDs rejected: %s; response was: %s",
+                        e.getMessage(), bytes != null ? new String(bytes, 0, length) : null));
             }
         }
+    }
+
+    private void onMultiPIDFailure(String message) {
+        LOGGER.warn(message);
+        if (++multiPIDFailures >= MAX_MULTI_PID_FAILURES) {
+            LOGGER.info("Falling back to one PID per request.");
+            multiPIDRequests = false;
+            updatePipelining();
+        }
+    }
+
+    /**
+     * The ELM327 reports the protocol number, prefixed with "A" if it was determined
+     * automatically.
+     *
+     * @return the protocol number or {@link OBDSessionProfile#PROTOCOL_AUTOMATIC} if unknown
+     */
+    private int describeProtocol() throws IOException, StreamFinishedException {
+        commandExecutor.execute(ConfigurationCommand.instance(
+                ConfigurationCommand.Instance.DESCRIBE_PROTOCOL_NUMBER));
+        byte[] response;
+        try {
+            response = commandExecutor.retrieveLatestResponse(INIT_RESPONSE_TIMEOUT);
+        } catch (ResponseTimeoutException e) {
+            LOGGER.warn("Protocol number not reported in time");
+            commandExecutor.discardResponse(INIT_RESPONSE_TIMEOUT);
+            return OBDSessionProfile.PROTOCOL_AUTOMATIC;
+        }
+        LOGGER.info("Protocol number: " + new String(response));
+
+        for (int i = response.length - 1; i >= 0; i--) {
+            int protocol = Character.digit(response[i], 16);
+            if (protocol >= 0) {
+                return protocol;
+            }
+        }
+        return OBDSessionProfile.PROTOCOL_AUTOMATIC;
+    }
+
+    /**
+     * Multiple PIDs per mode 01 request are only supported on CAN.
+     */
+    private boolean isCANProtocol(int protocol) {
+        // 6 to 9: ISO 15765-4 CAN with 11 or 29 bit identifiers at 250 or 500 kbaud
+        return protocol >= 6 && protocol <= 9;
+    }
+
+    /**
+     * @return true if the response to the PIDSupported command equals the PIDs of the profile
+     */
+    private boolean matchesSessionProfile(PIDSupported command, Set<PID> groupPIDs,
+                                          Set<PID> cachedPIDs) {
+        for (PID cached : cachedPIDs) {
+            if (command.isInGroup(cached) && !groupPIDs.contains(cached)) {
+                return false;
+            }
+        }
+        return cachedPIDs.containsAll(groupPIDs);
+    }
+
+    protected PIDCommand pollNextCommand() throws AdapterFailedException {
+        PIDCommand cmd = scheduler.poll(SystemClock.elapsedRealtime());
+
+        if (cmd == null) {
+            throw new AdapterFailedException("No available commands left in the scheduler");
+        }
 
         return cmd;
     }
@@ -270,6 +639,17 @@ public abstract class SyncAdapter implements OBDAdapter {
             AtomicInteger ai = new AtomicInteger(1);
             this.failureMap.put(command, ai);
         }
+
+        if (scheduler != null) {
+            if (checkIsBlacklisted(command)) {
+                /**
+                 * blacklisted: do not request it anymore
+                 */
+                scheduler.remove(command);
+            } else {
+                scheduler.onFailure(command, SystemClock.elapsedRealtime());
+            }
+        }
     }
 
     protected List<PIDCommand> defaultCycleCommands() {
@@ -296,13 +676,10 @@ public abstract class SyncAdapter implements OBDAdapter {
     }
 
     private void preparePendingCommands() {
-        commandRingBuffer = new ArrayDeque<>();
-
-        for (PIDCommand cmd : providePendingCommands()) {
-            if (cmd != null) {
-                commandRingBuffer.offer(cmd);
-            }
-        }
+        scheduler = createPIDScheduler();
+        scheduler.schedule(providePendingCommands(), SystemClock.elapsedRealtime());
+        pendingCommand = null;
+        lastRateLog = SystemClock.elapsedRealtime();
     }
 
     private boolean checkIsBlacklisted(PID pid) {
@@ -325,7 +702,112 @@ public abstract class SyncAdapter implements OBDAdapter {
      */
     protected abstract boolean analyzeMetadataResponse(byte[] response, BasicCommand sentCommand) throws AdapterFailedException;
 
-    protected abstract byte[] preProcess(byte[] bytes) throws AdapterFailedException;
+    /**
+     * Opt-in: negotiates a faster timing with the adapter after the initialization, if the adapter
+     * supports it. Falls back to the normal mode on repeated errors.
+     *
+     * @param fastModeEnabled true if the fast mode shall be used
+     */
+    public void setFastModeEnabled(boolean fastModeEnabled) {
+        this.fastModeEnabled = fastModeEnabled;
+    }
+
+    /**
+     * Uses the results of a previous connection with the same device, e.g. its protocol and
+     * supported PIDs, instead of discovering them.
+     *
+     * @param sessionProfile the profile of the previous connection or null
+     */
+    public void setSessionProfile(OBDSessionProfile sessionProfile) {
+        this.sessionProfile = sessionProfile;
+    }
+
+    protected OBDSessionProfile getSessionProfile() {
+        return sessionProfile;
+    }
+
+    /**
+     * @return the profile of the current connection, available after the initialization
+     */
+    public OBDSessionProfile createSessionProfile() {
+        return new OBDSessionProfile(getClass().getName(), protocol, supportedPIDs);
+    }
+
+    /**
+     * @param fastMode true for the statistics of the fast mode
+     * @return the round trip times of the requests in the given mode
+     */
+    public RoundTripStatistics getRoundTripStatistics(boolean fastMode) {
+        return fastMode ? fastRoundTrips : normalRoundTrips;
+    }
+
+    /**
+     * @return the configuration commands enabling the fast mode or an empty list if the adapter
+     * does not support it
+     */
+    protected List<BasicCommand> provideFastModeCommands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the configuration commands restoring the normal mode
+     */
+    protected List<BasicCommand> provideNormalModeCommands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return true if the adapter accepts the next request immediately after the prompt, while
+     * the previous response is still being parsed. This is only used in the fast mode and if
+     * several PIDs are not requested at once.
+     */
+    protected boolean supportsPipelining() {
+        return false;
+    }
+
+    /**
+     * @param command the initialization command
+     * @return the time (in ms) in which the adapter has to respond to the command
+     */
+    protected long getResponseTimeout(BasicCommand command) {
+        if (command instanceof ConfigurationCommand && ((ConfigurationCommand) command).getInstance()
+                == ConfigurationCommand.Instance.RESET) {
+            return RESET_RESPONSE_TIMEOUT;
+        }
+        return INIT_RESPONSE_TIMEOUT;
+    }
+
+    /**
+     * @return the scheduler deciding which PID is requested next
+     */
+    protected PIDScheduler createPIDScheduler() {
+        return new DeadlinePIDScheduler();
+    }
+
+    /**
+     * @return true if the adapter accepts mode 01 requests of several PIDs. These are used if
+     * the vehicle is connected via CAN.
+     */
+    protected boolean supportsMultiplePIDRequests() {
+        return false;
+    }
+
+    /**
+     * @return true if the adapter accepts the ELM327 protocol selection and reports the protocol
+     * number. This is stored in the session profile.
+     */
+    protected boolean supportsProtocolSelection() {
+        return false;
+    }
+
+    /**
+     * @param bytes  the response buffer, which is reused for the next response
+     * @param length the length of the response
+     * @return the index at which the response data starts, e.g. after a header
+     */
+    protected int responseOffset(byte[] bytes, int length) throws AdapterFailedException {
+        return 0;
+    }
 
     @Override
     public String getStateMessage() {
@@ -109,17 +109,10 @@ public class PIDSupported implements BasicCommand {
             }
 
             Set<PID> list = new HashSet<>();
-            /**
-             * conver to hex string so the PIDUtil can parse it
-             */
             for (Integer pidInt : pids) {
                 LOG.info("Supported RAW PIDs: " + pidInt);
 
-                String hex = Integer.toHexString(pidInt);
-                if (hex.length() == 1) {
-                    hex = "0".concat(hex);
-                }
-                PID tmp = PIDUtil.fromString(hex);
+                PID tmp = PIDUtil.fromCode(pidInt);
                 if (tmp != null) {
                     list.add(tmp);
                 }
@@ -155,4 +148,14 @@ public class PIDSupported implements BasicCommand {
     public String getGroup() {
         return group;
     }
+
+    /**
+     * @param pid the PID
+     * @return true if the support of the PID is reported by this command
+     */
+    public boolean isInGroup(PID pid) {
+        int code = Integer.parseInt(pid.getHexadecimalRepresentation(), 16);
+        int groupOffset = Integer.parseInt(this.group, 16);
+        return code > groupOffset && code <= groupOffset + 32;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.obd.commands.request;
+
+import org.envirocar.obd.commands.PID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mode 01 request of up to {@link #MAX_PIDS} PIDs in one message, e.g. "01 0C 0D 10". This is
+ * supported by ECUs on CAN, which answer with the values of all supported PIDs in one
+ * (possibly multi-frame) response.
+ */
+public class MultiPIDCommand implements BasicCommand {
+
+    public static final int MAX_PIDS = 6;
+
+    private final List<PID> pids;
+    private final byte[] bytes;
+
+    /**
+     * @param pids the PIDs to be requested
+     */
+    public MultiPIDCommand(List<PID> pids) {
+        if (pids.isEmpty() || pids.size() > MAX_PIDS) {
+            throw new IllegalStateException("number of PIDs out of allowed bounds");
+        }
+
+        this.pids = Collections.unmodifiableList(new ArrayList<>(pids));
+
+        StringBuilder sb = new StringBuilder("01");
+        for (PID pid : pids) {
+            sb.append(' ').append(pid.getHexadecimalRepresentation());
+        }
+        this.bytes = sb.toString().getBytes();
+    }
+
+    public List<PID> getPids() {
+        return pids;
+    }
+
+    @Override
+    public byte[] getOutputBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean awaitsResults() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes);
+    }
+}
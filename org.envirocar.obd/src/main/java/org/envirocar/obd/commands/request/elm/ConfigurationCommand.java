@@ -69,11 +69,30 @@ public class ConfigurationCommand implements BasicCommand {
                 return new ConfigurationCommand("AT SP 0", i, true);
             case SPACES_OFF:
                 return new ConfigurationCommand("AT S0", i, true);
+            case DESCRIBE_PROTOCOL_NUMBER:
+                return new ConfigurationCommand("AT DPN", i, true);
+            case ADAPTIVE_TIMING_AUTO:
+                return new ConfigurationCommand("AT AT1", i, true);
+            case ADAPTIVE_TIMING_AGGRESSIVE:
+                return new ConfigurationCommand("AT AT2", i, true);
         }
 
         return null;
     }
 
+    /**
+     * @param protocol the protocol number of the ELM327, e.g. 6 for CAN 11 bit 500 kbaud
+     * @return the command trying the given protocol first and searching for another one if the
+     * vehicle does not respond
+     */
+    public static ConfigurationCommand selectProtocol(int protocol) {
+        if (protocol <= 0) {
+            return instance(Instance.SELECT_AUTO_PROTOCOL);
+        }
+        return new ConfigurationCommand("AT SP A" + Integer.toHexString(protocol).toUpperCase(),
+                Instance.SELECT_AUTO_PROTOCOL, true);
+    }
+
     public enum Instance {
         DEFAULTS,
         ECHO_OFF,
@@ -84,7 +103,10 @@ public class ConfigurationCommand implements BasicCommand {
         RESET,
         SELECT_AUTO_PROTOCOL,
         TIMEOUT,
-        SPACES_OFF
+        SPACES_OFF,
+        DESCRIBE_PROTOCOL_NUMBER,
+        ADAPTIVE_TIMING_AUTO,
+        ADAPTIVE_TIMING_AGGRESSIVE
     }
 
     @NonNull
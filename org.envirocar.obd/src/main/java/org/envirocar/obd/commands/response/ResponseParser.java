@@ -39,14 +39,41 @@ import org.envirocar.obd.exception.InvalidCommandResponseException;
 import org.envirocar.obd.exception.NoDataReceivedException;
 import org.envirocar.obd.exception.UnmatchedResponseException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the hexadecimal responses of mode 01 requests, e.g. "410D3C" for a speed of 60 km/h.
+ * The hex pairs are decoded in place from the received bytes, so a successful parse does not
+ * allocate anything but the resulting {@link DataResponse}. An instance reuses its decoding buffer
+ * and must only be used by one thread.
+ */
 public class ResponseParser {
 
     private static final Logger LOGGER = Logger.getLogger(ResponseParser.class);
 
-    private static final CharSequence SEARCHING = "SEARCHING";
-    private static final CharSequence STOPPED = "STOPPED";
-    private static final CharSequence NO_DATA = "NODATA";
+    private static final byte[] SEARCHING = "SEARCHING".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STOPPED = "STOPPED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_DATA = "NODATA".getBytes(StandardCharsets.US_ASCII);
     public static final String STATUS_OK = "41";
+    private static final int STATUS_OK_CODE = 0x41;
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[Character.forDigit(i, 16)] = (byte) i;
+            NIBBLES[Character.toUpperCase(Character.forDigit(i, 16))] = (byte) i;
+        }
+    }
+
+    private static final byte FRAME_SEPARATOR = ':';
+
+    private int[] buffer = new int[8];
+    private int count;
+    private int base;
+    private int limit;
 
     public ResponseParser() {
 
@@ -54,95 +81,291 @@ public class ResponseParser {
 
     public DataResponse parse(byte[] data) throws AdapterSearchingException, NoDataReceivedException,
             InvalidCommandResponseException, UnmatchedResponseException {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parses the response in a range of the given bytes.
+     *
+     * @param data   the received bytes.
+     * @param offset the index of the first byte of the response.
+     * @param end    the index after the last byte of the response.
+     * @return the parsed response.
+     */
+    public DataResponse parse(byte[] data, int offset, int end) throws AdapterSearchingException,
+            NoDataReceivedException, InvalidCommandResponseException, UnmatchedResponseException {
+
+        //cartrend: 7E803410D00AAAAAAAA
+        //= 410D00AAAAAAAA
+
+        if (isSearching(data, offset, end)) {
+            throw new AdapterSearchingException();
+        } else if (isNoDataCommand(data, offset, end)) {
+            throw new NoDataReceivedException("NODATA was received");
+        }
 
         /**
          * we received a char array as hexadecimal -->
          * two chars represent one byte
          */
-        int index = 0;
-        int length = 2;
+        count = (end - offset) / 2;
+        ensureCapacity(count);
 
-        String dataString = new String(data);
+        PID pid = null;
+        if (count > 1) {
+            buffer[0] = hexByte(data, offset);
+            boolean error = buffer[0] != STATUS_OK_CODE;
 
-        //cartrend: 7E803410D00AAAAAAAA
-        //= 410D00AAAAAAAA
-//        if (dataString.startsWith("7E803")) {
-//            dataString = dataString.substring(5, dataString.length());
-//        }
+            // this is the ID byte
+            buffer[1] = hexByte(data, offset + 2);
+            pid = PIDUtil.fromCode(buffer[1]);
+            if (error || pid == null) {
+                throw new InvalidCommandResponseException(pid == null ?
+                        new String(data, offset + 2, 2) : pid.toString());
+            }
+
+            for (int i = 2; i < count; i++) {
+                buffer[i] = hexByte(data, offset + i * 2);
+                if (buffer[i] < 0) {
+                    throw new InvalidCommandResponseException(pid.toString());
+                }
+            }
+        }
 
-        if (isSearching(dataString)) {
+        base = 0;
+        limit = count;
+        try {
+            return createDataResponse(pid, data, offset, end);
+        } catch (Exception e){
+            throw new UnmatchedResponseException(e);
+        }
+    }
+
+    /**
+     * Parses the response to a {@link org.envirocar.obd.commands.request.MultiPIDCommand}, which
+     * contains the values of several PIDs after a single status byte, e.g. "410C1AF80D3C" for
+     * the RPM and the speed. Responses of more than 7 bytes are split into ISO-TP frames by the
+     * adapter, e.g. "00A" (the number of bytes), "0:410C1AF80D3C", "1:10..." and so on; the
+     * frames are joined again. PIDs that the ECU does not support are missing in the response.
+     *
+     * @param data      the received bytes.
+     * @param offset    the index of the first byte of the response.
+     * @param end       the index after the last byte of the response.
+     * @param responses the list the parsed responses are added to.
+     * @return the number of parsed responses.
+     */
+    public int parseMultiple(byte[] data, int offset, int end, List<DataResponse> responses)
+            throws AdapterSearchingException, NoDataReceivedException,
+            InvalidCommandResponseException, UnmatchedResponseException {
+        if (isSearching(data, offset, end)) {
             throw new AdapterSearchingException();
-        } else if (isNoDataCommand(dataString)) {
+        } else if (isNoDataCommand(data, offset, end)) {
             throw new NoDataReceivedException("NODATA was received");
         }
 
-        int[] buffer = new int[data.length / 2];
-        boolean error = false;
+        if (indexOf(data, offset, end, FRAME_SEPARATOR) >= 0) {
+            decodeFrames(data, offset, end);
+        } else {
+            decodeHex(data, offset, end);
+        }
 
-        PID pid = null;
-        while (index + length <= data.length) {
-            String tmp = new String(data, index, length);
+        if (count < 1 || buffer[0] != STATUS_OK_CODE) {
+            throw new InvalidCommandResponseException(count < 1 ? "" : Integer.toHexString(buffer[0]));
+        }
 
-            // this is the status
-            if (index == 0) {
-                if (!tmp.equals(STATUS_OK)) {
-                    error = true;
-                }
+        int added = 0;
+        int index = 1;
+        while (index < count) {
+            PID pid = PIDUtil.fromCode(buffer[index]);
+            if (pid == null && buffer[index] == STATUS_OK_CODE && added > 0) {
+                // the response of a second ECU, its values are already known
+                break;
             }
-            // this is the ID byte
-            else if (index == 2) {
-                pid = PIDUtil.fromString(tmp);
-                if (error || pid == null) {
-                    throw new InvalidCommandResponseException(pid == null ? tmp : pid.toString());
+
+            int length = pid != null ? PIDUtil.getDataLength(pid) : -1;
+            if (length < 0 || index + 1 + length > count) {
+                throw new UnmatchedResponseException(new IllegalStateException(
+                        "Unexpected PID " + Integer.toHexString(buffer[index]) + " at byte " + index));
+            }
+
+            // the value of the PID is read as if it was a response of its own
+            base = index - 1;
+            limit = index + 1 + length;
+            try {
+                responses.add(createDataResponse(pid, data, offset, end));
+            } catch (Exception e) {
+                throw new UnmatchedResponseException(e);
+            }
+            added++;
+            index = limit;
+        }
+        return added;
+    }
+
+    private void decodeHex(byte[] data, int offset, int end) throws InvalidCommandResponseException {
+        count = 0;
+        ensureCapacity((end - offset) / 2);
+        int high = -1;
+        for (int i = offset; i < end; i++) {
+            int nibble = nibble(data[i]);
+            if (nibble < 0) {
+                if (isWhitespace(data[i])) {
+                    continue;
                 }
+                throw new InvalidCommandResponseException(new String(data, offset, end - offset));
+            }
+            if (high < 0) {
+                high = nibble;
             } else {
-                if (error || pid == null){
-                    throw new InvalidCommandResponseException(pid == null ? tmp : pid.toString());
+                buffer[count++] = (high << 4) | nibble;
+                high = -1;
+            }
+        }
+    }
+
+    private void decodeFrames(byte[] data, int offset, int end)
+            throws InvalidCommandResponseException {
+        count = 0;
+        ensureCapacity((end - offset) / 2);
+
+        // the header consists of the number of bytes followed by the index of the first frame
+        int separator = indexOf(data, offset, end, FRAME_SEPARATOR);
+        int length = 0;
+        for (int i = offset; i < separator - 1; i++) {
+            if (nibble(data[i]) >= 0) {
+                length = (length << 4) | nibble(data[i]);
+            }
+        }
+
+        int high = -1;
+        for (int i = separator + 1; i < end && count < length; i++) {
+            if (data[i] == FRAME_SEPARATOR) {
+                // the pending nibble has been the index of the next frame
+                if (high < 0) {
+                    throw new InvalidCommandResponseException(new String(data, offset, end - offset));
                 }
+                high = -1;
+                continue;
+            }
 
-                /*
-                 * this is a hex number
-                 */
-                buffer[index / 2] = Integer.parseInt(tmp, 16);
-                if (buffer[index / 2] < 0) {
-                    throw new InvalidCommandResponseException(pid.toString());
+            int nibble = nibble(data[i]);
+            if (nibble < 0) {
+                if (isWhitespace(data[i])) {
+                    continue;
                 }
+                throw new InvalidCommandResponseException(new String(data, offset, end - offset));
+            }
+            if (high < 0) {
+                high = nibble;
+            } else {
+                buffer[count++] = (high << 4) | nibble;
+                high = -1;
             }
+        }
+    }
 
-            index += length;
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new int[capacity];
         }
+    }
 
-        try {
-            return createDataResponse(pid, buffer, data);
-        } catch (Exception e){
-            throw new UnmatchedResponseException(e);
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Finds a sequence of bytes, e.g. the status "41" in the response of an adapter that prefixes
+     * the responses with the header.
+     *
+     * @param data    the received bytes.
+     * @param pattern the bytes to find.
+     * @return the index of the first occurrence or -1.
+     */
+    public static int indexOf(byte[] data, byte[] pattern) {
+        return indexOf(data, 0, data.length, pattern);
+    }
+
+    private static int indexOf(byte[] data, int offset, int end, byte b) {
+        for (int i = offset; i < end; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param data    the received bytes.
+     * @param offset  the index to start at.
+     * @param end     the end (exclusive) of the received bytes.
+     * @param pattern the bytes to find.
+     * @return the index of the first occurrence within the range or -1.
+     */
+    public static int indexOf(byte[] data, int offset, int end, byte[] pattern) {
+        outer:
+        for (int i = offset; i <= end - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the value of the hex pair at the given index or -1 if it is not a hex pair.
+     */
+    private static int hexByte(byte[] data, int index) {
+        int high = nibble(data[index]);
+        int low = nibble(data[index + 1]);
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        return (high << 4) | low;
+    }
+
+    private static int nibble(byte b) {
+        return b >= 0 ? NIBBLES[b] : -1;
+    }
+
+    /**
+     * @return the decoded byte at the given index of the current response.
+     * @throws ArrayIndexOutOfBoundsException if the response is too short.
+     */
+    private int value(int index) {
+        if (base + index >= limit) {
+            throw new ArrayIndexOutOfBoundsException(index);
         }
+        return buffer[base + index];
     }
 
-    private DataResponse createDataResponse(PID pid, int[] processedData, byte[] rawData) {
+    private DataResponse createDataResponse(PID pid, byte[] data, int offset, int end) {
         switch (pid) {
 //            case FUEL_SYSTEM_STATUS:
 //                return FuelSystemStatusResponse.fromRawData(rawData);
             case CALCULATED_ENGINE_LOAD:
-                return new EngineLoadResponse((processedData[2] * 100.0f) / 255.0f);
+                return new EngineLoadResponse((value(2) * 100.0f) / 255.0f);
             case FUEL_PRESSURE:
-                return new FuelPressureResponse(processedData[2] * 3);
+                return new FuelPressureResponse(value(2) * 3);
             case INTAKE_MAP:
-                return new IntakeManifoldAbsolutePressureResponse(processedData[2]);
+                return new IntakeManifoldAbsolutePressureResponse(value(2));
             case RPM:
-                return new EngineRPMResponse((processedData[2] * 256 + processedData[3]) / 4);
+                return new EngineRPMResponse((value(2) * 256 + value(3)) / 4);
             case SPEED:
-                return new SpeedResponse(processedData[2]);
+                return new SpeedResponse(value(2));
             case INTAKE_AIR_TEMP:
-                return new IntakeAirTemperatureResponse(processedData[2] - 40);
+                return new IntakeAirTemperatureResponse(value(2) - 40);
             case MAF:
-                return new MAFResponse((processedData[2] * 256 + processedData[3]) / 100.0f);
+                return new MAFResponse((value(2) * 256 + value(3)) / 100.0f);
             case TPS:
-                return new ThrottlePositionResponse((processedData[2] * 100) / 255);
+                return new ThrottlePositionResponse((value(2) * 100) / 255);
             case SHORT_TERM_FUEL_TRIM_BANK_1:
-                return new ShortTermFuelTrimResponse((processedData[2] - 128) * (100d / 128d), 1);
+                return new ShortTermFuelTrimResponse((value(2) - 128) * (100d / 128d), 1);
             case LONG_TERM_FUEL_TRIM_BANK_1:
-                return new LongTermFuelTrimResponse((processedData[2] - 128) * (100d / 128d), 1);
+                return new LongTermFuelTrimResponse((value(2) - 128) * (100d / 128d), 1);
             case O2_LAMBDA_PROBE_1_VOLTAGE:
             case O2_LAMBDA_PROBE_2_VOLTAGE:
             case O2_LAMBDA_PROBE_3_VOLTAGE:
@@ -152,8 +375,8 @@ public class ResponseParser {
             case O2_LAMBDA_PROBE_7_VOLTAGE:
             case O2_LAMBDA_PROBE_8_VOLTAGE:
                 LambdaProbeVoltageResponse lambda = new LambdaProbeVoltageResponse(
-                        ((processedData[4] * 256d) + processedData[5]) / 8192d,
-                        ((processedData[2] * 256d) + processedData[3]) / 32768d);
+                        ((value(4) * 256d) + value(5)) / 8192d,
+                        ((value(2) * 256d) + value(3)) / 32768d);
                 return lambda;
             case O2_LAMBDA_PROBE_1_CURRENT:
             case O2_LAMBDA_PROBE_2_CURRENT:
@@ -164,19 +387,26 @@ public class ResponseParser {
             case O2_LAMBDA_PROBE_7_CURRENT:
             case O2_LAMBDA_PROBE_8_CURRENT:
                 return new LambdaProbeCurrentResponse(
-                        ((processedData[4] * 256d) + processedData[5]) / 256d - 128,
-                        ((processedData[2] * 256d) + processedData[3]) / 32768d);
+                        ((value(4) * 256d) + value(5)) / 256d - 128,
+                        ((value(2) * 256d) + value(3)) / 32768d);
         }
 
+        // the generic response keeps the data, so it gets copies of the shared buffers.
+        byte[] rawData = offset == 0 && end == data.length ?
+                data : Arrays.copyOfRange(data, offset, end);
+        int[] processedData = Arrays.copyOfRange(buffer, base, limit);
+        processedData[0] = STATUS_OK_CODE;
+        processedData[1] = buffer[base + 1];
         return new GenericDataResponse(pid, processedData, rawData);
     }
 
-    private boolean isSearching(String dataString) {
-        return dataString.contains(SEARCHING) || dataString.contains(STOPPED);
+    private boolean isSearching(byte[] data, int offset, int end) {
+        return indexOf(data, offset, end, SEARCHING) >= 0
+                || indexOf(data, offset, end, STOPPED) >= 0;
     }
 
-    private boolean isNoDataCommand(String dataString) {
-        return dataString == null || dataString.contains(NO_DATA);
+    private boolean isNoDataCommand(byte[] data, int offset, int end) {
+        return indexOf(data, offset, end, NO_DATA) >= 0;
     }
 
 
@@ -19,24 +19,81 @@
 package org.envirocar.obd.events;
 
 import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.util.ObjectPool;
 
+/**
+ * Value of a property at a point in time. Events of the OBD and GPS sources are taken from a pool
+ * with {@link #obtain(Measurement.PropertyKey, double, long)}. The subscriber that buffers an
+ * event, i.e. the measurement provider, owns it and returns it with {@link #recycle()} once it
+ * has been interpolated. Other subscribers must not keep a reference to an event.
+ */
 public class PropertyKeyEvent implements Timestamped {
+    private static final int MAX_POOL_SIZE = 256;
+    private static final ObjectPool<PropertyKeyEvent> POOL =
+            new ObjectPool<>(MAX_POOL_SIZE, PropertyKeyEvent::new);
 
-    private final Measurement.PropertyKey propertyKey;
-    private final Number value;
-    private final long timestamp;
+    private Measurement.PropertyKey propertyKey;
+    private Number boxedValue;
+    private double value;
+    private long timestamp;
+
+    private PropertyKeyEvent() {
+    }
 
     public PropertyKeyEvent(Measurement.PropertyKey propertyKey, Number value, long timestamp) {
         this.propertyKey = propertyKey;
-        this.value = value;
+        this.boxedValue = value;
+        this.value = value != null ? value.doubleValue() : Double.NaN;
         this.timestamp = timestamp;
     }
 
+    /**
+     * @return an event from the pool.
+     */
+    public static PropertyKeyEvent obtain(Measurement.PropertyKey propertyKey, double value,
+                                          long timestamp) {
+        PropertyKeyEvent event = POOL.acquire();
+        event.propertyKey = propertyKey;
+        event.boxedValue = null;
+        event.value = value;
+        event.timestamp = timestamp;
+        return event;
+    }
+
+    /**
+     * @return the pool of {@link #obtain(Measurement.PropertyKey, double, long)}.
+     */
+    public static ObjectPool<PropertyKeyEvent> getPool() {
+        return POOL;
+    }
+
+    /**
+     * Returns this event to the pool. It must not be used afterwards.
+     */
+    public void recycle() {
+        propertyKey = null;
+        boxedValue = null;
+        POOL.release(this);
+    }
+
     public Measurement.PropertyKey getPropertyKey() {
         return propertyKey;
     }
 
+    /**
+     * @return the value, boxed on every call for pooled events.
+     */
     public Number getValue() {
+        if (boxedValue != null || Double.isNaN(value)) {
+            return boxedValue;
+        }
+        return value;
+    }
+
+    /**
+     * @return the value without boxing, {@link Double#NaN} if there is none.
+     */
+    public double getDoubleValue() {
         return value;
     }
 
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that readers do not wait for a transaction of the writer with the database in WAL mode.
+ */
+public class DatabaseConcurrencyTest extends InstrumentationTestCase {
+    private static final String TAG = DatabaseConcurrencyTest.class.getSimpleName();
+    private static final String DATABASE_NAME = "envirocar-concurrency-test";
+
+    private BriteDatabase briteDatabase;
+    private DatabaseSchedulers schedulers;
+    private EnviroCarDBImpl enviroCarDB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(DATABASE_NAME)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        helper.setWriteAheadLoggingEnabled(true);
+
+        schedulers = new DatabaseSchedulers();
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, schedulers.read());
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    @Test
+    public void testReadDuringWriteTransaction() throws Exception {
+        Track track = new TrackImpl();
+        track.setLength(0.0);
+        enviroCarDB.insertTrack(track);
+
+        CountDownLatch transactionOpen = new CountDownLatch(1);
+        CountDownLatch readDone = new CountDownLatch(1);
+
+        // hold a write transaction open on the writer thread until the read has finished.
+        schedulers.write().scheduleDirect(() -> {
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                Measurement measurement = new MeasurementImpl(51.0, 7.0);
+                measurement.setTrackId(track.getTrackID());
+                enviroCarDB.measurementQueries.insert(measurement);
+                transactionOpen.countDown();
+                readDone.await(10, TimeUnit.SECONDS);
+                transaction.markSuccessful();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                transaction.end();
+            }
+        });
+
+        Assert.assertTrue(transactionOpen.await(5, TimeUnit.SECONDS));
+        List<Track> tracks = enviroCarDB.getTracks(
+                TrackFilter.all(), TrackSort.START_TIME_DESC, 0, 10)
+                .subscribeOn(schedulers.read())
+                .timeout(2, TimeUnit.SECONDS)
+                .blockingFirst();
+        long measurements = enviroCarDB.measurementQueries.countOfTrack(track.getTrackID());
+        readDone.countDown();
+
+        // the reader sees the last committed state, i.e. the track without the measurement.
+        Assert.assertEquals(1, tracks.size());
+        Assert.assertEquals(0, measurements);
+        Log.i(TAG, enviroCarDB.getQueryMetrics().toString());
+    }
+}
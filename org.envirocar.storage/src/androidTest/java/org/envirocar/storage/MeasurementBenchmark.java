@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the map based {@link MeasurementImpl} with the array based
+ * {@link PrimitiveMeasurement} for populating a track of measurements, as done while recording
+ * and loading tracks, and for reading a property of every measurement, as done by the charts.
+ * Timings and allocations are written to logcat.
+ */
+public class MeasurementBenchmark extends InstrumentationTestCase {
+    private static final String TAG = MeasurementBenchmark.class.getSimpleName();
+
+    private static final int MEASUREMENTS = 20000;
+    private static final int ITERATIONS = 5;
+    private static final Measurement.PropertyKey[] KEYS = {
+            Measurement.PropertyKey.SPEED, Measurement.PropertyKey.RPM,
+            Measurement.PropertyKey.MAF, Measurement.PropertyKey.INTAKE_TEMPERATURE,
+            Measurement.PropertyKey.INTAKE_PRESSURE, Measurement.PropertyKey.ENGINE_LOAD,
+            Measurement.PropertyKey.THROTTLE_POSITON, Measurement.PropertyKey.GPS_ACCURACY,
+            Measurement.PropertyKey.GPS_SPEED, Measurement.PropertyKey.GPS_BEARING,
+            Measurement.PropertyKey.GPS_ALTITUDE, Measurement.PropertyKey.CO2};
+
+    private interface Factory {
+        Measurement create();
+    }
+
+    @Test
+    public void testPopulate() {
+        // warm up both implementations first.
+        populate(MeasurementImpl::new);
+        populate(PrimitiveMeasurement::new);
+
+        long mapAllocations = allocations(() -> populate(MeasurementImpl::new));
+        long arrayAllocations = allocations(() -> populate(PrimitiveMeasurement::new));
+        long map = time(() -> populate(MeasurementImpl::new));
+        long array = time(() -> populate(PrimitiveMeasurement::new));
+
+        report("populate", map, array);
+        Log.i(TAG, String.format("populate: allocations per measurement, map %.1f, array %.1f",
+                (double) mapAllocations / MEASUREMENTS, (double) arrayAllocations / MEASUREMENTS));
+        Assert.assertTrue(arrayAllocations < mapAllocations);
+    }
+
+    @Test
+    public void testReadProperty() {
+        List<Measurement> map = populate(MeasurementImpl::new);
+        List<Measurement> array = populate(PrimitiveMeasurement::new);
+
+        long boxed = time(() -> {
+            double sum = 0;
+            for (Measurement measurement : map) {
+                sum += measurement.getProperty(Measurement.PropertyKey.SPEED);
+            }
+            Assert.assertTrue(sum > 0);
+        });
+        long primitive = time(() -> {
+            double sum = 0;
+            for (Measurement measurement : array) {
+                sum += measurement.getPropertyAsDouble(Measurement.PropertyKey.SPEED);
+            }
+            Assert.assertTrue(sum > 0);
+        });
+
+        report("readProperty", boxed, primitive);
+    }
+
+    private static List<Measurement> populate(Factory factory) {
+        List<Measurement> result = new ArrayList<>(MEASUREMENTS);
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            Measurement measurement = factory.create();
+            measurement.setLatitude(51.0 + i * 1e-5);
+            measurement.setLongitude(7.0 + i * 1e-5);
+            measurement.setTime(1000L * i);
+            for (int k = 0; k < KEYS.length; k++) {
+                measurement.setProperty(KEYS[k], (double) (i % 120 + k));
+            }
+            result.add(measurement);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long allocations(Runnable runnable) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        runnable.run();
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+    private static long time(Runnable runnable) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static void report(String name, long mapNanos, long arrayNanos) {
+        Log.i(TAG, String.format("%s: map %.2f ms, array %.2f ms, speedup %.1fx", name,
+                mapNanos / 1e6, arrayNanos / 1e6, (double) mapNanos / arrayNanos));
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.envirocar.core.util.Downsampling;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+/**
+ * Keyset windows of {@link EnviroCarDBImpl#streamMeasurements(Track.TrackId, int)} and the paged
+ * measurements of {@link EnviroCarDBImpl#getTrackWithPagedMeasurements(Track.TrackId, int)}.
+ */
+public class MeasurementPagingTest extends InstrumentationTestCase {
+    private static final int WINDOW = 10;
+
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        DatabaseSchedulers schedulers = new DatabaseSchedulers();
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testStreamOfExactWindows() throws Exception {
+        Track track = insertTrack();
+        insertMeasurements(track, 0, 2 * WINDOW);
+
+        List<Measurement> streamed = enviroCarDB.streamMeasurements(track.getTrackID(), WINDOW)
+                .toList().blockingGet();
+        assertTimes(streamed, 0, 2 * WINDOW);
+    }
+
+    @Test
+    public void testStreamOfPartialWindow() throws Exception {
+        Track track = insertTrack();
+        insertMeasurements(track, 0, 2 * WINDOW + 1);
+
+        List<Measurement> streamed = enviroCarDB.streamMeasurements(track.getTrackID(), WINDOW)
+                .toList().blockingGet();
+        assertTimes(streamed, 0, 2 * WINDOW + 1);
+    }
+
+    @Test
+    public void testStreamOfEqualTimesAcrossWindows() throws Exception {
+        Track track = insertTrack();
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 2 * WINDOW; i++) {
+            // every time occurs twice and a pair spans the boundary of the windows.
+            measurements.add(createMeasurement(track, (i + 1) / 2));
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+
+        List<Measurement> streamed = enviroCarDB.streamMeasurements(track.getTrackID(), WINDOW)
+                .toList().blockingGet();
+        Assert.assertEquals(2 * WINDOW, streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            Assert.assertEquals((i + 1) / 2, streamed.get(i).getTime());
+        }
+    }
+
+    @Test
+    public void testStreamOfEmptyTrack() throws Exception {
+        Track track = insertTrack();
+
+        enviroCarDB.streamMeasurements(track.getTrackID(), WINDOW).test()
+                .assertNoValues()
+                .assertComplete();
+    }
+
+    @Test
+    public void testStreamWhileWriterAppends() throws Exception {
+        Track track = insertTrack();
+        insertMeasurements(track, 0, 2 * WINDOW);
+
+        TestSubscriber<Measurement> subscriber =
+                enviroCarDB.streamMeasurements(track.getTrackID(), WINDOW).test(0);
+        subscriber.request(WINDOW + 1);
+        subscriber.assertValueCount(WINDOW + 1);
+
+        // the recording goes on while the track is read.
+        insertMeasurements(track, 2 * WINDOW, 3 * WINDOW);
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertComplete();
+        assertTimes(subscriber.values(), 0, 3 * WINDOW);
+    }
+
+    @Test
+    public void testPagedMeasurements() throws Exception {
+        Track track = insertTrack();
+        insertMeasurements(track, 0, 5 * WINDOW / 2);
+
+        Track paged = enviroCarDB.getTrackWithPagedMeasurements(track.getTrackID(), WINDOW)
+                .blockingFirst();
+        List<Measurement> measurements = paged.getMeasurements();
+        Assert.assertFalse(paged.isLazyLoadingMeasurements());
+        assertTimes(measurements, 0, 5 * WINDOW / 2);
+
+        // more pages than are resident, read backwards.
+        for (int i = measurements.size() - 1; i >= 0; i -= WINDOW / 2) {
+            Assert.assertEquals(i, measurements.get(i).getTime());
+        }
+
+        try {
+            measurements.get(measurements.size());
+            Assert.fail("Paged measurements must be bounded by the size of the track.");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        // the persisted property mask is used instead of paging in the whole track.
+        Assert.assertEquals(Collections.singletonList(Measurement.PropertyKey.SPEED),
+                paged.getSupportedProperties());
+    }
+
+    @Test
+    public void testPagedMeasurementsOfEmptyTrack() throws Exception {
+        Track track = insertTrack();
+
+        Track paged = enviroCarDB.getTrackWithPagedMeasurements(track.getTrackID(), WINDOW)
+                .blockingFirst();
+        Assert.assertTrue(paged.getMeasurements().isEmpty());
+        Assert.assertTrue(paged.getSupportedProperties().isEmpty());
+    }
+
+    @Test
+    public void testPagedTrackProducesItsRoute() throws Exception {
+        Track track = insertTrack();
+        insertMeasurements(track, 0, 20 * WINDOW);
+
+        // the track list reads the path of a card like this.
+        Track paged = enviroCarDB.getTrackWithPagedMeasurements(track.getTrackID(), WINDOW)
+                .blockingFirst();
+        List<Measurement> path = Downsampling.path(paged.getMeasurements(), 5 * WINDOW);
+
+        Assert.assertEquals(5 * WINDOW, path.size());
+        Assert.assertEquals(0, path.get(0).getTime());
+        Assert.assertEquals(20 * WINDOW - 1, path.get(path.size() - 1).getTime());
+        for (int i = 1; i < path.size(); i++) {
+            Assert.assertTrue(path.get(i - 1).getTime() < path.get(i).getTime());
+            Assert.assertEquals(7.6 + path.get(i).getTime() * 1e-4,
+                    path.get(i).getLongitude(), 1e-9);
+        }
+    }
+
+    private void assertTimes(List<Measurement> measurements, int start, int end) {
+        Assert.assertEquals(end - start, measurements.size());
+        for (int i = 0; i < measurements.size(); i++) {
+            Assert.assertEquals(start + i, measurements.get(i).getTime());
+        }
+    }
+
+    private Track insertTrack() throws Exception {
+        Track track = new TrackImpl();
+        track.setLength(0.0);
+        enviroCarDB.insertTrack(track);
+        return track;
+    }
+
+    private void insertMeasurements(Track track, int start, int end) throws Exception {
+        List<Measurement> measurements = new ArrayList<>(end - start);
+        for (int time = start; time < end; time++) {
+            measurements.add(createMeasurement(track, time));
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+    }
+
+    private Measurement createMeasurement(Track track, long time) {
+        PrimitiveMeasurement measurement = new PrimitiveMeasurement(51.9, 7.6 + time * 1e-4);
+        measurement.setTrackId(track.getTrackID());
+        measurement.setTime(time);
+        measurement.setProperty(Measurement.PropertyKey.SPEED, 30.0);
+        return measurement;
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Compares the measurement queries of {@link MeasurementQueries} on the (track, time) index with
+ * the former string concatenated queries without index, and full-track reads of rows with reads
+ * of the compressed blocks of archived tracks. Timings are written to logcat.
+ * <p>
+ * Every iteration runs each variant on a fresh database holding the same dataset, so that no
+ * variant profits from pages cached by the other one or works on rows the other one deleted.
+ * The first iterations are untimed warm-ups, and the order of the variants alternates between
+ * iterations.
+ */
+public class MeasurementQueriesBenchmark extends InstrumentationTestCase {
+    private static final String TAG = MeasurementQueriesBenchmark.class.getSimpleName();
+
+    private static final int NUM_TRACKS = 20;
+    private static final int MEASUREMENTS_PER_TRACK = 2000;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+
+    /**
+     * A variant of a benchmark. Only {@link #run(Dataset)} is timed.
+     */
+    private abstract static class Variant {
+        void prepare(Dataset dataset) {
+        }
+
+        abstract void run(Dataset dataset);
+    }
+
+    /**
+     * An in-memory database holding {@link #NUM_TRACKS} tracks.
+     */
+    private final class Dataset {
+        final BriteDatabase briteDatabase;
+        final EnviroCarDBImpl enviroCarDB;
+        final List<Track.TrackId> trackIds = new ArrayList<>();
+
+        Dataset() throws Exception {
+            SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                    .builder(getInstrumentation().getTargetContext())
+                    .name(null)
+                    .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                    .build();
+            SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+            briteDatabase = new SqlBrite.Builder().build()
+                    .wrapDatabaseHelper(helper, Schedulers.trampoline());
+            DatabaseSchedulers schedulers = new DatabaseSchedulers();
+            enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                    EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                    schedulers.read()));
+
+            for (int i = 0; i < NUM_TRACKS; i++) {
+                Track track = new TrackImpl();
+                track.setLength(0.0);
+                enviroCarDB.insertTrack(track);
+
+                List<Measurement> measurements = new ArrayList<>(MEASUREMENTS_PER_TRACK);
+                for (int j = 0; j < MEASUREMENTS_PER_TRACK; j++) {
+                    Measurement m = new MeasurementImpl(51.0 + j * 1e-5, 7.0 + j * 1e-5);
+                    m.setTrackId(track.getTrackID());
+                    m.setTime(1000L * j);
+                    m.setProperty(Measurement.PropertyKey.SPEED, (double) (j % 120));
+                    m.setProperty(Measurement.PropertyKey.RPM, (double) (800 + j % 3000));
+                    measurements.add(m);
+                }
+                enviroCarDB.insertMeasurements(track, measurements);
+                trackIds.add(track.getTrackID());
+            }
+        }
+
+        MeasurementQueries measurementQueries() {
+            return enviroCarDB.measurementQueries;
+        }
+
+        void dropIndex() {
+            briteDatabase.execute("DROP INDEX " + MeasurementTable.INDEX_TRACK_TIME);
+        }
+
+        int countMeasurements() {
+            Cursor c = briteDatabase.query("SELECT COUNT(*) FROM " + MeasurementTable.TABLE_NAME);
+            try {
+                Assert.assertTrue(c.moveToFirst());
+                return c.getInt(0);
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFetchMeasurements() throws Exception {
+        compare("fetchMeasurements", new Variant() {
+            @Override
+            void prepare(Dataset dataset) {
+                dataset.dropIndex();
+            }
+
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    Cursor c = dataset.briteDatabase.query("SELECT * FROM " +
+                            MeasurementTable.TABLE_NAME +
+                            " WHERE " + MeasurementTable.KEY_TRACK + "=\"" + trackId + "\"" +
+                            " ORDER BY " + MeasurementTable.KEY_TIME + " ASC");
+                    Assert.assertEquals(MEASUREMENTS_PER_TRACK, MeasurementTable.fromCursorToList(c).size());
+                    c.close();
+                }
+            }
+        }, new Variant() {
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    Cursor c = dataset.measurementQueries().fetchOfTrack(trackId);
+                    Assert.assertEquals(MEASUREMENTS_PER_TRACK, MeasurementTable.fromCursorToList(c).size());
+                    c.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testAutomaticDeleteMeasurements() throws Exception {
+        long cutOff = 1000L * (MEASUREMENTS_PER_TRACK - 100);
+        compare("automaticDeleteMeasurements", new Variant() {
+            @Override
+            void prepare(Dataset dataset) {
+                dataset.dropIndex();
+            }
+
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    dataset.briteDatabase.delete(MeasurementTable.TABLE_NAME,
+                            MeasurementTable.KEY_TRACK + "='" + trackId + "' AND " +
+                                    MeasurementTable.KEY_TIME + " >= " + cutOff);
+                }
+                Assert.assertEquals(NUM_TRACKS * (MEASUREMENTS_PER_TRACK - 100),
+                        dataset.countMeasurements());
+            }
+        }, new Variant() {
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    dataset.measurementQueries().deleteOfTrackSince(trackId, cutOff);
+                }
+                Assert.assertEquals(NUM_TRACKS * (MEASUREMENTS_PER_TRACK - 100),
+                        dataset.countMeasurements());
+            }
+        });
+    }
+
+    @Test
+    public void testDeleteMeasurementsOfTrack() throws Exception {
+        compare("deleteMeasurementsOfTrack", new Variant() {
+            @Override
+            void prepare(Dataset dataset) {
+                dataset.dropIndex();
+            }
+
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    dataset.briteDatabase.delete(MeasurementTable.TABLE_NAME,
+                            MeasurementTable.KEY_TRACK + "='" + trackId + "'");
+                }
+                Assert.assertEquals(0, dataset.countMeasurements());
+            }
+        }, new Variant() {
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    dataset.measurementQueries().deleteOfTrack(trackId);
+                }
+                Assert.assertEquals(0, dataset.countMeasurements());
+            }
+        });
+    }
+
+    @Test
+    public void testFetchArchivedMeasurements() throws Exception {
+        compare("fetchArchivedMeasurements", new Variant() {
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    Cursor c = dataset.measurementQueries().fetchOfTrack(trackId);
+                    Assert.assertEquals(MEASUREMENTS_PER_TRACK, MeasurementTable.fromCursorToList(c).size());
+                    c.close();
+                }
+            }
+        }, new Variant() {
+            @Override
+            void prepare(Dataset dataset) {
+                dataset.briteDatabase.execute("UPDATE " + TrackTable.TABLE_TRACK + " SET " +
+                        TrackTable.KEY_TRACK_STATE + " = '" + Track.TrackStatus.FINISHED + "'");
+                Assert.assertEquals(NUM_TRACKS,
+                        (long) dataset.enviroCarDB.archiveFinishedTracks().count().blockingGet());
+                Assert.assertEquals(0, dataset.countMeasurements());
+            }
+
+            @Override
+            void run(Dataset dataset) {
+                for (Track.TrackId trackId : dataset.trackIds) {
+                    Assert.assertEquals(MEASUREMENTS_PER_TRACK,
+                            dataset.enviroCarDB.trackBlockQueries.fetchOfTrack(trackId).size());
+                }
+            }
+        });
+    }
+
+    /**
+     * Times both variants on fresh datasets and reports their average durations.
+     *
+     * @param name     the name of the benchmark.
+     * @param baseline the baseline variant.
+     * @param improved the improved variant.
+     */
+    private void compare(String name, Variant baseline, Variant improved) throws Exception {
+        long baselineNanos = 0;
+        long improvedNanos = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            boolean timed = i >= WARMUP_ITERATIONS;
+            if (i % 2 == 0) {
+                baselineNanos += measure(baseline, timed);
+                improvedNanos += measure(improved, timed);
+            } else {
+                improvedNanos += measure(improved, timed);
+                baselineNanos += measure(baseline, timed);
+            }
+        }
+        report(name, baselineNanos / ITERATIONS, improvedNanos / ITERATIONS);
+    }
+
+    private long measure(Variant variant, boolean timed) throws Exception {
+        Dataset dataset = new Dataset();
+        try {
+            variant.prepare(dataset);
+            long start = System.nanoTime();
+            variant.run(dataset);
+            return timed ? System.nanoTime() - start : 0;
+        } finally {
+            dataset.briteDatabase.close();
+        }
+    }
+
+    private static void report(String name, long baselineNanos, long improvedNanos) {
+        Log.i(TAG, String.format("%s: baseline %.2f ms, improved %.2f ms, speedup %.1fx", name,
+                baselineNanos / 1e6, improvedNanos / 1e6, (double) baselineNanos / improvedNanos));
+    }
+}
@@ -19,13 +19,18 @@
 package org.envirocar.storage;
 
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.test.InstrumentationTestCase;
 
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.MeasurementImpl;
 import org.envirocar.core.entity.Track;
 import org.hamcrest.CoreMatchers;
-import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -33,6 +38,19 @@ import org.junit.Test;
  * To work on unit tests, switch the Test Artifact in the Build Variants view.
  */
 public class MeasurementTableTest extends InstrumentationTestCase {
+    private static final String DATABASE_NAME = "envirocar-measurement-table-test";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
 
     @Test
     public void testInfinityValuePassing() throws Exception {
@@ -44,14 +62,104 @@ public class MeasurementTableTest extends InstrumentationTestCase {
         m.setProperty(Measurement.PropertyKey.CONSUMPTION, 1.1);
         ContentValues vals = MeasurementTable.toContentValues(m);
 
-        Object props = vals.get(MeasurementTable.KEY_PROPERTIES);
+        Assert.assertThat(vals.getAsDouble(MeasurementTable.getColumnName(Measurement.PropertyKey.CONSUMPTION)), CoreMatchers.is(1.1));
+        Assert.assertThat(vals.getAsDouble(MeasurementTable.getColumnName(Measurement.PropertyKey.SPEED)), CoreMatchers.is(Double.MAX_VALUE));
+        Assert.assertThat(vals.containsKey(MeasurementTable.getColumnName(Measurement.PropertyKey.CALCULATED_MAF)), CoreMatchers.is(false));
+        Assert.assertThat(vals.containsKey(MeasurementTable.getColumnName(Measurement.PropertyKey.CO2)), CoreMatchers.is(false));
+    }
 
-        JSONObject obj = new JSONObject(props.toString());
+    @Test
+    public void testPropertiesAreBoundToTheirColumns() {
+        SupportSQLiteOpenHelper helper = openHelper(
+                new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION));
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+
+        MeasurementImpl m = new MeasurementImpl(51.9, 7.6);
+        m.setTrackId(new Track.TrackId(1));
+        for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
+            m.setProperty(key, key.ordinal() + 1.0);
+        }
+        SupportSQLiteStatement statement = db.compileStatement(MeasurementTable.INSERT);
+        MeasurementTable.bindInsert(statement, m);
+        statement.executeInsert();
 
-        Assert.assertThat(obj.get(Measurement.PropertyKey.CONSUMPTION.name()), CoreMatchers.is(1.1));
-        Assert.assertThat(obj.get(Measurement.PropertyKey.SPEED.name()), CoreMatchers.is(Double.MAX_VALUE));
-        Assert.assertThat(obj.has(Measurement.PropertyKey.CALCULATED_MAF.name()), CoreMatchers.is(false));
-        Assert.assertThat(obj.has(Measurement.PropertyKey.CO2.name()), CoreMatchers.is(false));
+        Cursor c = db.query("SELECT * FROM " + MeasurementTable.TABLE_NAME);
+        try {
+            Assert.assertTrue(c.moveToFirst());
+            for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
+                int index = c.getColumnIndex(MeasurementTable.getColumnName(key));
+                Assert.assertEquals(key.name(), key.ordinal() + 1.0, c.getDouble(index), 0.0);
+            }
+        } finally {
+            c.close();
+            helper.close();
+        }
     }
 
+    @Test
+    public void testMissingPropertyColumnsAreAdded() {
+        final String speed = MeasurementTable.getColumnName(Measurement.PropertyKey.SPEED);
+
+        // a database created before the speed key existed
+        SupportSQLiteOpenHelper helper = openHelper(
+                new SupportSQLiteOpenHelper.Callback(DatabaseModule.DATABASE_VERSION) {
+                    @Override
+                    public void onCreate(SupportSQLiteDatabase db) {
+                        new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION).onCreate(db);
+                        db.execSQL(MeasurementTable.DELETE);
+                        db.execSQL(MeasurementTable.CREATE.replace(", " + speed + " REAL", ""));
+                    }
+
+                    @Override
+                    public void onUpgrade(SupportSQLiteDatabase db, int oldVersion,
+                                          int newVersion) {
+                    }
+                });
+        Assert.assertFalse(hasColumn(helper.getWritableDatabase(), speed));
+        helper.close();
+
+        helper = openHelper(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION));
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        Assert.assertTrue(hasColumn(db, speed));
+
+        MeasurementImpl m = new MeasurementImpl(51.9, 7.6);
+        m.setTrackId(new Track.TrackId(1));
+        m.setProperty(Measurement.PropertyKey.SPEED, 42.0);
+        SupportSQLiteStatement statement = db.compileStatement(MeasurementTable.INSERT);
+        MeasurementTable.bindInsert(statement, m);
+        statement.executeInsert();
+
+        Cursor c = db.query("SELECT * FROM " + MeasurementTable.TABLE_NAME);
+        try {
+            Assert.assertTrue(c.moveToFirst());
+            Assert.assertEquals(42.0, MeasurementTable.fromCursor(c)
+                    .getProperty(Measurement.PropertyKey.SPEED), 0.0);
+        } finally {
+            c.close();
+            helper.close();
+        }
+    }
+
+    private SupportSQLiteOpenHelper openHelper(SupportSQLiteOpenHelper.Callback callback) {
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(DATABASE_NAME)
+                .callback(callback)
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(config);
+    }
+
+    private boolean hasColumn(SupportSQLiteDatabase db, String column) {
+        Cursor c = db.query("PRAGMA table_info(" + MeasurementTable.TABLE_NAME + ")");
+        try {
+            while (c.moveToNext()) {
+                if (column.equals(c.getString(c.getColumnIndex("name")))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            c.close();
+        }
+    }
 }
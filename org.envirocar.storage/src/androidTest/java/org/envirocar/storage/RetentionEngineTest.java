@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dropping of remote measurements and compaction by the {@link RetentionEngine}.
+ */
+public class RetentionEngineTest extends InstrumentationTestCase {
+    private static final String DATABASE_NAME = "envirocar-retention-test";
+    private static final int MEASUREMENTS_PER_TRACK = 5000;
+
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+    private RetentionEngine retentionEngine;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(DATABASE_NAME)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        helper.setWriteAheadLoggingEnabled(true);
+
+        DatabaseSchedulers schedulers = new DatabaseSchedulers();
+        TrackChangeNotifier changeNotifier = new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read());
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, schedulers.read());
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, changeNotifier);
+        retentionEngine = new RetentionEngine(briteDatabase, schedulers, changeNotifier);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    @Test
+    public void testDropRemoteMeasurements() throws Exception {
+        Track remoteTrack = insertTrack();
+        enviroCarDB.updateTrackRemoteID(remoteTrack, "remote");
+        Track localTrack = insertTrack();
+
+        RetentionReport report = retentionEngine.apply(new RetentionPolicy()
+                .dropRemoteMeasurementsAfter(1, TimeUnit.DAYS));
+
+        Assert.assertEquals(1, report.getCompactedTracks());
+        Assert.assertTrue(report.getBytesReclaimed() > 0);
+        Assert.assertEquals(0, count(remoteTrack.getTrackID()));
+        Assert.assertEquals(MEASUREMENTS_PER_TRACK, count(localTrack.getTrackID()));
+
+        // the summary of the remote track is retained.
+        Cursor cursor = briteDatabase.query("SELECT " + TrackTable.KEY_TRACK_MEASUREMENT_COUNT +
+                " FROM " + TrackTable.TABLE_TRACK + " WHERE " + TrackTable.KEY_TRACK_ID + " = ?",
+                remoteTrack.getTrackID().getId());
+        Assert.assertTrue(cursor.moveToFirst());
+        Assert.assertEquals(MEASUREMENTS_PER_TRACK, cursor.getInt(0));
+        cursor.close();
+
+        // no properties are claimed for the dropped measurements.
+        Track compacted = enviroCarDB.getTrack(remoteTrack.getTrackID()).blockingFirst();
+        Assert.assertTrue(compacted.getMeasurements().isEmpty());
+        Assert.assertFalse(compacted.hasProperty(Measurement.PropertyKey.SPEED));
+    }
+
+    @Test
+    public void testDownloadAfterDrop() throws Exception {
+        Track remoteTrack = insertTrack();
+        enviroCarDB.updateTrackRemoteID(remoteTrack, "remote");
+        retentionEngine.apply(new RetentionPolicy()
+                .dropRemoteMeasurementsAfter(1, TimeUnit.DAYS));
+
+        // the compacted track is downloaded again.
+        Track downloaded = new TrackImpl();
+        downloaded.setRemoteID("remote");
+        downloaded.setLength(0.0);
+        downloaded.setMeasurements(createMeasurements(10));
+        enviroCarDB.insertTrack(downloaded);
+
+        Assert.assertEquals(remoteTrack.getTrackID(), downloaded.getTrackID());
+        Cursor cursor = briteDatabase.query("SELECT " + TrackTable.KEY_TRACK_MEASUREMENT_COUNT +
+                " FROM " + TrackTable.TABLE_TRACK + " WHERE " + TrackTable.KEY_REMOTE_ID + " = ?",
+                "remote");
+        Assert.assertEquals(1, cursor.getCount());
+        Assert.assertTrue(cursor.moveToFirst());
+        Assert.assertEquals(10, cursor.getInt(0));
+        cursor.close();
+
+        Track stored = enviroCarDB.getTrack(remoteTrack.getTrackID()).blockingFirst();
+        Assert.assertEquals(10, stored.getMeasurements().size());
+        Assert.assertTrue(stored.hasProperty(Measurement.PropertyKey.SPEED));
+    }
+
+    @Test
+    public void testCompactedTracksAreNotArchived() throws Exception {
+        Track remoteTrack = insertTrack();
+        remoteTrack.setTrackStatus(Track.TrackStatus.FINISHED);
+        enviroCarDB.updateTrack(remoteTrack);
+        enviroCarDB.updateTrackRemoteID(remoteTrack, "remote");
+
+        retentionEngine.apply(new RetentionPolicy()
+                .dropRemoteMeasurementsAfter(1, TimeUnit.DAYS));
+
+        // the track keeps its measurement count, but has nothing left to archive.
+        Assert.assertEquals(0, (long) enviroCarDB.archiveFinishedTracks().count().blockingGet());
+    }
+
+    @Test
+    public void testLocalTracksAreRetained() throws Exception {
+        Track localTrack = insertTrack();
+
+        RetentionReport report = retentionEngine.apply(new RetentionPolicy()
+                .dropRemoteMeasurementsAfter(0, TimeUnit.DAYS)
+                .maxDatabaseBytes(1));
+
+        Assert.assertEquals(0, report.getCompactedTracks());
+        Assert.assertEquals(MEASUREMENTS_PER_TRACK, count(localTrack.getTrackID()));
+    }
+
+    @Test
+    public void testRebuildIsDeferredWhileRecording() throws Exception {
+        // a database that has been created before incremental vacuum was enabled.
+        briteDatabase.execute("PRAGMA auto_vacuum = NONE");
+        briteDatabase.execute("VACUUM");
+        Track track = insertTrack();
+
+        retentionEngine.apply(new RetentionPolicy());
+        Assert.assertEquals(0, pragma("auto_vacuum"));
+
+        track.setTrackStatus(Track.TrackStatus.FINISHED);
+        enviroCarDB.updateTrack(track);
+
+        retentionEngine.apply(new RetentionPolicy());
+        Assert.assertEquals(2, pragma("auto_vacuum"));
+        Assert.assertEquals(MEASUREMENTS_PER_TRACK, count(track.getTrackID()));
+    }
+
+    private Track insertTrack() throws Exception {
+        Track track = new TrackImpl();
+        track.setLength(0.0);
+        enviroCarDB.insertTrack(track);
+
+        List<Measurement> measurements = createMeasurements(MEASUREMENTS_PER_TRACK);
+        for (Measurement measurement : measurements) {
+            measurement.setTrackId(track.getTrackID());
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+        return track;
+    }
+
+    private List<Measurement> createMeasurements(int count) {
+        List<Measurement> measurements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Measurement measurement = new MeasurementImpl(51.0 + i * 1e-5, 7.0 + i * 1e-5);
+            measurement.setTime(1000L * i);
+            measurement.setProperty(Measurement.PropertyKey.SPEED, (double) (i % 120));
+            measurements.add(measurement);
+        }
+        return measurements;
+    }
+
+    private long count(Track.TrackId trackId) {
+        return enviroCarDB.measurementQueries.countOfTrack(trackId);
+    }
+
+    private long pragma(String name) {
+        Cursor cursor = briteDatabase.query("PRAGMA " + name);
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.BoundingBox;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Bounding box queries on the R*Tree indices of {@link SpatialIndexTable}.
+ */
+public class SpatialIndexTest extends InstrumentationTestCase {
+    private static final int MEASUREMENTS_PER_TRACK = 1000;
+
+    // a track heading north-east from Münster and one from Bonn.
+    private static final BoundingBox MUENSTER = new BoundingBox(51.90, 7.55, 52.00, 7.70);
+    private static final BoundingBox FIRST_HALF_OF_MUENSTER_TRACK =
+            new BoundingBox(51.90, 7.55, 51.955, 7.655);
+
+    private BriteDatabase briteDatabase;
+    private DatabaseSchedulers schedulers;
+    private EnviroCarDBImpl enviroCarDB;
+    private Track muensterTrack;
+    private Track bonnTrack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        schedulers = new DatabaseSchedulers();
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read()));
+
+        muensterTrack = insertTrack(51.91, 7.56);
+        bonnTrack = insertTrack(50.70, 7.08);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testTracksIntersecting() {
+        List<Track> tracks = enviroCarDB.getTracksIntersecting(MUENSTER).blockingFirst();
+        Assert.assertEquals(1, tracks.size());
+        Assert.assertEquals(muensterTrack.getTrackID(), tracks.get(0).getTrackID());
+        Assert.assertTrue(tracks.get(0).isLazyLoadingMeasurements());
+    }
+
+    @Test
+    public void testMeasurementsInBox() {
+        List<Measurement> measurements = enviroCarDB.getMeasurementsInBox(
+                muensterTrack.getTrackID(), FIRST_HALF_OF_MUENSTER_TRACK).blockingFirst();
+        Assert.assertFalse(measurements.isEmpty());
+        Assert.assertTrue(measurements.size() < MEASUREMENTS_PER_TRACK);
+
+        long lastTime = Long.MIN_VALUE;
+        for (Measurement measurement : measurements) {
+            Assert.assertTrue(FIRST_HALF_OF_MUENSTER_TRACK.contains(
+                    measurement.getLatitude(), measurement.getLongitude()));
+            Assert.assertTrue(measurement.getTime() >= lastTime);
+            lastTime = measurement.getTime();
+        }
+
+        Assert.assertTrue(enviroCarDB.getMeasurementsInBox(
+                bonnTrack.getTrackID(), MUENSTER).blockingFirst().isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsDeletes() {
+        enviroCarDB.deleteTrack(muensterTrack.getTrackID());
+        Assert.assertTrue(enviroCarDB.getTracksIntersecting(MUENSTER).blockingFirst().isEmpty());
+    }
+
+    @Test
+    public void testQueriesWithoutRtreeSupport() {
+        int indexedCount = enviroCarDB.getMeasurementsInBox(
+                muensterTrack.getTrackID(), FIRST_HALF_OF_MUENSTER_TRACK).blockingFirst().size();
+
+        // as on SQLite builds without the R*Tree module.
+        SpatialIndexTable.delete(briteDatabase.getWritableDatabase());
+        EnviroCarDBImpl withoutIndex = new EnviroCarDBImpl(briteDatabase, schedulers,
+                new TrackChangeNotifier(EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS,
+                        TimeUnit.MILLISECONDS, schedulers.read()));
+
+        List<Track> tracks = withoutIndex.getTracksIntersecting(MUENSTER).blockingFirst();
+        Assert.assertEquals(1, tracks.size());
+        Assert.assertEquals(muensterTrack.getTrackID(), tracks.get(0).getTrackID());
+
+        List<Measurement> measurements = withoutIndex.getMeasurementsInBox(
+                muensterTrack.getTrackID(), FIRST_HALF_OF_MUENSTER_TRACK).blockingFirst();
+        Assert.assertEquals(indexedCount, measurements.size());
+        for (Measurement measurement : measurements) {
+            Assert.assertTrue(FIRST_HALF_OF_MUENSTER_TRACK.contains(
+                    measurement.getLatitude(), measurement.getLongitude()));
+        }
+    }
+
+    private Track insertTrack(double latitude, double longitude) throws Exception {
+        Track track = new TrackImpl();
+        track.setLength(0.0);
+        enviroCarDB.insertTrack(track);
+
+        List<Measurement> measurements = new ArrayList<>(MEASUREMENTS_PER_TRACK);
+        for (int i = 0; i < MEASUREMENTS_PER_TRACK; i++) {
+            Measurement measurement = new MeasurementImpl(
+                    latitude + i * 1e-4, longitude + i * 1e-4);
+            measurement.setTrackId(track.getTrackID());
+            measurement.setTime(1000L * i);
+            measurements.add(measurement);
+        }
+        enviroCarDB.insertMeasurements(track, measurements);
+        return track;
+    }
+}
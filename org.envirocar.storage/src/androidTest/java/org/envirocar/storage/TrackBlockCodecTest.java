@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Round trip and compression ratio of the cold storage block format.
+ */
+public class TrackBlockCodecTest extends InstrumentationTestCase {
+    private static final Track.TrackId TRACK_ID = new Track.TrackId(42);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Measurement> measurements = createTrack(TrackBlockTable.BLOCK_SIZE);
+        byte[] block = TrackBlockCodec.encode(measurements);
+
+        Assert.assertThat(TrackBlockCodec.count(block), CoreMatchers.is(measurements.size()));
+
+        Iterator<Measurement> decoded = TrackBlockCodec.decode(block, TRACK_ID);
+        for (Measurement expected : measurements) {
+            Assert.assertTrue(decoded.hasNext());
+            Measurement actual = decoded.next();
+            Assert.assertThat(actual.getTrackId(), CoreMatchers.is(TRACK_ID));
+            Assert.assertThat(actual.getTime(), CoreMatchers.is(expected.getTime()));
+            Assert.assertThat(actual.getLatitude(), CoreMatchers.is(expected.getLatitude()));
+            Assert.assertThat(actual.getLongitude(), CoreMatchers.is(expected.getLongitude()));
+            for (Measurement.PropertyKey key : Measurement.PropertyKey.values()) {
+                Assert.assertThat(actual.getProperty(key), CoreMatchers.is(expected.getProperty(key)));
+            }
+        }
+        Assert.assertFalse(decoded.hasNext());
+    }
+
+    @Test
+    public void testCompressionRatio() throws Exception {
+        List<Measurement> measurements = createTrack(TrackBlockTable.BLOCK_SIZE);
+        byte[] block = TrackBlockCodec.encode(measurements);
+
+        // lower bound of a row: every present value as 8 byte REAL, plus time and coordinates,
+        // without any record or index overhead of SQLite.
+        long rowBytes = 0;
+        for (Measurement measurement : measurements) {
+            rowBytes += 8 * (3 + measurement.getAllProperties().size());
+        }
+        Assert.assertTrue("compressed " + rowBytes + " to " + block.length + " bytes",
+                block.length * 3 <= rowBytes);
+    }
+
+    private static List<Measurement> createTrack(int size) {
+        Random random = new Random(1337);
+        List<Measurement> measurements = new ArrayList<>(size);
+        long time = 1500000000000L;
+        double latitude = 51.9623;
+        double longitude = 7.6253;
+        double speed = 30;
+        for (int i = 0; i < size; i++) {
+            time += 5000 + random.nextInt(20);
+            latitude += random.nextGaussian() * 1e-5;
+            longitude += random.nextGaussian() * 1e-5;
+            speed = Math.max(0, speed + random.nextGaussian());
+
+            MeasurementImpl measurement = new MeasurementImpl(latitude, longitude);
+            measurement.setTime(time);
+            measurement.setProperty(Measurement.PropertyKey.SPEED, (double) Math.round(speed));
+            measurement.setProperty(Measurement.PropertyKey.GPS_SPEED, (double) Math.round(speed));
+            measurement.setProperty(Measurement.PropertyKey.RPM, (double) (800 + 40 * Math.round(speed)));
+            measurement.setProperty(Measurement.PropertyKey.INTAKE_TEMPERATURE, 21.0);
+            measurement.setProperty(Measurement.PropertyKey.ENGINE_LOAD, (double) random.nextInt(100));
+            if (i % 5 == 0) {
+                measurement.setProperty(Measurement.PropertyKey.GPS_ACCURACY, 6.0);
+            }
+            measurements.add(measurement);
+        }
+        return measurements;
+    }
+}
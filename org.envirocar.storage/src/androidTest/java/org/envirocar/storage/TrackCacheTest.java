@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Eviction, invalidation and counters of the track cache.
+ */
+public class TrackCacheTest extends InstrumentationTestCase {
+    private static final Track.TrackId TRACK = new Track.TrackId(1);
+    private static final Track.TrackId OTHER_TRACK = new Track.TrackId(2);
+
+    @Test
+    public void testHitsAndMisses() {
+        TrackCache cache = new TrackCache(100);
+        Assert.assertNull(cache.get(TRACK));
+        cache.put(TRACK, createMeasurements(10), cache.version());
+
+        List<Measurement> cached = cache.get(TRACK);
+        Assert.assertEquals(10, cached.size());
+        // modifications of a returned list do not affect the cache.
+        cached.clear();
+        Assert.assertEquals(10, cache.get(TRACK).size());
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTrackIsEvicted() {
+        TrackCache cache = new TrackCache(100);
+        cache.put(TRACK, createMeasurements(60), cache.version());
+        cache.put(OTHER_TRACK, createMeasurements(30), cache.version());
+        cache.get(TRACK);
+
+        cache.put(new Track.TrackId(3), createMeasurements(30), cache.version());
+        Assert.assertNotNull(cache.get(TRACK));
+        Assert.assertNull(cache.get(OTHER_TRACK));
+        Assert.assertEquals(90, cache.getWeight());
+    }
+
+    @Test
+    public void testCommitsInvalidate() {
+        TrackCache cache = new TrackCache(100);
+        cache.put(TRACK, createMeasurements(10), cache.version());
+        cache.invalidate(TRACK);
+        Assert.assertNull(cache.get(TRACK));
+        Assert.assertEquals(0, cache.getWeight());
+
+        // a load that raced with a commit is not cached.
+        long version = cache.version();
+        cache.invalidate(OTHER_TRACK);
+        cache.put(TRACK, createMeasurements(10), version);
+        Assert.assertNull(cache.get(TRACK));
+    }
+
+    private List<Measurement> createMeasurements(int count) {
+        List<Measurement> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Measurement measurement = new MeasurementImpl(51.9, 7.6);
+            measurement.setTime(i);
+            result.add(measurement);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Track;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * Coalescing and filtering of the track change notifications.
+ */
+public class TrackChangeNotifierTest extends InstrumentationTestCase {
+    private static final Track.TrackId TRACK = new Track.TrackId(1);
+    private static final Track.TrackId OTHER_TRACK = new Track.TrackId(2);
+
+    @Test
+    public void testChangesAreCoalescedPerTrack() {
+        TestScheduler scheduler = new TestScheduler();
+        TrackChangeNotifier notifier = new TrackChangeNotifier(500, TimeUnit.MILLISECONDS, scheduler);
+        TestObserver<Track.TrackId> observer = notifier.changesOf(TRACK).test();
+
+        notifier.notifyChanged(TRACK);
+        notifier.notifyChanged(OTHER_TRACK);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        notifier.notifyChanged(TRACK);
+        notifier.notifyChanged(new Track.TrackId(1));
+        observer.assertNoValues();
+
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(1);
+        observer.assertValue(TRACK);
+
+        // a change after the window starts a new window.
+        notifier.notifyChanged(TRACK);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+    }
+
+    @Test
+    public void testChangesOfOtherTracksAreFiltered() {
+        TestScheduler scheduler = new TestScheduler();
+        TrackChangeNotifier notifier = new TrackChangeNotifier(500, TimeUnit.MILLISECONDS, scheduler);
+        TestObserver<Track.TrackId> observer = notifier.changesOf(TRACK).test();
+
+        notifier.notifyChanged(OTHER_TRACK);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertNoValues();
+    }
+}
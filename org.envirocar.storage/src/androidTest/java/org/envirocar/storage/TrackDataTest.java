@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import org.envirocar.core.entity.Car;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
+import org.envirocar.core.entity.TrackImpl;
+import org.envirocar.core.trackprocessing.statistics.TrackStatisticsProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appending, growth and property presence of {@link TrackData}, and the column loops that the
+ * statistics run on its list view.
+ */
+public class TrackDataTest extends InstrumentationTestCase {
+    private static final Track.TrackId TRACK = new Track.TrackId(1);
+
+    @Test
+    public void testAppend() {
+        TrackData data = new TrackData();
+        Assert.assertEquals(0, data.add(createMeasurement(0)));
+        Assert.assertEquals(1, data.add(1000, 51.5, Double.NaN));
+
+        Assert.assertEquals(2, data.size());
+        Assert.assertEquals(TRACK, data.getTrackId());
+        Assert.assertEquals(0, data.getTime(0));
+        Assert.assertEquals(51.0, data.getLatitude(0), 0.0);
+        Assert.assertEquals(80.0, data.getProperty(0, Measurement.PropertyKey.SPEED), 0.0);
+        Assert.assertEquals(1000, data.getTime(1));
+        Assert.assertTrue(Double.isNaN(data.getLongitude(1)));
+        Assert.assertTrue(Double.isNaN(data.getProperty(1, Measurement.PropertyKey.SPEED)));
+
+        try {
+            data.getTime(2);
+            Assert.fail("Expected an invalid row");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGrowth() {
+        TrackData data = new TrackData(1);
+        for (int i = 0; i < 100; i++) {
+            int row = data.add(1000L * i, 51.0 + i * 1e-4, 7.0 + i * 1e-4);
+            if (i == 50) {
+                data.setProperty(row, Measurement.PropertyKey.RPM, 2000.0);
+            }
+        }
+
+        Assert.assertEquals(100, data.size());
+        Assert.assertTrue(data.getTimes().length >= 100);
+        Assert.assertEquals(99000, data.getTime(99));
+        Assert.assertEquals(51.0099, data.getLatitude(99), 1e-9);
+
+        // the column is created on the first value and filled with NaN before it.
+        double[] rpm = data.getColumn(Measurement.PropertyKey.RPM);
+        Assert.assertTrue(Double.isNaN(rpm[49]));
+        Assert.assertEquals(2000.0, rpm[50], 0.0);
+        Assert.assertTrue(Double.isNaN(rpm[99]));
+    }
+
+    @Test
+    public void testPropertyPresence() {
+        TrackData data = new TrackData();
+        int row = data.add(0, 51.0, 7.0);
+
+        // removing an absent property does not create a column.
+        data.setProperty(row, Measurement.PropertyKey.MAF, Double.NaN);
+        Assert.assertNull(data.getColumn(Measurement.PropertyKey.MAF));
+        Assert.assertFalse(data.hasProperty(Measurement.PropertyKey.MAF));
+
+        data.setProperty(row, Measurement.PropertyKey.MAF, 5.0);
+        Assert.assertTrue(data.hasProperty(Measurement.PropertyKey.MAF));
+        data.setProperty(row, Measurement.PropertyKey.MAF, Double.NaN);
+        Assert.assertFalse(data.hasProperty(Measurement.PropertyKey.MAF));
+
+        // the property mask of a track is folded in from the columns of its list view.
+        TrackImpl track = new TrackImpl();
+        track.setMeasurements(data.asList());
+        Assert.assertFalse(track.hasProperty(Measurement.PropertyKey.SPEED));
+        track.getMeasurements().add(createMeasurement(1));
+        Assert.assertTrue(track.hasProperty(Measurement.PropertyKey.SPEED));
+        Assert.assertFalse(track.hasProperty(Measurement.PropertyKey.MAF));
+    }
+
+    @Test
+    public void testListView() {
+        TrackData data = new TrackData();
+        List<Measurement> list = data.asList();
+        list.add(createMeasurement(0));
+
+        Assert.assertSame(data, TrackData.unwrap(list));
+        Assert.assertSame(data, TrackData.of(list));
+        Assert.assertNull(TrackData.unwrap(new ArrayList<>(list)));
+
+        // changes of an element are written to the columns.
+        list.get(0).setProperty(Measurement.PropertyKey.SPEED, 30.0);
+        Assert.assertEquals(30.0, data.getColumn(Measurement.PropertyKey.SPEED)[0], 0.0);
+    }
+
+    @Test
+    public void testDistanceOfColumns() {
+        TrackData data = new TrackData();
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Measurement measurement = createMeasurement(i);
+            data.add(measurement);
+            measurements.add(measurement);
+        }
+
+        TrackStatisticsProcessor processor = new TrackStatisticsProcessor(Car.FuelType.DIESEL);
+        double expected = processor.computeDistanceOfTrack(measurements);
+        Assert.assertTrue(expected > 0);
+        Assert.assertEquals(expected, processor.computeDistanceOfTrack(data.asList()), 1e-9);
+    }
+
+    @Test
+    public void testCO2AverageOfColumns() throws Exception {
+        TrackData data = new TrackData();
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Measurement measurement = createMeasurement(i);
+            // rows without consumption count as zero.
+            if (i % 3 != 0) {
+                measurement.setProperty(Measurement.PropertyKey.CONSUMPTION, 2.0 + i % 5);
+            }
+            data.add(measurement);
+            measurements.add(measurement);
+        }
+
+        TrackStatisticsProcessor processor = new TrackStatisticsProcessor(Car.FuelType.DIESEL);
+        double expected = processor.getCO2Average(measurements);
+        Assert.assertTrue(expected > 0);
+        Assert.assertEquals(expected, processor.getCO2Average(data.asList()), 1e-9);
+    }
+
+    private static Measurement createMeasurement(int i) {
+        Measurement measurement = new MeasurementImpl(51.0 + i * 1e-4, 7.0 + i * 1e-4);
+        measurement.setTrackId(TRACK);
+        measurement.setTime(1000L * i);
+        measurement.setProperty(Measurement.PropertyKey.SPEED, 80.0);
+        return measurement;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Maintenance of the property mask of tracks in memory and in the track row.
+ */
+public class TrackPropertyMaskTest extends InstrumentationTestCase {
+    private static final String DATABASE_NAME = "envirocar-property-mask-test";
+
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(DATABASE_NAME)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        DatabaseSchedulers schedulers = new DatabaseSchedulers();
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    @Test
+    public void testAppendedMeasurementsAreFoldedIn() {
+        TrackImpl track = new TrackImpl();
+        track.getMeasurements().add(createMeasurement(1, Measurement.PropertyKey.SPEED));
+        Assert.assertEquals(Collections.singletonList(Measurement.PropertyKey.SPEED),
+                track.getSupportedProperties());
+
+        track.getMeasurements().add(createMeasurement(2, Measurement.PropertyKey.RPM));
+        Assert.assertTrue(track.hasProperty(Measurement.PropertyKey.RPM));
+        Assert.assertFalse(track.hasProperty(Measurement.PropertyKey.MAF));
+
+        track.setMeasurements(Collections.singletonList(
+                createMeasurement(3, Measurement.PropertyKey.MAF)));
+        Assert.assertEquals(Collections.singletonList(Measurement.PropertyKey.MAF),
+                track.getSupportedProperties());
+    }
+
+    @Test
+    public void testPropertyMaskIsPersisted() throws Exception {
+        Track track = new TrackImpl();
+        track.setLength(0.0);
+        enviroCarDB.insertTrack(track);
+        enviroCarDB.insertMeasurements(track, Arrays.asList(
+                createMeasurement(track, 1, Measurement.PropertyKey.SPEED),
+                createMeasurement(track, 2, Measurement.PropertyKey.CO2)));
+        enviroCarDB.insertMeasurements(track, Collections.singletonList(
+                createMeasurement(track, 3, Measurement.PropertyKey.SPEED)));
+
+        Track lazy = enviroCarDB.getTrack(track.getTrackID(), true).blockingFirst();
+        Assert.assertTrue(lazy.getMeasurements().isEmpty());
+        Assert.assertEquals(Arrays.asList(Measurement.PropertyKey.SPEED,
+                Measurement.PropertyKey.CO2), lazy.getSupportedProperties());
+
+        // the mask shrinks when the measurements of a property are deleted.
+        enviroCarDB.automaticDeleteMeasurements(2, track.getTrackID());
+        lazy = enviroCarDB.getTrack(track.getTrackID(), true).blockingFirst();
+        Assert.assertEquals(Collections.singletonList(Measurement.PropertyKey.SPEED),
+                lazy.getSupportedProperties());
+    }
+
+    private Measurement createMeasurement(Track track, long time, Measurement.PropertyKey key) {
+        Measurement measurement = createMeasurement(time, key);
+        measurement.setTrackId(track.getTrackID());
+        return measurement;
+    }
+
+    private Measurement createMeasurement(long time, Measurement.PropertyKey key) {
+        PrimitiveMeasurement measurement = new PrimitiveMeasurement(51.9, 7.6);
+        measurement.setTime(time);
+        measurement.setProperty(key, 42.0);
+        return measurement;
+    }
+}
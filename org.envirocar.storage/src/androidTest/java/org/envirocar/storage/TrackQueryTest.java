@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
+import org.envirocar.core.entity.Car;
+import org.envirocar.core.entity.CarImpl;
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Filtering, sorting and paging of {@link EnviroCarDBImpl#getTracks(TrackFilter, TrackSort, int,
+ * int)}.
+ */
+public class TrackQueryTest extends InstrumentationTestCase {
+    private static final Car GOLF =
+            new CarImpl("golf", "VW", "Golf", Car.FuelType.GASOLINE, 2010, 1400);
+    private static final Car POLO =
+            new CarImpl("polo", "VW", "Polo", Car.FuelType.DIESEL, 2015, 1200);
+
+    private BriteDatabase briteDatabase;
+    private EnviroCarDBImpl enviroCarDB;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(null)
+                .callback(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION))
+                .build();
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
+        briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(helper, Schedulers.trampoline());
+        DatabaseSchedulers schedulers = new DatabaseSchedulers();
+        enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers, new TrackChangeNotifier(
+                EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS,
+                schedulers.read()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        briteDatabase.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testOffsetAndLimit() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            insertTrack("track " + i, 1000L * i, 1.0, GOLF, null);
+        }
+
+        Assert.assertEquals(Arrays.asList("track 6", "track 5", "track 4"),
+                names(TrackFilter.all(), TrackSort.START_TIME_DESC, 0, 3));
+        Assert.assertEquals(Arrays.asList("track 3", "track 2", "track 1"),
+                names(TrackFilter.all(), TrackSort.START_TIME_DESC, 3, 3));
+        Assert.assertEquals(Collections.singletonList("track 0"),
+                names(TrackFilter.all(), TrackSort.START_TIME_DESC, 6, 3));
+        Assert.assertTrue(names(TrackFilter.all(), TrackSort.START_TIME_DESC, 7, 3).isEmpty());
+    }
+
+    @Test
+    public void testTracksAreLazy() throws Exception {
+        Track track = insertTrack("track", 1000L, 1.0, GOLF, null);
+        enviroCarDB.insertMeasurements(track, Collections.singletonList(createMeasurement(track)));
+
+        Track page = enviroCarDB.getTracks(TrackFilter.all(), TrackSort.START_TIME_DESC, 0, 1)
+                .blockingFirst().get(0);
+        Assert.assertTrue(page.isLazyLoadingMeasurements());
+        Assert.assertTrue(page.getMeasurements().isEmpty());
+    }
+
+    @Test
+    public void testStartTimeRange() throws Exception {
+        insertTrack("before", 999L, 1.0, GOLF, null);
+        insertTrack("first", 1000L, 1.0, GOLF, null);
+        insertTrack("last", 1999L, 1.0, GOLF, null);
+        insertTrack("after", 2000L, 1.0, GOLF, null);
+
+        // the lower bound is inclusive, the upper bound is exclusive.
+        Assert.assertEquals(Arrays.asList("first", "last"), names(
+                TrackFilter.all().startedAfter(1000L).startedBefore(2000L),
+                TrackSort.START_TIME_ASC, 0, 10));
+        Assert.assertEquals(Arrays.asList("after", "last"), names(
+                TrackFilter.all().startedAfter(1999L), TrackSort.START_TIME_DESC, 0, 10));
+    }
+
+    @Test
+    public void testCarId() throws Exception {
+        insertTrack("golf 1", 1000L, 1.0, GOLF, null);
+        insertTrack("polo", 2000L, 1.0, POLO, null);
+        insertTrack("golf 2", 3000L, 1.0, GOLF, null);
+
+        Assert.assertEquals(Arrays.asList("golf 2", "golf 1"), names(
+                TrackFilter.all().carId(GOLF.getId()), TrackSort.START_TIME_DESC, 0, 10));
+        Assert.assertEquals(Collections.singletonList("polo"), names(
+                TrackFilter.all().carId(POLO.getId()), TrackSort.START_TIME_DESC, 0, 10));
+        Assert.assertTrue(names(TrackFilter.all().carId("unknown"),
+                TrackSort.START_TIME_DESC, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testSortOrders() throws Exception {
+        insertTrack("b", 2000L, 3.0, GOLF, null);
+        insertTrack("c", 1000L, 1.0, GOLF, null);
+        insertTrack("a", 3000L, 2.0, GOLF, null);
+        // ties are broken by the track id.
+        insertTrack("d", 3000L, 2.0, GOLF, null);
+
+        Assert.assertEquals(Arrays.asList("d", "a", "b", "c"),
+                names(TrackFilter.all(), TrackSort.START_TIME_DESC, 0, 10));
+        Assert.assertEquals(Arrays.asList("c", "b", "a", "d"),
+                names(TrackFilter.all(), TrackSort.START_TIME_ASC, 0, 10));
+        Assert.assertEquals(Arrays.asList("b", "d", "a", "c"),
+                names(TrackFilter.all(), TrackSort.LENGTH_DESC, 0, 10));
+        Assert.assertEquals(Arrays.asList("c", "a", "d", "b"),
+                names(TrackFilter.all(), TrackSort.LENGTH_ASC, 0, 10));
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"),
+                names(TrackFilter.all(), TrackSort.NAME_ASC, 0, 10));
+    }
+
+    @Test
+    public void testRemoteIds() throws Exception {
+        insertTrack("local", 1000L, 1.0, GOLF, null);
+        Track downloaded = insertTrack("downloaded", 2000L, 1.0, GOLF, "5a8c");
+        enviroCarDB.insertMeasurements(downloaded,
+                Collections.singletonList(createMeasurement(downloaded)));
+        insertTrack("without measurements", 3000L, 1.0, GOLF, "5a8d");
+        insertTrack("other", 4000L, 1.0, GOLF, "5a8e");
+
+        Assert.assertEquals(Arrays.asList("without measurements", "downloaded"), names(
+                TrackFilter.remote().remoteIds(Arrays.asList("5a8c", "5a8d", "unknown")),
+                TrackSort.START_TIME_DESC, 0, 10));
+        Assert.assertEquals(Collections.singletonList("downloaded"), names(
+                TrackFilter.remote().remoteIds(Arrays.asList("5a8c", "5a8d"))
+                        .withMeasurementsOnly(true), TrackSort.START_TIME_DESC, 0, 10));
+        Assert.assertTrue(names(TrackFilter.remote().remoteIds(Collections.emptyList()),
+                TrackSort.START_TIME_DESC, 0, 10).isEmpty());
+    }
+
+    private List<String> names(TrackFilter filter, TrackSort sort, int offset, int limit) {
+        List<String> names = new ArrayList<>();
+        for (Track track : enviroCarDB.getTracks(filter, sort, offset, limit).blockingFirst()) {
+            names.add(track.getName());
+        }
+        return names;
+    }
+
+    private Track insertTrack(String name, Long startTime, double length, Car car,
+                              String remoteId) throws Exception {
+        Track track = new TrackImpl();
+        track.setName(name);
+        track.setStartTime(startTime);
+        track.setEndTime(startTime + 500);
+        track.setLength(length);
+        track.setCar(car);
+        track.setRemoteID(remoteId);
+        enviroCarDB.insertTrack(track);
+        return track;
+    }
+
+    private Measurement createMeasurement(Track track) {
+        PrimitiveMeasurement measurement = new PrimitiveMeasurement(51.9, 7.6);
+        measurement.setTrackId(track.getTrackID());
+        measurement.setTime(track.getStartTime());
+        measurement.setProperty(Measurement.PropertyKey.SPEED, 30.0);
+        return measurement;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Maintenance of the summary columns of the track row on inserts and their backfill by the
+ * migration from database version 12.
+ */
+public class TrackSummaryTest extends InstrumentationTestCase {
+    private static final String DATABASE_NAME = "envirocar-track-summary-test";
+
+    private static final String SUMMARY_QUERY = "SELECT " +
+            TrackTable.KEY_TRACK_MEASUREMENT_COUNT + ", " +
+            TrackTable.KEY_TRACK_START_TIME + ", " +
+            TrackTable.KEY_TRACK_END_TIME + ", " +
+            TrackTable.KEY_TRACK_MIN_LATITUDE + ", " +
+            TrackTable.KEY_TRACK_MAX_LATITUDE + ", " +
+            TrackTable.KEY_TRACK_MIN_LONGITUDE + ", " +
+            TrackTable.KEY_TRACK_MAX_LONGITUDE + ", " +
+            TrackTable.KEY_TRACK_PROPERTY_MASK +
+            " FROM " + TrackTable.TABLE_TRACK + " WHERE " + TrackTable.KEY_TRACK_ID + " = ?";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    @Test
+    public void testSummaryIsMaintainedPerBatch() throws Exception {
+        BriteDatabase briteDatabase = new SqlBrite.Builder().build().wrapDatabaseHelper(
+                openHelper(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION)),
+                Schedulers.trampoline());
+        DatabaseSchedulers schedulers = new DatabaseSchedulers();
+        EnviroCarDBImpl enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers,
+                new TrackChangeNotifier(EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS,
+                        TimeUnit.MILLISECONDS, schedulers.read()));
+        try {
+            Track track = new TrackImpl();
+            track.setLength(0.0);
+            track.setStartTime(1000L);
+            enviroCarDB.insertTrack(track);
+
+            // the recorder updates the end time of the track before each batch
+            insertBatch(enviroCarDB, track, createMeasurement(1000, 51.95, 7.60, null),
+                    createMeasurement(1001, 51.96, 7.58, Measurement.PropertyKey.SPEED));
+            insertBatch(enviroCarDB, track, createMeasurement(1002, 51.90, 7.65, null));
+            insertBatch(enviroCarDB, track, createMeasurement(1003, 52.01, 7.55, null),
+                    createMeasurement(1004, 51.97, 7.70, Measurement.PropertyKey.RPM),
+                    createMeasurement(1005, 51.93, 7.61, null));
+
+            Object[] incremental = querySummary(briteDatabase, track.getTrackID());
+            Assert.assertArrayEquals(new Object[]{6L, 1000L, 1005L, 51.90, 52.01, 7.55, 7.70,
+                    (1L << Measurement.PropertyKey.SPEED.ordinal())
+                            | (1L << Measurement.PropertyKey.RPM.ordinal())}, incremental);
+
+            briteDatabase.execute(TrackTable.RECOMPUTE_SUMMARY_OF_TRACK,
+                    track.getTrackID().getId());
+            Assert.assertArrayEquals(querySummary(briteDatabase, track.getTrackID()),
+                    incremental);
+        } finally {
+            briteDatabase.close();
+        }
+    }
+
+    @Test
+    public void testMigrationBackfillsSummary() {
+        // a database of version 12: typed property columns, but no summary columns yet
+        SupportSQLiteOpenHelper helper = openHelper(new SupportSQLiteOpenHelper.Callback(12) {
+            @Override
+            public void onCreate(SupportSQLiteDatabase db) {
+                db.execSQL(TrackTable.CREATE.substring(0, TrackTable.CREATE.indexOf(
+                        ", " + TrackTable.KEY_TRACK_MEASUREMENT_COUNT)) + ");");
+                db.execSQL(MeasurementTable.CREATE);
+            }
+
+            @Override
+            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        });
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("INSERT INTO " + TrackTable.TABLE_TRACK + " (" + TrackTable.KEY_TRACK_ID +
+                ", " + TrackTable.KEY_TRACK_STATE + ", " + TrackTable.KEY_TRACK_LENGTH +
+                ") VALUES (1, 'FINISHED', 0.0), (2, 'FINISHED', 0.0)");
+        SupportSQLiteStatement statement = db.compileStatement(MeasurementTable.INSERT);
+        List<Measurement> measurements = Arrays.asList(
+                createMeasurement(1000, 51.95, 7.60, Measurement.PropertyKey.SPEED),
+                createMeasurement(1001, 51.90, 7.65, null),
+                createMeasurement(1002, 52.01, 7.55, null));
+        for (Measurement measurement : measurements) {
+            measurement.setTrackId(new Track.TrackId(1));
+            MeasurementTable.bindInsert(statement, measurement);
+            statement.executeInsert();
+        }
+        helper.close();
+
+        BriteDatabase briteDatabase = new SqlBrite.Builder().build().wrapDatabaseHelper(
+                openHelper(new EnviroCarDBCallback(DatabaseModule.DATABASE_VERSION)),
+                Schedulers.trampoline());
+        try {
+            Assert.assertArrayEquals(new Object[]{3L, 1000L, 1002L, 51.90, 52.01, 7.55, 7.65,
+                            1L << Measurement.PropertyKey.SPEED.ordinal()},
+                    querySummary(briteDatabase, new Track.TrackId(1)));
+
+            // a track without measurements has an empty summary
+            Assert.assertArrayEquals(new Object[]{0L, null, null, null, null, null, null, 0L},
+                    querySummary(briteDatabase, new Track.TrackId(2)));
+        } finally {
+            briteDatabase.close();
+        }
+    }
+
+    private void insertBatch(EnviroCarDBImpl enviroCarDB, Track track,
+                             Measurement... measurements) throws Exception {
+        List<Measurement> batch = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            measurement.setTrackId(track.getTrackID());
+            batch.add(measurement);
+            track.setEndTime(measurement.getTime());
+        }
+        enviroCarDB.insertMeasurements(track, batch);
+    }
+
+    /**
+     * @return count, start, end, bounding box and property mask as stored in the track row.
+     */
+    private Object[] querySummary(BriteDatabase briteDatabase, Track.TrackId trackId) {
+        Cursor c = briteDatabase.query(SUMMARY_QUERY, trackId.getId());
+        try {
+            Assert.assertTrue(c.moveToFirst());
+            Object[] summary = new Object[8];
+            for (int i = 0; i < summary.length; i++) {
+                if (c.isNull(i)) {
+                    summary[i] = null;
+                } else if (i < 3 || i == 7) {
+                    summary[i] = c.getLong(i);
+                } else {
+                    summary[i] = c.getDouble(i);
+                }
+            }
+            return summary;
+        } finally {
+            c.close();
+        }
+    }
+
+    private SupportSQLiteOpenHelper openHelper(SupportSQLiteOpenHelper.Callback callback) {
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration
+                .builder(getInstrumentation().getTargetContext())
+                .name(DATABASE_NAME)
+                .callback(callback)
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(config);
+    }
+
+    private Measurement createMeasurement(long time, double latitude, double longitude,
+                                          Measurement.PropertyKey key) {
+        Measurement measurement = new MeasurementImpl(latitude, longitude);
+        measurement.setTime(time);
+        if (key != null) {
+            measurement.setProperty(key, 42.0);
+        }
+        return measurement;
+    }
+}
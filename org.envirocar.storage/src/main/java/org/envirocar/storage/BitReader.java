@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+/**
+ * Bit stream reader for streams written by {@link BitWriter}.
+ */
+final class BitReader {
+    private final byte[] buffer;
+    private long bitPosition;
+    private final long bitLimit;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer the buffer to read from.
+     * @param offset the byte offset of the stream within the buffer.
+     * @param length the length of the stream in bytes.
+     */
+    BitReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.bitPosition = (long) offset << 3;
+        this.bitLimit = (long) (offset + length) << 3;
+    }
+
+    boolean readBit() {
+        if (bitPosition >= bitLimit) {
+            throw new IllegalStateException("Read beyond the end of the bit stream.");
+        }
+        boolean bit = (buffer[(int) (bitPosition >>> 3)] & (0x80 >>> (bitPosition & 7))) != 0;
+        bitPosition++;
+        return bit;
+    }
+
+    /**
+     * Reads an unsigned value of {@code numBits} bits.
+     *
+     * @param numBits the number of bits in the range of [0, 64].
+     * @return the value.
+     */
+    long readBits(int numBits) {
+        long value = 0;
+        for (int i = 0; i < numBits; i++) {
+            value = (value << 1) | (readBit() ? 1L : 0L);
+        }
+        return value;
+    }
+
+    /**
+     * Reads a two's complement value of {@code numBits} bits.
+     *
+     * @param numBits the number of bits in the range of [1, 64].
+     * @return the sign extended value.
+     */
+    long readSignedBits(int numBits) {
+        long value = readBits(numBits);
+        return (value << (64 - numBits)) >> (64 - numBits);
+    }
+}
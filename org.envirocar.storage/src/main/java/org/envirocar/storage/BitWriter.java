@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import java.util.Arrays;
+
+/**
+ * Growable bit stream writer. Bits are written MSB first.
+ */
+final class BitWriter {
+    private byte[] buffer;
+    private long bitPosition = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param initialCapacity the initial capacity in bytes.
+     */
+    BitWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 8)];
+    }
+
+    void writeBit(boolean bit) {
+        int byteIndex = (int) (bitPosition >>> 3);
+        if (byteIndex >= buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (bit) {
+            buffer[byteIndex] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+    }
+
+    /**
+     * Writes the lowest {@code numBits} bits of the value.
+     *
+     * @param value   the value to write.
+     * @param numBits the number of bits in the range of [0, 64].
+     */
+    void writeBits(long value, int numBits) {
+        for (int i = numBits - 1; i >= 0; i--) {
+            writeBit(((value >>> i) & 1L) != 0);
+        }
+    }
+
+    /**
+     * @return the written bits padded with zeros to full bytes.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (int) ((bitPosition + 7) >>> 3));
+    }
+}
@@ -30,11 +30,12 @@ import org.envirocar.core.EnviroCarDB;
 import org.envirocar.core.injection.InjectApplicationScope;
 import org.envirocar.core.logging.Logger;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
-import io.reactivex.schedulers.Schedulers;
 
 /**
  * TODO JavaDoc
@@ -47,7 +48,10 @@ public final class DatabaseModule {
 
     // configs
     private static final String DATABASE_NAME = "envirocar";
-    private static final int DATABASE_VERSION = 11;
+    static final int DATABASE_VERSION = 18;
+    private static final long CHECKPOINT_INTERVAL_MINUTES = 5;
+    private static final long NOTIFICATION_WINDOW_MILLIS =
+            EnviroCarDBImpl.DEFAULT_NOTIFICATION_WINDOW_MILLIS;
 
 
     @Provides
@@ -60,14 +64,30 @@ public final class DatabaseModule {
 
     @Provides
     @Singleton
-    BriteDatabase provideBriteDatabase(@InjectApplicationScope Context context, SqlBrite sqlBrite) {
+    DatabaseSchedulers provideDatabaseSchedulers() {
+        return new DatabaseSchedulers();
+    }
+
+    @Provides
+    @Singleton
+    TrackChangeNotifier provideTrackChangeNotifier(DatabaseSchedulers schedulers) {
+        return new TrackChangeNotifier(
+                NOTIFICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS, schedulers.read());
+    }
+
+    @Provides
+    @Singleton
+    BriteDatabase provideBriteDatabase(@InjectApplicationScope Context context, SqlBrite sqlBrite,
+                                       DatabaseSchedulers schedulers) {
         SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration.builder(context)
                 .name(DATABASE_NAME)
                 .callback(new EnviroCarDBCallback(DATABASE_VERSION))
                 .build();
 
         SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(config);
-        BriteDatabase db = sqlBrite.wrapDatabaseHelper(helper, Schedulers.io());
+        // readers get their own connections and do not wait for the writer.
+        helper.setWriteAheadLoggingEnabled(true);
+        BriteDatabase db = sqlBrite.wrapDatabaseHelper(helper, schedulers.read());
         db.setLoggingEnabled(true);
 
         return db;
@@ -75,9 +95,19 @@ public final class DatabaseModule {
 
     @Provides
     @Singleton
-    EnviroCarDB provideEnvirocarDB(BriteDatabase briteDatabase) {
-        return new EnviroCarDBImpl(briteDatabase);
+    EnviroCarDB provideEnvirocarDB(BriteDatabase briteDatabase, DatabaseSchedulers schedulers,
+                                   TrackChangeNotifier changeNotifier) {
+        EnviroCarDBImpl enviroCarDB = new EnviroCarDBImpl(briteDatabase, schedulers,
+                changeNotifier);
+        enviroCarDB.scheduleCheckpoints(CHECKPOINT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        return enviroCarDB;
     }
 
+    @Provides
+    @Singleton
+    RetentionEngine provideRetentionEngine(BriteDatabase briteDatabase,
+                                           DatabaseSchedulers schedulers,
+                                           TrackChangeNotifier changeNotifier) {
+        return new RetentionEngine(briteDatabase, schedulers, changeNotifier);
+    }
 }
-
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Concurrency model of the enviroCar database. All writes are serialized on a single writer
+ * thread, while reads run concurrently on a pool of reader threads. With the database in WAL
+ * mode, readers work on their own connections and never wait for a transaction of the writer.
+ */
+public class DatabaseSchedulers {
+
+    /**
+     * Matches the default size of the WAL connection pool of the Android framework.
+     */
+    static final int READER_THREADS = 4;
+
+    /**
+     * A unit of database work.
+     *
+     * @param <T> the type of the result.
+     * @param <E> the type of the checked exception thrown by the work.
+     */
+    interface Task<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final ExecutorService writeExecutor;
+    private final Scheduler writeScheduler;
+    private final Scheduler readScheduler;
+    private volatile Thread writerThread;
+
+    /**
+     * Constructor.
+     */
+    DatabaseSchedulers() {
+        this.writeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "envirocar-db-writer");
+            writerThread = thread;
+            return thread;
+        });
+        this.writeScheduler = Schedulers.from(writeExecutor);
+
+        AtomicInteger readerCount = new AtomicInteger();
+        this.readScheduler = Schedulers.from(Executors.newFixedThreadPool(READER_THREADS,
+                runnable -> new Thread(runnable,
+                        "envirocar-db-reader-" + readerCount.incrementAndGet())));
+    }
+
+    /**
+     * @return the scheduler of the single writer thread.
+     */
+    Scheduler write() {
+        return writeScheduler;
+    }
+
+    /**
+     * @return the scheduler of the reader threads.
+     */
+    Scheduler read() {
+        return readScheduler;
+    }
+
+    /**
+     * Runs the task on the writer thread and waits for its result. Tasks that are submitted from
+     * the writer thread itself are run directly.
+     *
+     * @param task the task to run.
+     * @return the result of the task.
+     * @throws E the exception thrown by the task.
+     */
+    @SuppressWarnings("unchecked")
+    <T, E extends Exception> T executeWrite(Task<T, E> task) throws E {
+        if (Thread.currentThread() == writerThread) {
+            return task.run();
+        }
+
+        Future<T> future = writeExecutor.submit(task::run);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the database writer.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // the task can only throw checked exceptions of type E.
+            throw (E) cause;
+        }
+    }
+}
@@ -18,6 +18,8 @@
  */
 package org.envirocar.storage;
 
+import android.database.Cursor;
+
 import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.sqlite.db.SupportSQLiteOpenHelper;
 
@@ -29,6 +31,8 @@ import org.envirocar.core.logging.Logger;
 class EnviroCarDBCallback extends SupportSQLiteOpenHelper.Callback {
     private static final Logger LOG = Logger.getLogger(EnviroCarDBOpenHelper.class);
 
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 4096;
+
     /**
      * Creates a new Callback to get database lifecycle events.
      *
@@ -38,21 +42,67 @@ class EnviroCarDBCallback extends SupportSQLiteOpenHelper.Callback {
         super(version);
     }
 
+    @Override
+    public void onConfigure(SupportSQLiteDatabase db) {
+        // takes effect for new databases only, existing ones are rebuilt by the RetentionEngine.
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
     @Override
     public void onCreate(SupportSQLiteDatabase db) {
         LOG.info("On create enviroCar database");
 //            db.execSQL("PRAGMA foreign_keys=ON;");
         db.execSQL(TrackTable.CREATE);
         db.execSQL(MeasurementTable.CREATE);
+        db.execSQL(MeasurementTable.CREATE_INDEX_TRACK_TIME);
+        db.execSQL(TrackTable.CREATE_INDEX_START_TIME);
+        db.execSQL(TrackTable.CREATE_INDEX_CAR_ID);
+        db.execSQL(TrackBlockTable.CREATE);
+        SpatialIndexTable.create(db);
+    }
+
+    @Override
+    public void onOpen(SupportSQLiteDatabase db) {
+        // checkpoints are scheduled explicitly by the writer, the automatic checkpoint only
+        // remains as upper bound of the size of the write-ahead log.
+        Cursor cursor = db.query("PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+        cursor.close();
+
+        // property keys can be added without a new database version
+        MeasurementTable.addMissingPropertyColumns(db);
     }
 
     @Override
     public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
-        LOG.info("On update enviroCar database");
-        db.execSQL(MeasurementTable.DELETE);
-        db.execSQL(TrackTable.DELETE);
-        db.execSQL(TrackTable.CREATE);
-        db.execSQL(MeasurementTable.CREATE);
+        LOG.info(String.format("Updating enviroCar database from version %s to version %s.",
+                oldVersion, newVersion));
+        if (oldVersion < 11) {
+            // no migration path for these versions.
+            db.execSQL(MeasurementTable.DELETE);
+            db.execSQL(TrackTable.DELETE);
+            db.execSQL(TrackBlockTable.DELETE);
+            SpatialIndexTable.delete(db);
+            onCreate(db);
+            return;
+        }
 
+        // every case migrates to the next version and falls through to the following one.
+        switch (oldVersion) {
+            case 11:
+                MeasurementTable.migrateToPropertyColumns(db);
+            case 12:
+                TrackTable.migrateToSummaryColumns(db);
+            case 13:
+                db.execSQL(MeasurementTable.CREATE_INDEX_TRACK_TIME);
+            case 14:
+                db.execSQL(TrackTable.CREATE_INDEX_START_TIME);
+                db.execSQL(TrackTable.CREATE_INDEX_CAR_ID);
+            case 15:
+                db.execSQL(TrackBlockTable.CREATE);
+            case 16:
+                SpatialIndexTable.migrateToSpatialIndex(db);
+            case 17:
+                TrackTable.migrateToPropertyMask(db);
+        }
     }
 }
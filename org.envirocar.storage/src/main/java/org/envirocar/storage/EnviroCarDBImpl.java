@@ -24,9 +24,14 @@ import android.database.sqlite.SQLiteDatabase;
 
 import com.squareup.sqlbrite3.BriteDatabase;
 
+import org.envirocar.core.BoundingBox;
 import org.envirocar.core.EnviroCarDB;
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
 import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
+import org.envirocar.core.entity.TrackImpl;
 import org.envirocar.core.exception.MeasurementSerializationException;
 import org.envirocar.core.exception.TrackSerializationException;
 import org.envirocar.core.logging.Logger;
@@ -34,14 +39,21 @@ import org.envirocar.core.util.TrackMetadata;
 import org.json.JSONException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Function;
 
 
@@ -54,16 +66,125 @@ import io.reactivex.functions.Function;
 public class EnviroCarDBImpl implements EnviroCarDB {
     private static final Logger LOG = Logger.getLogger(EnviroCarDBImpl.class);
 
+    private static final String CHECKPOINT = "PRAGMA wal_checkpoint(PASSIVE)";
+    static final long DEFAULT_NOTIFICATION_WINDOW_MILLIS = 500;
+
     protected BriteDatabase briteDatabase;
+    protected final MeasurementQueries measurementQueries;
+    protected final TrackBlockQueries trackBlockQueries;
+    protected final DatabaseSchedulers schedulers;
+    protected final QueryMetrics metrics = new QueryMetrics();
+    protected final TrackChangeNotifier changeNotifier;
+    protected final TrackCache trackCache = new TrackCache(TrackCache.DEFAULT_MAX_WEIGHT);
+    private volatile Boolean hasSpatialIndex;
 
     /**
      * Constructor.
      *
-     * @param briteDatabase the Database instance.
+     * @param briteDatabase  the Database instance.
+     * @param schedulers     the schedulers of the writer and the readers.
+     * @param changeNotifier the notifier of changed tracks.
      */
     @Inject
-    public EnviroCarDBImpl(BriteDatabase briteDatabase) {
+    public EnviroCarDBImpl(BriteDatabase briteDatabase, DatabaseSchedulers schedulers,
+                           TrackChangeNotifier changeNotifier) {
         this.briteDatabase = briteDatabase;
+        this.schedulers = schedulers;
+        this.changeNotifier = changeNotifier;
+        this.measurementQueries = new MeasurementQueries(briteDatabase);
+        this.trackBlockQueries = new TrackBlockQueries(briteDatabase);
+
+        // the subscription lives as long as the notifier, which is scoped like this instance.
+        changeNotifier.commits().subscribe(trackCache::invalidate);
+    }
+
+    /**
+     * @return the latency metrics of the queries of this instance.
+     */
+    public QueryMetrics getQueryMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the cache of hydrated tracks of this instance.
+     */
+    public TrackCache getTrackCache() {
+        return trackCache;
+    }
+
+    /**
+     * Schedules passive WAL checkpoints on the writer thread, so that the write-ahead log is
+     * merged into the database between write batches instead of within a recording write.
+     *
+     * @param period the period between two checkpoints.
+     * @param unit   the time unit of the period.
+     * @return the disposable of the schedule.
+     */
+    public Disposable scheduleCheckpoints(long period, TimeUnit unit) {
+        return schedulers.write().schedulePeriodicallyDirect(
+                this::checkpoint, period, period, unit);
+    }
+
+    /**
+     * Runs a passive WAL checkpoint and logs the query metrics.
+     */
+    public void checkpoint() {
+        write("checkpoint", () -> {
+            Cursor cursor = briteDatabase.query(CHECKPOINT);
+            try {
+                if (cursor.moveToFirst()) {
+                    LOG.info(String.format("checkpoint(): %s of %s WAL frames checkpointed.",
+                            cursor.getInt(2), cursor.getInt(1)));
+                }
+            } finally {
+                cursor.close();
+            }
+            return null;
+        });
+        LOG.info(metrics.toString());
+        LOG.info(trackCache.toString());
+    }
+
+    /**
+     * Runs a write on the single writer thread and records its latency. The time the write has
+     * been waiting for the writer is recorded as "writeQueue".
+     */
+    private <T, E extends Exception> T write(String name, DatabaseSchedulers.Task<T, E> task)
+            throws E {
+        long submitted = System.nanoTime();
+        return schedulers.executeWrite(() -> {
+            long started = System.nanoTime();
+            metrics.record("writeQueue", started - submitted);
+            try {
+                return task.run();
+            } finally {
+                metrics.record(name, System.nanoTime() - started);
+            }
+        });
+    }
+
+    /**
+     * Runs a write on the single writer thread and notifies the observers of the changed track
+     * once the write has been committed.
+     */
+    private <T, E extends Exception> T write(String name, Track.TrackId changed,
+                                             DatabaseSchedulers.Task<T, E> task) throws E {
+        T result = write(name, task);
+        changeNotifier.notifyChanged(changed);
+        return result;
+    }
+
+    /**
+     * Runs a read on the calling thread and records its latency.
+     */
+    private <T, E extends Exception> T read(String name, DatabaseSchedulers.Task<T, E> task)
+            throws E {
+        long started = System.nanoTime();
+        try {
+            return task.run();
+        } finally {
+            metrics.record(name, System.nanoTime() - started);
+        }
     }
 
     @Override
@@ -78,6 +199,83 @@ public class EnviroCarDBImpl implements EnviroCarDB {
                         " WHERE " + TrackTable.KEY_TRACK_ID + "=" + trackId, lazy);
     }
 
+    @Override
+    public Observable<Track> getTrackWithPagedMeasurements(Track.TrackId trackId, int pageSize) {
+        return getTrack(trackId, true)
+                .map(track -> {
+                    PagedMeasurementList.PageLoader loader = (offset, limit) -> {
+                        Cursor cursor = measurementQueries.fetchPageOfTrack(
+                                trackId, offset, limit);
+                        try {
+                            return MeasurementTable.fromCursorToList(cursor);
+                        } finally {
+                            cursor.close();
+                        }
+                    };
+                    int size = (int) measurementQueries.countOfTrack(trackId);
+                    if (size == 0) {
+                        // the track might have been moved into the cold storage.
+                        size = (int) trackBlockQueries.countOfTrack(trackId);
+                        loader = (offset, limit) ->
+                                trackBlockQueries.fetchRangeOfTrack(trackId, offset, limit);
+                    }
+                    // keep the persisted property mask, otherwise every query of a property
+                    // would page in the whole track.
+                    long propertyMask = track instanceof TrackImpl ?
+                            ((TrackImpl) track).getPropertyMask() : 0;
+                    track.setMeasurements(new PagedMeasurementList(loader, size, pageSize));
+                    track.setLazyMeasurements(false);
+                    if (track instanceof TrackImpl) {
+                        ((TrackImpl) track).setPropertyMask(propertyMask);
+                    }
+                    return track;
+                });
+    }
+
+    @Override
+    public Flowable<Measurement> streamMeasurements(Track.TrackId trackId, int window) {
+        return Flowable.generate(MeasurementWindow::new, (state, emitter) -> {
+            if (!state.iterator.hasNext() && !state.exhausted) {
+                List<Measurement> measurements = new ArrayList<>(window);
+                Cursor cursor = measurementQueries.fetchWindowOfTrack(
+                        trackId, state.lastTime, state.lastRowId, window);
+                try {
+                    long lastRowId = MeasurementTable.fromCursorToList(cursor, measurements);
+                    if (!measurements.isEmpty()) {
+                        state.lastRowId = lastRowId;
+                        state.lastTime = measurements.get(measurements.size() - 1).getTime();
+                    }
+                } finally {
+                    cursor.close();
+                }
+                state.exhausted = measurements.size() < window;
+                state.iterator = measurements.iterator();
+
+                if (measurements.isEmpty() && state.lastRowId == -1) {
+                    // no rows at all, the track might have been moved into the cold storage.
+                    state.iterator = trackBlockQueries.iterateOfTrack(trackId, 0);
+                }
+            }
+
+            if (state.iterator.hasNext()) {
+                emitter.onNext(state.iterator.next());
+            } else {
+                emitter.onComplete();
+            }
+            return state;
+        });
+    }
+
+    /**
+     * State of a measurement stream: the current window and the keyset position of its last row.
+     */
+    private static final class MeasurementWindow {
+        private Iterator<Measurement> iterator = Collections.emptyIterator();
+        private long lastTime = Long.MIN_VALUE;
+        private long lastRowId = -1;
+        private boolean exhausted = false;
+    }
+
     @Override
     public Observable<List<Track>> getAllTracks() {
         return getAllTracks(false);
@@ -109,8 +307,15 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public Observable<Integer> getAllLocalTracksCount() {
-        return Observable.just(briteDatabase.getReadableDatabase().query("SELECT * FROM " + TrackTable.TABLE_TRACK +
-                " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NULL").getCount());
+        return Observable.fromCallable(() -> read("countLocalTracks", () -> {
+            Cursor cursor = briteDatabase.query("SELECT COUNT(*) FROM " + TrackTable.TABLE_TRACK +
+                    " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NULL");
+            try {
+                return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            } finally {
+                cursor.close();
+            }
+        }));
     }
 
     @Override
@@ -125,20 +330,265 @@ public class EnviroCarDBImpl implements EnviroCarDB {
                         " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NOT NULL", lazy);
     }
 
+    @Override
+    public Flowable<List<Track>> getTracks(TrackFilter filter, TrackSort sort, int offset,
+                                           int limit) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT * FROM " + TrackTable.TABLE_TRACK +
+                TrackTable.toSelection(filter, args) +
+                TrackTable.toOrderBy(sort) +
+                " LIMIT ? OFFSET ?";
+        args.add(limit);
+        args.add(offset);
+
+        return Flowable.fromCallable(() -> read("getTracks", () -> {
+            Cursor cursor = briteDatabase.query(sql, args.toArray());
+            try {
+                List<Track> tracks = new ArrayList<>(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    tracks.add(markLazy(TrackTable.fromCursor(cursor)));
+                }
+                return tracks;
+            } finally {
+                cursor.close();
+            }
+        }));
+    }
+
+    @Override
+    public Observable<List<Track>> getTracksIntersecting(BoundingBox boundingBox) {
+        return Observable.fromCallable(() -> read("getTracksIntersecting", () -> {
+            Object[] args = toArgs(boundingBox);
+
+            boolean indexed = hasSpatialIndex();
+            Set<Long> trackIdsWithRows = new HashSet<>();
+            Cursor cursor = briteDatabase.query(indexed ?
+                    SpatialIndexTable.FETCH_TRACK_IDS_WITH_MEASUREMENTS_IN_BOX :
+                    SpatialIndexTable.FETCH_TRACK_IDS_WITH_MEASUREMENTS_IN_BOX_WITHOUT_INDEX, args);
+            try {
+                while (cursor.moveToNext()) {
+                    trackIdsWithRows.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            // the measurements of archived tracks are not part of the index, hence their
+            // blocks are checked if the bounding box of the track overlaps the box.
+            List<Track> tracks = new ArrayList<>();
+            cursor = briteDatabase.query(indexed ?
+                    SpatialIndexTable.FETCH_TRACKS_OVERLAPPING :
+                    SpatialIndexTable.FETCH_TRACKS_OVERLAPPING_WITHOUT_INDEX, args);
+            try {
+                while (cursor.moveToNext()) {
+                    Track track = TrackTable.fromCursor(cursor);
+                    if (trackIdsWithRows.contains(track.getTrackID().getId())
+                            || archivedTrackIntersects(track.getTrackID(), boundingBox)) {
+                        tracks.add(markLazy(track));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return tracks;
+        }));
+    }
+
+    @Override
+    public Observable<Measurement> getLastMeasurement(Track.TrackId trackId) {
+        return Observable.create(emitter -> {
+            Measurement last = read("getLastMeasurement", () -> {
+                Cursor cursor = measurementQueries.fetchLastOfTrack(trackId);
+                try {
+                    if (cursor.moveToFirst()) {
+                        return MeasurementTable.fromCursor(cursor);
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                // the track might have been moved into the cold storage.
+                int count = (int) trackBlockQueries.countOfTrack(trackId);
+                return count > 0 ?
+                        trackBlockQueries.fetchRangeOfTrack(trackId, count - 1, 1).get(0) : null;
+            });
+
+            if (last != null) {
+                emitter.onNext(last);
+            }
+            emitter.onComplete();
+        });
+    }
+
+    @Override
+    public Observable<List<Measurement>> getMeasurementsInBox(Track.TrackId trackId,
+                                                              BoundingBox boundingBox) {
+        return Observable.fromCallable(() -> read("getMeasurementsInBox", () -> {
+            Object[] args = Arrays.copyOf(toArgs(boundingBox), 5);
+            args[4] = trackId.getId();
+
+            Cursor cursor = briteDatabase.query(hasSpatialIndex() ?
+                    SpatialIndexTable.FETCH_MEASUREMENTS_IN_BOX :
+                    SpatialIndexTable.FETCH_MEASUREMENTS_IN_BOX_WITHOUT_INDEX, args);
+            try {
+                List<Measurement> measurements = MeasurementTable.fromCursorToList(cursor);
+                if (!measurements.isEmpty() || trackBlockQueries.countOfTrack(trackId) == 0) {
+                    return measurements;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            List<Measurement> measurements = new ArrayList<>();
+            for (Iterator<Measurement> it = trackBlockQueries.iterateOfTrack(trackId, 0);
+                 it.hasNext(); ) {
+                Measurement measurement = it.next();
+                if (isInBox(measurement, boundingBox)) {
+                    measurements.add(measurement);
+                }
+            }
+            return measurements;
+        }));
+    }
+
+    private boolean hasSpatialIndex() {
+        if (hasSpatialIndex == null) {
+            // the indices are missing if the SQLite build has no R*Tree support.
+            hasSpatialIndex = SpatialIndexTable.exists(briteDatabase.getReadableDatabase());
+        }
+        return hasSpatialIndex;
+    }
+
+    private boolean archivedTrackIntersects(Track.TrackId trackId, BoundingBox boundingBox) {
+        for (Iterator<Measurement> it = trackBlockQueries.iterateOfTrack(trackId, 0);
+             it.hasNext(); ) {
+            if (isInBox(it.next(), boundingBox)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInBox(Measurement measurement, BoundingBox boundingBox) {
+        return measurement.getLatitude() != null && measurement.getLongitude() != null
+                && boundingBox.contains(measurement.getLatitude(), measurement.getLongitude());
+    }
+
+    private static Object[] toArgs(BoundingBox boundingBox) {
+        return new Object[]{
+                boundingBox.getMinLatitude(), boundingBox.getMinLongitude(),
+                boundingBox.getMaxLatitude(), boundingBox.getMaxLongitude()};
+    }
+
+    @Override
+    public Observable<Track.TrackId> archiveFinishedTracks() {
+        return Observable.defer(() ->
+                Observable.fromIterable(trackBlockQueries.fetchArchivableTrackIds()))
+                .filter(this::archiveTrack)
+                .doOnComplete(this::checkpoint);
+    }
+
+    /**
+     * Moves the measurements of a track into the cold storage. The measurements are read in
+     * windows of one block each, so that only a single block is held in memory at a time. The
+     * blocks are written and the rows are deleted within one transaction.
+     *
+     * @param trackId the id of the track to archive.
+     * @return true if measurements of the track have been archived.
+     */
+    private boolean archiveTrack(Track.TrackId trackId) {
+        return write("archiveTrack", () -> archiveTrackTransaction(trackId));
+    }
+
+    private boolean archiveTrackTransaction(Track.TrackId trackId) {
+        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+        try {
+            long lastTime = Long.MIN_VALUE;
+            long lastRowId = -1;
+            int count = 0;
+            long bytes = 0;
+            for (int sequence = 0; ; sequence++) {
+                List<Measurement> measurements = new ArrayList<>(TrackBlockTable.BLOCK_SIZE);
+                Cursor cursor = measurementQueries.fetchWindowOfTrack(
+                        trackId, lastTime, lastRowId, TrackBlockTable.BLOCK_SIZE);
+                try {
+                    lastRowId = MeasurementTable.fromCursorToList(cursor, measurements);
+                } finally {
+                    cursor.close();
+                }
+                if (measurements.isEmpty()) {
+                    break;
+                }
+
+                lastTime = measurements.get(measurements.size() - 1).getTime();
+                bytes += trackBlockQueries.insert(trackId, sequence, measurements);
+                count += measurements.size();
+                if (measurements.size() < TrackBlockTable.BLOCK_SIZE) {
+                    break;
+                }
+            }
+
+            if (count == 0) {
+                return false;
+            }
+            measurementQueries.deleteOfTrack(trackId);
+            transaction.markSuccessful();
+            LOG.info(String.format("archiveTrack(): moved %s measurements of track %s " +
+                    "into %s compressed bytes.", count, trackId, bytes));
+            return true;
+        } finally {
+            transaction.end();
+        }
+    }
+
     @Override
     public Observable<Void> clearTables() {
         return Observable.create(emitter -> {
-            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
-            // TODO
+            write("clearTables", () -> {
+                BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+                try {
+                    briteDatabase.delete(TrackBlockTable.TABLE_NAME, null);
+                    briteDatabase.delete(MeasurementTable.TABLE_NAME, null);
+                    briteDatabase.delete(TrackTable.TABLE_TRACK, null);
+                    transaction.markSuccessful();
+                } finally {
+                    transaction.end();
+                }
+                trackCache.invalidateAll();
+                return null;
+            });
+            emitter.onComplete();
         });
     }
 
     public void insertTrack(final Track track) throws TrackSerializationException {
+        write("insertTrack", () -> {
+            insertTrackTransaction(track);
+            return null;
+        });
+        changeNotifier.notifyChanged(track.getTrackID());
+    }
+
+    private void insertTrackTransaction(final Track track) {
         LOG.info("insertTrack(): trying to insert a new track");
         BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
         try {
-            long result = briteDatabase.insert(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
-                    TrackTable.toContentValues(track));
+            // a downloaded track whose measurements have been dropped by the retention is
+            // downloaded into its existing row again.
+            long existing = track.isRemoteTrack() ? findTrackOfRemoteId(track.getRemoteID()) : -1;
+            long result;
+            if (existing != -1) {
+                ContentValues values = TrackTable.toContentValues(track);
+                values.remove(TrackTable.KEY_TRACK_ID);
+                briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, values,
+                        TrackTable.KEY_TRACK_ID + "=?", Long.toString(existing));
+                measurementQueries.deleteOfTrack(new Track.TrackId(existing));
+                trackBlockQueries.deleteOfTrack(new Track.TrackId(existing));
+                result = existing;
+            } else {
+                result = briteDatabase.insert(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
+                        TrackTable.toContentValues(track));
+            }
             Track.TrackId trackId = new Track.TrackId(result);
             track.setTrackID(trackId);
             LOG.info(String.format("insertTrack(): " +
@@ -147,10 +597,15 @@ public class EnviroCarDBImpl implements EnviroCarDB {
             if (track.getMeasurements().size() > 0) {
                 for (Measurement measurement : track.getMeasurements()) {
                     measurement.setTrackId(trackId);
-                    briteDatabase.insert(MeasurementTable.TABLE_NAME, SQLiteDatabase.CONFLICT_FAIL,
-                            MeasurementTable.toContentValues(measurement));
+                    measurementQueries.insert(measurement);
                 }
             }
+            if (existing != -1) {
+                briteDatabase.executeAndTrigger(TrackTable.TABLE_TRACK,
+                        TrackTable.RECOMPUTE_SUMMARY_OF_TRACK, result);
+            } else {
+                updateTrackSummary(trackId, track.getMeasurements());
+            }
 
             transaction.markSuccessful();
         } finally {
@@ -158,6 +613,17 @@ public class EnviroCarDBImpl implements EnviroCarDB {
         }
     }
 
+    private long findTrackOfRemoteId(String remoteId) {
+        Cursor cursor = briteDatabase.query("SELECT " + TrackTable.KEY_TRACK_ID +
+                " FROM " + TrackTable.TABLE_TRACK +
+                " WHERE " + TrackTable.KEY_REMOTE_ID + " = ? LIMIT 1", remoteId);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public Observable<Track> insertTrackObservable(final Track track) {
         return Observable.create(emitter -> {
@@ -175,7 +641,8 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public boolean updateTrack(Track track) {
         LOG.info(String.format("updateTrack(%s)", track.getTrackID()));
         ContentValues trackValues = TrackTable.toContentValues(track);
-        int update = briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, trackValues, TrackTable.KEY_TRACK_ID + "=" + track.getTrackID());
+        int update = write("updateTrack", track.getTrackID(), () ->
+                briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, trackValues, TrackTable.KEY_TRACK_ID + "=" + track.getTrackID()));
         return update != -1;
     }
 
@@ -194,16 +661,20 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public boolean updateCarIdOfTracks(String currentId, String newId) {
         ContentValues values = new ContentValues();
         values.put(TrackTable.KEY_TRACK_CAR_ID, newId);
-        briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, values,
-                TrackTable.KEY_TRACK_CAR_ID + "=?", currentId);
+        write("updateCarIdOfTracks", () ->
+                briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, values,
+                        TrackTable.KEY_TRACK_CAR_ID + "=?", currentId));
         return true;
     }
 
     @Override
     public void deleteTrack(Track.TrackId trackId) {
-        briteDatabase.delete(TrackTable.TABLE_TRACK,
-                TrackTable.KEY_TRACK_ID + "='" + trackId + "'");
-        deleteMeasurementsOfTrack(trackId);
+        write("deleteTrack", trackId, () -> {
+            briteDatabase.delete(TrackTable.TABLE_TRACK,
+                    TrackTable.KEY_TRACK_ID + "=?", Long.toString(trackId.getId()));
+            deleteMeasurementsOfTrack(trackId);
+            return null;
+        });
     }
 
     @Override
@@ -239,8 +710,46 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     public void insertMeasurement(final Measurement measurement) throws
             MeasurementSerializationException {
         LOG.info("inserted measurement into track " + measurement.getTrackId());
-        briteDatabase.insert(MeasurementTable.TABLE_NAME, SQLiteDatabase.CONFLICT_FAIL,
-                MeasurementTable.toContentValues(measurement));
+        write("insertMeasurement", measurement.getTrackId(), () -> {
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                measurementQueries.insert(measurement);
+                updateTrackSummary(measurement.getTrackId(),
+                        Collections.singletonList(measurement));
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void insertMeasurements(final Track track,
+                                                final List<Measurement> measurements)
+            throws MeasurementSerializationException {
+        LOG.info(String.format("insertMeasurements(): inserting %s measurements into track %s",
+                measurements.size(), track.getTrackID()));
+        write("insertMeasurements", track.getTrackID(), () -> {
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                for (Measurement measurement : measurements) {
+                    if (measurementQueries.insert(measurement) == -1) {
+                        throw new MeasurementSerializationException(
+                                "Unable to insert measurement of track " + track.getTrackID());
+                    }
+                }
+
+                briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
+                        TrackTable.toContentValues(track),
+                        TrackTable.KEY_TRACK_ID + "=" + track.getTrackID());
+                updateTrackSummary(track.getTrackID(), measurements);
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            return null;
+        });
     }
 
     @Override
@@ -262,9 +771,10 @@ public class EnviroCarDBImpl implements EnviroCarDB {
         ContentValues newValues = new ContentValues();
         newValues.put(TrackTable.KEY_REMOTE_ID, remoteID);
 
-        briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, newValues,
-                TrackTable.KEY_TRACK_ID + "=?",
-                Long.toString(track.getTrackID().getId()));
+        write("updateTrackRemoteID", track.getTrackID(), () ->
+                briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
+                        newValues, TrackTable.KEY_TRACK_ID + "=?",
+                        Long.toString(track.getTrackID().getId())));
     }
 
     @Override
@@ -282,9 +792,10 @@ public class EnviroCarDBImpl implements EnviroCarDB {
             ContentValues newValues = new ContentValues();
             newValues.put(TrackTable.KEY_TRACK_METADATA, trackMetadata.toJsonString());
 
-            briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL, newValues,
-                    TrackTable.KEY_TRACK_ID + "=?",
-                    Long.toString(track.getTrackID().getId()));
+            write("updateTrackMetadata", track.getTrackID(), () ->
+                    briteDatabase.update(TrackTable.TABLE_TRACK, SQLiteDatabase.CONFLICT_FAIL,
+                            newValues, TrackTable.KEY_TRACK_ID + "=?",
+                            Long.toString(track.getTrackID().getId())));
         } catch (JSONException e) {
             LOG.error(e.getMessage(), e);
             throw new TrackSerializationException(e);
@@ -314,7 +825,7 @@ public class EnviroCarDBImpl implements EnviroCarDB {
 
     @Override
     public Observable<Track> fetchTrack(Observable<Track> trackObservable, final boolean lazy) {
-        return trackObservable.flatMap(track -> lazy ? fetchStartTime(track) : fetchMeasurements(track));
+        return trackObservable.flatMap(track -> lazy ? Observable.just(markLazy(track)) : fetchMeasurements(track));
     }
 
     @Override
@@ -330,57 +841,49 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     private void deleteMeasurementsOfTrack(Track.TrackId trackId) {
         BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
         try {
-            briteDatabase.delete(MeasurementTable.TABLE_NAME,
-                    MeasurementTable.KEY_TRACK + "='" + trackId + "'");
+            measurementQueries.deleteOfTrack(trackId);
+            trackBlockQueries.deleteOfTrack(trackId);
             transaction.markSuccessful();
         } finally {
             transaction.end();
         }
     }
 
+    private void updateTrackSummary(Track.TrackId trackId, List<Measurement> measurements) {
+        if (!measurements.isEmpty()) {
+            briteDatabase.executeAndTrigger(TrackTable.TABLE_TRACK, TrackTable.UPDATE_SUMMARY,
+                    TrackTable.toSummaryArgs(trackId, measurements));
+        }
+    }
+
     @Override
     public void automaticDeleteMeasurements(long time, Track.TrackId trackId) {
-        BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
-        try {
-            briteDatabase.delete(MeasurementTable.TABLE_NAME,
-                    MeasurementTable.KEY_TRACK + "='" + trackId + "' AND " + MeasurementTable.KEY_TIME + " >= " + time);
-            transaction.markSuccessful();
-        } finally {
-            transaction.end();
-        }
+        write("automaticDeleteMeasurements", trackId, () -> {
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                measurementQueries.deleteOfTrackSince(trackId, time);
+                briteDatabase.executeAndTrigger(TrackTable.TABLE_TRACK,
+                        TrackTable.RECOMPUTE_SUMMARY_OF_TRACK, trackId.getId());
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            return null;
+        });
     }
 
     private Observable<Track> fetchMeasurements(final Track track) {
-        return briteDatabase.createQuery(
-                MeasurementTable.TABLE_NAME,
-                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC")
-                .mapToList(MeasurementTable.MAPPER)
-                .map(measurements -> {
-                    track.setMeasurements(measurements);
+        // re-query only when this track has changed and not on every measurement write.
+        return changeNotifier.changesOf(track.getTrackID())
+                .startWith(track.getTrackID())
+                .observeOn(schedulers.read())
+                .map(trackId -> {
+                    track.setMeasurements(readMeasurements(trackId));
                     track.setLazyMeasurements(false);
                     return track;
                 });
     }
 
-    private Observable<Track> fetchStartTime(final Track track) {
-        return briteDatabase.createQuery(
-                MeasurementTable.TABLE_NAME,
-                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC" +
-                        " LIMIT 1")
-                .mapToOne(MeasurementTable.MAPPER)
-                .map(measurement -> {
-                    track.setStartTime(measurement.getTime());
-                    track.setLazyMeasurements(true);
-                    return track;
-                });
-    }
-
     private Observable<Track> fetchTrackObservable(String sql, boolean lazy) {
         return briteDatabase
                 .createQuery(TrackTable.TABLE_TRACK, sql)
@@ -396,18 +899,24 @@ public class EnviroCarDBImpl implements EnviroCarDB {
                 return null;
 
             // return the track either leither or completly fetched.
-            return lazy ? fetchStartEndTimeSilent(track) : fetchMeasurementsSilent(track);
+            return lazy ? markLazy(track) : fetchMeasurementsSilent(track);
         });
     }
 
     private Observable<List<Track>> fetchTracksObservable(String sql, boolean lazy) {
         Observable<List<Track>> listObservable = Observable.create(emitter -> {
-            Cursor query = briteDatabase.getReadableDatabase().query(sql);
-
-            ArrayList<Track> tracks = new ArrayList<>();
-            for (query.moveToFirst(); !query.isAfterLast(); query.moveToNext()) {
-                tracks.add(TrackTable.MAPPER.apply(query));
-            }
+            List<Track> tracks = read("fetchTracks", () -> {
+                Cursor query = briteDatabase.query(sql);
+                try {
+                    List<Track> result = new ArrayList<>(query.getCount());
+                    while (query.moveToNext()) {
+                        result.add(TrackTable.MAPPER.apply(query));
+                    }
+                    return result;
+                } finally {
+                    query.close();
+                }
+            });
 
             emitter.onNext(tracks);
             emitter.onComplete();
@@ -419,7 +928,7 @@ public class EnviroCarDBImpl implements EnviroCarDB {
         return trackObservable -> trackObservable.map(tracks -> {
             for (Track track : tracks) {
                 if (lazy) {
-                    fetchStartEndTimeSilent(track);
+                    markLazy(track);
                 } else {
                     fetchMeasurementsSilent(track);
                 }
@@ -429,42 +938,50 @@ public class EnviroCarDBImpl implements EnviroCarDB {
     }
 
     private Track fetchMeasurementsSilent(final Track track) {
-        track.setMeasurements(MeasurementTable.fromCursorToList(briteDatabase.query(
-                "SELECT * FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC", (String[]) null)));
+        // the property mask of a freshly read track row covers all of its stored measurements.
+        long propertyMask = track instanceof TrackImpl ? ((TrackImpl) track).getPropertyMask() : 0;
+        track.setMeasurements(readMeasurements(track.getTrackID()));
         track.setLazyMeasurements(false);
+        if (track instanceof TrackImpl) {
+            ((TrackImpl) track).setPropertyMask(propertyMask);
+        }
         return track;
     }
 
-    private Track fetchStartEndTimeSilent(final Track track) {
-        Cursor startTime = briteDatabase.query(
-                "SELECT " + MeasurementTable.KEY_TIME +
-                        " FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " ASC LIMIT 1");
-
-        if (startTime.moveToFirst()) {
-            track.setStartTime(
-                    startTime.getLong(
-                            startTime.getColumnIndex(MeasurementTable.KEY_TIME)));
+    private List<Measurement> readMeasurements(Track.TrackId trackId) {
+        List<Measurement> cached = trackCache.get(trackId);
+        if (cached != null) {
+            return cached;
         }
 
-        Cursor endTime = briteDatabase.query(
-                "SELECT " + MeasurementTable.KEY_TIME +
-                        " FROM " + MeasurementTable.TABLE_NAME +
-                        " WHERE " + MeasurementTable.KEY_TRACK +
-                        "=\"" + track.getTrackID() + "\"" +
-                        " ORDER BY " + MeasurementTable.KEY_TIME + " DESC LIMIT 1");
-
-        if (endTime.moveToFirst()) {
-            track.setEndTime(
-                    endTime.getLong(
-                            startTime.getColumnIndex(MeasurementTable.KEY_TIME)));
+        long version = trackCache.version();
+        List<Measurement> measurements =
+                read("fetchMeasurements", () -> readMeasurementsOfTrack(trackId));
+        trackCache.put(trackId, measurements, version);
+        return measurements;
+    }
+
+    private List<Measurement> readMeasurementsOfTrack(Track.TrackId trackId) {
+        Cursor cursor = measurementQueries.fetchOfTrack(trackId);
+        try {
+            TrackData data = MeasurementTable.fromCursorToTrackData(cursor);
+            if (data.size() > 0) {
+                return data.asList();
+            }
+        } finally {
+            cursor.close();
         }
 
+        // archiving replaces the rows atomically, so the blocks are only read when there
+        // are no rows.
+        TrackData data = TrackData.of(trackBlockQueries.fetchOfTrack(trackId));
+        data.setTrackId(trackId);
+        return data.asList();
+    }
+
+    private Track markLazy(final Track track) {
+        // start and end time are part of the summary columns of the track row.
+        track.setLazyMeasurements(true);
         return track;
     }
 
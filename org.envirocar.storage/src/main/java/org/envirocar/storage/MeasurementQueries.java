@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+
+/**
+ * Query layer for the measurements table. All queries use constant SQL with bound arguments, so
+ * that the track id keeps its INTEGER affinity and the (track, time) index can be used. Write
+ * statements are compiled once and cached for the lifetime of this instance.
+ */
+class MeasurementQueries {
+
+    static final String FETCH_OF_TRACK =
+            "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?" +
+                    " ORDER BY " + MeasurementTable.KEY_TIME + " ASC";
+
+    /**
+     * Keyset query for the window following (time, _id) of the last row of the previous window.
+     */
+    static final String FETCH_WINDOW_OF_TRACK =
+            "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?1" +
+                    " AND (" + MeasurementTable.KEY_TIME + " > ?2" +
+                    " OR (" + MeasurementTable.KEY_TIME + " = ?2" +
+                    " AND " + MeasurementTable.KEY_ROWID + " > ?3))" +
+                    " ORDER BY " + MeasurementTable.KEY_TIME + " ASC, " +
+                    MeasurementTable.KEY_ROWID + " ASC" +
+                    " LIMIT ?4";
+
+    static final String FETCH_PAGE_OF_TRACK =
+            "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?" +
+                    " ORDER BY " + MeasurementTable.KEY_TIME + " ASC, " +
+                    MeasurementTable.KEY_ROWID + " ASC" +
+                    " LIMIT ? OFFSET ?";
+
+    static final String FETCH_LAST_OF_TRACK =
+            "SELECT * FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?" +
+                    " ORDER BY " + MeasurementTable.KEY_TIME + " DESC, " +
+                    MeasurementTable.KEY_ROWID + " DESC" +
+                    " LIMIT 1";
+
+    static final String COUNT_OF_TRACK =
+            "SELECT COUNT(*) FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?";
+
+    static final String DELETE_OF_TRACK =
+            "DELETE FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?";
+
+    static final String DELETE_OF_TRACK_SINCE =
+            "DELETE FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = ?" +
+                    " AND " + MeasurementTable.KEY_TIME + " >= ?";
+
+    private final BriteDatabase briteDatabase;
+
+    private SupportSQLiteStatement insertStatement;
+    private SupportSQLiteStatement deleteOfTrackStatement;
+    private SupportSQLiteStatement deleteOfTrackSinceStatement;
+    private SupportSQLiteStatement countOfTrackStatement;
+
+    /**
+     * Constructor.
+     *
+     * @param briteDatabase the database to run the queries on.
+     */
+    MeasurementQueries(BriteDatabase briteDatabase) {
+        this.briteDatabase = briteDatabase;
+    }
+
+    /**
+     * Returns a cursor over all measurements of a track ordered by time.
+     *
+     * @param trackId the id of the track.
+     * @return the cursor. Callers are responsible for closing it.
+     */
+    Cursor fetchOfTrack(Track.TrackId trackId) {
+        return briteDatabase.query(FETCH_OF_TRACK, trackId.getId());
+    }
+
+    /**
+     * Returns a cursor over at most {@code limit} measurements of a track that follow the given
+     * (time, row id) position in time order.
+     *
+     * @param trackId   the id of the track.
+     * @param lastTime  the time of the last row of the previous window.
+     * @param lastRowId the row id of the last row of the previous window.
+     * @param limit     the maximum number of rows.
+     * @return the cursor. Callers are responsible for closing it.
+     */
+    Cursor fetchWindowOfTrack(Track.TrackId trackId, long lastTime, long lastRowId, int limit) {
+        return briteDatabase.query(FETCH_WINDOW_OF_TRACK,
+                trackId.getId(), lastTime, lastRowId, limit);
+    }
+
+    /**
+     * Returns a cursor over a single page of measurements of a track in time order.
+     *
+     * @param trackId the id of the track.
+     * @param offset  the number of rows to skip.
+     * @param limit   the maximum number of rows.
+     * @return the cursor. Callers are responsible for closing it.
+     */
+    Cursor fetchPageOfTrack(Track.TrackId trackId, int offset, int limit) {
+        return briteDatabase.query(FETCH_PAGE_OF_TRACK, trackId.getId(), limit, offset);
+    }
+
+    /**
+     * Returns a cursor over the latest measurement of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the cursor. Callers are responsible for closing it.
+     */
+    Cursor fetchLastOfTrack(Track.TrackId trackId) {
+        return briteDatabase.query(FETCH_LAST_OF_TRACK, trackId.getId());
+    }
+
+    /**
+     * Returns the number of measurements of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the number of measurements.
+     */
+    synchronized long countOfTrack(Track.TrackId trackId) {
+        if (countOfTrackStatement == null) {
+            countOfTrackStatement = briteDatabase.getReadableDatabase()
+                    .compileStatement(COUNT_OF_TRACK);
+        }
+        countOfTrackStatement.bindLong(1, trackId.getId());
+        return countOfTrackStatement.simpleQueryForLong();
+    }
+
+    /**
+     * Inserts a single measurement using the cached insert statement.
+     *
+     * @param measurement the measurement to insert.
+     * @return the row id of the new measurement or -1 on failure.
+     */
+    synchronized long insert(Measurement measurement) {
+        if (insertStatement == null) {
+            insertStatement = compile(MeasurementTable.INSERT);
+        }
+        MeasurementTable.bindInsert(insertStatement, measurement);
+        return briteDatabase.executeInsert(MeasurementTable.TABLE_NAME, insertStatement);
+    }
+
+    /**
+     * Deletes all measurements of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the number of deleted rows.
+     */
+    synchronized int deleteOfTrack(Track.TrackId trackId) {
+        if (deleteOfTrackStatement == null) {
+            deleteOfTrackStatement = compile(DELETE_OF_TRACK);
+        }
+        deleteOfTrackStatement.bindLong(1, trackId.getId());
+        return briteDatabase.executeUpdateDelete(
+                MeasurementTable.TABLE_NAME, deleteOfTrackStatement);
+    }
+
+    /**
+     * Deletes all measurements of a track that have been recorded at or after the given time.
+     *
+     * @param trackId the id of the track.
+     * @param time    the time in milliseconds.
+     * @return the number of deleted rows.
+     */
+    synchronized int deleteOfTrackSince(Track.TrackId trackId, long time) {
+        if (deleteOfTrackSinceStatement == null) {
+            deleteOfTrackSinceStatement = compile(DELETE_OF_TRACK_SINCE);
+        }
+        deleteOfTrackSinceStatement.bindLong(1, trackId.getId());
+        deleteOfTrackSinceStatement.bindLong(2, time);
+        return briteDatabase.executeUpdateDelete(
+                MeasurementTable.TABLE_NAME, deleteOfTrackSinceStatement);
+    }
+
+    private SupportSQLiteStatement compile(String sql) {
+        return briteDatabase.getWritableDatabase().compileStatement(sql);
+    }
+}
@@ -21,22 +21,32 @@ package org.envirocar.storage;
 import android.content.ContentValues;
 import android.database.Cursor;
 
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
 import org.envirocar.core.entity.Measurement;
-import org.envirocar.core.entity.MeasurementImpl;
+import org.envirocar.core.entity.PrimitiveMeasurement;
 import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
 import org.envirocar.core.logging.Logger;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
 
 import io.reactivex.functions.Function;
 
 /**
- * TODO JavaDoc
+ * Measurements are stored with one typed REAL column per {@link Measurement.PropertyKey}. The
+ * column of a property is its lower case enum name. Missing properties are stored as NULL.
+ * Statements name the property columns explicitly, so the order of the keys does not have to
+ * match the order of the columns on disk. Columns of keys that have been added later are added
+ * to existing databases when they are opened, see {@link #addMissingPropertyColumns}.
  *
  * @author dewall
  */
@@ -48,81 +58,319 @@ class MeasurementTable {
     public static final String KEY_LONGITUDE = "longitude";
     public static final String KEY_LATITUDE = "latitude";
     public static final String KEY_ROWID = "_id";
-    public static final String KEY_PROPERTIES = "properties";
     public static final String KEY_TRACK = "track";
 
-    protected static final String CREATE =
-            "create table " + TABLE_NAME + " (" +
-                    KEY_ROWID + " INTEGER primary key autoincrement, " +
-                    KEY_LATITUDE + " BLOB, " +
-                    KEY_LONGITUDE + " BLOB, " +
-                    KEY_TIME + " BLOB, " +
-                    KEY_PROPERTIES + " BLOB, " +
-                    KEY_TRACK + " INTEGER);";
+    /**
+     * Legacy column that contained all properties as a JSON string (database version <= 11).
+     */
+    @Deprecated
+    public static final String KEY_PROPERTIES = "properties";
+
+    static final Measurement.PropertyKey[] PROPERTY_KEYS = Measurement.PropertyKey.values();
+    static final String[] PROPERTY_COLUMNS = new String[PROPERTY_KEYS.length];
+
+    static {
+        for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+            PROPERTY_COLUMNS[key.ordinal()] = key.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    protected static final String CREATE = createTableStatement(TABLE_NAME);
+
+    protected static final String INSERT = insertStatement(TABLE_NAME, false);
 
     protected static final String DELETE =
             "DROP TABLE IF EXISTS " + TABLE_NAME;
 
+    protected static final String INDEX_TRACK_TIME = TABLE_NAME + "_track_time";
+
+    protected static final String CREATE_INDEX_TRACK_TIME =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_TRACK_TIME +
+                    " ON " + TABLE_NAME + " (" + KEY_TRACK + ", " + KEY_TIME + ");";
+
     protected static final Function<Cursor, Measurement> MAPPER = cursor -> fromCursor(cursor);
 
+    private static String createTableStatement(String tableName) {
+        StringBuilder sb = new StringBuilder("create table ").append(tableName).append(" (")
+                .append(KEY_ROWID).append(" INTEGER primary key autoincrement, ")
+                .append(KEY_LATITUDE).append(" REAL, ")
+                .append(KEY_LONGITUDE).append(" REAL, ")
+                .append(KEY_TIME).append(" INTEGER, ")
+                .append(KEY_TRACK).append(" INTEGER");
+        for (String column : PROPERTY_COLUMNS) {
+            sb.append(", ").append(column).append(" REAL");
+        }
+        return sb.append(");").toString();
+    }
+
+    private static String insertStatement(String tableName, boolean withRowId) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        if (withRowId) {
+            sb.append(KEY_ROWID).append(", ");
+        }
+        sb.append(KEY_LATITUDE).append(", ")
+                .append(KEY_LONGITUDE).append(", ")
+                .append(KEY_TIME).append(", ")
+                .append(KEY_TRACK);
+        for (String column : PROPERTY_COLUMNS) {
+            sb.append(", ").append(column);
+        }
+        sb.append(withRowId ? ") VALUES (?, ?, ?, ?, ?" : ") VALUES (?, ?, ?, ?");
+        for (int i = 0; i < PROPERTY_COLUMNS.length; i++) {
+            sb.append(", ?");
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Returns the name of the column that holds the given property.
+     *
+     * @param key the property key
+     * @return the column name.
+     */
+    public static String getColumnName(Measurement.PropertyKey key) {
+        return PROPERTY_COLUMNS[key.ordinal()];
+    }
+
     public static ContentValues toContentValues(Measurement measurement) {
         ContentValues values = new ContentValues();
         values.put(KEY_LATITUDE, measurement.getLatitude());
         values.put(KEY_LONGITUDE, measurement.getLongitude());
         values.put(KEY_TIME, measurement.getTime());
         values.put(KEY_TRACK, measurement.getTrackId().getId());
-        values.put(KEY_PROPERTIES, createPropertiesString(measurement));
+
+        for (Measurement.PropertyKey key : PROPERTY_KEYS) {
+            double value = measurement.getPropertyAsDouble(key);
+            // non-finite values have never been persisted (JSON did not support them)
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                values.put(getColumnName(key), value);
+            }
+        }
         return values;
     }
 
-    private static String createPropertiesString(Measurement measurement) {
-        JSONObject result = new JSONObject();
-        Map<Measurement.PropertyKey, Double> properties = measurement.getAllProperties();
-        for (Measurement.PropertyKey key : properties.keySet()) {
-            try {
-                result.put(key.name(), properties.get(key));
-            } catch (JSONException e) {
-                LOG.warn("Error while parsing measurement property " + key.name() + "=" + properties.get(key) + "; " + e.getMessage());
+    /**
+     * Binds a measurement to a statement compiled from {@link #INSERT}.
+     *
+     * @param statement   the compiled insert statement.
+     * @param measurement the measurement to bind.
+     */
+    public static void bindInsert(SupportSQLiteStatement statement, Measurement measurement) {
+        statement.clearBindings();
+        bindDoubleOrNull(statement, 1, measurement.getLatitude());
+        bindDoubleOrNull(statement, 2, measurement.getLongitude());
+        statement.bindLong(3, measurement.getTime());
+        statement.bindLong(4, measurement.getTrackId().getId());
+
+        for (int i = 0; i < PROPERTY_KEYS.length; i++) {
+            double value = measurement.getPropertyAsDouble(PROPERTY_KEYS[i]);
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                statement.bindDouble(5 + i, value);
             }
         }
-        return result.toString();
     }
 
     public static List<Measurement> fromCursorToList(Cursor c) {
-        List<Measurement> res = new ArrayList<>();
+        List<Measurement> res = new ArrayList<>(c.getCount());
+        fromCursorToList(c, res);
+        return res;
+    }
 
-        c.moveToFirst();
-        for (int i = 1; c.moveToNext(); i++) {
-            res.add(fromCursor(c));
+    /**
+     * Reads all rows of a cursor into the given list.
+     *
+     * @param c      the cursor to read.
+     * @param target the list to add the measurements to.
+     * @return the row id of the last row, or -1 if the cursor was empty.
+     */
+    public static long fromCursorToList(Cursor c, List<Measurement> target) {
+        ColumnIndices indices = new ColumnIndices(c);
+        int rowIdIndex = c.getColumnIndex(KEY_ROWID);
+        long lastRowId = -1;
+        for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+            target.add(fromCursor(c, indices));
+            lastRowId = c.getLong(rowIdIndex);
         }
+        return lastRowId;
+    }
 
-        return res;
+    /**
+     * Reads all rows of a cursor into columns without creating a measurement per row.
+     *
+     * @param c the cursor to read.
+     * @return the columns of the rows.
+     */
+    public static TrackData fromCursorToTrackData(Cursor c) {
+        ColumnIndices indices = new ColumnIndices(c);
+        TrackData data = new TrackData(c.getCount());
+        for (c.moveToFirst(); !c.isAfterLast(); c.moveToNext()) {
+            if (data.getTrackId() == null) {
+                data.setTrackId(new Track.TrackId(c.getLong(indices.track)));
+            }
+            int row = data.add(c.getLong(indices.time), c.getDouble(indices.latitude),
+                    c.getDouble(indices.longitude));
+
+            int[] propertyIndices = indices.properties;
+            for (int i = 0; i < propertyIndices.length; i++) {
+                int index = propertyIndices[i];
+                if (index != -1 && !c.isNull(index)) {
+                    data.setProperty(row, PROPERTY_KEYS[i], c.getDouble(index));
+                }
+            }
+        }
+        return data;
     }
 
     public static Measurement fromCursor(Cursor c) {
-        Measurement measurement = new MeasurementImpl();
-        measurement.setLatitude(c.getDouble(c.getColumnIndex(KEY_LATITUDE)));
-        measurement.setLongitude(c.getDouble(c.getColumnIndex(KEY_LONGITUDE)));
-        measurement.setTime(c.getLong(c.getColumnIndex(KEY_TIME)));
-        measurement.setTrackId(new Track.TrackId(
-                c.getLong(c.getColumnIndex(KEY_TRACK))));
-
-        String rawData = c.getString(c.getColumnIndex(KEY_PROPERTIES));
-        if (rawData != null) {
-            try {
-                JSONObject json = new JSONObject(rawData);
-                JSONArray names = json.names();
-                if (names != null) {
-                    for (int j = 0; j < names.length(); j++) {
-                        String key = names.getString(j);
-                        measurement.setProperty(Measurement.PropertyKey.valueOf(key), json
-                                .getDouble(key));
-                    }
-                }
-            } catch (JSONException e) {
-                LOG.severe("could not load properties", e);
+        return fromCursor(c, new ColumnIndices(c));
+    }
+
+    private static Measurement fromCursor(Cursor c, ColumnIndices indices) {
+        PrimitiveMeasurement measurement = new PrimitiveMeasurement();
+        measurement.setLatitude(c.getDouble(indices.latitude));
+        measurement.setLongitude(c.getDouble(indices.longitude));
+        measurement.setTime(c.getLong(indices.time));
+        measurement.setTrackId(new Track.TrackId(c.getLong(indices.track)));
+
+        int[] propertyIndices = indices.properties;
+        for (int i = 0; i < propertyIndices.length; i++) {
+            int index = propertyIndices[i];
+            if (index != -1 && !c.isNull(index)) {
+                measurement.setProperty(PROPERTY_KEYS[i], c.getDouble(index));
             }
         }
         return measurement;
     }
+
+    /**
+     * Migrates the measurements table from the JSON properties blob (database version 11) to
+     * typed property columns. The table is rebuilt and every row is converted exactly once.
+     *
+     * @param db the database to migrate.
+     */
+    static void migrateToPropertyColumns(SupportSQLiteDatabase db) {
+        LOG.info("Migrating measurements to typed property columns.");
+        String tmpTable = TABLE_NAME + "_typed";
+        db.execSQL("DROP TABLE IF EXISTS " + tmpTable);
+        db.execSQL(createTableStatement(tmpTable));
+
+        SupportSQLiteStatement statement = db.compileStatement(insertStatement(tmpTable, true));
+        Cursor c = db.query("SELECT " + KEY_ROWID + ", " + KEY_LATITUDE + ", " + KEY_LONGITUDE +
+                ", " + KEY_TIME + ", " + KEY_TRACK + ", " + KEY_PROPERTIES + " FROM " + TABLE_NAME);
+        try {
+            while (c.moveToNext()) {
+                statement.clearBindings();
+                statement.bindLong(1, c.getLong(0));
+                bindDoubleOrNull(statement, 2, c, 1);
+                bindDoubleOrNull(statement, 3, c, 2);
+                statement.bindLong(4, c.getLong(3));
+                statement.bindLong(5, c.getLong(4));
+                bindLegacyProperties(statement, c.getString(5), 6);
+                statement.executeInsert();
+            }
+        } finally {
+            c.close();
+        }
+
+        db.execSQL("DROP TABLE " + TABLE_NAME);
+        db.execSQL("ALTER TABLE " + tmpTable + " RENAME TO " + TABLE_NAME);
+    }
+
+    /**
+     * Adds the columns of all property keys that are missing in the measurements table, e.g.
+     * because the key has been added after the table was created. The existing columns are read
+     * with PRAGMA table_info.
+     *
+     * @param db the database to check.
+     */
+    static void addMissingPropertyColumns(SupportSQLiteDatabase db) {
+        Set<String> columns = new HashSet<>();
+        Cursor c = db.query("PRAGMA table_info(" + TABLE_NAME + ")");
+        try {
+            int nameIndex = c.getColumnIndex("name");
+            while (c.moveToNext()) {
+                columns.add(c.getString(nameIndex));
+            }
+        } finally {
+            c.close();
+        }
+
+        if (columns.isEmpty()) {
+            // no measurements table yet
+            return;
+        }
+
+        for (String column : PROPERTY_COLUMNS) {
+            if (!columns.contains(column)) {
+                LOG.info("Adding missing measurement property column " + column);
+                db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + column + " REAL");
+            }
+        }
+    }
+
+    private static void bindDoubleOrNull(SupportSQLiteStatement statement, int index,
+                                         Double value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    private static void bindDoubleOrNull(SupportSQLiteStatement statement, int index, Cursor c,
+                                         int column) {
+        if (c.isNull(column)) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, c.getDouble(column));
+        }
+    }
+
+    private static void bindLegacyProperties(SupportSQLiteStatement statement, String rawData,
+                                             int offset) {
+        if (rawData == null) {
+            return;
+        }
+
+        try {
+            JSONObject json = new JSONObject(rawData);
+            JSONArray names = json.names();
+            if (names == null) {
+                return;
+            }
+            for (int j = 0; j < names.length(); j++) {
+                String key = names.getString(j);
+                try {
+                    Measurement.PropertyKey propertyKey = Measurement.PropertyKey.valueOf(key);
+                    statement.bindDouble(offset + propertyKey.ordinal(), json.getDouble(key));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Dropping unknown measurement property " + key);
+                }
+            }
+        } catch (JSONException e) {
+            LOG.severe("could not migrate properties", e);
+        }
+    }
+
+    /**
+     * Resolves the column indices of a cursor once, so that rows can be read without any
+     * further name lookups.
+     */
+    private static final class ColumnIndices {
+        private final int latitude;
+        private final int longitude;
+        private final int time;
+        private final int track;
+        private final int[] properties = new int[PROPERTY_KEYS.length];
+
+        ColumnIndices(Cursor c) {
+            this.latitude = c.getColumnIndex(KEY_LATITUDE);
+            this.longitude = c.getColumnIndex(KEY_LONGITUDE);
+            this.time = c.getColumnIndex(KEY_TIME);
+            this.track = c.getColumnIndex(KEY_TRACK);
+            for (int i = 0; i < PROPERTY_COLUMNS.length; i++) {
+                properties[i] = c.getColumnIndex(PROPERTY_COLUMNS[i]);
+            }
+        }
+    }
 }
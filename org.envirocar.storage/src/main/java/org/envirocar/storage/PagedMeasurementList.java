@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import org.envirocar.core.entity.Measurement;
+
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only list view on the measurements of a stored track. Rows are paged in from the database
+ * on demand and only a bounded number of pages is kept in memory, so that even very long tracks
+ * can be iterated in bounded heap. The size of the list is fixed on creation.
+ */
+class PagedMeasurementList extends AbstractList<Measurement> {
+    private static final int MAX_RESIDENT_PAGES = 4;
+
+    /**
+     * Loads a single page of measurements.
+     */
+    interface PageLoader {
+        List<Measurement> load(int offset, int limit);
+    }
+
+    private final PageLoader loader;
+    private final int size;
+    private final int pageSize;
+
+    private final Map<Integer, List<Measurement>> pages =
+            new LinkedHashMap<Integer, List<Measurement>>(MAX_RESIDENT_PAGES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<Measurement>> eldest) {
+                    return size() > MAX_RESIDENT_PAGES;
+                }
+            };
+
+    /**
+     * Constructor.
+     *
+     * @param loader   the loader of the pages.
+     * @param size     the number of measurements of the track.
+     * @param pageSize the number of measurements per page.
+     */
+    PagedMeasurementList(PageLoader loader, int size, int pageSize) {
+        this.loader = loader;
+        this.size = size;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public synchronized Measurement get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        int pageIndex = index / pageSize;
+        List<Measurement> page = pages.get(pageIndex);
+        if (page == null) {
+            page = loader.load(pageIndex * pageSize, pageSize);
+            pages.put(pageIndex, page);
+        }
+
+        int offset = index % pageSize;
+        if (offset >= page.size()) {
+            // rows have been deleted since this view has been created.
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return page.get(offset);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
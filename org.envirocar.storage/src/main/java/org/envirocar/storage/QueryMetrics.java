@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency metrics of database queries. For every named query the number of calls, the mean,
+ * the 95th percentile and the maximum latency are tracked. Percentiles are approximated with
+ * power of two buckets.
+ */
+public final class QueryMetrics {
+    private static final int BUCKETS = 40;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Records a single latency.
+     *
+     * @param name  the name of the query.
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(String name, long nanos) {
+        Stats entry = stats.get(name);
+        if (entry == null) {
+            stats.putIfAbsent(name, new Stats());
+            entry = stats.get(name);
+        }
+        entry.add(nanos);
+    }
+
+    /**
+     * Returns the 95th percentile of the latencies of a query.
+     *
+     * @param name the name of the query.
+     * @return the upper bound of the percentile in nanoseconds or 0 if no latency is recorded.
+     */
+    public long getPercentile95(String name) {
+        Stats entry = stats.get(name);
+        return entry == null ? 0 : entry.percentile(0.95);
+    }
+
+    /**
+     * Clears all recorded latencies.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("QueryMetrics");
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(stats).entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+    private static final class Stats {
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void add(long nanos) {
+            nanos = Math.max(nanos, 0);
+            buckets[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized long percentile(double percentile) {
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(1L << i, maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("n=%d, mean=%.2f ms, p95=%.2f ms, max=%.2f ms", count,
+                    count == 0 ? 0 : totalNanos / 1e6 / count, percentile(0.95) / 1e6,
+                    maxNanos / 1e6);
+        }
+    }
+}
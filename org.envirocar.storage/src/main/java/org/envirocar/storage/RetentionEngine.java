@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Retention and compaction of the local database. A run drops the measurements of remote tracks
+ * according to a {@link RetentionPolicy} while keeping the tracks and their summaries, and
+ * releases the freed pages with incremental vacuum steps. Every write step runs as a separate
+ * task on the writer thread, so that recording writes are never blocked for a whole run.
+ * <p>
+ * Databases created without incremental vacuum are rebuilt once by a full VACUUM. As the rebuild
+ * blocks all writes until it is done, it is deferred to a run in which no track is recorded.
+ * Until then, the dropped pages stay on the freelist and are reused by later inserts.
+ */
+public class RetentionEngine {
+    private static final Logger LOG = Logger.getLogger(RetentionEngine.class);
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    static final String FETCH_REMOTE_TRACK_IDS =
+            "SELECT " + TrackTable.KEY_TRACK_ID + " FROM " + TrackTable.TABLE_TRACK +
+                    " WHERE " + TrackTable.KEY_REMOTE_ID + " IS NOT NULL" +
+                    " AND " + TrackTable.KEY_TRACK_END_TIME + " < ?" +
+                    " AND " + TrackTable.HAS_STORED_MEASUREMENTS +
+                    " ORDER BY " + TrackTable.KEY_TRACK_END_TIME + " ASC, " +
+                    TrackTable.KEY_TRACK_ID + " ASC";
+
+    static final String HAS_ONGOING_TRACK =
+            "SELECT EXISTS (SELECT 1 FROM " + TrackTable.TABLE_TRACK +
+                    " WHERE " + TrackTable.KEY_TRACK_STATE + " = '" +
+                    Track.TrackStatus.ONGOING + "')";
+
+    private final BriteDatabase briteDatabase;
+    private final DatabaseSchedulers schedulers;
+    private final TrackChangeNotifier changeNotifier;
+    private final MeasurementQueries measurementQueries;
+    private final TrackBlockQueries trackBlockQueries;
+
+    /**
+     * Constructor.
+     *
+     * @param briteDatabase  the database to compact.
+     * @param schedulers     the schedulers of the writer and the readers.
+     * @param changeNotifier the notifier of changed tracks.
+     */
+    RetentionEngine(BriteDatabase briteDatabase, DatabaseSchedulers schedulers,
+                    TrackChangeNotifier changeNotifier) {
+        this.briteDatabase = briteDatabase;
+        this.schedulers = schedulers;
+        this.changeNotifier = changeNotifier;
+        this.measurementQueries = new MeasurementQueries(briteDatabase);
+        this.trackBlockQueries = new TrackBlockQueries(briteDatabase);
+    }
+
+    /**
+     * Applies a policy on a background scheduler.
+     *
+     * @param policy the policy to apply.
+     * @return a single emitting the report of the run.
+     */
+    public Single<RetentionReport> run(RetentionPolicy policy) {
+        return Single.fromCallable(() -> apply(policy))
+                .subscribeOn(Schedulers.io());
+    }
+
+    RetentionReport apply(RetentionPolicy policy) {
+        long sizeBefore = databaseBytes();
+        enableIncrementalVacuum();
+
+        int compactedTracks = 0;
+        if (policy.getMaxRemoteMeasurementsAge() >= 0) {
+            long endedBefore = System.currentTimeMillis() - policy.getMaxRemoteMeasurementsAge();
+            for (Track.TrackId trackId : fetchRemoteTrackIds(endedBefore)) {
+                dropMeasurements(trackId);
+                compactedTracks++;
+            }
+        }
+
+        if (policy.getMaxDatabaseBytes() > 0) {
+            // oldest remote tracks first until the used pages fit into the limit.
+            for (Track.TrackId trackId : fetchRemoteTrackIds(Long.MAX_VALUE)) {
+                if (usedBytes() <= policy.getMaxDatabaseBytes()) {
+                    break;
+                }
+                dropMeasurements(trackId);
+                compactedTracks++;
+            }
+        }
+
+        vacuum(policy.getVacuumPagesPerStep());
+
+        long sizeAfter = databaseBytes();
+        RetentionReport report = new RetentionReport(
+                compactedTracks, Math.max(sizeBefore - sizeAfter, 0), sizeAfter);
+        LOG.info(report.toString());
+        return report;
+    }
+
+    /**
+     * Releases all free pages of the database file.
+     *
+     * @param pagesPerStep the number of pages released by a single write task.
+     */
+    void vacuum(int pagesPerStep) {
+        // without incremental vacuum, the free pages are only reused by later inserts.
+        long free = pragma("auto_vacuum") == AUTO_VACUUM_INCREMENTAL ?
+                pragma("freelist_count") : 0;
+        while (free > 0) {
+            schedulers.executeWrite(() -> {
+                Cursor cursor = briteDatabase.query("PRAGMA incremental_vacuum(" + pagesPerStep + ")");
+                try {
+                    // the vacuum runs while the cursor is filled.
+                    return cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+            });
+
+            long remaining = pragma("freelist_count");
+            if (remaining >= free) {
+                LOG.warn("Incremental vacuum did not release any pages.");
+                break;
+            }
+            free = remaining;
+        }
+
+        // merge the WAL and truncate it, so that the released pages leave the file system.
+        schedulers.executeWrite(() -> {
+            Cursor cursor = briteDatabase.query("PRAGMA wal_checkpoint(TRUNCATE)");
+            try {
+                return cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+        });
+    }
+
+    /**
+     * Databases created before incremental vacuum has been enabled have to be rebuilt once. The
+     * rebuild is skipped as long as a track is recorded.
+     */
+    private void enableIncrementalVacuum() {
+        if (pragma("auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            return;
+        }
+        schedulers.executeWrite(() -> {
+            // checked on the writer thread, so that no recording can start in between.
+            if (queryLong(HAS_ONGOING_TRACK) != 0) {
+                LOG.info("A track is recorded. Deferring the rebuild of the database.");
+                return null;
+            }
+
+            LOG.info("Rebuilding the database with incremental vacuum enabled.");
+            long start = System.currentTimeMillis();
+            briteDatabase.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            briteDatabase.execute("VACUUM");
+            LOG.info(String.format("Rebuilt the database in %s ms.",
+                    System.currentTimeMillis() - start));
+            return null;
+        });
+    }
+
+    private void dropMeasurements(Track.TrackId trackId) {
+        schedulers.executeWrite(() -> {
+            BriteDatabase.Transaction transaction = briteDatabase.newTransaction();
+            try {
+                measurementQueries.deleteOfTrack(trackId);
+                trackBlockQueries.deleteOfTrack(trackId);
+                briteDatabase.execute(TrackTable.CLEAR_PROPERTY_MASK, trackId.getId());
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            return null;
+        });
+        changeNotifier.notifyChanged(trackId);
+    }
+
+    private List<Track.TrackId> fetchRemoteTrackIds(long endedBefore) {
+        Cursor cursor = briteDatabase.query(FETCH_REMOTE_TRACK_IDS, endedBefore);
+        try {
+            List<Track.TrackId> trackIds = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                trackIds.add(new Track.TrackId(cursor.getLong(0)));
+            }
+            return trackIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long databaseBytes() {
+        return pragma("page_count") * pragma("page_size");
+    }
+
+    private long usedBytes() {
+        return (pragma("page_count") - pragma("freelist_count")) * pragma("page_size");
+    }
+
+    private long pragma(String name) {
+        return queryLong("PRAGMA " + name);
+    }
+
+    private long queryLong(String sql) {
+        Cursor cursor = briteDatabase.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy of the {@link RetentionEngine}. Only the measurements of remote tracks are ever dropped
+ * by a policy, since they can be downloaded again. Local tracks and the summaries of all tracks
+ * are always retained.
+ */
+public final class RetentionPolicy {
+    private static final long DEFAULT_MAX_REMOTE_AGE_DAYS = 30;
+    private static final long DEFAULT_MAX_DATABASE_BYTES = 256L * 1024 * 1024;
+    private static final int DEFAULT_VACUUM_PAGES_PER_STEP = 256;
+
+    private long maxRemoteMeasurementsAge = -1;
+    private long maxDatabaseBytes = 0;
+    private int vacuumPagesPerStep = DEFAULT_VACUUM_PAGES_PER_STEP;
+
+    /**
+     * @return the default policy: measurements of remote tracks are kept for 30 days and the
+     * database is capped at 256 MB.
+     */
+    public static RetentionPolicy defaultPolicy() {
+        return new RetentionPolicy()
+                .dropRemoteMeasurementsAfter(DEFAULT_MAX_REMOTE_AGE_DAYS, TimeUnit.DAYS)
+                .maxDatabaseBytes(DEFAULT_MAX_DATABASE_BYTES);
+    }
+
+    /**
+     * @param age  the age after the end of a remote track at which its measurements are dropped.
+     * @param unit the time unit of the age.
+     */
+    public RetentionPolicy dropRemoteMeasurementsAfter(long age, TimeUnit unit) {
+        this.maxRemoteMeasurementsAge = unit.toMillis(age);
+        return this;
+    }
+
+    /**
+     * @param maxDatabaseBytes the size above which the measurements of the oldest remote tracks
+     *                         are dropped, or 0 for no limit.
+     */
+    public RetentionPolicy maxDatabaseBytes(long maxDatabaseBytes) {
+        this.maxDatabaseBytes = maxDatabaseBytes;
+        return this;
+    }
+
+    /**
+     * @param vacuumPagesPerStep the number of free pages released by a single vacuum step. The
+     *                           writer is released between two steps.
+     */
+    public RetentionPolicy vacuumPagesPerStep(int vacuumPagesPerStep) {
+        this.vacuumPagesPerStep = vacuumPagesPerStep;
+        return this;
+    }
+
+    /**
+     * @return the maximum age of remote measurements in milliseconds or -1 if unlimited.
+     */
+    public long getMaxRemoteMeasurementsAge() {
+        return maxRemoteMeasurementsAge;
+    }
+
+    public long getMaxDatabaseBytes() {
+        return maxDatabaseBytes;
+    }
+
+    public int getVacuumPagesPerStep() {
+        return vacuumPagesPerStep;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+/**
+ * Result of a single run of the {@link RetentionEngine}.
+ */
+public final class RetentionReport {
+    private final int compactedTracks;
+    private final long bytesReclaimed;
+    private final long databaseBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param compactedTracks the number of tracks whose measurements have been dropped.
+     * @param bytesReclaimed  the number of bytes the database file has shrunk.
+     * @param databaseBytes   the size of the database after the run.
+     */
+    RetentionReport(int compactedTracks, long bytesReclaimed, long databaseBytes) {
+        this.compactedTracks = compactedTracks;
+        this.bytesReclaimed = bytesReclaimed;
+        this.databaseBytes = databaseBytes;
+    }
+
+    public int getCompactedTracks() {
+        return compactedTracks;
+    }
+
+    public long getBytesReclaimed() {
+        return bytesReclaimed;
+    }
+
+    public long getDatabaseBytes() {
+        return databaseBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetentionReport[compactedTracks=%s, bytesReclaimed=%s, " +
+                "databaseBytes=%s]", compactedTracks, bytesReclaimed, databaseBytes);
+    }
+}
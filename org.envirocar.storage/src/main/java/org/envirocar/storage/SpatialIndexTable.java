@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+import android.database.SQLException;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.envirocar.core.logging.Logger;
+
+/**
+ * R*Tree indices over the positions of the measurements and the bounding boxes of the tracks.
+ * Both indices are maintained by triggers on the measurements and tracks tables, so that every
+ * write path keeps them consistent. The R*Tree stores coordinates as 32 bit floats with
+ * conservative rounding, hence queries probe the index with overlap conditions and check the
+ * exact coordinates of the measurement rows afterwards.
+ * <p>
+ * Not every SQLite build ships the R*Tree module. Without it, the indices are not created and the
+ * queries fall back to the bounding box columns of the tracks table, which narrow a lookup down
+ * to the overlapping tracks before their measurement rows are checked.
+ */
+class SpatialIndexTable {
+    private static final Logger LOG = Logger.getLogger(SpatialIndexTable.class);
+
+    public static final String MEASUREMENTS_RTREE = "measurements_rtree";
+    public static final String TRACKS_RTREE = "tracks_rtree";
+    public static final String KEY_ID = "id";
+    public static final String KEY_MIN_LATITUDE = "min_lat";
+    public static final String KEY_MAX_LATITUDE = "max_lat";
+    public static final String KEY_MIN_LONGITUDE = "min_lon";
+    public static final String KEY_MAX_LONGITUDE = "max_lon";
+
+    private static final String COLUMNS = KEY_ID + ", " +
+            KEY_MIN_LATITUDE + ", " + KEY_MAX_LATITUDE + ", " +
+            KEY_MIN_LONGITUDE + ", " + KEY_MAX_LONGITUDE;
+
+    private static final String TRIGGER_MEASUREMENT_INSERT = MEASUREMENTS_RTREE + "_insert";
+    private static final String TRIGGER_MEASUREMENT_DELETE = MEASUREMENTS_RTREE + "_delete";
+    private static final String TRIGGER_TRACK_UPDATE = TRACKS_RTREE + "_update";
+    private static final String TRIGGER_TRACK_DELETE = TRACKS_RTREE + "_delete";
+
+    private static final String[] CREATE = {
+            "CREATE VIRTUAL TABLE " + MEASUREMENTS_RTREE + " USING rtree(" + COLUMNS + ")",
+            "CREATE VIRTUAL TABLE " + TRACKS_RTREE + " USING rtree(" + COLUMNS + ")",
+
+            "CREATE TRIGGER " + TRIGGER_MEASUREMENT_INSERT +
+                    " AFTER INSERT ON " + MeasurementTable.TABLE_NAME +
+                    " WHEN new." + MeasurementTable.KEY_LATITUDE + " IS NOT NULL" +
+                    " AND new." + MeasurementTable.KEY_LONGITUDE + " IS NOT NULL" +
+                    " BEGIN INSERT INTO " + MEASUREMENTS_RTREE + " VALUES (" +
+                    "new." + MeasurementTable.KEY_ROWID + ", " +
+                    "new." + MeasurementTable.KEY_LATITUDE + ", " +
+                    "new." + MeasurementTable.KEY_LATITUDE + ", " +
+                    "new." + MeasurementTable.KEY_LONGITUDE + ", " +
+                    "new." + MeasurementTable.KEY_LONGITUDE + "); END",
+
+            "CREATE TRIGGER " + TRIGGER_MEASUREMENT_DELETE +
+                    " AFTER DELETE ON " + MeasurementTable.TABLE_NAME +
+                    " BEGIN DELETE FROM " + MEASUREMENTS_RTREE +
+                    " WHERE " + KEY_ID + " = old." + MeasurementTable.KEY_ROWID + "; END",
+
+            "CREATE TRIGGER " + TRIGGER_TRACK_UPDATE +
+                    " AFTER UPDATE OF " +
+                    TrackTable.KEY_TRACK_MIN_LATITUDE + ", " +
+                    TrackTable.KEY_TRACK_MAX_LATITUDE + ", " +
+                    TrackTable.KEY_TRACK_MIN_LONGITUDE + ", " +
+                    TrackTable.KEY_TRACK_MAX_LONGITUDE + " ON " + TrackTable.TABLE_TRACK +
+                    " BEGIN DELETE FROM " + TRACKS_RTREE +
+                    " WHERE " + KEY_ID + " = old." + TrackTable.KEY_TRACK_ID + ";" +
+                    " INSERT INTO " + TRACKS_RTREE + " SELECT " +
+                    "new." + TrackTable.KEY_TRACK_ID + ", " +
+                    "new." + TrackTable.KEY_TRACK_MIN_LATITUDE + ", " +
+                    "new." + TrackTable.KEY_TRACK_MAX_LATITUDE + ", " +
+                    "new." + TrackTable.KEY_TRACK_MIN_LONGITUDE + ", " +
+                    "new." + TrackTable.KEY_TRACK_MAX_LONGITUDE +
+                    " WHERE new." + TrackTable.KEY_TRACK_MIN_LATITUDE + " IS NOT NULL" +
+                    " AND new." + TrackTable.KEY_TRACK_MIN_LONGITUDE + " IS NOT NULL; END",
+
+            "CREATE TRIGGER " + TRIGGER_TRACK_DELETE +
+                    " AFTER DELETE ON " + TrackTable.TABLE_TRACK +
+                    " BEGIN DELETE FROM " + TRACKS_RTREE +
+                    " WHERE " + KEY_ID + " = old." + TrackTable.KEY_TRACK_ID + "; END"
+    };
+
+    private static final String PROBE = "rtree_probe";
+
+    private static final String[] DELETE = {
+            "DROP TRIGGER IF EXISTS " + TRIGGER_MEASUREMENT_INSERT,
+            "DROP TRIGGER IF EXISTS " + TRIGGER_MEASUREMENT_DELETE,
+            "DROP TRIGGER IF EXISTS " + TRIGGER_TRACK_UPDATE,
+            "DROP TRIGGER IF EXISTS " + TRIGGER_TRACK_DELETE,
+            "DROP TABLE IF EXISTS " + MEASUREMENTS_RTREE,
+            "DROP TABLE IF EXISTS " + TRACKS_RTREE
+    };
+
+    private static final String[] POPULATE = {
+            "INSERT INTO " + MEASUREMENTS_RTREE + " SELECT " +
+                    MeasurementTable.KEY_ROWID + ", " +
+                    MeasurementTable.KEY_LATITUDE + ", " + MeasurementTable.KEY_LATITUDE + ", " +
+                    MeasurementTable.KEY_LONGITUDE + ", " + MeasurementTable.KEY_LONGITUDE +
+                    " FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_LATITUDE + " IS NOT NULL" +
+                    " AND " + MeasurementTable.KEY_LONGITUDE + " IS NOT NULL",
+            "INSERT INTO " + TRACKS_RTREE + " SELECT " +
+                    TrackTable.KEY_TRACK_ID + ", " +
+                    TrackTable.KEY_TRACK_MIN_LATITUDE + ", " +
+                    TrackTable.KEY_TRACK_MAX_LATITUDE + ", " +
+                    TrackTable.KEY_TRACK_MIN_LONGITUDE + ", " +
+                    TrackTable.KEY_TRACK_MAX_LONGITUDE +
+                    " FROM " + TrackTable.TABLE_TRACK +
+                    " WHERE " + TrackTable.KEY_TRACK_MIN_LATITUDE + " IS NOT NULL" +
+                    " AND " + TrackTable.KEY_TRACK_MIN_LONGITUDE + " IS NOT NULL"
+    };
+
+    /**
+     * Overlap of the index entry with the box (?1 min latitude, ?2 min longitude, ?3 max
+     * latitude, ?4 max longitude).
+     */
+    private static final String OVERLAPS_BOX =
+            " r." + KEY_MAX_LATITUDE + " >= ?1 AND r." + KEY_MIN_LATITUDE + " <= ?3" +
+                    " AND r." + KEY_MAX_LONGITUDE + " >= ?2 AND r." + KEY_MIN_LONGITUDE + " <= ?4";
+
+    private static final String MEASUREMENT_IN_BOX =
+            " m." + MeasurementTable.KEY_LATITUDE + " BETWEEN ?1 AND ?3" +
+                    " AND m." + MeasurementTable.KEY_LONGITUDE + " BETWEEN ?2 AND ?4";
+
+    /**
+     * Overlap of the bounding box of the track with the box, used without R*Tree support.
+     */
+    private static final String TRACK_OVERLAPS_BOX =
+            " t." + TrackTable.KEY_TRACK_MAX_LATITUDE + " >= ?1" +
+                    " AND t." + TrackTable.KEY_TRACK_MIN_LATITUDE + " <= ?3" +
+                    " AND t." + TrackTable.KEY_TRACK_MAX_LONGITUDE + " >= ?2" +
+                    " AND t." + TrackTable.KEY_TRACK_MIN_LONGITUDE + " <= ?4";
+
+    static final String HAS_INDEX =
+            "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = '" +
+                    MEASUREMENTS_RTREE + "'";
+
+    /**
+     * Tracks whose bounding box overlaps the box.
+     */
+    static final String FETCH_TRACKS_OVERLAPPING =
+            "SELECT t.* FROM " + TRACKS_RTREE + " r" +
+                    " JOIN " + TrackTable.TABLE_TRACK + " t" +
+                    " ON t." + TrackTable.KEY_TRACK_ID + " = r." + KEY_ID +
+                    " WHERE" + OVERLAPS_BOX;
+
+    /**
+     * Ids of the tracks that have at least one measurement row within the box.
+     */
+    static final String FETCH_TRACK_IDS_WITH_MEASUREMENTS_IN_BOX =
+            "SELECT DISTINCT m." + MeasurementTable.KEY_TRACK +
+                    " FROM " + MEASUREMENTS_RTREE + " r" +
+                    " JOIN " + MeasurementTable.TABLE_NAME + " m" +
+                    " ON m." + MeasurementTable.KEY_ROWID + " = r." + KEY_ID +
+                    " WHERE" + OVERLAPS_BOX + " AND" + MEASUREMENT_IN_BOX;
+
+    /**
+     * Measurement rows of a track (?5) within the box in time order.
+     */
+    static final String FETCH_MEASUREMENTS_IN_BOX =
+            "SELECT m.* FROM " + MEASUREMENTS_RTREE + " r" +
+                    " JOIN " + MeasurementTable.TABLE_NAME + " m" +
+                    " ON m." + MeasurementTable.KEY_ROWID + " = r." + KEY_ID +
+                    " WHERE" + OVERLAPS_BOX + " AND" + MEASUREMENT_IN_BOX +
+                    " AND m." + MeasurementTable.KEY_TRACK + " = ?5" +
+                    " ORDER BY m." + MeasurementTable.KEY_TIME + " ASC, m." +
+                    MeasurementTable.KEY_ROWID + " ASC";
+
+    static final String FETCH_TRACKS_OVERLAPPING_WITHOUT_INDEX =
+            "SELECT t.* FROM " + TrackTable.TABLE_TRACK + " t WHERE" + TRACK_OVERLAPS_BOX;
+
+    static final String FETCH_TRACK_IDS_WITH_MEASUREMENTS_IN_BOX_WITHOUT_INDEX =
+            "SELECT DISTINCT m." + MeasurementTable.KEY_TRACK +
+                    " FROM " + TrackTable.TABLE_TRACK + " t" +
+                    " JOIN " + MeasurementTable.TABLE_NAME + " m" +
+                    " ON m." + MeasurementTable.KEY_TRACK + " = t." + TrackTable.KEY_TRACK_ID +
+                    " WHERE" + TRACK_OVERLAPS_BOX + " AND" + MEASUREMENT_IN_BOX;
+
+    static final String FETCH_MEASUREMENTS_IN_BOX_WITHOUT_INDEX =
+            "SELECT m.* FROM " + MeasurementTable.TABLE_NAME + " m" +
+                    " WHERE m." + MeasurementTable.KEY_TRACK + " = ?5 AND" + MEASUREMENT_IN_BOX +
+                    " ORDER BY m." + MeasurementTable.KEY_TIME + " ASC, m." +
+                    MeasurementTable.KEY_ROWID + " ASC";
+
+    /**
+     * Creates the indices and their triggers if the R*Tree module is available.
+     *
+     * @param db the database.
+     * @return true if the indices have been created.
+     */
+    static boolean create(SupportSQLiteDatabase db) {
+        if (!isRtreeSupported(db)) {
+            LOG.warn("The R*Tree module is not available. Bounding box queries use the " +
+                    "bounding boxes of the tracks.");
+            return false;
+        }
+        for (String sql : CREATE) {
+            db.execSQL(sql);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the indices exist.
+     *
+     * @param db the database.
+     * @return true if the indices exist.
+     */
+    static boolean exists(SupportSQLiteDatabase db) {
+        Cursor cursor = db.query(HAS_INDEX);
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean isRtreeSupported(SupportSQLiteDatabase db) {
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE temp." + PROBE + " USING rtree(id, min, max)");
+            db.execSQL("DROP TABLE temp." + PROBE);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Drops the indices and their triggers.
+     *
+     * @param db the database.
+     */
+    static void delete(SupportSQLiteDatabase db) {
+        for (String sql : DELETE) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Creates the indices for an existing database and fills them with the stored rows.
+     *
+     * @param db the database.
+     */
+    static void migrateToSpatialIndex(SupportSQLiteDatabase db) {
+        if (!create(db)) {
+            return;
+        }
+        for (String sql : POPULATE) {
+            db.execSQL(sql);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.PrimitiveMeasurement;
+import org.envirocar.core.entity.Track;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar codec for blocks of measurements of a single track.
+ * <p>
+ * A block starts with a header consisting of the format version, the number of measurements, a
+ * bit mask of the property keys that are present in the block and the byte length of every
+ * encoded column. The columns follow in the order time, latitude, longitude and the present
+ * properties in the order of {@link Measurement.PropertyKey}. Timestamps are encoded as
+ * delta-of-delta values in variable sized buckets, all double columns are XOR encoded against
+ * the previous value of the same column (see Pelkonen et al., "Gorilla: A Fast, Scalable,
+ * In-Memory Time Series Database"). Double columns carry one presence bit per measurement, as
+ * not every measurement provides every property.
+ */
+final class TrackBlockCodec {
+    static final byte VERSION = 1;
+
+    private static final Measurement.PropertyKey[] KEYS = Measurement.PropertyKey.values();
+    private static final int HEADER_SIZE = 1 + 4 + 8;
+
+    private TrackBlockCodec() {
+        // no instance creation
+    }
+
+    /**
+     * Encodes a list of measurements, which have to be ordered by time.
+     *
+     * @param measurements the measurements to encode.
+     * @return the encoded block.
+     */
+    static byte[] encode(List<Measurement> measurements) {
+        long mask = 0;
+        for (Measurement measurement : measurements) {
+            for (int i = 0; i < KEYS.length; i++) {
+                if (measurement.hasProperty(KEYS[i])) {
+                    mask |= 1L << i;
+                }
+            }
+        }
+
+        Measurement.PropertyKey[] keys = presentKeys(mask);
+        int count = measurements.size();
+        int capacity = count * 2 + 16;
+
+        TimeEncoder time = new TimeEncoder(new BitWriter(capacity));
+        DoubleEncoder latitude = new DoubleEncoder(new BitWriter(capacity));
+        DoubleEncoder longitude = new DoubleEncoder(new BitWriter(capacity));
+        DoubleEncoder[] properties = new DoubleEncoder[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            properties[i] = new DoubleEncoder(new BitWriter(capacity));
+        }
+
+        for (Measurement measurement : measurements) {
+            time.write(measurement.getTime());
+            latitude.write(measurement.getLatitude());
+            longitude.write(measurement.getLongitude());
+            for (int i = 0; i < keys.length; i++) {
+                properties[i].write(measurement.getProperty(keys[i]));
+            }
+        }
+
+        byte[][] columns = new byte[3 + keys.length][];
+        columns[0] = time.out.toByteArray();
+        columns[1] = latitude.out.toByteArray();
+        columns[2] = longitude.out.toByteArray();
+        for (int i = 0; i < keys.length; i++) {
+            columns[3 + i] = properties[i].out.toByteArray();
+        }
+
+        int size = HEADER_SIZE + 4 * columns.length;
+        for (byte[] column : columns) {
+            size += column.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.putInt(count);
+        buffer.putLong(mask);
+        for (byte[] column : columns) {
+            buffer.putInt(column.length);
+        }
+        for (byte[] column : columns) {
+            buffer.put(column);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param block an encoded block.
+     * @return the number of measurements within the block.
+     */
+    static int count(byte[] block) {
+        checkVersion(block);
+        return ByteBuffer.wrap(block).getInt(1);
+    }
+
+    /**
+     * @param block an encoded block.
+     * @return the bit mask of the property keys present within the block.
+     */
+    static long propertyMask(byte[] block) {
+        checkVersion(block);
+        return ByteBuffer.wrap(block).getLong(5);
+    }
+
+    /**
+     * Returns an iterator that decodes the measurements of a block one at a time.
+     *
+     * @param block   the encoded block.
+     * @param trackId the id of the track the measurements belong to.
+     * @return the iterator.
+     */
+    static Iterator<Measurement> decode(byte[] block, Track.TrackId trackId) {
+        checkVersion(block);
+        return new BlockIterator(block, trackId);
+    }
+
+    private static void checkVersion(byte[] block) {
+        if (block.length < HEADER_SIZE || block[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported track block format.");
+        }
+    }
+
+    private static Measurement.PropertyKey[] presentKeys(long mask) {
+        Measurement.PropertyKey[] keys = new Measurement.PropertyKey[Long.bitCount(mask)];
+        for (int i = 0, j = 0; i < KEYS.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                keys[j++] = KEYS[i];
+            }
+        }
+        return keys;
+    }
+
+    private static final class BlockIterator implements Iterator<Measurement> {
+        private final Track.TrackId trackId;
+        private final Measurement.PropertyKey[] keys;
+        private final int count;
+        private final TimeDecoder time;
+        private final DoubleDecoder latitude;
+        private final DoubleDecoder longitude;
+        private final DoubleDecoder[] properties;
+        private int position = 0;
+
+        BlockIterator(byte[] block, Track.TrackId trackId) {
+            this.trackId = trackId;
+
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            buffer.get();
+            this.count = buffer.getInt();
+            this.keys = presentKeys(buffer.getLong());
+
+            int[] lengths = new int[3 + keys.length];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = buffer.getInt();
+            }
+
+            int offset = buffer.position();
+            this.time = new TimeDecoder(new BitReader(block, offset, lengths[0]));
+            offset += lengths[0];
+            this.latitude = new DoubleDecoder(new BitReader(block, offset, lengths[1]));
+            offset += lengths[1];
+            this.longitude = new DoubleDecoder(new BitReader(block, offset, lengths[2]));
+            offset += lengths[2];
+            this.properties = new DoubleDecoder[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                properties[i] = new DoubleDecoder(new BitReader(block, offset, lengths[3 + i]));
+                offset += lengths[3 + i];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < count;
+        }
+
+        @Override
+        public Measurement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            position++;
+
+            PrimitiveMeasurement measurement = new PrimitiveMeasurement();
+            measurement.setTrackId(trackId);
+            measurement.setTime(time.read());
+
+            Double lat = latitude.read();
+            if (lat != null) {
+                measurement.setLatitude(lat);
+            }
+            Double lon = longitude.read();
+            if (lon != null) {
+                measurement.setLongitude(lon);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                Double value = properties[i].read();
+                if (value != null) {
+                    measurement.setProperty(keys[i], value);
+                }
+            }
+            return measurement;
+        }
+    }
+
+    /**
+     * Delta-of-delta encoding. The first value is stored in full, every following value as the
+     * difference of its delta to the previous delta in one of the buckets '0', '10' + 7 bits,
+     * '110' + 9 bits, '1110' + 12 bits and '1111' + 64 bits.
+     */
+    private static final class TimeEncoder {
+        private final BitWriter out;
+        private boolean first = true;
+        private long previous;
+        private long previousDelta;
+
+        TimeEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        void write(long value) {
+            if (first) {
+                out.writeBits(value, 64);
+                first = false;
+            } else {
+                long delta = value - previous;
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    out.writeBit(false);
+                } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                    out.writeBits(0b10, 2);
+                    out.writeBits(deltaOfDelta, 7);
+                } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                    out.writeBits(0b110, 3);
+                    out.writeBits(deltaOfDelta, 9);
+                } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                    out.writeBits(0b1110, 4);
+                    out.writeBits(deltaOfDelta, 12);
+                } else {
+                    out.writeBits(0b1111, 4);
+                    out.writeBits(deltaOfDelta, 64);
+                }
+                previousDelta = delta;
+            }
+            previous = value;
+        }
+    }
+
+    private static final class TimeDecoder {
+        private final BitReader in;
+        private boolean first = true;
+        private long previous;
+        private long previousDelta;
+
+        TimeDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        long read() {
+            if (first) {
+                first = false;
+                previous = in.readBits(64);
+                return previous;
+            }
+
+            long deltaOfDelta;
+            if (!in.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSignedBits(7);
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSignedBits(9);
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSignedBits(12);
+            } else {
+                deltaOfDelta = in.readBits(64);
+            }
+
+            previousDelta += deltaOfDelta;
+            previous += previousDelta;
+            return previous;
+        }
+    }
+
+    /**
+     * XOR encoding of nullable doubles. Every value starts with a presence bit. A present value is
+     * stored in full if it is the first one, otherwise as '0' if it equals the previous value,
+     * '10' + meaningful bits if the XOR fits into the previous window of meaningful bits or
+     * '11' + 5 bits leading zeros + 6 bits length + meaningful bits.
+     */
+    private static final class DoubleEncoder {
+        private final BitWriter out;
+        private boolean first = true;
+        private long previous;
+        private int previousLeading = -1;
+        private int previousTrailing;
+
+        DoubleEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        void write(Double value) {
+            if (value == null) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+
+            long bits = Double.doubleToLongBits(value);
+            if (first) {
+                out.writeBits(bits, 64);
+                first = false;
+            } else {
+                long xor = bits ^ previous;
+                if (xor == 0) {
+                    out.writeBit(false);
+                } else {
+                    out.writeBit(true);
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (previousLeading >= 0
+                            && leading >= previousLeading && trailing >= previousTrailing) {
+                        out.writeBit(false);
+                        out.writeBits(xor >>> previousTrailing,
+                                64 - previousLeading - previousTrailing);
+                    } else {
+                        int significant = 64 - leading - trailing;
+                        out.writeBit(true);
+                        out.writeBits(leading, 5);
+                        out.writeBits(significant - 1, 6);
+                        out.writeBits(xor >>> trailing, significant);
+                        previousLeading = leading;
+                        previousTrailing = trailing;
+                    }
+                }
+            }
+            previous = bits;
+        }
+    }
+
+    private static final class DoubleDecoder {
+        private final BitReader in;
+        private boolean first = true;
+        private long previous;
+        private int previousLeading;
+        private int previousTrailing;
+
+        DoubleDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        Double read() {
+            if (!in.readBit()) {
+                return null;
+            }
+
+            if (first) {
+                first = false;
+                previous = in.readBits(64);
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    previousLeading = (int) in.readBits(5);
+                    int significant = (int) in.readBits(6) + 1;
+                    previousTrailing = 64 - previousLeading - significant;
+                }
+                int significant = 64 - previousLeading - previousTrailing;
+                previous ^= in.readBits(significant) << previousTrailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+}
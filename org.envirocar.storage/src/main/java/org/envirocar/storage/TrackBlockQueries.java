@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.squareup.sqlbrite3.BriteDatabase;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Query layer for the compressed blocks of archived tracks.
+ */
+class TrackBlockQueries {
+
+    static final String FETCH_BLOCK =
+            "SELECT " + TrackBlockTable.KEY_DATA + " FROM " + TrackBlockTable.TABLE_NAME +
+                    " WHERE " + TrackBlockTable.KEY_TRACK + " = ?" +
+                    " AND " + TrackBlockTable.KEY_SEQUENCE + " = ?";
+
+    static final String COUNT_OF_TRACK =
+            "SELECT IFNULL(SUM(" + TrackBlockTable.KEY_COUNT + "), 0)" +
+                    " FROM " + TrackBlockTable.TABLE_NAME +
+                    " WHERE " + TrackBlockTable.KEY_TRACK + " = ?";
+
+    static final String INSERT =
+            "INSERT OR REPLACE INTO " + TrackBlockTable.TABLE_NAME + " (" +
+                    TrackBlockTable.KEY_TRACK + ", " +
+                    TrackBlockTable.KEY_SEQUENCE + ", " +
+                    TrackBlockTable.KEY_COUNT + ", " +
+                    TrackBlockTable.KEY_FIRST_TIME + ", " +
+                    TrackBlockTable.KEY_DATA + ") VALUES (?, ?, ?, ?, ?)";
+
+    static final String DELETE_OF_TRACK =
+            "DELETE FROM " + TrackBlockTable.TABLE_NAME +
+                    " WHERE " + TrackBlockTable.KEY_TRACK + " = ?";
+
+    /**
+     * Finished tracks that still have their measurements stored as rows. The measurement count
+     * is kept when the retention drops the measurements of a track, hence the rows themselves
+     * are checked.
+     */
+    static final String FETCH_ARCHIVABLE_TRACK_IDS =
+            "SELECT " + TrackTable.KEY_TRACK_ID + " FROM " + TrackTable.TABLE_TRACK +
+                    " WHERE " + TrackTable.KEY_TRACK_STATE + " = ?" +
+                    " AND EXISTS (SELECT 1 FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = " +
+                    TrackTable.TABLE_TRACK + "." + TrackTable.KEY_TRACK_ID + ")" +
+                    " AND " + TrackTable.KEY_TRACK_ID + " NOT IN (SELECT DISTINCT " +
+                    TrackBlockTable.KEY_TRACK + " FROM " + TrackBlockTable.TABLE_NAME + ")";
+
+    private final BriteDatabase briteDatabase;
+
+    private SupportSQLiteStatement insertStatement;
+    private SupportSQLiteStatement deleteOfTrackStatement;
+    private SupportSQLiteStatement countOfTrackStatement;
+
+    /**
+     * Constructor.
+     *
+     * @param briteDatabase the database to run the queries on.
+     */
+    TrackBlockQueries(BriteDatabase briteDatabase) {
+        this.briteDatabase = briteDatabase;
+    }
+
+    /**
+     * Returns the number of archived measurements of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the number of measurements, 0 if the track is not archived.
+     */
+    synchronized long countOfTrack(Track.TrackId trackId) {
+        if (countOfTrackStatement == null) {
+            countOfTrackStatement = briteDatabase.getReadableDatabase()
+                    .compileStatement(COUNT_OF_TRACK);
+        }
+        countOfTrackStatement.bindLong(1, trackId.getId());
+        return countOfTrackStatement.simpleQueryForLong();
+    }
+
+    /**
+     * Returns all archived measurements of a track in time order.
+     *
+     * @param trackId the id of the track.
+     * @return the measurements or an empty list if the track is not archived.
+     */
+    List<Measurement> fetchOfTrack(Track.TrackId trackId) {
+        List<Measurement> measurements = new ArrayList<>();
+        for (Iterator<Measurement> it = iterateOfTrack(trackId, 0); it.hasNext(); ) {
+            measurements.add(it.next());
+        }
+        return measurements;
+    }
+
+    /**
+     * Returns at most {@code limit} archived measurements of a track starting at the given
+     * position. Only the blocks that overlap the range are decoded.
+     *
+     * @param trackId the id of the track.
+     * @param offset  the number of measurements to skip.
+     * @param limit   the maximum number of measurements.
+     * @return the measurements.
+     */
+    List<Measurement> fetchRangeOfTrack(Track.TrackId trackId, int offset, int limit) {
+        List<Measurement> measurements = new ArrayList<>(limit);
+        Iterator<Measurement> it = iterateOfTrack(trackId, offset / TrackBlockTable.BLOCK_SIZE);
+        for (int skip = offset % TrackBlockTable.BLOCK_SIZE; skip > 0 && it.hasNext(); skip--) {
+            it.next();
+        }
+        while (measurements.size() < limit && it.hasNext()) {
+            measurements.add(it.next());
+        }
+        return measurements;
+    }
+
+    /**
+     * Returns an iterator over the archived measurements of a track that loads and decodes one
+     * block at a time.
+     *
+     * @param trackId    the id of the track.
+     * @param firstBlock the sequence number of the first block to read.
+     * @return the iterator.
+     */
+    Iterator<Measurement> iterateOfTrack(Track.TrackId trackId, int firstBlock) {
+        return new Iterator<Measurement>() {
+            private int nextBlock = firstBlock;
+            private Iterator<Measurement> current = Collections.emptyIterator();
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !exhausted) {
+                    byte[] block = fetchBlock(trackId, nextBlock++);
+                    if (block == null) {
+                        exhausted = true;
+                    } else {
+                        current = TrackBlockCodec.decode(block, trackId);
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Measurement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Encodes and stores a block of measurements.
+     *
+     * @param trackId      the id of the track.
+     * @param sequence     the sequence number of the block within the track.
+     * @param measurements the measurements of the block in time order.
+     * @return the size of the encoded block in bytes.
+     */
+    synchronized int insert(Track.TrackId trackId, int sequence, List<Measurement> measurements) {
+        if (insertStatement == null) {
+            insertStatement = compile(INSERT);
+        }
+        byte[] data = TrackBlockCodec.encode(measurements);
+        insertStatement.bindLong(1, trackId.getId());
+        insertStatement.bindLong(2, sequence);
+        insertStatement.bindLong(3, measurements.size());
+        insertStatement.bindLong(4, measurements.get(0).getTime());
+        insertStatement.bindBlob(5, data);
+        briteDatabase.executeInsert(TrackBlockTable.TABLE_NAME, insertStatement);
+        return data.length;
+    }
+
+    /**
+     * Deletes all blocks of a track.
+     *
+     * @param trackId the id of the track.
+     * @return the number of deleted blocks.
+     */
+    synchronized int deleteOfTrack(Track.TrackId trackId) {
+        if (deleteOfTrackStatement == null) {
+            deleteOfTrackStatement = compile(DELETE_OF_TRACK);
+        }
+        deleteOfTrackStatement.bindLong(1, trackId.getId());
+        return briteDatabase.executeUpdateDelete(
+                TrackBlockTable.TABLE_NAME, deleteOfTrackStatement);
+    }
+
+    /**
+     * Returns the ids of all finished tracks that are not archived yet.
+     *
+     * @return the track ids.
+     */
+    List<Track.TrackId> fetchArchivableTrackIds() {
+        Cursor cursor = briteDatabase.query(FETCH_ARCHIVABLE_TRACK_IDS,
+                Track.TrackStatus.FINISHED.toString());
+        try {
+            List<Track.TrackId> trackIds = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                trackIds.add(new Track.TrackId(cursor.getLong(0)));
+            }
+            return trackIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private byte[] fetchBlock(Track.TrackId trackId, int sequence) {
+        Cursor cursor = briteDatabase.query(FETCH_BLOCK, trackId.getId(), sequence);
+        try {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private SupportSQLiteStatement compile(String sql) {
+        return briteDatabase.getWritableDatabase().compileStatement(sql);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+/**
+ * Cold storage of finished tracks. The measurements of an archived track are stored as a
+ * sequence of compressed blocks (see {@link TrackBlockCodec}) instead of one row per measurement.
+ * Every block holds at most {@link #BLOCK_SIZE} measurements, so that a single block always fits
+ * into a cursor window.
+ */
+class TrackBlockTable {
+
+    public static final String TABLE_NAME = "track_blocks";
+    public static final String KEY_TRACK = "track";
+    public static final String KEY_SEQUENCE = "seq";
+    public static final String KEY_COUNT = "count";
+    public static final String KEY_FIRST_TIME = "first_time";
+    public static final String KEY_DATA = "data";
+
+    /**
+     * Number of measurements per block. Every block but the last one of a track is full.
+     */
+    static final int BLOCK_SIZE = 2048;
+
+    public static final String CREATE =
+            "create table " + TABLE_NAME + " (" +
+                    KEY_TRACK + " INTEGER NOT NULL, " +
+                    KEY_SEQUENCE + " INTEGER NOT NULL, " +
+                    KEY_COUNT + " INTEGER NOT NULL, " +
+                    KEY_FIRST_TIME + " INTEGER, " +
+                    KEY_DATA + " BLOB NOT NULL, " +
+                    "PRIMARY KEY (" + KEY_TRACK + ", " + KEY_SEQUENCE + "));";
+
+    public static final String DELETE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import org.envirocar.core.entity.Measurement;
+import org.envirocar.core.entity.Track;
+import org.envirocar.core.entity.TrackData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of the hydrated measurements of tracks. The weight of an entry is its
+ * number of measurements, and the least recently used tracks are evicted as soon as the total
+ * weight exceeds the maximum.
+ * <p>
+ * Every hit returns a copy, so callers can modify it without affecting the cache. Columnar
+ * {@link TrackData} lists are copied column by column, the elements of other lists are shared.
+ * Every committed change of a track invalidates its entry. A load that raced with an
+ * invalidation is not cached, which is detected by a version that is taken before the load.
+ */
+public final class TrackCache {
+
+    public static final int DEFAULT_MAX_WEIGHT = 100000;
+
+    private final int maxWeight;
+    private final LinkedHashMap<Track.TrackId, List<Measurement>> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private int weight;
+    private long version;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param maxWeight the maximum number of cached measurements.
+     */
+    public TrackCache(int maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the cached measurements of a track and counts a hit or a miss.
+     *
+     * @param trackId the id of the track.
+     * @return a copy of the cached measurements or null if the track is not cached.
+     */
+    public synchronized List<Measurement> get(Track.TrackId trackId) {
+        List<Measurement> measurements = entries.get(trackId);
+        if (measurements == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(measurements);
+    }
+
+    /**
+     * @return the version to pass to {@link #put(Track.TrackId, List, long)} after a load.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Caches the measurements of a track unless the cache has been invalidated since the load
+     * started.
+     *
+     * @param trackId      the id of the track.
+     * @param measurements the loaded measurements.
+     * @param version      the version taken before the load.
+     */
+    public synchronized void put(Track.TrackId trackId, List<Measurement> measurements,
+                                 long version) {
+        if (version != this.version || measurements.size() > maxWeight) {
+            return;
+        }
+
+        List<Measurement> previous = entries.put(trackId, copy(measurements));
+        if (previous != null) {
+            weight -= previous.size();
+        }
+        weight += measurements.size();
+
+        Iterator<Map.Entry<Track.TrackId, List<Measurement>>> eldest =
+                entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes a track from the cache.
+     *
+     * @param trackId the id of the changed track.
+     */
+    public synchronized void invalidate(Track.TrackId trackId) {
+        version++;
+        List<Measurement> previous = entries.remove(trackId);
+        if (previous != null) {
+            weight -= previous.size();
+        }
+    }
+
+    /**
+     * Removes all tracks from the cache.
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return the number of requests that were served from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests that required a database query.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return the number of cached measurements.
+     */
+    public synchronized int getWeight() {
+        return weight;
+    }
+
+    private static List<Measurement> copy(List<Measurement> measurements) {
+        TrackData data = TrackData.unwrap(measurements);
+        return data != null ? data.copy().asList() : new ArrayList<>(measurements);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TrackCache: tracks=%d, measurements=%d, hits=%d, misses=%d",
+                entries.size(), weight, hits, misses);
+    }
+}
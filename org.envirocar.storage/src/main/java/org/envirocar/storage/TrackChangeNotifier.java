@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013 - 2019 the enviroCar community
+ *
+ * This file is part of the enviroCar app.
+ *
+ * The enviroCar app is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The enviroCar app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the enviroCar app. If not, see http://www.gnu.org/licenses/.
+ */
+package org.envirocar.storage;
+
+import org.envirocar.core.entity.Track;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Change notifications keyed by track. Writers tag every committed change with the id of the
+ * affected track, so that only observers of this track re-run their queries. All changes of a
+ * track within the notification window are coalesced into a single notification, which is
+ * emitted at the end of the window. Caches, which must not serve data of a committed change,
+ * observe the uncoalesced {@link #commits()} instead.
+ */
+public class TrackChangeNotifier {
+
+    private final long window;
+    private final TimeUnit unit;
+    private final Scheduler scheduler;
+    private final Subject<Track.TrackId> changes = PublishSubject.<Track.TrackId>create()
+            .toSerialized();
+    private final Subject<Track.TrackId> commits = PublishSubject.<Track.TrackId>create()
+            .toSerialized();
+
+    private final Set<Track.TrackId> pending = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param window    the window over which changes of a track are coalesced.
+     * @param unit      the time unit of the window.
+     * @param scheduler the scheduler on which notifications are emitted.
+     */
+    TrackChangeNotifier(long window, TimeUnit unit, Scheduler scheduler) {
+        this.window = window;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Marks a track as changed. Has to be called after the change has been committed.
+     *
+     * @param trackId the id of the changed track.
+     */
+    void notifyChanged(Track.TrackId trackId) {
+        commits.onNext(trackId);
+        synchronized (pending) {
+            pending.add(trackId);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.scheduleDirect(this::flush, window, unit);
+            }
+        }
+    }
+
+    /**
+     * Returns the coalesced changes of a single track.
+     *
+     * @param trackId the id of the track.
+     * @return an observable emitting the track id for every window in which the track changed.
+     */
+    Observable<Track.TrackId> changesOf(Track.TrackId trackId) {
+        long id = trackId.getId();
+        return changes.filter(changed -> changed.getId() == id);
+    }
+
+    /**
+     * Returns every change synchronously on the thread of the committing writer.
+     *
+     * @return an observable emitting the id of the changed track for every commit.
+     */
+    Observable<Track.TrackId> commits() {
+        return commits;
+    }
+
+    private void flush() {
+        List<Track.TrackId> changed;
+        synchronized (pending) {
+            changed = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        for (Track.TrackId trackId : changed) {
+            changes.onNext(trackId);
+        }
+    }
+}
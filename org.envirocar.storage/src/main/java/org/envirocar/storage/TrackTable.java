@@ -22,8 +22,13 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.util.Log;
 
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.envirocar.core.TrackFilter;
+import org.envirocar.core.TrackSort;
 import org.envirocar.core.entity.Car;
 import org.envirocar.core.entity.CarImpl;
+import org.envirocar.core.entity.Measurement;
 import org.envirocar.core.entity.Track;
 import org.envirocar.core.entity.TrackImpl;
 import org.envirocar.core.logging.Logger;
@@ -63,6 +68,24 @@ class TrackTable {
     public static final String KEY_TRACK_CAR_ID = "carId";
     public static final String KEY_TRACK_METADATA = "trackMetadata";
 
+    // summary columns that are maintained on every measurement insert
+    public static final String KEY_TRACK_MEASUREMENT_COUNT = "measurement_count";
+    public static final String KEY_TRACK_MIN_LATITUDE = "min_latitude";
+    public static final String KEY_TRACK_MAX_LATITUDE = "max_latitude";
+    public static final String KEY_TRACK_MIN_LONGITUDE = "min_longitude";
+    public static final String KEY_TRACK_MAX_LONGITUDE = "max_longitude";
+    public static final String KEY_TRACK_PROPERTY_MASK = "property_mask";
+
+    private static final String SUMMARY_COLUMNS_DEFINITION =
+            KEY_TRACK_MEASUREMENT_COUNT + " INTEGER DEFAULT 0, " +
+                    KEY_TRACK_MIN_LATITUDE + " REAL, " +
+                    KEY_TRACK_MAX_LATITUDE + " REAL, " +
+                    KEY_TRACK_MIN_LONGITUDE + " REAL, " +
+                    KEY_TRACK_MAX_LONGITUDE + " REAL";
+
+    private static final String PROPERTY_MASK_DEFINITION =
+            KEY_TRACK_PROPERTY_MASK + " INTEGER DEFAULT 0";
+
     protected static final String CREATE =
             "create table " + TABLE_TRACK + " " +
                     "(" + KEY_TRACK_ID + " INTEGER primary key, " +
@@ -80,10 +103,78 @@ class TrackTable {
                     KEY_TRACK_CAR_ENGINE_DISPLACEMENT + " BLOB, " +
                     KEY_TRACK_CAR_YEAR + " BLOB, " +
                     KEY_TRACK_CAR_VIN + " BLOB, " +
-                    KEY_TRACK_CAR_ID + " BLOB);";
+                    KEY_TRACK_CAR_ID + " BLOB, " +
+                    SUMMARY_COLUMNS_DEFINITION + ", " +
+                    PROPERTY_MASK_DEFINITION + ");";
 
     protected static final String DELETE = "DROP TABLE IF EXISTS " + TABLE_TRACK;
 
+    /**
+     * Matches tracks whose measurements are stored either as rows or as compressed blocks. The
+     * summary columns are kept when the measurements of a track are dropped, so the measurement
+     * count cannot be used for this.
+     */
+    static final String HAS_STORED_MEASUREMENTS =
+            "(EXISTS (SELECT 1 FROM " + MeasurementTable.TABLE_NAME +
+                    " WHERE " + MeasurementTable.KEY_TRACK + " = " + TABLE_TRACK + "." + KEY_TRACK_ID + ")" +
+                    " OR EXISTS (SELECT 1 FROM " + TrackBlockTable.TABLE_NAME +
+                    " WHERE " + TrackBlockTable.KEY_TRACK + " = " + TABLE_TRACK + "." + KEY_TRACK_ID + "))";
+
+    protected static final String CREATE_INDEX_START_TIME =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_TRACK + "_start_time" +
+                    " ON " + TABLE_TRACK + " (" + KEY_TRACK_START_TIME + ");";
+
+    protected static final String CREATE_INDEX_CAR_ID =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_TRACK + "_car_id" +
+                    " ON " + TABLE_TRACK + " (" + KEY_TRACK_CAR_ID + ");";
+
+    /**
+     * Merges the summary of a batch of new measurements into the summary columns of a track.
+     * Arguments: count, min time, max time, min lat, max lat, min lon, max lon, track id,
+     * property mask.
+     */
+    protected static final String UPDATE_SUMMARY =
+            "UPDATE " + TABLE_TRACK + " SET " +
+                    KEY_TRACK_MEASUREMENT_COUNT + " = ifnull(" + KEY_TRACK_MEASUREMENT_COUNT + ", 0) + ?1, " +
+                    KEY_TRACK_START_TIME + " = min(ifnull(nullif(" + KEY_TRACK_START_TIME + ", 0), ?2), ?2), " +
+                    KEY_TRACK_END_TIME + " = max(ifnull(" + KEY_TRACK_END_TIME + ", ?3), ?3), " +
+                    mergeBound(KEY_TRACK_MIN_LATITUDE, "min", "?4") + ", " +
+                    mergeBound(KEY_TRACK_MAX_LATITUDE, "max", "?5") + ", " +
+                    mergeBound(KEY_TRACK_MIN_LONGITUDE, "min", "?6") + ", " +
+                    mergeBound(KEY_TRACK_MAX_LONGITUDE, "max", "?7") + ", " +
+                    KEY_TRACK_PROPERTY_MASK + " = ifnull(" + KEY_TRACK_PROPERTY_MASK + ", 0) | ?9" +
+                    " WHERE " + KEY_TRACK_ID + " = ?8";
+
+    /**
+     * Clears the property mask of a track whose measurements have been dropped. The mask
+     * describes the stored measurements, while the other summary columns describe the recorded
+     * track and are kept. Argument: track id.
+     */
+    protected static final String CLEAR_PROPERTY_MASK =
+            "UPDATE " + TABLE_TRACK + " SET " + KEY_TRACK_PROPERTY_MASK + " = 0" +
+                    " WHERE " + KEY_TRACK_ID + " = ?";
+
+    /**
+     * Recomputes the summary columns of all tracks from their measurements.
+     */
+    protected static final String RECOMPUTE_SUMMARY =
+            "UPDATE " + TABLE_TRACK + " SET " +
+                    KEY_TRACK_MEASUREMENT_COUNT + " = " + aggregate("COUNT(*)") + ", " +
+                    KEY_TRACK_START_TIME + " = ifnull(" + aggregate("MIN(" + MeasurementTable.KEY_TIME + ")") + ", " + KEY_TRACK_START_TIME + "), " +
+                    KEY_TRACK_END_TIME + " = ifnull(" + aggregate("MAX(" + MeasurementTable.KEY_TIME + ")") + ", " + KEY_TRACK_END_TIME + "), " +
+                    KEY_TRACK_MIN_LATITUDE + " = " + aggregate("MIN(" + MeasurementTable.KEY_LATITUDE + ")") + ", " +
+                    KEY_TRACK_MAX_LATITUDE + " = " + aggregate("MAX(" + MeasurementTable.KEY_LATITUDE + ")") + ", " +
+                    KEY_TRACK_MIN_LONGITUDE + " = " + aggregate("MIN(" + MeasurementTable.KEY_LONGITUDE + ")") + ", " +
+                    KEY_TRACK_MAX_LONGITUDE + " = " + aggregate("MAX(" + MeasurementTable.KEY_LONGITUDE + ")");
+
+    /**
+     * Recomputes the summary columns of a single track. Argument: track id.
+     */
+    protected static final String RECOMPUTE_SUMMARY_OF_TRACK =
+            RECOMPUTE_SUMMARY + ", " +
+                    KEY_TRACK_PROPERTY_MASK + " = " + propertyMaskOfRows() +
+                    " WHERE " + KEY_TRACK_ID + " = ?";
+
     protected static final Function<Cursor, Track> MAPPER = cursor -> fromCursor(cursor);
 
     public static final Function<? super Cursor, ? extends Observable<Track.TrackId>>
@@ -107,6 +198,200 @@ class TrackTable {
                 return idList;
             };
 
+    private static String mergeBound(String column, String function, String arg) {
+        return column + " = " + function + "(ifnull(" + column + ", " + arg + "), ifnull(" +
+                arg + ", " + column + "))";
+    }
+
+    /**
+     * Creates an expression for the bit mask of the properties present in the measurement rows
+     * of a track. Bit i stands for the property key with ordinal i.
+     */
+    private static String propertyMaskOfRows() {
+        StringBuilder sb = new StringBuilder("(0");
+        Measurement.PropertyKey[] keys = Measurement.PropertyKey.values();
+        for (int i = 0; i < keys.length; i++) {
+            sb.append(" | (EXISTS (SELECT 1 FROM ").append(MeasurementTable.TABLE_NAME)
+                    .append(" WHERE ").append(MeasurementTable.TABLE_NAME).append(".")
+                    .append(MeasurementTable.KEY_TRACK).append(" = ").append(TABLE_TRACK)
+                    .append(".").append(KEY_TRACK_ID).append(" AND ")
+                    .append(MeasurementTable.getColumnName(keys[i])).append(" IS NOT NULL) << ")
+                    .append(i).append(")");
+        }
+        return sb.append(")").toString();
+    }
+
+    private static String aggregate(String function) {
+        return "(SELECT " + function + " FROM " + MeasurementTable.TABLE_NAME +
+                " WHERE " + MeasurementTable.TABLE_NAME + "." + MeasurementTable.KEY_TRACK +
+                " = " + TABLE_TRACK + "." + KEY_TRACK_ID + ")";
+    }
+
+    /**
+     * Adds the summary columns to a track table of database version 12 and backfills them from
+     * the existing measurements.
+     *
+     * @param db the database to migrate.
+     */
+    static void migrateToSummaryColumns(SupportSQLiteDatabase db) {
+        LOG.info("Adding summary columns to the tracks table.");
+        for (String column : SUMMARY_COLUMNS_DEFINITION.split(", ")) {
+            db.execSQL("ALTER TABLE " + TABLE_TRACK + " ADD COLUMN " + column);
+        }
+        db.execSQL(RECOMPUTE_SUMMARY);
+    }
+
+    /**
+     * Adds the property mask column to a track table of database version 17 and backfills it
+     * from the measurement rows and from the headers of the compressed blocks.
+     *
+     * @param db the database to migrate.
+     */
+    static void migrateToPropertyMask(SupportSQLiteDatabase db) {
+        LOG.info("Adding the property mask column to the tracks table.");
+        db.execSQL("ALTER TABLE " + TABLE_TRACK + " ADD COLUMN " + PROPERTY_MASK_DEFINITION);
+        db.execSQL("UPDATE " + TABLE_TRACK + " SET " + KEY_TRACK_PROPERTY_MASK + " = " +
+                propertyMaskOfRows());
+
+        Cursor c = db.query("SELECT " + TrackBlockTable.KEY_TRACK + ", " +
+                TrackBlockTable.KEY_DATA + " FROM " + TrackBlockTable.TABLE_NAME);
+        try {
+            while (c.moveToNext()) {
+                db.execSQL("UPDATE " + TABLE_TRACK + " SET " + KEY_TRACK_PROPERTY_MASK + " = " +
+                                KEY_TRACK_PROPERTY_MASK + " | ? WHERE " + KEY_TRACK_ID + " = ?",
+                        new Object[]{TrackBlockCodec.propertyMask(c.getBlob(1)), c.getLong(0)});
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Creates the arguments for {@link #UPDATE_SUMMARY} out of a batch of new measurements.
+     *
+     * @param trackId      the id of the track.
+     * @param measurements the newly inserted measurements.
+     * @return the statement arguments.
+     */
+    static Object[] toSummaryArgs(Track.TrackId trackId, List<Measurement> measurements) {
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        Double minLat = null, maxLat = null, minLon = null, maxLon = null;
+        Measurement.PropertyKey[] keys = Measurement.PropertyKey.values();
+        long propertyMask = 0;
+
+        for (Measurement measurement : measurements) {
+            for (int i = 0; i < keys.length; i++) {
+                if (measurement.hasProperty(keys[i])) {
+                    propertyMask |= 1L << i;
+                }
+            }
+
+            minTime = Math.min(minTime, measurement.getTime());
+            maxTime = Math.max(maxTime, measurement.getTime());
+
+            Double lat = measurement.getLatitude();
+            Double lon = measurement.getLongitude();
+            if (lat != null && lon != null) {
+                minLat = minLat == null ? lat : Math.min(minLat, lat);
+                maxLat = maxLat == null ? lat : Math.max(maxLat, lat);
+                minLon = minLon == null ? lon : Math.min(minLon, lon);
+                maxLon = maxLon == null ? lon : Math.max(maxLon, lon);
+            }
+        }
+
+        return new Object[]{measurements.size(), minTime, maxTime,
+                minLat, maxLat, minLon, maxLon, trackId.getId(), propertyMask};
+    }
+
+    /**
+     * Creates the WHERE clause for a track filter.
+     *
+     * @param filter the filter to translate.
+     * @param args   the list the bind arguments of the clause are added to.
+     * @return the where clause, or an empty string if the filter matches all tracks.
+     */
+    static String toSelection(TrackFilter filter, List<Object> args) {
+        List<String> clauses = new ArrayList<>();
+        switch (filter.getOrigin()) {
+            case LOCAL:
+                clauses.add(KEY_REMOTE_ID + " IS NULL");
+                break;
+            case REMOTE:
+                clauses.add(KEY_REMOTE_ID + " IS NOT NULL");
+                break;
+            default:
+                break;
+        }
+        if (filter.getStartedAfter() != null) {
+            clauses.add(KEY_TRACK_START_TIME + " >= ?");
+            args.add(filter.getStartedAfter());
+        }
+        if (filter.getStartedBefore() != null) {
+            clauses.add(KEY_TRACK_START_TIME + " < ?");
+            args.add(filter.getStartedBefore());
+        }
+        if (filter.getCarId() != null) {
+            clauses.add(KEY_TRACK_CAR_ID + " = ?");
+            args.add(filter.getCarId());
+        }
+        if (filter.getRemoteIds() != null) {
+            // SQLite accepts an empty list, which matches no track.
+            StringBuilder in = new StringBuilder();
+            for (String remoteId : filter.getRemoteIds()) {
+                in.append(in.length() == 0 ? "?" : ", ?");
+                args.add(remoteId);
+            }
+            clauses.add(KEY_REMOTE_ID + " IN (" + in + ")");
+        }
+        if (filter.getMinLength() != null) {
+            clauses.add(KEY_TRACK_LENGTH + " >= ?");
+            args.add(filter.getMinLength());
+        }
+        if (filter.getMaxLength() != null) {
+            clauses.add(KEY_TRACK_LENGTH + " <= ?");
+            args.add(filter.getMaxLength());
+        }
+        if (filter.isWithMeasurementsOnly()) {
+            clauses.add(HAS_STORED_MEASUREMENTS);
+        }
+
+        if (clauses.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(" WHERE ");
+        for (int i = 0; i < clauses.size(); i++) {
+            if (i > 0) {
+                sb.append(" AND ");
+            }
+            sb.append(clauses.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates the ORDER BY clause for a sort order. The track id is used as tie breaker to keep
+     * pages stable.
+     *
+     * @param sort the sort order.
+     * @return the order by clause.
+     */
+    static String toOrderBy(TrackSort sort) {
+        switch (sort) {
+            case START_TIME_ASC:
+                return " ORDER BY " + KEY_TRACK_START_TIME + " ASC, " + KEY_TRACK_ID + " ASC";
+            case LENGTH_DESC:
+                return " ORDER BY " + KEY_TRACK_LENGTH + " DESC, " + KEY_TRACK_ID + " DESC";
+            case LENGTH_ASC:
+                return " ORDER BY " + KEY_TRACK_LENGTH + " ASC, " + KEY_TRACK_ID + " ASC";
+            case NAME_ASC:
+                return " ORDER BY " + KEY_TRACK_NAME + " ASC, " + KEY_TRACK_ID + " ASC";
+            case START_TIME_DESC:
+            default:
+                return " ORDER BY " + KEY_TRACK_START_TIME + " DESC, " + KEY_TRACK_ID + " DESC";
+        }
+    }
+
     public static ContentValues toContentValues(Track track) {
         ContentValues values = new ContentValues();
         if (track.getTrackID() != null && track.getTrackID().getId() != 0) {
@@ -142,7 +427,7 @@ class TrackTable {
     }
 
     public static Track fromCursor(Cursor c) {
-        Track track = new TrackImpl();
+        TrackImpl track = new TrackImpl();
         track.setTrackID(new Track.TrackId(c.getLong(c.getColumnIndex(KEY_TRACK_ID))));
         track.setRemoteID(c.getString(c.getColumnIndex(KEY_REMOTE_ID)));
         track.setName(c.getString(c.getColumnIndex(KEY_TRACK_NAME)));
@@ -170,6 +455,11 @@ class TrackTable {
 
         track.setCar(createCarFromCursor(c));
 
+        int propertyMaskColumn = c.getColumnIndex(KEY_TRACK_PROPERTY_MASK);
+        if (propertyMaskColumn != -1) {
+            track.setPropertyMask(c.getLong(propertyMaskColumn));
+        }
+
         return track;
     }
 